@@ -0,0 +1,48 @@
+﻿using System.Collections.Generic;
+
+[System.Serializable]
+public sealed class BatchScanResult
+{
+    public List<BatchScanResultItem> results;
+}
+
+/// <summary>
+/// Every advertisement of one device within a scan batch.
+/// </summary>
+[System.Serializable]
+public sealed class BatchScanResultItem
+{
+    public string name;
+    public string address;
+    public int rssi;
+    public int minRssi;
+    public int maxRssi;
+    public double averageRssi;
+    public int count;
+    public int handle;
+}
+
+public sealed class ScanMode
+{
+    public const int OPPORTUNISTIC = -1;
+    public const int LOW_POWER = 0;
+    public const int BALANCED = 1;
+    public const int LOW_LATENCY = 2;
+}
+
+public sealed class ScanCallbackType
+{
+    public const int ALL_MATCHES = 1;
+    public const int FIRST_MATCH = 2;
+    public const int MATCH_LOST = 4;
+}
+
+public sealed class ScanMatchMode
+{
+    public const int AGGRESSIVE = 1;
+    public const int STICKY = 2;
+    
+    public const int MATCH_NUM_ONE_ADVERTISEMENT = 1;
+    public const int MATCH_NUM_FEW_ADVERTISEMENT = 2;
+    public const int MATCH_NUM_MAX_ADVERTISEMENT = 3;
+}
\ No newline at end of file
@@ -6,8 +6,11 @@ public class BatteryDataReceived: RawDataReceived
     
     public BatteryDataReceived Init()
     {
-        base.Init();
-        batteryLevel = int.Parse(BitConverter.ToString(data), System.Globalization.NumberStyles.HexNumber);
+        // Already decoded by ToBatteryDataReceived, and binary frames have no base64
+        if (data == null)
+            base.Init();
+        // The Battery Level characteristic is a single byte, in percent
+        batteryLevel = data.Length > 0 ? data[0] : 0;
         return this;
     }
 }
\ No newline at end of file
@@ -0,0 +1,36 @@
+﻿[System.Serializable]
+public sealed class CadenceUpdate
+{
+    public string deviceAddress;
+    public int deviceIndex;
+    public bool active;
+    
+    /// <summary>
+    /// Cycles per minute, the median of the last few cycles, 0 while idle.
+    /// </summary>
+    public float cadence;
+    
+    /// <summary>
+    /// Cycles counted since the sensor connected or detection was configured.
+    /// </summary>
+    public long cycles;
+    
+    /// <summary>
+    /// Native SystemClock.elapsedRealtimeNanos() of the motion sample that triggered the update.
+    /// </summary>
+    public long timestampNanos;
+}
+
+[System.Serializable]
+public sealed class CadenceCycle
+{
+    public string deviceAddress;
+    public int deviceIndex;
+    public long cycles;
+    
+    /// <summary>
+    /// Since the previous cycle.
+    /// </summary>
+    public long intervalMillis;
+    public long timestampNanos;
+}
\ No newline at end of file
@@ -2,4 +2,9 @@
 public class CharacteristicItem
 {
     public string characteristicUuid;
+    
+    /// <summary>
+    /// Handle for the CharacteristicHandle methods of SyncsenseSensorManager, -1 if the discovery failed.
+    /// </summary>
+    public int handle;
 }
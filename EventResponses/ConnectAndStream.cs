@@ -0,0 +1,53 @@
+﻿[System.Serializable]
+public sealed class ConnectAndStreamProgress
+{
+    public string deviceAddress;
+    
+    /// <summary>
+    /// One of ConnectAndStreamState.
+    /// </summary>
+    public int state;
+    public int attempts;
+    
+    /// <summary>
+    /// Durations of the steps of the last attempt, -1 for the steps it did not reach.
+    /// </summary>
+    public long connectMillis;
+    public long discoveryMillis;
+    public long subscriptionMillis;
+    
+    /// <summary>
+    /// From the start of the last connection attempt to the first value received.
+    /// </summary>
+    public long timeToFirstSampleMillis;
+    
+    /// <summary>
+    /// From the call to ConnectAndStream to the first value received, time spent waiting for a connection slot included.
+    /// </summary>
+    public long sessionTimeToFirstSampleMillis;
+    public int subscriptions;
+}
+
+[System.Serializable]
+public sealed class ConnectAndStreamResult
+{
+    public ConnectAndStreamProgress[] devices;
+    public int streamingDevices;
+    public int failedDevices;
+    
+    /// <summary>
+    /// From the call to ConnectAndStream to the first value of the last streaming device, -1 if none streams.
+    /// </summary>
+    public long totalTimeToFirstSampleMillis;
+}
+
+public sealed class ConnectAndStreamState
+{
+    public const int QUEUED = 0;
+    public const int CONNECTING = 1;
+    public const int DISCOVERING = 2;
+    public const int SUBSCRIBING = 3;
+    public const int WAITING_FOR_DATA = 4;
+    public const int STREAMING = 5;
+    public const int FAILED = 6;
+}
\ No newline at end of file
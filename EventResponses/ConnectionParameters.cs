@@ -0,0 +1,28 @@
+﻿[System.Serializable]
+public sealed class ConnectionParameters
+{
+    public int status;
+    public string deviceAddress;
+    public int mtu;
+    public int txPhy;
+    public int rxPhy;
+    public int connectionPriority;
+}
+
+public sealed class ConnectionPriority
+{
+    public const int BALANCED = 0;
+    public const int HIGH = 1;
+    public const int LOW_POWER = 2;
+}
+
+public sealed class Phy
+{
+    public const int LE_1M = 1;
+    public const int LE_2M = 2;
+    public const int LE_CODED = 3;
+    
+    public const int LE_1M_MASK = 1;
+    public const int LE_2M_MASK = 2;
+    public const int LE_CODED_MASK = 4;
+}
\ No newline at end of file
@@ -0,0 +1,26 @@
+﻿using System.Collections.Generic;
+
+/// <summary>
+/// Every device currently known from scanning.
+/// </summary>
+[System.Serializable]
+public sealed class DeviceRegistry
+{
+    public List<DeviceRegistryItem> devices;
+}
+
+[System.Serializable]
+public sealed class DeviceRegistryItem
+{
+    public int handle;
+    public string name;
+    public string address;
+    /// <summary>
+    /// The smoothed RSSI.
+    /// </summary>
+    public int rssi;
+    public int lastRssi;
+    public long millisSinceSeen;
+    public long advertisementCount;
+    public string advertisementDataBase64;
+}
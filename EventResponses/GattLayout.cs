@@ -0,0 +1,110 @@
+﻿using System;
+using System.Collections.Generic;
+
+/// <summary>
+/// The result of a service discovery: the services and characteristics of a device as flat tables.
+///
+/// Sensors of a model share one layout, so the native plugin only sends the tables the first time a layout is seen.
+/// Later discoveries carry the layoutId alone, and SyncsenseSensorManager fills the tables in from the earlier one.
+/// </summary>
+[Serializable]
+public sealed class GattLayout
+{
+    public int status;
+    public string deviceName;
+    public string deviceAddress;
+    public int deviceIndex;
+    
+    /// <summary>
+    /// Equal for every discovery of the same layout, -1 if the discovery failed.
+    /// </summary>
+    public int layoutId;
+    
+    /// <summary>
+    /// True if the tables were not sent, as a layout with this layoutId was received before.
+    /// </summary>
+    public bool cached;
+
+    public string[] serviceUuids;
+    public int[] serviceTypes;
+    public int[] serviceInstanceIds;
+    
+    /// <summary>
+    /// Per characteristic, the position of its service in serviceUuids.
+    /// </summary>
+    public int[] characteristicServices;
+    public string[] characteristicUuids;
+    public int[] characteristicProperties;
+    
+    /// <summary>
+    /// Per characteristic, its index in the handle table of the connection, see GetCharacteristicHandle.
+    /// </summary>
+    public int[] characteristicIndices;
+
+    public void CopyTablesFrom(GattLayout other)
+    {
+        serviceUuids = other.serviceUuids;
+        serviceTypes = other.serviceTypes;
+        serviceInstanceIds = other.serviceInstanceIds;
+        characteristicServices = other.characteristicServices;
+        characteristicUuids = other.characteristicUuids;
+        characteristicProperties = other.characteristicProperties;
+        characteristicIndices = other.characteristicIndices;
+    }
+
+    /// <summary>
+    /// Returns the handle of a characteristic of this device, for the CharacteristicHandle methods of
+    /// SyncsenseSensorManager, without a call into the native plugin.
+    /// </summary>
+    /// <returns> the handle, or -1 if the device does not have the characteristic </returns>
+    public int GetCharacteristicHandle(string serviceUuid, string characteristicUuid)
+    {
+        if (characteristicUuids == null)
+            return -1;
+        
+        for (int i = 0; i < characteristicUuids.Length; i++)
+        {
+            if (characteristicIndices[i] >= 0
+                && string.Equals(characteristicUuids[i], characteristicUuid, StringComparison.OrdinalIgnoreCase)
+                && string.Equals(serviceUuids[characteristicServices[i]], serviceUuid, StringComparison.OrdinalIgnoreCase))
+                return deviceIndex << 8 | characteristicIndices[i];
+        }
+        return -1;
+    }
+
+    /// <summary>
+    /// Builds the service tree of OnServicesDiscoveredEvent.
+    /// </summary>
+    public ServicesDiscovered ToServicesDiscovered()
+    {
+        ServicesDiscovered discovered = new ServicesDiscovered
+        {
+            status = status,
+            deviceName = deviceName,
+            deviceAddress = deviceAddress,
+            services = new List<ServiceItem>()
+        };
+        if (serviceUuids == null)
+            return discovered;
+        
+        for (int s = 0; s < serviceUuids.Length; s++)
+        {
+            discovered.services.Add(new ServiceItem
+            {
+                serviceUuid = serviceUuids[s],
+                type = serviceTypes[s],
+                instanceId = serviceInstanceIds[s],
+                characteristics = new List<CharacteristicItem>()
+            });
+        }
+        for (int c = 0; c < characteristicUuids.Length; c++)
+        {
+            discovered.services[characteristicServices[c]].characteristics.Add(new CharacteristicItem
+            {
+                characteristicUuid = characteristicUuids[c],
+                handle = characteristicIndices[c] >= 0 ? deviceIndex << 8 | characteristicIndices[c] : -1
+            });
+        }
+        return discovered;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,29 @@
+﻿[System.Serializable]
+public sealed class GattOperationResult
+{
+    public int type;
+    public int status;
+    public int attempts;
+    public long durationMillis;
+    public string deviceAddress;
+    public string serviceUuid;
+    public string characteristicUuid;
+}
+
+public sealed class GattOperationType
+{
+    public const int DISCOVER_SERVICES = 0;
+    public const int ENABLE_NOTIFICATIONS = 1;
+    public const int DISABLE_NOTIFICATIONS = 2;
+    public const int WRITE_CHARACTERISTIC = 3;
+    public const int READ_CHARACTERISTIC = 4;
+    public const int WRITE_NO_RESPONSE = 9;
+}
+
+public sealed class GattOperationStatus
+{
+    public const int SUCCESS = 0;
+    public const int TIMEOUT = -1;
+    public const int REJECTED = -2;
+    public const int DISCONNECTED = -3;
+}
\ No newline at end of file
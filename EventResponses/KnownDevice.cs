@@ -0,0 +1,42 @@
+﻿using System.Collections.Generic;
+
+/// <summary>
+/// A sensor remembered by the native plugin from earlier sessions, see SetRememberDevices and WarmStart.
+/// </summary>
+[System.Serializable]
+public sealed class KnownDevice
+{
+    public string deviceAddress;
+    public string deviceName;
+    
+    /// <summary>
+    /// Wall clock time of the last connection, in milliseconds since the Unix epoch.
+    /// </summary>
+    public long lastConnectedMillis;
+    public int connectionCount;
+    
+    /// <summary>
+    /// Link parameters negotiated during the last connection.
+    /// </summary>
+    public int mtu;
+    public int txPhy;
+    public int rxPhy;
+    
+    /// <summary>
+    /// From the Device Information service, null or empty until it was read.
+    /// </summary>
+    public string firmwareRevision;
+    
+    /// <summary>
+    /// The tables of the last discovered layout, empty until the services were discovered once. deviceIndex and
+    /// layoutId are only known once connected, from OnGattLayoutDiscoveredEvent.
+    /// </summary>
+    public GattLayout layout;
+}
+
+[System.Serializable]
+public class KnownDeviceList
+{
+    public int version;
+    public List<KnownDevice> devices;
+}
\ No newline at end of file
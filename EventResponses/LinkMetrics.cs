@@ -0,0 +1,55 @@
+﻿using System.Collections.Generic;
+
+[System.Serializable]
+public class LinkMetrics
+{
+    public string deviceAddress;
+    public long droppedNotifications;
+    
+    /// <summary>
+    /// Notifications dropped by the overflow policy of the device's delivery buffer, see ConfigureDelivery.
+    /// </summary>
+    public long droppedDeliveries;
+    
+    public int rssiSamples;
+    public int rssi;
+    public int minRssi;
+    public int maxRssi;
+    public double averageRssi;
+    
+    public List<CharacteristicMetrics> characteristics;
+}
+
+[System.Serializable]
+public class CharacteristicMetrics
+{
+    public string characteristicUuid;
+    
+    public long notifications;
+    public long bytes;
+    public double notificationsPerSecond;
+    public double averageNotificationsPerSecond;
+    
+    public long lostSamples;
+    public long duplicateSamples;
+    public long reorderedSamples;
+    public double lossRate;
+    
+    public double meanIntervalMillis;
+    public double jitterMillis;
+    public double interArrivalP50Millis;
+    public double interArrivalP99Millis;
+    public double interArrivalMaxMillis;
+    public double millisSinceLastArrival;
+    
+    public double deliveryLatencyMeanMillis;
+    public double deliveryLatencyP50Millis;
+    public double deliveryLatencyP99Millis;
+    public double deliveryLatencyMaxMillis;
+}
+
+[System.Serializable]
+public class LinkMetricsList
+{
+    public List<LinkMetrics> devices;
+}
\ No newline at end of file
@@ -0,0 +1,33 @@
+﻿[System.Serializable]
+public sealed class ManagedConnectionStateChange
+{
+    public string deviceAddress;
+    public string deviceName;
+    public int state;
+    
+    /// <summary>
+    /// The reconnection attempt in progress, 0 while connected.
+    /// </summary>
+    public int attempt;
+    
+    /// <summary>
+    /// In BACKOFF, how long until the next attempt.
+    /// </summary>
+    public long retryDelayMillis;
+    
+    /// <summary>
+    /// When CONNECTED again after a link loss, the time from the loss until the subscriptions were restored.
+    /// </summary>
+    public long reconnectLatencyMillis;
+    public int restoredSubscriptions;
+}
+
+public sealed class ManagedConnectionState
+{
+    public const int CONNECTING = 0;
+    public const int CONNECTED = 1;
+    public const int BACKOFF = 2;
+    public const int RECONNECTING = 3;
+    public const int RESTORING = 4;
+    public const int CLOSED = 5;
+}
\ No newline at end of file
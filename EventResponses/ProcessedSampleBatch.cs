@@ -0,0 +1,18 @@
+﻿/// <summary>
+/// Rows of one output of the native motion processing, see SyncsenseSensorManager.SubscribeProcessedOutput.
+///
+/// deviceIndex and timestampNanos hold count entries, values holds count * width entries, row after row:
+/// PROCESSED_OUTPUT_FILTERED rows are accX, accY, accZ, gyroX, gyroY, gyroZ; PROCESSED_OUTPUT_ORIENTATION rows are
+/// a quaternion w, x, y, z; PROCESSED_OUTPUT_STATISTICS rows are the mean of the 6 axes followed by their standard
+/// deviation. Timestamps are estimated sample times on the SystemClock.elapsedRealtimeNanos timeline.
+/// </summary>
+public class ProcessedSampleBatch
+{
+    public int output;
+    public int count;
+    public int width;
+    
+    public int[] deviceIndex;
+    public long[] timestampNanos;
+    public float[] values;
+}
\ No newline at end of file
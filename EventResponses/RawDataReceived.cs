@@ -8,6 +8,11 @@ public class RawDataReceived
     public string dataBase64;
 
     public byte[] data = null;
+
+    /// <summary>
+    /// Native receive time (SystemClock.elapsedRealtimeNanos), taken when the notification arrived.
+    /// </summary>
+    public long timestampNanos;
     
     public RawDataReceived Init()
     {
@@ -23,6 +28,7 @@ public class RawDataReceived
         tempData.characteristicUuid = this.characteristicUuid;
         tempData.dataBase64 = this.dataBase64;
         tempData.data = this.data;
+        tempData.timestampNanos = this.timestampNanos;
         
         return tempData.Init();
     }
@@ -35,6 +41,7 @@ public class RawDataReceived
         tempData.characteristicUuid = this.characteristicUuid;
         tempData.dataBase64 = this.dataBase64;
         tempData.data = this.data;
+        tempData.timestampNanos = this.timestampNanos;
         
         return tempData.Init();
     }
@@ -0,0 +1,28 @@
+﻿[System.Serializable]
+public sealed class ReplayResult
+{
+    public string filePath;
+    
+    /// <summary>
+    /// How many times faster than recorded the replay ran, 0 for as fast as possible.
+    /// </summary>
+    public float speed;
+    public long notifications;
+    
+    /// <summary>
+    /// From the first to the last replayed notification, as recorded.
+    /// </summary>
+    public long recordedMillis;
+    public long elapsedMillis;
+    public double notificationsPerSecond;
+    
+    /// <summary>
+    /// True if StopReplay ended the replay before the end of the recording.
+    /// </summary>
+    public bool stopped;
+    
+    /// <summary>
+    /// Why the recording could not be read, null or empty if it could.
+    /// </summary>
+    public string error;
+}
\ No newline at end of file
@@ -4,4 +4,9 @@ public sealed class ScanResult
     public int rssi;
     public string name;
     public string address;
+    /// <summary>
+    /// Compact id of the device, accepted by the ByHandle methods of SyncsenseSensorManager. Valid until the device
+    /// is lost, or for the whole session once it was connected to.
+    /// </summary>
+    public int handle;
 }
\ No newline at end of file
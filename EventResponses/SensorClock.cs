@@ -0,0 +1,25 @@
+﻿using System.Collections.Generic;
+
+/// <summary>
+/// The clock of a sensor as estimated by the native plugin from its motion packet indices and receive timestamps.
+/// </summary>
+[System.Serializable]
+public class SensorClock
+{
+    public string deviceAddress;
+    public long samples;
+    public bool converged;
+    
+    public double rateHz;
+    public double periodMillis;
+    public double driftPpm;
+    
+    public double latencyMeanMillis;
+    public double latencyJitterMillis;
+}
+
+[System.Serializable]
+public class SensorClockList
+{
+    public List<SensorClock> devices;
+}
\ No newline at end of file
@@ -0,0 +1,26 @@
+﻿/// <summary>
+/// Motion samples decoded by the native plugin, stored column by column.
+///
+/// All arrays hold exactly count entries, in receive order. Device indices can be resolved to addresses through
+/// SyncsenseSensorManager.GetDeviceAddressForIndex.
+///
+/// timestampNanos is the native receive time, sampleTimestampNanos the time the sensor took the sample as estimated
+/// from its packet indices, both on the SystemClock.elapsedRealtimeNanos timeline. In aligned batches both hold the
+/// frame time and index holds the frame number.
+/// </summary>
+public class SensorDataBatch
+{
+    public int count;
+    
+    public int[] deviceIndex;
+    public int[] index;
+    public long[] timestampNanos;
+    public long[] sampleTimestampNanos;
+    
+    public float[] accX;
+    public float[] accY;
+    public float[] accZ;
+    public float[] gyroX;
+    public float[] gyroY;
+    public float[] gyroZ;
+}
\ No newline at end of file
@@ -2,6 +2,9 @@
 
 public class SensorDataReceived: RawDataReceived
 {
+    // Must match MotionSampleBuffer.PACKET_SIZE on the native side
+    public const int PACKET_SIZE = 25;
+
     public int index;
     public float accX;
     public float accY;
@@ -12,13 +15,21 @@ public class SensorDataReceived: RawDataReceived
 
     public SensorDataReceived Init()
     {
-        index = data[0];
-        accX = BitConverter.ToSingle(data, 1);
-        accY = BitConverter.ToSingle(data, 5);
-        accZ = BitConverter.ToSingle(data, 9);
-        gyroX = BitConverter.ToSingle(data, 13);
-        gyroY = BitConverter.ToSingle(data, 17);
-        gyroZ = BitConverter.ToSingle(data, 21);
+        return Decode(data, 0);
+    }
+
+    /// <summary>
+    /// Decodes the packet starting at offset in buffer, without copying it into data.
+    /// </summary>
+    public SensorDataReceived Decode(byte[] buffer, int offset)
+    {
+        index = buffer[offset];
+        accX = BitConverter.ToSingle(buffer, offset + 1);
+        accY = BitConverter.ToSingle(buffer, offset + 5);
+        accZ = BitConverter.ToSingle(buffer, offset + 9);
+        gyroX = BitConverter.ToSingle(buffer, offset + 13);
+        gyroY = BitConverter.ToSingle(buffer, offset + 17);
+        gyroZ = BitConverter.ToSingle(buffer, offset + 21);
         
         return this;
     }
@@ -0,0 +1,35 @@
+﻿[System.Serializable]
+public sealed class WriteStreamStats
+{
+    public string deviceAddress;
+    public int characteristicHandle;
+    
+    /// <summary>
+    /// The most bytes a single write can carry at the negotiated MTU.
+    /// </summary>
+    public int payloadBytes;
+    public int queuedBytes;
+    public long bytesWritten;
+    public long writes;
+    public long failedWrites;
+    
+    /// <summary>
+    /// How many times the stack refused a write because its buffer was full.
+    /// </summary>
+    public long bufferFullCount;
+    
+    /// <summary>
+    /// Values WriteToStream refused because the stream buffer was full.
+    /// </summary>
+    public long refusedMessages;
+    
+    /// <summary>
+    /// Throughput over the last second, 0 while the stream is idle.
+    /// </summary>
+    public float bytesPerSecond;
+    
+    /// <summary>
+    /// Throughput from the first write to the last one.
+    /// </summary>
+    public float averageBytesPerSecond;
+}
\ No newline at end of file
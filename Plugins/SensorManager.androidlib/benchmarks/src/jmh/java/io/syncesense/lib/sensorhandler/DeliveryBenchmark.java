@@ -0,0 +1,126 @@
+package io.syncsense.lib.sensorhandler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput and latency of the whole notification path, from the publication by a transport to the hand-over to
+ * Unity, for every delivery variant:
+ * <ul>
+ *  <li>json: one OnDataReceived message per notification, like UnitySendMessage</li>
+ *  <li>binary: framed into the ring buffer, drained once per batch like Unity does once per frame</li>
+ *  <li>motion: decoded natively, drained once per batch as a MotionSampleBatch</li>
+ * </ul>
+ * The dispatch task runs on the benchmark thread, so a batch is dispatched in a single run like on the dispatch thread.
+ */
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class DeliveryBenchmark {
+
+    private static final int BATCH = 64;
+
+    @Param({"json", "binary", "motion"})
+    public String delivery;
+
+    @Param({"8"})
+    public int sensors;
+
+    private final ManualExecutor dispatchExecutor = new ManualExecutor();
+    private final ByteBuffer drainTarget = ByteBuffer.allocate(256 * 1024);
+
+    private NotificationPipeline pipeline;
+    private SensorChannel[] channels;
+    private byte[] packet;
+    private long timestampNanos = 0;
+    private Blackhole blackhole;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        this.blackhole = blackhole;
+
+        EventSink sink = new EventSink() {
+            @Override
+            public void send(String method, String message) {
+                DeliveryBenchmark.this.blackhole.consume(message);
+            }
+        };
+        pipeline = new NotificationPipeline(sink, TimeSource.NANO_TIME, dispatchExecutor);
+        pipeline.setTransportMode(delivery.equals("binary")
+                ? NotificationPipeline.TRANSPORT_MODE_BINARY : NotificationPipeline.TRANSPORT_MODE_JSON);
+        pipeline.setMotionDecoding(delivery.equals("motion"));
+
+        channels = new SensorChannel[sensors];
+        for (int i = 0; i < sensors; i++) {
+            String address = String.format("5E:00:00:00:00:%02X", i);
+            channels[i] = new SensorChannel(address, pipeline.deviceIds.getOrAssign(address), "Cadence_Sensor");
+            pipeline.register(channels[i]);
+        }
+
+        packet = new byte[MotionSampleBuffer.PACKET_SIZE];
+        new Random(42).nextBytes(packet);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(BATCH)
+    public void batch() {
+        for (int i = 0; i < BATCH; i++) {
+            pipeline.publish(channels[i % sensors], SensorUuids.ACCL_GYRO_CHARACTERISTIC_UUID, timestampNanos++, packet);
+        }
+        dispatchExecutor.runPending();
+        drain();
+    }
+
+    /**
+     * Latency distribution of a single notification, see the percentiles of the sample time mode.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    public void single() {
+        pipeline.publish(channels[(int) (timestampNanos % sensors)], SensorUuids.ACCL_GYRO_CHARACTERISTIC_UUID, timestampNanos++, packet);
+        dispatchExecutor.runPending();
+        drain();
+    }
+
+    private void drain() {
+        if (delivery.equals("binary")) {
+            drainTarget.clear();
+            blackhole.consume(pipeline.drainNotifications(drainTarget));
+        } else if (delivery.equals("motion")) {
+            blackhole.consume(pipeline.drainMotionSamples());
+        }
+    }
+
+    /**
+     * Keeps the dispatch task until the benchmark runs it.
+     */
+    private static class ManualExecutor implements Executor {
+        private Runnable pending;
+
+        @Override
+        public void execute(Runnable command) {
+            pending = command;
+        }
+
+        void runPending() {
+            Runnable command = pending;
+            pending = null;
+            if (command != null)
+                command.run();
+        }
+    }
+}
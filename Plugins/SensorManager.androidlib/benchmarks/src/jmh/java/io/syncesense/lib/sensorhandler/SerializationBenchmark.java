@@ -0,0 +1,95 @@
+package io.syncsense.lib.sensorhandler;
+
+import static io.syncsense.lib.sensorhandler.JsonUtils.GSON;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning one notification into what Unity receives: a json message, or a binary frame, or decoded motion
+ * columns.
+ *
+ * The *Gson benchmarks are the json events as they were built before JsonWriter, with GSON reflection, kept as a
+ * baseline for the allocation rate reported by the gc profiler.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class SerializationBenchmark {
+
+    private static final String DEVICE_NAME = "Cadence_Sensor";
+    private static final String DEVICE_ADDRESS = "5E:00:00:00:00:01";
+    private static final String CHARACTERISTIC_UUID = SensorUuids.ACCL_GYRO_CHARACTERISTIC_UUID.toString();
+
+    private final Base64.Encoder base64 = Base64.getMimeEncoder(76, "\n".getBytes(StandardCharsets.US_ASCII));
+
+    private final NotificationRingBuffer ringBuffer = new NotificationRingBuffer(64 * 1024);
+    private final ByteBuffer drainTarget = ByteBuffer.allocate(64 * 1024);
+    private final MotionSampleBuffer motionSamples = new MotionSampleBuffer(1024);
+
+    private final SensorChannel channel = new SensorChannel(DEVICE_ADDRESS, 1, DEVICE_NAME);
+    private final String quotedCharacteristicUuid = JsonWriter.quote(CHARACTERISTIC_UUID);
+
+    private byte[] packet;
+    private long timestampNanos = 0;
+
+    @Setup
+    public void setup() {
+        packet = new byte[MotionSampleBuffer.PACKET_SIZE];
+        new Random(42).nextBytes(packet);
+    }
+
+    @Benchmark
+    public String dataReceivedJson() {
+        return DataReceivedJson.buildJson(channel, quotedCharacteristicUuid, packet, packet.length, timestampNanos++);
+    }
+
+    @Benchmark
+    public String dataReceivedJsonGson() {
+        byte[] value = Arrays.copyOf(packet, packet.length);
+        return GSON.toJson(new DataReceivedJson(DEVICE_NAME, DEVICE_ADDRESS,
+                SensorUuids.ACCL_GYRO_CHARACTERISTIC_UUID.toString(), base64.encodeToString(value) + "\n",
+                timestampNanos++));
+    }
+
+    @Benchmark
+    public String base64() {
+        return base64.encodeToString(packet);
+    }
+
+    @Benchmark
+    public String scanResultJson() {
+        return ScanResultJson.buildJson(DEVICE_NAME, DEVICE_ADDRESS, -60, 1);
+    }
+
+    @Benchmark
+    public String scanResultJsonGson() {
+        return GSON.toJson(new ScanResultJson(-60, DEVICE_NAME, DEVICE_ADDRESS, 1));
+    }
+
+    @Benchmark
+    public int binaryFrame() {
+        ringBuffer.write(1, 0, timestampNanos++, packet, packet.length);
+        drainTarget.clear();
+        return ringBuffer.drainInto(drainTarget);
+    }
+
+    @Benchmark
+    public boolean motionDecoding() {
+        boolean decoded = motionSamples.decode(1, packet, packet.length, timestampNanos, timestampNanos++);
+        motionSamples.clear();
+        return decoded;
+    }
+}
@@ -0,0 +1,92 @@
+package io.syncsense.lib.sensorhandler;
+
+/**
+ * Second order low-pass filter applied to several channels in place, in transposed direct form II.
+ *
+ * Coefficients follow the RBJ audio EQ cookbook with the Butterworth Q, so the response is flat up to the cutoff.
+ */
+public class BiquadFilter {
+
+    private static final double BUTTERWORTH_Q = 1 / Math.sqrt(2);
+
+    private final int channels;
+    private final float[] z1;
+    private final float[] z2;
+
+    private boolean enabled = false;
+    private boolean primed = false;
+    private float b0, b1, b2, a1, a2;
+
+    public BiquadFilter(int channels) {
+        this.channels = channels;
+        this.z1 = new float[channels];
+        this.z2 = new float[channels];
+    }
+
+    /**
+     * @param sampleRateHz the rate process is called at
+     * @param cutoffHz     the -3 dB frequency, 0 lets values through unchanged
+     * @return false if the cutoff is not below the Nyquist frequency
+     */
+    public boolean setLowPass(float sampleRateHz, float cutoffHz) {
+        if (cutoffHz <= 0) {
+            enabled = false;
+            reset();
+            return true;
+        }
+        if (sampleRateHz <= 0 || cutoffHz >= sampleRateHz / 2)
+            return false;
+
+        double w0 = 2 * Math.PI * cutoffHz / sampleRateHz;
+        double cos = Math.cos(w0);
+        double alpha = Math.sin(w0) / (2 * BUTTERWORTH_Q);
+        double a0 = 1 + alpha;
+
+        b0 = (float) ((1 - cos) / 2 / a0);
+        b1 = (float) ((1 - cos) / a0);
+        b2 = b0;
+        a1 = (float) (-2 * cos / a0);
+        a2 = (float) ((1 - alpha) / a0);
+        enabled = true;
+        reset();
+        return true;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Filters one sample of every channel, values[offset] to values[offset + channels - 1], in place.
+     */
+    public void process(float[] values, int offset) {
+        if (!enabled)
+            return;
+
+        if (!primed) {
+            // Start from the steady state of the first sample instead of ringing up from zero
+            for (int channel = 0; channel < channels; channel++) {
+                float x = values[offset + channel];
+                z1[channel] = x - b0 * x;
+                z2[channel] = b2 * x - a2 * x;
+            }
+            primed = true;
+        }
+
+        for (int channel = 0; channel < channels; channel++) {
+            float x = values[offset + channel];
+            float y = b0 * x + z1[channel];
+            z1[channel] = b1 * x - a1 * y + z2[channel];
+            z2[channel] = b2 * x - a2 * y;
+            values[offset + channel] = y;
+        }
+    }
+
+    public void reset() {
+        primed = false;
+        for (int channel = 0; channel < channels; channel++) {
+            z1[channel] = 0;
+            z2[channel] = 0;
+        }
+    }
+}
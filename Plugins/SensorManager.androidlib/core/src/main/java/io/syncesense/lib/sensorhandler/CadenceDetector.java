@@ -0,0 +1,289 @@
+package io.syncsense.lib.sensorhandler;
+
+/**
+ * Detects the cycles of a periodic motion, steps or crank revolutions, in the motion samples of every sensor, so
+ * Unity can get the cadence through a few events per second instead of every sample.
+ *
+ * Every sensor gets its own tracker, run on the dispatch thread for each motion packet:
+ * <pre>
+ *  signal -> baseline removal -> low-pass -> hysteresis crossing -> cycle
+ * </pre>
+ * The signal is one axis, or the magnitude of the accelerometer or gyroscope. Its slowly moving baseline, e.g. gravity,
+ * is removed by an exponential average, and the low-pass filter, set a bit above the highest cadence, removes the
+ * ripple within a cycle. A cycle is counted every time the signal rises above the threshold after having fallen below
+ * its opposite. The threshold follows the average amplitude of the signal, so the detector adapts to how hard the
+ * sensor moves, but never drops below minAmplitude, so it stays quiet at rest.
+ *
+ * The cadence is the median of the last INTERVAL_HISTORY cycle intervals, in cycles per minute. Cycles closer than
+ * the maximum cadence allows are taken for bounces and ignored. A sensor becomes active on the second cycle in a row
+ * within the cadence range, and idle again once no cycle came for as long as the minimum cadence allows.
+ *
+ * Reported through OnCadenceUpdate on every change between active and idle and every updateInterval while active,
+ * and, if enabled, through OnCadenceCycle for every cycle of an active sensor. Trackers are preallocated, so
+ * processing a sample does not allocate.
+ */
+public class CadenceDetector {
+
+    public static final int SIGNAL_ACCEL_X = 0;
+    public static final int SIGNAL_ACCEL_Y = 1;
+    public static final int SIGNAL_ACCEL_Z = 2;
+    public static final int SIGNAL_GYRO_X = 3;
+    public static final int SIGNAL_GYRO_Y = 4;
+    public static final int SIGNAL_GYRO_Z = 5;
+    public static final int SIGNAL_ACCEL_MAGNITUDE = 6;
+    public static final int SIGNAL_GYRO_MAGNITUDE = 7;
+
+    public static final float DEFAULT_MIN_CADENCE = 20;
+    public static final float DEFAULT_MAX_CADENCE = 240;
+    public static final int DEFAULT_UPDATE_INTERVAL_MILLIS = 1000;
+
+    private static final int INTERVAL_HISTORY = 8;
+    private static final float BASELINE_SECONDS = 2;
+    private static final float AMPLITUDE_SECONDS = 2;
+    // For a sine, the threshold lands at about a third of its peak
+    private static final float THRESHOLD_RATIO = 0.5f;
+    private static final float LOW_PASS_CADENCE_RATIO = 1.5f;
+
+    private final EventSink events;
+    private final Tracker[] trackers = new Tracker[NotificationPipeline.MAX_DEVICES];
+
+    private volatile boolean enabled = false;
+    private int signal = SIGNAL_ACCEL_MAGNITUDE;
+    private float inputRateHz = 100;
+    private long minIntervalNanos;
+    private long maxIntervalNanos;
+    private float minAmplitude = 0;
+    private long updateIntervalNanos;
+    private boolean cycleEvents = false;
+
+    private float baselineAlpha;
+    private float amplitudeAlpha;
+    private float lowPassCutoffHz;
+
+    public CadenceDetector(EventSink events) {
+        this.events = events;
+        configure(false, signal, inputRateHz, DEFAULT_MIN_CADENCE, DEFAULT_MAX_CADENCE, minAmplitude,
+                DEFAULT_UPDATE_INTERVAL_MILLIS, cycleEvents);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts or stops detecting, and resets every tracker.
+     *
+     * @param signal               one of SIGNAL_*
+     * @param inputRateHz          the rate the motion characteristic is notified at
+     * @param minCadence           the slowest cadence counted, in cycles per minute
+     * @param maxCadence           the fastest cadence counted, in cycles per minute
+     * @param minAmplitude         the smallest swing of the signal around its baseline counted as a cycle, in the
+     *                             units of the packets
+     * @param updateIntervalMillis how often the cadence of an active sensor is reported
+     * @param cycleEvents          report every cycle through OnCadenceCycle
+     * @return false if a parameter is out of range
+     */
+    public synchronized boolean configure(boolean enable, int signal, float inputRateHz, float minCadence,
+                                          float maxCadence, float minAmplitude, int updateIntervalMillis,
+                                          boolean cycleEvents) {
+        if (signal < SIGNAL_ACCEL_X || signal > SIGNAL_GYRO_MAGNITUDE || inputRateHz <= 0 || minCadence <= 0
+                || maxCadence <= minCadence || maxCadence / 60 >= inputRateHz / 2 || minAmplitude < 0
+                || updateIntervalMillis <= 0)
+            return false;
+
+        this.signal = signal;
+        this.inputRateHz = inputRateHz;
+        this.minIntervalNanos = (long) (60e9 / maxCadence);
+        this.maxIntervalNanos = (long) (60e9 / minCadence);
+        this.minAmplitude = minAmplitude;
+        this.updateIntervalNanos = updateIntervalMillis * 1_000_000L;
+        this.cycleEvents = cycleEvents;
+
+        baselineAlpha = 1 - (float) Math.exp(-1 / (BASELINE_SECONDS * inputRateHz));
+        amplitudeAlpha = 1 - (float) Math.exp(-1 / (AMPLITUDE_SECONDS * inputRateHz));
+        lowPassCutoffHz = Math.min(maxCadence / 60 * LOW_PASS_CADENCE_RATIO, inputRateHz * 0.45f);
+
+        for (Tracker tracker : trackers) {
+            if (tracker != null) {
+                tracker.lowPass.setLowPass(inputRateHz, lowPassCutoffHz);
+                tracker.reset();
+            }
+        }
+        enabled = enable;
+        return true;
+    }
+
+    /**
+     * Runs a motion packet of a sensor through its tracker. Called from the dispatch thread.
+     */
+    public synchronized void process(SensorChannel channel, long sampleTimeNanos, byte[] packet) {
+        Tracker tracker = trackers[channel.deviceIndex];
+        if (tracker == null) {
+            tracker = new Tracker();
+            trackers[channel.deviceIndex] = tracker;
+        }
+
+        float x = readSignal(packet);
+        if (!tracker.primed) {
+            tracker.baseline = x;
+            tracker.primed = true;
+        }
+        tracker.baseline += baselineAlpha * (x - tracker.baseline);
+        tracker.value[0] = x - tracker.baseline;
+        tracker.lowPass.process(tracker.value, 0);
+        float y = tracker.value[0];
+        tracker.amplitude += amplitudeAlpha * (Math.abs(y) - tracker.amplitude);
+
+        float threshold = Math.max(minAmplitude, THRESHOLD_RATIO * tracker.amplitude);
+        if (y < -threshold) {
+            tracker.armed = true;
+        } else if (tracker.armed && y > threshold) {
+            tracker.armed = false;
+            onCycle(channel, tracker, sampleTimeNanos);
+        }
+
+        if (tracker.active && sampleTimeNanos - tracker.lastCycleNanos > maxIntervalNanos) {
+            tracker.active = false;
+            tracker.intervalCount = 0;
+            tracker.cadence = 0;
+            sendUpdate(channel, tracker, sampleTimeNanos);
+        } else if (tracker.active && sampleTimeNanos >= tracker.nextUpdateNanos) {
+            sendUpdate(channel, tracker, sampleTimeNanos);
+        }
+    }
+
+    /**
+     * Forgets the state of a sensor, when it disconnects.
+     */
+    public synchronized void removeDevice(int device) {
+        if (trackers[device] != null)
+            trackers[device].reset();
+    }
+
+    private void onCycle(SensorChannel channel, Tracker tracker, long sampleTimeNanos) {
+        long intervalNanos = tracker.lastCycleNanos == Long.MIN_VALUE ? Long.MAX_VALUE
+                : sampleTimeNanos - tracker.lastCycleNanos;
+        if (intervalNanos < minIntervalNanos)
+            return;
+
+        tracker.lastCycleNanos = sampleTimeNanos;
+        tracker.cycles++;
+        if (intervalNanos > maxIntervalNanos) {
+            // First cycle after a pause, nothing to measure yet
+            tracker.intervalCount = 0;
+            return;
+        }
+
+        tracker.intervals[tracker.nextInterval] = intervalNanos;
+        tracker.nextInterval = (tracker.nextInterval + 1) % INTERVAL_HISTORY;
+        tracker.intervalCount = Math.min(tracker.intervalCount + 1, INTERVAL_HISTORY);
+        tracker.cadence = (float) (60e9 / median(tracker));
+
+        if (!tracker.active) {
+            tracker.active = true;
+            sendUpdate(channel, tracker, sampleTimeNanos);
+        }
+        if (cycleEvents) {
+            events.send("OnCadenceCycle",
+                    CadenceJson.CycleJson.buildJson(
+                            channel.address,
+                            channel.deviceIndex,
+                            tracker.cycles,
+                            intervalNanos / 1_000_000,
+                            sampleTimeNanos
+                    )
+            );
+        }
+    }
+
+    private void sendUpdate(SensorChannel channel, Tracker tracker, long sampleTimeNanos) {
+        tracker.nextUpdateNanos = sampleTimeNanos + updateIntervalNanos;
+        events.send("OnCadenceUpdate",
+                CadenceJson.buildJson(
+                        channel.address,
+                        channel.deviceIndex,
+                        tracker.active,
+                        tracker.cadence,
+                        tracker.cycles,
+                        sampleTimeNanos
+                )
+        );
+    }
+
+    /**
+     * @return the median of the intervals in the history, sorted in place in a copy
+     */
+    private static long median(Tracker tracker) {
+        long[] sorted = tracker.sortedIntervals;
+        int count = tracker.intervalCount;
+        System.arraycopy(tracker.intervals, 0, sorted, 0, count);
+        // Insertion sort, the history is tiny
+        for (int i = 1; i < count; i++) {
+            long value = sorted[i];
+            int j = i - 1;
+            while (j >= 0 && sorted[j] > value) {
+                sorted[j + 1] = sorted[j];
+                j--;
+            }
+            sorted[j + 1] = value;
+        }
+        return count % 2 == 1 ? sorted[count / 2] : (sorted[count / 2 - 1] + sorted[count / 2]) / 2;
+    }
+
+    private float readSignal(byte[] packet) {
+        if (signal < SIGNAL_ACCEL_MAGNITUDE)
+            return MotionSampleBuffer.readFloat(packet, 1 + 4 * signal);
+
+        int first = signal == SIGNAL_ACCEL_MAGNITUDE ? 0 : 3;
+        float sum = 0;
+        for (int axis = first; axis < first + 3; axis++) {
+            float value = MotionSampleBuffer.readFloat(packet, 1 + 4 * axis);
+            sum += value * value;
+        }
+        return (float) Math.sqrt(sum);
+    }
+
+    /**
+     * The state of one sensor.
+     */
+    private class Tracker {
+        final BiquadFilter lowPass = new BiquadFilter(1);
+        final float[] value = new float[1];
+        final long[] intervals = new long[INTERVAL_HISTORY];
+        final long[] sortedIntervals = new long[INTERVAL_HISTORY];
+
+        boolean primed;
+        float baseline;
+        float amplitude;
+        boolean armed;
+
+        long lastCycleNanos;
+        long cycles;
+        int nextInterval;
+        int intervalCount;
+        float cadence;
+
+        boolean active;
+        long nextUpdateNanos;
+
+        Tracker() {
+            lowPass.setLowPass(inputRateHz, lowPassCutoffHz);
+            reset();
+        }
+
+        void reset() {
+            lowPass.reset();
+            primed = false;
+            baseline = 0;
+            amplitude = 0;
+            armed = false;
+            lastCycleNanos = Long.MIN_VALUE;
+            cycles = 0;
+            nextInterval = 0;
+            intervalCount = 0;
+            cadence = 0;
+            active = false;
+            nextUpdateNanos = Long.MIN_VALUE;
+        }
+    }
+}
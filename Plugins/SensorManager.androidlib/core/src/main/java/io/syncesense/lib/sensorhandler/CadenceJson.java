@@ -0,0 +1,58 @@
+package io.syncsense.lib.sensorhandler;
+
+import static io.syncsense.lib.sensorhandler.JsonUtils.GSON;
+
+public class CadenceJson {
+
+    public String deviceAddress;
+    public int deviceIndex;
+    public boolean active;
+    // Cycles per minute, 0 while idle
+    public float cadence;
+    // Since the sensor connected or the detector was configured
+    public long cycles;
+    public long timestampNanos;
+
+    public CadenceJson() {
+    }
+
+    public CadenceJson(String deviceAddress, int deviceIndex, boolean active, float cadence, long cycles,
+                       long timestampNanos) {
+        this.deviceAddress = deviceAddress;
+        this.deviceIndex = deviceIndex;
+        this.active = active;
+        this.cadence = cadence;
+        this.cycles = cycles;
+        this.timestampNanos = timestampNanos;
+    }
+
+    public static class CycleJson {
+        public String deviceAddress;
+        public int deviceIndex;
+        public long cycles;
+        // Since the previous cycle
+        public long intervalMillis;
+        public long timestampNanos;
+
+        public CycleJson() {
+        }
+
+        public CycleJson(String deviceAddress, int deviceIndex, long cycles, long intervalMillis, long timestampNanos) {
+            this.deviceAddress = deviceAddress;
+            this.deviceIndex = deviceIndex;
+            this.cycles = cycles;
+            this.intervalMillis = intervalMillis;
+            this.timestampNanos = timestampNanos;
+        }
+
+        public static String buildJson(String deviceAddress, int deviceIndex, long cycles, long intervalMillis,
+                                       long timestampNanos) {
+            return GSON.toJson(new CycleJson(deviceAddress, deviceIndex, cycles, intervalMillis, timestampNanos));
+        }
+    }
+
+    public static String buildJson(String deviceAddress, int deviceIndex, boolean active, float cadence, long cycles,
+                                   long timestampNanos) {
+        return GSON.toJson(new CadenceJson(deviceAddress, deviceIndex, active, cadence, cycles, timestampNanos));
+    }
+}
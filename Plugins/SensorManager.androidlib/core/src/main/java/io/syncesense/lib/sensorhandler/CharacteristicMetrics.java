@@ -0,0 +1,155 @@
+package io.syncsense.lib.sensorhandler;
+
+/**
+ * Link statistics of one characteristic of one device.
+ *
+ * Arrival statistics are recorded by the GATT callback thread and delivery statistics by the dispatch thread,
+ * each under its own lock, so the two never contend with each other.
+ */
+public class CharacteristicMetrics {
+
+    private static final int SEQUENCE_MODULO = 256;
+    private static final double INTERVAL_SMOOTHING = 1.0 / 16;
+
+    public final String characteristicUuid;
+
+    /**
+     * The first payload byte is a rolling index, as in the motion packet, and is checked for gaps.
+     */
+    private final boolean sequenced;
+
+    private final Object arrivalLock = new Object();
+    private long notifications = 0;
+    private long bytes = 0;
+    private long firstArrivalNanos = 0;
+    private long lastArrivalNanos = 0;
+    private int lastSequence = -1;
+    private long lostSamples = 0;
+    private long duplicateSamples = 0;
+    private long reorderedSamples = 0;
+    private double meanIntervalNanos = 0;
+    private double jitterNanos = 0;
+    private final LatencyHistogram interArrival = new LatencyHistogram();
+
+    private long windowStartNanos = 0;
+    private long windowStartNotifications = 0;
+
+    private final Object deliveryLock = new Object();
+    private final LatencyHistogram deliveryLatency = new LatencyHistogram();
+
+    public CharacteristicMetrics(String characteristicUuid, boolean sequenced) {
+        this.characteristicUuid = characteristicUuid;
+        this.sequenced = sequenced;
+    }
+
+    public void recordArrival(long timestampNanos, byte[] value) {
+        synchronized (arrivalLock) {
+            notifications++;
+            bytes += value != null ? value.length : 0;
+
+            if (lastArrivalNanos == 0) {
+                firstArrivalNanos = timestampNanos;
+                windowStartNanos = timestampNanos;
+            } else {
+                long interval = timestampNanos - lastArrivalNanos;
+                interArrival.record(interval);
+                if (meanIntervalNanos == 0) {
+                    meanIntervalNanos = interval;
+                } else {
+                    // RFC 3550 style smoothed deviation from the expected interval
+                    jitterNanos += (Math.abs(interval - meanIntervalNanos) - jitterNanos) * INTERVAL_SMOOTHING;
+                    meanIntervalNanos += (interval - meanIntervalNanos) * INTERVAL_SMOOTHING;
+                }
+            }
+            lastArrivalNanos = timestampNanos;
+
+            if (sequenced && value != null && value.length > 0)
+                recordSequence(value[0] & 0xFF);
+        }
+    }
+
+    public void recordDelivery(long arrivalTimestampNanos, long deliveryTimestampNanos) {
+        synchronized (deliveryLock) {
+            deliveryLatency.record(deliveryTimestampNanos - arrivalTimestampNanos);
+        }
+    }
+
+    /**
+     * Fills the snapshot and starts a new rate window.
+     */
+    public void snapshot(LinkMetricsJson.CharacteristicMetricsJson out, long nowNanos) {
+        out.characteristicUuid = characteristicUuid;
+
+        synchronized (arrivalLock) {
+            out.notifications = notifications;
+            out.bytes = bytes;
+            out.lostSamples = lostSamples;
+            out.duplicateSamples = duplicateSamples;
+            out.reorderedSamples = reorderedSamples;
+            long expected = notifications + lostSamples;
+            out.lossRate = sequenced && expected > 0 ? lostSamples / (double) expected : 0;
+
+            long windowNanos = nowNanos - windowStartNanos;
+            out.notificationsPerSecond = windowNanos > 0 && windowStartNanos > 0
+                    ? (notifications - windowStartNotifications) * 1e9 / windowNanos : 0;
+            out.averageNotificationsPerSecond = lastArrivalNanos > firstArrivalNanos
+                    ? (notifications - 1) * 1e9 / (lastArrivalNanos - firstArrivalNanos) : 0;
+            windowStartNanos = nowNanos;
+            windowStartNotifications = notifications;
+
+            out.meanIntervalMillis = meanIntervalNanos / 1e6;
+            out.jitterMillis = jitterNanos / 1e6;
+            out.interArrivalP50Millis = interArrival.getPercentileMillis(50);
+            out.interArrivalP99Millis = interArrival.getPercentileMillis(99);
+            out.interArrivalMaxMillis = interArrival.getMaxMillis();
+            out.millisSinceLastArrival = lastArrivalNanos > 0 ? (nowNanos - lastArrivalNanos) / 1e6 : -1;
+        }
+
+        synchronized (deliveryLock) {
+            out.deliveryLatencyMeanMillis = deliveryLatency.getMeanMillis();
+            out.deliveryLatencyP50Millis = deliveryLatency.getPercentileMillis(50);
+            out.deliveryLatencyP99Millis = deliveryLatency.getPercentileMillis(99);
+            out.deliveryLatencyMaxMillis = deliveryLatency.getMaxMillis();
+        }
+    }
+
+    public void reset() {
+        synchronized (arrivalLock) {
+            notifications = 0;
+            bytes = 0;
+            firstArrivalNanos = 0;
+            lastArrivalNanos = 0;
+            lastSequence = -1;
+            lostSamples = 0;
+            duplicateSamples = 0;
+            reorderedSamples = 0;
+            meanIntervalNanos = 0;
+            jitterNanos = 0;
+            interArrival.reset();
+            windowStartNanos = 0;
+            windowStartNotifications = 0;
+        }
+        synchronized (deliveryLock) {
+            deliveryLatency.reset();
+        }
+    }
+
+    private void recordSequence(int sequence) {
+        if (lastSequence >= 0) {
+            int step = (sequence - lastSequence + SEQUENCE_MODULO) % SEQUENCE_MODULO;
+            if (step == 0) {
+                duplicateSamples++;
+                return;
+            }
+            if (step > SEQUENCE_MODULO / 2) {
+                // Arrived after a later sample, it was counted as lost when the gap was seen
+                reorderedSamples++;
+                if (lostSamples > 0)
+                    lostSamples--;
+                return;
+            }
+            lostSamples += step - 1;
+        }
+        lastSequence = sequence;
+    }
+}
@@ -0,0 +1,72 @@
+package io.syncsense.lib.sensorhandler;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Assigns small, stable integer ids to keys (device addresses, characteristic UUIDs, ...) so they can be
+ * written into a single byte of a binary frame instead of being repeated as strings on every notification.
+ *
+ * Lookups of known keys are lock-free, only the assignment of a new id synchronizes. Ids are never reused for the
+ * lifetime of the table.
+ */
+public class CompactIdTable<K> {
+
+    public static final int NO_ID = -1;
+
+    private final ConcurrentHashMap<K, Integer> ids = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<K> keys;
+    private volatile int nextId = 0;
+
+    public CompactIdTable(int maxIds) {
+        this.keys = new AtomicReferenceArray<>(maxIds);
+    }
+
+    /**
+     * Returns the id of the key, assigning a new one the first time the key is seen.
+     *
+     * @return the id, or NO_ID if the table is full
+     */
+    public int getOrAssign(K key) {
+        Integer id = ids.get(key);
+        if (id != null)
+            return id;
+
+        synchronized (this) {
+            id = ids.get(key);
+            if (id != null)
+                return id;
+
+            if (nextId >= keys.length())
+                return NO_ID;
+
+            keys.set(nextId, key);
+            ids.put(key, nextId);
+            return nextId++;
+        }
+    }
+
+    /**
+     * @return the id of the key, or NO_ID if it was never assigned
+     */
+    public int get(K key) {
+        Integer id = ids.get(key);
+        return id != null ? id : NO_ID;
+    }
+
+    /**
+     * @return the key for the id, or null if the id was never assigned
+     */
+    public K getKey(int id) {
+        if (id < 0 || id >= keys.length())
+            return null;
+        return keys.get(id);
+    }
+
+    /**
+     * @return the number of ids assigned so far
+     */
+    public int size() {
+        return nextId;
+    }
+}
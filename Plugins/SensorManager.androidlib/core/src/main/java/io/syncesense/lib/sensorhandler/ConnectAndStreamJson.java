@@ -0,0 +1,67 @@
+package io.syncsense.lib.sensorhandler;
+
+import static io.syncsense.lib.sensorhandler.JsonUtils.GSON;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ConnectAndStreamJson {
+
+    public List<DeviceJson> devices = new ArrayList<>();
+    public int streamingDevices;
+    public int failedDevices;
+    // From the start of the bring-up to the first sample of the last streaming device, -1 if none streams
+    public long totalTimeToFirstSampleMillis;
+
+    public ConnectAndStreamJson() {
+    }
+
+    /**
+     * Durations of the last attempt of a device, -1 for the steps it did not reach.
+     */
+    public static class DeviceJson {
+        public String deviceAddress;
+        public int state;
+        public int attempts;
+
+        public long connectMillis;
+        public long discoveryMillis;
+        public long subscriptionMillis;
+        // From the start of the connection attempt
+        public long timeToFirstSampleMillis;
+        // From the start of the bring-up, time spent queued included
+        public long sessionTimeToFirstSampleMillis;
+        public int subscriptions;
+
+        public DeviceJson() {
+        }
+
+        public DeviceJson(String deviceAddress, int state, int attempts, long connectMillis, long discoveryMillis,
+                          long subscriptionMillis, long timeToFirstSampleMillis, long sessionTimeToFirstSampleMillis,
+                          int subscriptions) {
+            this.deviceAddress = deviceAddress;
+            this.state = state;
+            this.attempts = attempts;
+            this.connectMillis = connectMillis;
+            this.discoveryMillis = discoveryMillis;
+            this.subscriptionMillis = subscriptionMillis;
+            this.timeToFirstSampleMillis = timeToFirstSampleMillis;
+            this.sessionTimeToFirstSampleMillis = sessionTimeToFirstSampleMillis;
+            this.subscriptions = subscriptions;
+        }
+
+        public static String buildJson(DeviceJson device) {
+            return GSON.toJson(device);
+        }
+    }
+
+    public static String buildJson(List<DeviceJson> devices, int streamingDevices, int failedDevices,
+                                   long totalTimeToFirstSampleMillis) {
+        ConnectAndStreamJson json = new ConnectAndStreamJson();
+        json.devices = devices;
+        json.streamingDevices = streamingDevices;
+        json.failedDevices = failedDevices;
+        json.totalTimeToFirstSampleMillis = totalTimeToFirstSampleMillis;
+        return GSON.toJson(json);
+    }
+}
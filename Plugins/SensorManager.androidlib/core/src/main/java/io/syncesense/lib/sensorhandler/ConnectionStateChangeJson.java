@@ -0,0 +1,32 @@
+package io.syncsense.lib.sensorhandler;
+
+/**
+ * Written by hand with JsonWriter, like the other events of every device.
+ */
+public class ConnectionStateChangeJson {
+
+    public int status;
+    public int newState;
+    public String deviceName;
+    public String deviceAddress;
+
+    public ConnectionStateChangeJson() {
+    }
+
+    public ConnectionStateChangeJson(int status, int newState, String deviceName, String deviceAddress) {
+        this.status = status;
+        this.newState = newState;
+        this.deviceName = deviceName;
+        this.deviceAddress = deviceAddress;
+    }
+
+    public static String buildJson(int status, int newState, String deviceName, String deviceAddress) {
+        return JsonWriter.beginObject()
+                .field("status", status)
+                .field("newState", newState)
+                .field("deviceName", deviceName)
+                .field("deviceAddress", deviceAddress)
+                .endObject();
+    }
+
+}
@@ -0,0 +1,39 @@
+package io.syncsense.lib.sensorhandler;
+
+/**
+ * Written by hand with JsonWriter, as it is sent for every notification in json mode. dataBase64 is encoded like
+ * android.util.Base64.DEFAULT: lines of 76 characters, each ending with a line feed.
+ */
+public class DataReceivedJson{
+
+    public String deviceAddress;
+    public String deviceName;
+    public String characteristicUuid;
+    public String dataBase64;
+    public long timestampNanos;
+
+    public DataReceivedJson() {
+    }
+
+    public DataReceivedJson( String deviceName, String deviceAddress, String characteristicUuid, String dataBase64, long timestampNanos) {
+        this.deviceAddress = deviceAddress;
+        this.deviceName = deviceName;
+        this.characteristicUuid = characteristicUuid;
+        this.dataBase64 = dataBase64;
+        this.timestampNanos = timestampNanos;
+    }
+
+    /**
+     * @param quotedCharacteristicUuid the characteristic uuid, from JsonWriter.quote
+     * @param timestampNanos           the native receive time, SystemClock.elapsedRealtimeNanos
+     */
+    public static String buildJson(SensorChannel channel, String quotedCharacteristicUuid, byte[] value, int length, long timestampNanos) {
+        return JsonWriter.beginObject()
+                .rawValue("deviceAddress", channel.quotedAddress)
+                .rawValue("deviceName", channel.quotedName)
+                .rawValue("characteristicUuid", quotedCharacteristicUuid)
+                .base64Field("dataBase64", value, length)
+                .field("timestampNanos", timestampNanos)
+                .endObject();
+    }
+}
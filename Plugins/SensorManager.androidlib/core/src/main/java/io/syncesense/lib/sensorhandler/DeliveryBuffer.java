@@ -0,0 +1,232 @@
+package io.syncsense.lib.sensorhandler;
+
+import java.util.Arrays;
+
+/**
+ * Bounded buffer of the notifications of one device waiting for Unity, through json events or drainNotifications.
+ *
+ * When Unity stalls, e.g. during a scene load, the buffer fills up and its overflow policy decides what is kept:
+ * <ul>
+ *  <li>POLICY_DROP_NEWEST keeps the oldest notifications and drops the new ones, so nothing already buffered is lost</li>
+ *  <li>POLICY_DROP_OLDEST keeps the most recent notifications</li>
+ *  <li>POLICY_LATEST_ONLY keeps only the latest notification of every characteristic</li>
+ *  <li>POLICY_COALESCE keeps the latest coalesceCount notifications of every characteristic</li>
+ * </ul>
+ * With the last two the limit applies even while Unity keeps up. Every notification removed or refused this way is
+ * counted as dropped.
+ *
+ * The latest notification of every characteristic is also kept apart, whatever the policy, for getLatest.
+ *
+ * Slots and their payload buffers are preallocated and reused. A notification removed from the middle of the buffer
+ * leaves a hole, closed up once the buffer runs out of slots.
+ */
+public class DeliveryBuffer {
+
+    public static final int POLICY_DROP_OLDEST = 0;
+    public static final int POLICY_DROP_NEWEST = 1;
+    public static final int POLICY_LATEST_ONLY = 2;
+    public static final int POLICY_COALESCE = 3;
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private static final int INITIAL_PAYLOAD_SIZE = 32;
+    private static final int REMOVED = -1;
+
+    private int policy = POLICY_DROP_NEWEST;
+    private int coalesceCount = 1;
+
+    private int capacity;
+    private int[] characteristicIds;
+    private long[] timestamps;
+    private int[] lengths;
+    private byte[][] payloads;
+
+    private int head = 0;
+    private int used = 0;
+    private int live = 0;
+    private long dropped = 0;
+
+    private final int[] countByCharacteristic = new int[NotificationPipeline.MAX_CHARACTERISTICS];
+
+    private final long[] latestTimestamps = new long[NotificationPipeline.MAX_CHARACTERISTICS];
+    private final int[] latestLengths = new int[NotificationPipeline.MAX_CHARACTERISTICS];
+    private final byte[][] latestPayloads = new byte[NotificationPipeline.MAX_CHARACTERISTICS][];
+
+    public DeliveryBuffer(int capacity) {
+        allocate(capacity);
+        Arrays.fill(latestLengths, REMOVED);
+    }
+
+    /**
+     * Changes the policy and capacity. Buffered notifications are discarded, the latest ones are kept.
+     *
+     * @param coalesceCount notifications kept per characteristic with POLICY_COALESCE
+     */
+    public synchronized void configure(int policy, int capacity, int coalesceCount) {
+        this.policy = policy;
+        this.coalesceCount = Math.max(1, coalesceCount);
+        if (capacity > 0 && capacity != this.capacity)
+            allocate(capacity);
+        clear();
+    }
+
+    private void allocate(int capacity) {
+        this.capacity = capacity;
+        this.characteristicIds = new int[capacity];
+        this.timestamps = new long[capacity];
+        this.lengths = new int[capacity];
+        this.payloads = new byte[capacity][];
+        for (int i = 0; i < capacity; i++) {
+            payloads[i] = new byte[INITIAL_PAYLOAD_SIZE];
+        }
+    }
+
+    /**
+     * Buffers a notification according to the policy.
+     *
+     * @return false if the notification was dropped
+     */
+    public synchronized boolean offer(int characteristicId, long timestampNanos, byte[] payload, int length) {
+        int keep = policy == POLICY_LATEST_ONLY ? 1 : policy == POLICY_COALESCE ? coalesceCount : 0;
+        if (keep > 0 && countByCharacteristic[characteristicId] >= keep) {
+            removeOldest(characteristicId);
+            dropped++;
+        }
+        if (live >= capacity) {
+            dropped++;
+            if (policy == POLICY_DROP_NEWEST)
+                return false;
+            removeOldest(REMOVED);
+        }
+        if (used == capacity)
+            compact();
+
+        int slot = (head + used) % capacity;
+        if (payloads[slot].length < length)
+            payloads[slot] = new byte[length];
+        System.arraycopy(payload, 0, payloads[slot], 0, length);
+        characteristicIds[slot] = characteristicId;
+        timestamps[slot] = timestampNanos;
+        lengths[slot] = length;
+        used++;
+        live++;
+        countByCharacteristic[characteristicId]++;
+        return true;
+    }
+
+    /**
+     * Takes the oldest buffered notification.
+     *
+     * @return false if the buffer is empty
+     */
+    public synchronized boolean poll(NotificationQueue.Record out) {
+        if (live == 0)
+            return false;
+
+        copyOut(characteristicIds[head], timestamps[head], payloads[head], lengths[head], out);
+        remove(head);
+        return true;
+    }
+
+    /**
+     * Remembers a notification as the latest of its characteristic, whether or not it is buffered.
+     */
+    public synchronized void setLatest(int characteristicId, long timestampNanos, byte[] payload, int length) {
+        byte[] latest = latestPayloads[characteristicId];
+        if (latest == null || latest.length < length) {
+            latest = new byte[Math.max(length, INITIAL_PAYLOAD_SIZE)];
+            latestPayloads[characteristicId] = latest;
+        }
+        System.arraycopy(payload, 0, latest, 0, length);
+        latestTimestamps[characteristicId] = timestampNanos;
+        latestLengths[characteristicId] = length;
+    }
+
+    /**
+     * Copies the latest notification of a characteristic, without taking it out of the buffer.
+     *
+     * @return false if the characteristic never notified
+     */
+    public synchronized boolean getLatest(int characteristicId, NotificationQueue.Record out) {
+        if (latestLengths[characteristicId] == REMOVED)
+            return false;
+
+        copyOut(characteristicId, latestTimestamps[characteristicId], latestPayloads[characteristicId],
+                latestLengths[characteristicId], out);
+        return true;
+    }
+
+    public synchronized void clear() {
+        head = 0;
+        used = 0;
+        live = 0;
+        Arrays.fill(countByCharacteristic, 0);
+    }
+
+    public synchronized int size() {
+        return live;
+    }
+
+    public synchronized long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Removes the oldest buffered notification of a characteristic, or of any characteristic for REMOVED.
+     */
+    private void removeOldest(int characteristicId) {
+        for (int i = 0; i < used; i++) {
+            int slot = (head + i) % capacity;
+            int id = characteristicIds[slot];
+            if (id != REMOVED && (characteristicId == REMOVED || id == characteristicId)) {
+                remove(slot);
+                return;
+            }
+        }
+    }
+
+    private void remove(int slot) {
+        countByCharacteristic[characteristicIds[slot]]--;
+        characteristicIds[slot] = REMOVED;
+        live--;
+        while (used > 0 && characteristicIds[head] == REMOVED) {
+            head = (head + 1) % capacity;
+            used--;
+        }
+    }
+
+    /**
+     * Closes the holes left by removed notifications. Payload buffers are swapped, not copied.
+     */
+    private void compact() {
+        int write = 0;
+        for (int read = 0; read < used; read++) {
+            int from = (head + read) % capacity;
+            if (characteristicIds[from] == REMOVED)
+                continue;
+
+            int to = (head + write) % capacity;
+            if (to != from) {
+                byte[] payload = payloads[to];
+                payloads[to] = payloads[from];
+                payloads[from] = payload;
+                characteristicIds[to] = characteristicIds[from];
+                timestamps[to] = timestamps[from];
+                lengths[to] = lengths[from];
+                characteristicIds[from] = REMOVED;
+            }
+            write++;
+        }
+        used = write;
+    }
+
+    private static void copyOut(int characteristicId, long timestampNanos, byte[] payload, int length,
+                                NotificationQueue.Record out) {
+        if (out.payload.length < length)
+            out.payload = new byte[Math.max(length, out.payload.length * 2)];
+        System.arraycopy(payload, 0, out.payload, 0, length);
+        out.characteristicId = characteristicId;
+        out.timestampNanos = timestampNanos;
+        out.length = length;
+    }
+}
@@ -0,0 +1,212 @@
+package io.syncsense.lib.sensorhandler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Devices seen while scanning, keyed by address, with an exponentially smoothed RSSI and the latest advertisement.
+ *
+ * Updates report what changed, so only meaningful changes have to be forwarded to Unity. Devices that have not
+ * advertised for a while are evicted.
+ *
+ * Every device gets a handle the first time it is seen, for the ByHandle methods. Handles are never reused, but are
+ * forgotten with the device when it is evicted, so a busy environment or devices rotating their private address do
+ * not pile up state. The handles of devices connected to are kept, as they stop advertising once connected.
+ */
+public class DeviceRegistry {
+
+    public static final int CHANGE_NONE = 0;
+    public static final int CHANGE_NEW = 1;
+    public static final int CHANGE_NAME = 2;
+    public static final int CHANGE_RSSI = 4;
+    public static final int CHANGE_ADVERTISEMENT = 8;
+
+    public static final int NO_HANDLE = -1;
+
+    public static final float DEFAULT_RSSI_SMOOTHING = 0.2f;
+    public static final int DEFAULT_RSSI_CHANGE_THRESHOLD = 5;
+    public static final int DEFAULT_EVICTION_TIMEOUT_MILLIS = 10000;
+
+    public static class Entry {
+        public final String address;
+        public final int handle;
+        public String name;
+        public int lastRssi;
+        public float smoothedRssi;
+        public byte[] advertisementData;
+        public long firstSeenMillis;
+        public long lastSeenMillis;
+        public long advertisementCount;
+
+        /**
+         * Smoothed RSSI as of the last change reported for this device.
+         */
+        private float reportedRssi;
+
+        Entry(String address, int handle) {
+            this.address = address;
+            this.handle = handle;
+        }
+    }
+
+    private final HashMap<String, Entry> entries = new HashMap<>();
+    private final HashMap<String, Integer> handles = new HashMap<>();
+    private final HashMap<Integer, String> addresses = new HashMap<>();
+    private final HashSet<String> keptHandles = new HashSet<>();
+    private int nextHandle = 0;
+
+    private float rssiSmoothing = DEFAULT_RSSI_SMOOTHING;
+    private int rssiChangeThreshold = DEFAULT_RSSI_CHANGE_THRESHOLD;
+    private int evictionTimeoutMillis = DEFAULT_EVICTION_TIMEOUT_MILLIS;
+
+    /**
+     * @param rssiSmoothing         weight of a new RSSI sample in the smoothed RSSI, between 0 and 1
+     * @param rssiChangeThreshold   smoothed RSSI change, in dBm, reported as a change
+     * @param evictionTimeoutMillis time without advertisements after which a device is evicted
+     */
+    public synchronized void configure(float rssiSmoothing, int rssiChangeThreshold, int evictionTimeoutMillis) {
+        this.rssiSmoothing = Math.max(0.01f, Math.min(1f, rssiSmoothing));
+        this.rssiChangeThreshold = Math.max(0, rssiChangeThreshold);
+        this.evictionTimeoutMillis = Math.max(0, evictionTimeoutMillis);
+    }
+
+    public synchronized int getEvictionTimeoutMillis() {
+        return evictionTimeoutMillis;
+    }
+
+    /**
+     * Records an advertisement.
+     *
+     * @return a combination of the CHANGE_* flags, CHANGE_NONE if nothing worth reporting changed
+     */
+    public synchronized int update(String address, String name, int rssi, byte[] advertisementData, long nowMillis) {
+        Entry entry = entries.get(address);
+        int changes = CHANGE_NONE;
+
+        if (entry == null) {
+            entry = new Entry(address, assignHandle(address));
+            entry.firstSeenMillis = nowMillis;
+            entry.smoothedRssi = rssi;
+            entry.reportedRssi = rssi;
+            entries.put(address, entry);
+            changes |= CHANGE_NEW;
+        } else {
+            entry.smoothedRssi += (rssi - entry.smoothedRssi) * rssiSmoothing;
+            if (Math.abs(entry.smoothedRssi - entry.reportedRssi) >= rssiChangeThreshold)
+                changes |= CHANGE_RSSI;
+        }
+
+        if (name != null && !name.equals(entry.name)) {
+            if (entry.name != null)
+                changes |= CHANGE_NAME;
+            entry.name = name;
+        }
+        if (advertisementData != null && !Arrays.equals(advertisementData, entry.advertisementData)) {
+            if (entry.advertisementData != null)
+                changes |= CHANGE_ADVERTISEMENT;
+            entry.advertisementData = advertisementData;
+        }
+
+        entry.lastRssi = rssi;
+        entry.lastSeenMillis = nowMillis;
+        entry.advertisementCount++;
+        if (changes != CHANGE_NONE)
+            entry.reportedRssi = entry.smoothedRssi;
+        return changes;
+    }
+
+    public synchronized Entry get(String address) {
+        return entries.get(address);
+    }
+
+    /**
+     * @return the handle of a device, or NO_HANDLE if it is not in the registry and was not connected to
+     */
+    public synchronized int getHandle(String address) {
+        Integer handle = handles.get(address);
+        return handle != null ? handle : NO_HANDLE;
+    }
+
+    /**
+     * @return the address of a handle, or null if its device was evicted
+     */
+    public synchronized String getAddress(int handle) {
+        return addresses.get(handle);
+    }
+
+    /**
+     * Keeps the handle of a device for the rest of the session, e.g. once it is connected to, assigning one if it has
+     * none yet.
+     *
+     * @return the handle
+     */
+    public synchronized int keepHandle(String address) {
+        keptHandles.add(address);
+        return assignHandle(address);
+    }
+
+    /**
+     * Removes the devices that have not advertised within the eviction timeout.
+     *
+     * @return the evicted devices
+     */
+    public synchronized List<Entry> evictStale(long nowMillis) {
+        List<Entry> evicted = new ArrayList<>();
+        if (evictionTimeoutMillis <= 0)
+            return evicted;
+
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (nowMillis - entry.lastSeenMillis > evictionTimeoutMillis) {
+                iterator.remove();
+                forgetHandle(entry.address);
+                evicted.add(entry);
+            }
+        }
+        return evicted;
+    }
+
+    public synchronized boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    public synchronized void clear() {
+        for (String address : entries.keySet()) {
+            forgetHandle(address);
+        }
+        entries.clear();
+    }
+
+    private int assignHandle(String address) {
+        Integer handle = handles.get(address);
+        if (handle != null)
+            return handle;
+
+        handle = nextHandle++;
+        handles.put(address, handle);
+        addresses.put(handle, address);
+        return handle;
+    }
+
+    private void forgetHandle(String address) {
+        if (keptHandles.contains(address))
+            return;
+
+        Integer handle = handles.remove(address);
+        if (handle != null)
+            addresses.remove(handle);
+    }
+
+    public synchronized DeviceRegistryJson snapshot(long nowMillis) {
+        DeviceRegistryJson out = new DeviceRegistryJson();
+        for (Entry entry : entries.values()) {
+            out.devices.add(new DeviceRegistryJson.DeviceJson(entry, nowMillis));
+        }
+        return out;
+    }
+}
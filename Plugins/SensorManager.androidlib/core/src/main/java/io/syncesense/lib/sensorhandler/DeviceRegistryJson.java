@@ -0,0 +1,45 @@
+package io.syncsense.lib.sensorhandler;
+
+import static io.syncsense.lib.sensorhandler.JsonUtils.GSON;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+public class DeviceRegistryJson {
+
+    public List<DeviceJson> devices = new ArrayList<>();
+
+    public DeviceRegistryJson() {
+    }
+
+    public static class DeviceJson {
+        public int handle;
+        public String name;
+        public String address;
+        public int rssi;
+        public int lastRssi;
+        public long millisSinceSeen;
+        public long advertisementCount;
+        public String advertisementDataBase64;
+
+        public DeviceJson() {
+        }
+
+        public DeviceJson(DeviceRegistry.Entry entry, long nowMillis) {
+            this.handle = entry.handle;
+            this.name = entry.name;
+            this.address = entry.address;
+            this.rssi = Math.round(entry.smoothedRssi);
+            this.lastRssi = entry.lastRssi;
+            this.millisSinceSeen = nowMillis - entry.lastSeenMillis;
+            this.advertisementCount = entry.advertisementCount;
+            this.advertisementDataBase64 = entry.advertisementData != null
+                    ? Base64.getEncoder().encodeToString(entry.advertisementData) : null;
+        }
+    }
+
+    public static String buildJson(DeviceRegistryJson registry) {
+        return GSON.toJson(registry);
+    }
+}
@@ -0,0 +1,12 @@
+package io.syncsense.lib.sensorhandler;
+
+/**
+ * Receives the events the plugin reports, as a method name and a json message.
+ *
+ * In the app, events go to a Unity game object through UnityEventSink. Anything else, like a load test running on a
+ * plain JVM, can collect them instead.
+ */
+public interface EventSink {
+
+    void send(String method, String message);
+}
@@ -0,0 +1,192 @@
+package io.syncsense.lib.sensorhandler;
+
+/**
+ * Streaming writer for the json events sent on every notification or scan result, producing exactly what GSON
+ * produces for the matching *Json class: fields in declaration order, null strings left out, and strings escaped the
+ * way GSON does by default, html characters included.
+ *
+ * Every thread has its own writer and StringBuilder, reused for every event, so writing an event only allocates the
+ * final String. Fragments that do not change between events, like the device of a channel, can be written once with
+ * quote and passed to rawValue afterwards.
+ */
+public class JsonWriter {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final char[] BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+    // Same as android.util.Base64.DEFAULT
+    private static final int BASE64_LINE_LENGTH = 76;
+
+    private static final ThreadLocal<JsonWriter> WRITERS = new ThreadLocal<JsonWriter>() {
+        @Override
+        protected JsonWriter initialValue() {
+            return new JsonWriter();
+        }
+    };
+
+    private final StringBuilder out = new StringBuilder(256);
+    private boolean firstField;
+
+    private JsonWriter() {
+    }
+
+    /**
+     * @return the writer of the calling thread, with an object started
+     */
+    public static JsonWriter beginObject() {
+        JsonWriter writer = WRITERS.get();
+        writer.out.setLength(0);
+        writer.out.append('{');
+        writer.firstField = true;
+        return writer;
+    }
+
+    /**
+     * @return a string as a quoted and escaped json value, for rawValue
+     */
+    public static String quote(String value) {
+        JsonWriter writer = WRITERS.get();
+        writer.out.setLength(0);
+        writer.string(value);
+        return writer.out.toString();
+    }
+
+    public JsonWriter field(String name, String value) {
+        if (value == null)
+            return this;
+        name(name);
+        string(value);
+        return this;
+    }
+
+    public JsonWriter field(String name, long value) {
+        name(name);
+        out.append(value);
+        return this;
+    }
+
+    public JsonWriter field(String name, boolean value) {
+        name(name);
+        out.append(value);
+        return this;
+    }
+
+    /**
+     * @param json a value from quote, or null to leave the field out
+     */
+    public JsonWriter rawValue(String name, String json) {
+        if (json == null)
+            return this;
+        name(name);
+        out.append(json);
+        return this;
+    }
+
+    /**
+     * Writes bytes as a Base64 string with the line breaks of android.util.Base64.DEFAULT: a line feed after every
+     * 76 characters and at the end.
+     */
+    public JsonWriter base64Field(String name, byte[] value, int length) {
+        name(name);
+        out.append('"');
+        int column = 0;
+        for (int i = 0; i < length; i += 3) {
+            if (column == BASE64_LINE_LENGTH) {
+                out.append("\\n");
+                column = 0;
+            }
+
+            int remaining = length - i;
+            int bits = (value[i] & 0xFF) << 16;
+            if (remaining > 1)
+                bits |= (value[i + 1] & 0xFF) << 8;
+            if (remaining > 2)
+                bits |= value[i + 2] & 0xFF;
+
+            out.append(BASE64[bits >>> 18]);
+            out.append(BASE64[(bits >>> 12) & 0x3F]);
+            // Padding is escaped the way GSON escapes '='
+            if (remaining > 1)
+                out.append(BASE64[(bits >>> 6) & 0x3F]);
+            else
+                out.append("\\u003d");
+            if (remaining > 2)
+                out.append(BASE64[bits & 0x3F]);
+            else
+                out.append("\\u003d");
+            column += 4;
+        }
+        if (length > 0)
+            out.append("\\n");
+        out.append('"');
+        return this;
+    }
+
+    /**
+     * @return the event
+     */
+    public String endObject() {
+        out.append('}');
+        return out.toString();
+    }
+
+    private void name(String name) {
+        if (!firstField)
+            out.append(',');
+        firstField = false;
+        out.append('"').append(name).append("\":");
+    }
+
+    private void string(String value) {
+        out.append('"');
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                case '\b':
+                    out.append("\\b");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\f':
+                    out.append("\\f");
+                    break;
+                case '<':
+                case '>':
+                case '&':
+                case '=':
+                case '\'':
+                case '\u2028':
+                case '\u2029':
+                    unicodeEscape(c);
+                    break;
+                default:
+                    if (c < 0x20)
+                        unicodeEscape(c);
+                    else
+                        out.append(c);
+            }
+        }
+        out.append('"');
+    }
+
+    private void unicodeEscape(char c) {
+        out.append("\\u")
+                .append(HEX[(c >>> 12) & 0xF])
+                .append(HEX[(c >>> 8) & 0xF])
+                .append(HEX[(c >>> 4) & 0xF])
+                .append(HEX[c & 0xF]);
+    }
+}
@@ -0,0 +1,63 @@
+package io.syncsense.lib.sensorhandler;
+
+import static io.syncsense.lib.sensorhandler.JsonUtils.GSON;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A sensor remembered from earlier sessions, as kept by KnownDeviceStore.
+ */
+public class KnownDeviceJson {
+
+    public String deviceAddress;
+    public String deviceName;
+    // Wall clock
+    public long lastConnectedMillis;
+    public int connectionCount;
+
+    public int mtu;
+    public int txPhy;
+    public int rxPhy;
+    // From the Device Information service, null until read
+    public String firmwareRevision;
+
+    // Null until the services were discovered
+    public LayoutJson layout;
+
+    public KnownDeviceJson() {
+    }
+
+    public KnownDeviceJson(String deviceAddress) {
+        this.deviceAddress = deviceAddress;
+        // The defaults of a fresh link: ATT MTU 23, LE 1M PHY
+        this.mtu = 23;
+        this.txPhy = 1;
+        this.rxPhy = 1;
+    }
+
+    /**
+     * The arrays of a GattLayout.
+     */
+    public static class LayoutJson {
+        public String[] serviceUuids;
+        public int[] serviceTypes;
+        public int[] serviceInstanceIds;
+        public int[] characteristicServices;
+        public String[] characteristicUuids;
+        public int[] characteristicProperties;
+        public int[] characteristicIndices;
+    }
+
+    public static class ListJson {
+        public int version;
+        public List<KnownDeviceJson> devices = new ArrayList<>();
+    }
+
+    public static String buildJson(List<KnownDeviceJson> devices) {
+        ListJson list = new ListJson();
+        list.version = KnownDeviceStore.VERSION;
+        list.devices = devices;
+        return GSON.toJson(list);
+    }
+}
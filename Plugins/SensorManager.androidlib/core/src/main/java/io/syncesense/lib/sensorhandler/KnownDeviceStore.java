@@ -0,0 +1,195 @@
+package io.syncsense.lib.sensorhandler;
+
+import static io.syncsense.lib.sensorhandler.JsonUtils.GSON;
+
+import com.google.gson.JsonParseException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * The sensors connected to in earlier sessions, kept in a small json file in app storage so the next launch can
+ * connect to them directly, without scanning first.
+ *
+ * Every device keeps its name, the GATT layout and link parameters of its last connection and its firmware revision.
+ * Only the MAX_DEVICES most recently connected devices are kept.
+ *
+ * The file is replaced atomically: written next to the store, then renamed over it. A missing, unreadable or
+ * outdated file leaves the store empty.
+ */
+public class KnownDeviceStore {
+
+    public static final int VERSION = 1;
+    public static final String FILE_NAME = "syncsense_known_devices.json";
+    public static final int MAX_DEVICES = 32;
+
+    private final File file;
+    private final HashMap<String, KnownDeviceJson> devices = new HashMap<>();
+    private boolean dirty = false;
+
+    public KnownDeviceStore(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Replaces the devices in memory with the ones in the file.
+     *
+     * @return false if the file exists but could not be read
+     */
+    public synchronized boolean load() {
+        devices.clear();
+        dirty = false;
+        if (!file.exists())
+            return true;
+
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            KnownDeviceJson.ListJson list = GSON.fromJson(reader, KnownDeviceJson.ListJson.class);
+            if (list == null || list.version != VERSION || list.devices == null)
+                return false;
+
+            for (KnownDeviceJson device : list.devices) {
+                if (device != null && device.deviceAddress != null)
+                    devices.put(device.deviceAddress, device);
+            }
+            return true;
+        } catch (IOException | JsonParseException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Writes the devices to the file, if they changed since the last load or save.
+     *
+     * @return false if the file could not be written
+     */
+    public synchronized boolean save() {
+        if (!dirty)
+            return true;
+
+        File temporary = new File(file.getPath() + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(temporary), StandardCharsets.UTF_8)) {
+            writer.write(toJson());
+        } catch (IOException e) {
+            return false;
+        }
+        if (!temporary.renameTo(file))
+            return false;
+
+        dirty = false;
+        return true;
+    }
+
+    public synchronized KnownDeviceJson get(String deviceAddress) {
+        return devices.get(deviceAddress);
+    }
+
+    /**
+     * @return the known devices, most recently connected first
+     */
+    public synchronized List<KnownDeviceJson> getAll() {
+        List<KnownDeviceJson> all = new ArrayList<>(devices.values());
+        Collections.sort(all, MOST_RECENT_FIRST);
+        return all;
+    }
+
+    public synchronized String toJson() {
+        return KnownDeviceJson.buildJson(getAll());
+    }
+
+    /**
+     * Records a connection to a device, adding it to the store if needed.
+     *
+     * @param nowMillis wall clock time of the connection
+     */
+    public synchronized void rememberConnection(String deviceAddress, String deviceName, long nowMillis) {
+        KnownDeviceJson device = devices.get(deviceAddress);
+        if (device == null) {
+            device = new KnownDeviceJson(deviceAddress);
+            devices.put(deviceAddress, device);
+        }
+        if (deviceName != null)
+            device.deviceName = deviceName;
+        device.lastConnectedMillis = nowMillis;
+        device.connectionCount++;
+        evictOldest();
+        dirty = true;
+    }
+
+    public synchronized void setLayout(String deviceAddress, KnownDeviceJson.LayoutJson layout) {
+        KnownDeviceJson device = devices.get(deviceAddress);
+        if (device == null)
+            return;
+
+        device.layout = layout;
+        dirty = true;
+    }
+
+    public synchronized void setLinkParameters(String deviceAddress, int mtu, int txPhy, int rxPhy) {
+        KnownDeviceJson device = devices.get(deviceAddress);
+        if (device == null || (device.mtu == mtu && device.txPhy == txPhy && device.rxPhy == rxPhy))
+            return;
+
+        device.mtu = mtu;
+        device.txPhy = txPhy;
+        device.rxPhy = rxPhy;
+        dirty = true;
+    }
+
+    public synchronized void setFirmwareRevision(String deviceAddress, String firmwareRevision) {
+        KnownDeviceJson device = devices.get(deviceAddress);
+        if (device == null || firmwareRevision == null || firmwareRevision.equals(device.firmwareRevision))
+            return;
+
+        device.firmwareRevision = firmwareRevision;
+        dirty = true;
+    }
+
+    /**
+     * @return false if the device was not known
+     */
+    public synchronized boolean forget(String deviceAddress) {
+        if (devices.remove(deviceAddress) == null)
+            return false;
+        dirty = true;
+        return true;
+    }
+
+    public synchronized void clear() {
+        devices.clear();
+        dirty = true;
+    }
+
+    public synchronized boolean isDirty() {
+        return dirty;
+    }
+
+    private void evictOldest() {
+        while (devices.size() > MAX_DEVICES) {
+            KnownDeviceJson oldest = null;
+            for (KnownDeviceJson device : devices.values()) {
+                if (oldest == null || device.lastConnectedMillis < oldest.lastConnectedMillis)
+                    oldest = device;
+            }
+            devices.remove(oldest.deviceAddress);
+        }
+    }
+
+    private static final Comparator<KnownDeviceJson> MOST_RECENT_FIRST = new Comparator<KnownDeviceJson>() {
+        @Override
+        public int compare(KnownDeviceJson a, KnownDeviceJson b) {
+            return Long.compare(b.lastConnectedMillis, a.lastConnectedMillis);
+        }
+    };
+}
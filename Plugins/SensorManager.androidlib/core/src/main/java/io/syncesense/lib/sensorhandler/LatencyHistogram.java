@@ -0,0 +1,68 @@
+package io.syncsense.lib.sensorhandler;
+
+/**
+ * Fixed-size histogram of durations with power-of-two microsecond buckets. Recording is allocation free.
+ *
+ * Bucket i holds durations in [2^(i-1), 2^i) microseconds, bucket 0 holds everything below 1 microsecond.
+ * Percentiles are reported as the upper bound of the bucket they fall in.
+ */
+public class LatencyHistogram {
+
+    private static final int BUCKETS = 40;
+
+    private final long[] counts = new long[BUCKETS];
+    private long total = 0;
+    private long sumNanos = 0;
+    private long maxNanos = 0;
+
+    public void record(long durationNanos) {
+        if (durationNanos < 0)
+            durationNanos = 0;
+
+        long micros = durationNanos / 1000;
+        int bucket = micros == 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        counts[bucket]++;
+        total++;
+        sumNanos += durationNanos;
+        if (durationNanos > maxNanos)
+            maxNanos = durationNanos;
+    }
+
+    public long getCount() {
+        return total;
+    }
+
+    public double getMeanMillis() {
+        return total == 0 ? 0 : sumNanos / (double) total / 1e6;
+    }
+
+    public double getMaxMillis() {
+        return maxNanos / 1e6;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     */
+    public double getPercentileMillis(double percentile) {
+        if (total == 0)
+            return 0;
+
+        long rank = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank)
+                return Math.min((1L << i) / 1000.0, getMaxMillis());
+        }
+        return getMaxMillis();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = 0;
+        }
+        total = 0;
+        sumNanos = 0;
+        maxNanos = 0;
+    }
+}
@@ -0,0 +1,100 @@
+package io.syncsense.lib.sensorhandler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Link statistics of one device: per characteristic metrics, indexed by characteristic id, and RSSI.
+ */
+public class LinkMetrics {
+
+    private final AtomicReferenceArray<CharacteristicMetrics> characteristics;
+
+    private final Object rssiLock = new Object();
+    private int rssiSamples = 0;
+    private int lastRssi = 0;
+    private int minRssi = 0;
+    private int maxRssi = 0;
+    private long rssiSum = 0;
+
+    public LinkMetrics(int maxCharacteristics) {
+        this.characteristics = new AtomicReferenceArray<>(maxCharacteristics);
+    }
+
+    /**
+     * @return the metrics of the characteristic, created the first time it is seen
+     */
+    public CharacteristicMetrics forCharacteristic(int characteristicId, UUID characteristicUuid) {
+        CharacteristicMetrics metrics = characteristics.get(characteristicId);
+        if (metrics == null) {
+            metrics = new CharacteristicMetrics(characteristicUuid.toString(),
+                    SensorUuids.ACCL_GYRO_CHARACTERISTIC_UUID.equals(characteristicUuid));
+            if (!characteristics.compareAndSet(characteristicId, null, metrics))
+                metrics = characteristics.get(characteristicId);
+        }
+        return metrics;
+    }
+
+    /**
+     * @return the metrics of the characteristic, or null if nothing was recorded for it yet
+     */
+    public CharacteristicMetrics getCharacteristic(int characteristicId) {
+        return characteristics.get(characteristicId);
+    }
+
+    public void recordRssi(int rssi) {
+        synchronized (rssiLock) {
+            if (rssiSamples == 0 || rssi < minRssi)
+                minRssi = rssi;
+            if (rssiSamples == 0 || rssi > maxRssi)
+                maxRssi = rssi;
+            lastRssi = rssi;
+            rssiSum += rssi;
+            rssiSamples++;
+        }
+    }
+
+    public LinkMetricsJson snapshot(String deviceAddress, long droppedNotifications, long droppedDeliveries, long nowNanos) {
+        LinkMetricsJson out = new LinkMetricsJson();
+        out.deviceAddress = deviceAddress;
+        out.droppedNotifications = droppedNotifications;
+        out.droppedDeliveries = droppedDeliveries;
+
+        synchronized (rssiLock) {
+            out.rssiSamples = rssiSamples;
+            out.rssi = lastRssi;
+            out.minRssi = minRssi;
+            out.maxRssi = maxRssi;
+            out.averageRssi = rssiSamples > 0 ? rssiSum / (double) rssiSamples : 0;
+        }
+
+        List<LinkMetricsJson.CharacteristicMetricsJson> items = new ArrayList<>();
+        for (int i = 0; i < characteristics.length(); i++) {
+            CharacteristicMetrics metrics = characteristics.get(i);
+            if (metrics == null)
+                continue;
+            LinkMetricsJson.CharacteristicMetricsJson item = new LinkMetricsJson.CharacteristicMetricsJson();
+            metrics.snapshot(item, nowNanos);
+            items.add(item);
+        }
+        out.characteristics = items;
+        return out;
+    }
+
+    public void reset() {
+        for (int i = 0; i < characteristics.length(); i++) {
+            CharacteristicMetrics metrics = characteristics.get(i);
+            if (metrics != null)
+                metrics.reset();
+        }
+        synchronized (rssiLock) {
+            rssiSamples = 0;
+            lastRssi = 0;
+            minRssi = 0;
+            maxRssi = 0;
+            rssiSum = 0;
+        }
+    }
+}
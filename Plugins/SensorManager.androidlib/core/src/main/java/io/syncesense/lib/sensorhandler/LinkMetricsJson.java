@@ -0,0 +1,64 @@
+package io.syncsense.lib.sensorhandler;
+
+import static io.syncsense.lib.sensorhandler.JsonUtils.GSON;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class LinkMetricsJson {
+
+    public String deviceAddress;
+    public long droppedNotifications;
+    public long droppedDeliveries;
+
+    public int rssiSamples;
+    public int rssi;
+    public int minRssi;
+    public int maxRssi;
+    public double averageRssi;
+
+    public List<CharacteristicMetricsJson> characteristics = new ArrayList<>();
+
+    public LinkMetricsJson() {
+    }
+
+    public static class CharacteristicMetricsJson {
+        public String characteristicUuid;
+
+        public long notifications;
+        public long bytes;
+        public double notificationsPerSecond;
+        public double averageNotificationsPerSecond;
+
+        public long lostSamples;
+        public long duplicateSamples;
+        public long reorderedSamples;
+        public double lossRate;
+
+        public double meanIntervalMillis;
+        public double jitterMillis;
+        public double interArrivalP50Millis;
+        public double interArrivalP99Millis;
+        public double interArrivalMaxMillis;
+        public double millisSinceLastArrival;
+
+        public double deliveryLatencyMeanMillis;
+        public double deliveryLatencyP50Millis;
+        public double deliveryLatencyP99Millis;
+        public double deliveryLatencyMaxMillis;
+    }
+
+    public static class ListJson {
+        public List<LinkMetricsJson> devices = new ArrayList<>();
+    }
+
+    public static String buildJson(LinkMetricsJson metrics) {
+        return GSON.toJson(metrics);
+    }
+
+    public static String buildJson(List<LinkMetricsJson> metrics) {
+        ListJson list = new ListJson();
+        list.devices = metrics;
+        return GSON.toJson(list);
+    }
+}
@@ -0,0 +1,41 @@
+package io.syncsense.lib.sensorhandler;
+
+import static io.syncsense.lib.sensorhandler.JsonUtils.GSON;
+
+public class ManagedConnectionStateJson {
+
+    public String deviceAddress;
+    public String deviceName;
+    public int state;
+    public int attempt;
+    public long retryDelayMillis;
+    public long reconnectLatencyMillis;
+    public int restoredSubscriptions;
+
+    public ManagedConnectionStateJson() {
+    }
+
+    public ManagedConnectionStateJson(String deviceAddress, String deviceName, int state, int attempt,
+                                      long retryDelayMillis, long reconnectLatencyMillis, int restoredSubscriptions) {
+        this.deviceAddress = deviceAddress;
+        this.deviceName = deviceName;
+        this.state = state;
+        this.attempt = attempt;
+        this.retryDelayMillis = retryDelayMillis;
+        this.reconnectLatencyMillis = reconnectLatencyMillis;
+        this.restoredSubscriptions = restoredSubscriptions;
+    }
+
+    public static String buildJson(String deviceAddress, String deviceName, int state, int attempt,
+                                   long retryDelayMillis, long reconnectLatencyMillis, int restoredSubscriptions) {
+        return GSON.toJson(new ManagedConnectionStateJson(
+                deviceAddress,
+                deviceName,
+                state,
+                attempt,
+                retryDelayMillis,
+                reconnectLatencyMillis,
+                restoredSubscriptions
+        ));
+    }
+}
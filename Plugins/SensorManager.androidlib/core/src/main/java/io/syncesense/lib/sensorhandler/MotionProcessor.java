@@ -0,0 +1,234 @@
+package io.syncsense.lib.sensorhandler;
+
+/**
+ * Processes the motion samples of every sensor natively, so Unity only receives the outputs it subscribed to, at the
+ * rate it asked for.
+ *
+ * Every sensor gets its own chain of stages, run on the dispatch thread for each motion packet:
+ * <pre>
+ *  decode -> low-pass -> OUTPUT_FILTERED      accX, accY, accZ, gyroX, gyroY, gyroZ
+ *                     -> orientation filter -> OUTPUT_ORIENTATION   w, x, y, z
+ *                     -> window statistics  -> OUTPUT_STATISTICS    mean of the 6 axes, then their standard deviation
+ * </pre>
+ * Stages only run while an output that needs them is subscribed. Each output is decimated to its subscription rate,
+ * on the estimated sample times, before its rows are buffered for Unity; the low-pass filter doubles as the
+ * anti-aliasing filter. Chains and output buffers are preallocated, so processing a sample does not allocate.
+ */
+public class MotionProcessor {
+
+    public static final int OUTPUT_FILTERED = 0;
+    public static final int OUTPUT_ORIENTATION = 1;
+    public static final int OUTPUT_STATISTICS = 2;
+    public static final int OUTPUT_COUNT = 3;
+
+    private static final int[] OUTPUT_WIDTH = {6, 4, 12};
+
+    private static final int OUTPUT_BUFFER_SIZE = 2048;
+    private static final int DEFAULT_STATISTICS_WINDOW = 100;
+
+    /**
+     * Gaps longer than this, in seconds, are not integrated by the orientation filter.
+     */
+    private static final float MAX_INTEGRATION_STEP = 0.1f;
+
+    private final Chain[] chains = new Chain[NotificationPipeline.MAX_DEVICES];
+    private final ProcessedSampleBuffer[] outputs = new ProcessedSampleBuffer[OUTPUT_COUNT];
+    private final long[] outputPeriodNanos = new long[OUTPUT_COUNT];
+
+    private float inputRateHz = 100;
+    private float lowPassCutoffHz = 0;
+    private int orientationAlgorithm = OrientationFilter.ALGORITHM_MADGWICK;
+    private float orientationGain = OrientationFilter.DEFAULT_MADGWICK_GAIN;
+    private float gyroRadiansPerUnit = (float) (Math.PI / 180);
+    private int statisticsWindow = DEFAULT_STATISTICS_WINDOW;
+
+    private volatile boolean active = false;
+
+    public MotionProcessor() {
+        for (int output = 0; output < OUTPUT_COUNT; output++) {
+            outputs[output] = new ProcessedSampleBuffer(output, OUTPUT_BUFFER_SIZE, OUTPUT_WIDTH[output]);
+        }
+    }
+
+    /**
+     * @return true while at least one output is subscribed
+     */
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * Starts or stops producing an output.
+     *
+     * @param rateHz the rate rows are produced at, per sensor, at most the input rate; 0 unsubscribes
+     * @return false if the output is unknown
+     */
+    public synchronized boolean subscribe(int output, float rateHz) {
+        if (output < 0 || output >= OUTPUT_COUNT || rateHz < 0)
+            return false;
+
+        outputPeriodNanos[output] = rateHz > 0 ? (long) (1e9 / rateHz) : 0;
+        if (rateHz == 0)
+            outputs[output].clear();
+
+        boolean anySubscribed = false;
+        for (long period : outputPeriodNanos) {
+            anySubscribed |= period > 0;
+        }
+        active = anySubscribed;
+        return true;
+    }
+
+    /**
+     * @param inputRateHz the rate motion packets arrive at, which the filter coefficients are computed for
+     * @param cutoffHz    the -3 dB frequency of the low-pass filter on every axis, 0 disables it
+     * @return false if the cutoff is not below half the input rate
+     */
+    public synchronized boolean setLowPassFilter(float inputRateHz, float cutoffHz) {
+        if (cutoffHz > 0 && (inputRateHz <= 0 || cutoffHz >= inputRateHz / 2))
+            return false;
+
+        this.inputRateHz = inputRateHz;
+        this.lowPassCutoffHz = cutoffHz;
+        for (Chain chain : chains) {
+            if (chain != null)
+                chain.filter.setLowPass(inputRateHz, cutoffHz);
+        }
+        return true;
+    }
+
+    /**
+     * @param algorithm          OrientationFilter.ALGORITHM_COMPLEMENTARY or ALGORITHM_MADGWICK
+     * @param gain               the correction gain of the algorithm, see OrientationFilter
+     * @param gyroRadiansPerUnit converts the gyroscope values of the packets to rad/s, PI / 180 for deg/s
+     * @return false if the algorithm is unknown
+     */
+    public synchronized boolean setOrientationFilter(int algorithm, float gain, float gyroRadiansPerUnit) {
+        if (algorithm != OrientationFilter.ALGORITHM_COMPLEMENTARY && algorithm != OrientationFilter.ALGORITHM_MADGWICK)
+            return false;
+
+        this.orientationAlgorithm = algorithm;
+        this.orientationGain = gain;
+        this.gyroRadiansPerUnit = gyroRadiansPerUnit;
+        for (Chain chain : chains) {
+            if (chain != null) {
+                chain.orientation.configure(algorithm, gain);
+                chain.orientation.reset();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param samples the number of samples the statistics are computed over, up to WindowStatistics.MAX_WINDOW_SIZE
+     */
+    public synchronized void setStatisticsWindow(int samples) {
+        statisticsWindow = samples;
+        for (Chain chain : chains) {
+            if (chain != null)
+                chain.statistics.setWindowSize(samples);
+        }
+    }
+
+    /**
+     * Runs a motion packet of a sensor through its chain. Called from the dispatch thread.
+     */
+    public synchronized void process(int device, long sampleTimeNanos, byte[] packet) {
+        Chain chain = chains[device];
+        if (chain == null) {
+            chain = new Chain();
+            chains[device] = chain;
+        }
+
+        float[] sample = chain.sample;
+        for (int axis = 0; axis < 6; axis++) {
+            sample[axis] = MotionSampleBuffer.readFloat(packet, 1 + 4 * axis);
+        }
+
+        chain.filter.process(sample, 0);
+        emit(OUTPUT_FILTERED, chain, device, sampleTimeNanos, sample);
+
+        if (outputPeriodNanos[OUTPUT_ORIENTATION] > 0) {
+            float dt = chain.lastSampleNanos == Long.MIN_VALUE ? 0 : (sampleTimeNanos - chain.lastSampleNanos) / 1e9f;
+            if (dt > 0 && dt <= MAX_INTEGRATION_STEP) {
+                chain.orientation.update(
+                        sample[3] * gyroRadiansPerUnit, sample[4] * gyroRadiansPerUnit, sample[5] * gyroRadiansPerUnit,
+                        sample[0], sample[1], sample[2],
+                        dt);
+            }
+            chain.orientation.getQuaternion(chain.quaternion, 0);
+            emit(OUTPUT_ORIENTATION, chain, device, sampleTimeNanos, chain.quaternion);
+        }
+
+        if (outputPeriodNanos[OUTPUT_STATISTICS] > 0) {
+            chain.statistics.add(sample, 0);
+            chain.statistics.get(chain.statisticsRow, 0);
+            emit(OUTPUT_STATISTICS, chain, device, sampleTimeNanos, chain.statisticsRow);
+        }
+
+        chain.lastSampleNanos = sampleTimeNanos;
+    }
+
+    /**
+     * Forgets the state of a sensor, when it disconnects.
+     */
+    public synchronized void removeDevice(int device) {
+        if (chains[device] != null)
+            chains[device].reset();
+    }
+
+    public ProcessedSampleBatch drain(int output) {
+        if (output < 0 || output >= OUTPUT_COUNT)
+            return null;
+        return outputs[output].drain();
+    }
+
+    public long getDroppedRows(int output) {
+        if (output < 0 || output >= OUTPUT_COUNT)
+            return 0;
+        return outputs[output].getDroppedRows();
+    }
+
+    private void emit(int output, Chain chain, int device, long sampleTimeNanos, float[] row) {
+        long period = outputPeriodNanos[output];
+        if (period == 0 || sampleTimeNanos < chain.nextOutputNanos[output])
+            return;
+
+        // Keeps the output on its grid, unless the sensor fell behind by more than a period
+        long next = chain.nextOutputNanos[output] + period;
+        chain.nextOutputNanos[output] = next > sampleTimeNanos ? next : sampleTimeNanos + period;
+        outputs[output].append(device, sampleTimeNanos, row, 0);
+    }
+
+    /**
+     * The stages of one sensor.
+     */
+    private class Chain {
+        final float[] sample = new float[6];
+        final float[] quaternion = new float[4];
+        final float[] statisticsRow = new float[12];
+        final long[] nextOutputNanos = new long[OUTPUT_COUNT];
+
+        final BiquadFilter filter = new BiquadFilter(6);
+        final OrientationFilter orientation = new OrientationFilter();
+        final WindowStatistics statistics = new WindowStatistics(6, statisticsWindow);
+
+        long lastSampleNanos;
+
+        Chain() {
+            filter.setLowPass(inputRateHz, lowPassCutoffHz);
+            orientation.configure(orientationAlgorithm, orientationGain);
+            reset();
+        }
+
+        void reset() {
+            filter.reset();
+            orientation.reset();
+            statistics.reset();
+            lastSampleNanos = Long.MIN_VALUE;
+            for (int output = 0; output < OUTPUT_COUNT; output++) {
+                nextOutputNanos[output] = Long.MIN_VALUE;
+            }
+        }
+    }
+}
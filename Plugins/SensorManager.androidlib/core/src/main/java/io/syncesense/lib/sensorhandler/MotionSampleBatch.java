@@ -0,0 +1,39 @@
+package io.syncsense.lib.sensorhandler;
+
+/**
+ * A batch of decoded motion samples, stored column by column so Unity can fetch each column with a single call.
+ *
+ * All arrays hold exactly count entries, in receive order. timestampNanos is the native receive time,
+ * sampleTimestampNanos the time the sensor took the sample as estimated by SensorClockModel, both on the
+ * SystemClock.elapsedRealtimeNanos timeline.
+ */
+public class MotionSampleBatch {
+
+    public final int count;
+
+    public final int[] deviceIndex;
+    public final int[] index;
+    public final long[] timestampNanos;
+    public final long[] sampleTimestampNanos;
+
+    public final float[] accX;
+    public final float[] accY;
+    public final float[] accZ;
+    public final float[] gyroX;
+    public final float[] gyroY;
+    public final float[] gyroZ;
+
+    public MotionSampleBatch(int count) {
+        this.count = count;
+        this.deviceIndex = new int[count];
+        this.index = new int[count];
+        this.timestampNanos = new long[count];
+        this.sampleTimestampNanos = new long[count];
+        this.accX = new float[count];
+        this.accY = new float[count];
+        this.accZ = new float[count];
+        this.gyroX = new float[count];
+        this.gyroY = new float[count];
+        this.gyroZ = new float[count];
+    }
+}
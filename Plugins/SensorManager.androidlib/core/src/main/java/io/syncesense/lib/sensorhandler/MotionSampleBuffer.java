@@ -0,0 +1,133 @@
+package io.syncsense.lib.sensorhandler;
+
+/**
+ * Decodes motion packets of the accel/gyro characteristic and keeps them structure-of-arrays in preallocated
+ * columns until Unity drains them.
+ *
+ * A motion packet is 25 bytes: an unsigned rolling index followed by accX, accY, accZ, gyroX, gyroY, gyroZ as
+ * little-endian floats. When the buffer is full new samples are dropped and counted.
+ */
+public class MotionSampleBuffer {
+
+    public static final int PACKET_SIZE = 25;
+
+    private final int capacity;
+
+    private final int[] deviceIndex;
+    private final int[] index;
+    private final long[] timestampNanos;
+    private final long[] sampleTimestampNanos;
+    private final float[] accX;
+    private final float[] accY;
+    private final float[] accZ;
+    private final float[] gyroX;
+    private final float[] gyroY;
+    private final float[] gyroZ;
+
+    private int head = 0;
+    private int size = 0;
+    private long droppedSamples = 0;
+
+    public MotionSampleBuffer(int capacity) {
+        this.capacity = capacity;
+        this.deviceIndex = new int[capacity];
+        this.index = new int[capacity];
+        this.timestampNanos = new long[capacity];
+        this.sampleTimestampNanos = new long[capacity];
+        this.accX = new float[capacity];
+        this.accY = new float[capacity];
+        this.accZ = new float[capacity];
+        this.gyroX = new float[capacity];
+        this.gyroY = new float[capacity];
+        this.gyroZ = new float[capacity];
+    }
+
+    /**
+     * Decodes a motion packet and appends it.
+     *
+     * @return false if the packet is malformed or the buffer is full
+     */
+    public synchronized boolean decode(int device, byte[] packet, int length, long receiveTimestampNanos, long sampleTimeNanos) {
+        if (packet == null || length < PACKET_SIZE)
+            return false;
+
+        return append(device, packet[0] & 0xFF, receiveTimestampNanos, sampleTimeNanos,
+                readFloat(packet, 1), readFloat(packet, 5), readFloat(packet, 9),
+                readFloat(packet, 13), readFloat(packet, 17), readFloat(packet, 21));
+    }
+
+    /**
+     * Appends an already decoded sample.
+     *
+     * @return false if the buffer is full
+     */
+    public synchronized boolean append(int device, int sampleIndex, long receiveTimestampNanos, long sampleTimeNanos,
+                                       float ax, float ay, float az, float gx, float gy, float gz) {
+        if (size == capacity) {
+            droppedSamples++;
+            return false;
+        }
+
+        int slot = (head + size) % capacity;
+        deviceIndex[slot] = device;
+        index[slot] = sampleIndex;
+        timestampNanos[slot] = receiveTimestampNanos;
+        sampleTimestampNanos[slot] = sampleTimeNanos;
+        accX[slot] = ax;
+        accY[slot] = ay;
+        accZ[slot] = az;
+        gyroX[slot] = gx;
+        gyroY[slot] = gy;
+        gyroZ[slot] = gz;
+        size++;
+        return true;
+    }
+
+    /**
+     * Removes every pending sample.
+     *
+     * @return the pending samples, or null if there are none
+     */
+    public synchronized MotionSampleBatch drain() {
+        if (size == 0)
+            return null;
+
+        MotionSampleBatch batch = new MotionSampleBatch(size);
+        copyColumn(deviceIndex, batch.deviceIndex);
+        copyColumn(index, batch.index);
+        copyColumn(timestampNanos, batch.timestampNanos);
+        copyColumn(sampleTimestampNanos, batch.sampleTimestampNanos);
+        copyColumn(accX, batch.accX);
+        copyColumn(accY, batch.accY);
+        copyColumn(accZ, batch.accZ);
+        copyColumn(gyroX, batch.gyroX);
+        copyColumn(gyroY, batch.gyroY);
+        copyColumn(gyroZ, batch.gyroZ);
+
+        head = (head + size) % capacity;
+        size = 0;
+        return batch;
+    }
+
+    public synchronized long getDroppedSamples() {
+        return droppedSamples;
+    }
+
+    public synchronized void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    static float readFloat(byte[] data, int offset) {
+        return Float.intBitsToFloat((data[offset] & 0xFF)
+                | (data[offset + 1] & 0xFF) << 8
+                | (data[offset + 2] & 0xFF) << 16
+                | (data[offset + 3] & 0xFF) << 24);
+    }
+
+    private void copyColumn(Object column, Object target) {
+        int firstPart = Math.min(size, capacity - head);
+        System.arraycopy(column, head, target, 0, firstPart);
+        System.arraycopy(column, 0, target, firstPart, size - firstPart);
+    }
+}
@@ -0,0 +1,503 @@
+package io.syncsense.lib.sensorhandler;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Delivers the notifications of every registered channel: transports publish them into the lock-free queue of their
+ * channel, and a single dispatch task drains every queue into the recorder, the motion decoder, or the delivery buffer
+ * of the channel. Delivery buffers are emptied into json events, or into the binary ring buffer when Unity drains it.
+ *
+ * Json events can be paced: with a limit on events in flight, events stop being sent until Unity acknowledges the
+ * ones it handled, and notifications wait in the delivery buffers, bounded by their overflow policy.
+ *
+ * Nothing here depends on Android or Unity, so the whole path can run on a plain JVM with a simulated transport.
+ */
+public class NotificationPipeline {
+
+    public static final int MAX_DEVICES = 255;
+    public static final int MAX_CHARACTERISTICS = 255;
+
+    private static final int NOTIFICATION_BUFFER_SIZE = 256 * 1024;
+    private static final int MOTION_BUFFER_SIZE = 4096;
+
+    /**
+     * Every notification is serialized to JSON and sent through OnDataReceived.
+     */
+    public static final int TRANSPORT_MODE_JSON = 0;
+    /**
+     * Notifications are framed into a ring buffer and pulled through drainNotifications.
+     */
+    public static final int TRANSPORT_MODE_BINARY = 1;
+
+    final CompactIdTable<String> deviceIds = new CompactIdTable<>(MAX_DEVICES);
+    final CompactIdTable<UUID> characteristicIds = new CompactIdTable<>(MAX_CHARACTERISTICS);
+
+    private final EventSink events;
+    private final TimeSource time;
+    private final Executor dispatchExecutor;
+
+    private final AtomicReferenceArray<SensorChannel> channelsByIndex = new AtomicReferenceArray<>(MAX_DEVICES);
+    private final AtomicBoolean dispatchScheduled = new AtomicBoolean(false);
+    private final NotificationQueue.Record dispatchRecord = new NotificationQueue.Record();
+    private final NotificationQueue.Record eventRecord = new NotificationQueue.Record();
+    // Only used by the dispatch task
+    private final String[] quotedCharacteristicUuids = new String[MAX_CHARACTERISTICS];
+    private final NotificationQueue.Record drainRecord = new NotificationQueue.Record();
+
+    private final NotificationRingBuffer notificationBuffer = new NotificationRingBuffer(NOTIFICATION_BUFFER_SIZE);
+    private final MotionSampleBuffer motionSamples = new MotionSampleBuffer(MOTION_BUFFER_SIZE);
+    private final SampleAligner sampleAligner = new SampleAligner(MOTION_BUFFER_SIZE);
+    private final MotionProcessor motionProcessor = new MotionProcessor();
+    private final CadenceDetector cadenceDetector;
+    private final Tracer tracer;
+
+    private volatile int transportMode = TRANSPORT_MODE_JSON;
+    private volatile boolean motionDecoding = false;
+    private volatile boolean sampleAlignment = false;
+    private volatile boolean rawMotionForwarding = true;
+    private volatile float nominalSampleRateHz = 0;
+    private volatile SessionRecorder recorder = null;
+
+    private volatile int deliveryPolicy = DeliveryBuffer.POLICY_DROP_NEWEST;
+    private volatile int deliveryCapacity = DeliveryBuffer.DEFAULT_CAPACITY;
+    private volatile int deliveryCoalesceCount = 1;
+    private volatile int maxEventsInFlight = 0;
+    private final AtomicInteger eventsInFlight = new AtomicInteger();
+
+    public NotificationPipeline(EventSink events, TimeSource time, Executor dispatchExecutor) {
+        this(events, time, dispatchExecutor, new Tracer(time));
+    }
+
+    /**
+     * @param tracer shared with the rest of the plugin, to trace the pipeline alongside it
+     */
+    public NotificationPipeline(EventSink events, TimeSource time, Executor dispatchExecutor, Tracer tracer) {
+        this.events = events;
+        this.time = time;
+        this.dispatchExecutor = dispatchExecutor;
+        this.cadenceDetector = new CadenceDetector(events);
+        this.tracer = tracer;
+    }
+
+    /**
+     * Starts dispatching the notifications of a channel. Replaces any channel registered for the same device.
+     */
+    public void register(SensorChannel channel) {
+        channel.clock.setNominalRate(nominalSampleRateHz);
+        channel.delivery.configure(deliveryPolicy, deliveryCapacity, deliveryCoalesceCount);
+        channelsByIndex.set(channel.deviceIndex, channel);
+    }
+
+    /**
+     * Stops dispatching the notifications of a channel, unless another channel replaced it in the meantime.
+     */
+    public void unregister(SensorChannel channel) {
+        if (channelsByIndex.compareAndSet(channel.deviceIndex, channel, null)) {
+            sampleAligner.removeDevice(channel.deviceIndex);
+            motionProcessor.removeDevice(channel.deviceIndex);
+            cadenceDetector.removeDevice(channel.deviceIndex);
+        }
+    }
+
+    /**
+     * @return the channel registered for a device index, or null
+     */
+    public SensorChannel getChannel(int deviceIndex) {
+        if (deviceIndex < 0 || deviceIndex >= MAX_DEVICES)
+            return null;
+        return channelsByIndex.get(deviceIndex);
+    }
+
+    /**
+     * @return the channel registered for a device address, or null
+     */
+    public SensorChannel getChannel(String deviceAddress) {
+        return getChannel(deviceIds.get(deviceAddress));
+    }
+
+    /**
+     * @return every registered channel
+     */
+    public List<SensorChannel> getChannels() {
+        List<SensorChannel> channels = new ArrayList<>();
+        int deviceCount = deviceIds.size();
+        for (int i = 0; i < deviceCount; i++) {
+            SensorChannel channel = channelsByIndex.get(i);
+            if (channel != null)
+                channels.add(channel);
+        }
+        return channels;
+    }
+
+    /**
+     * Hands a characteristic value over to the dispatch task. Called from the transport threads.
+     *
+     * @return false if the characteristic could not be given an id, the value is dropped
+     */
+    public boolean publish(SensorChannel channel, UUID characteristicUuid, long timestampNanos, byte[] value) {
+        int characteristicId = characteristicIds.getOrAssign(characteristicUuid);
+        if (characteristicId == CompactIdTable.NO_ID)
+            return false;
+
+        channel.metrics.forCharacteristic(characteristicId, characteristicUuid).recordArrival(timestampNanos, value);
+        channel.notifications.offer(characteristicId, timestampNanos, value);
+        scheduleDispatch();
+        return true;
+    }
+
+    private void scheduleDispatch() {
+        if (dispatchScheduled.compareAndSet(false, true))
+            dispatchExecutor.execute(dispatchNotifications);
+    }
+
+    private final Runnable dispatchNotifications = new Runnable() {
+        @Override
+        public void run() {
+            // Cleared before draining, so a notification queued while draining schedules another run
+            dispatchScheduled.set(false);
+
+            long traceStart = tracer.begin("dispatchNotifications");
+            int dispatched = 0;
+            int deviceCount = deviceIds.size();
+            for (int i = 0; i < deviceCount; i++) {
+                SensorChannel channel = channelsByIndex.get(i);
+                if (channel == null)
+                    continue;
+
+                while (channel.notifications.poll(dispatchRecord)) {
+                    dispatchNotification(channel, dispatchRecord);
+                    dispatched++;
+                }
+            }
+            tracer.end(traceStart, Tracer.CATEGORY_DISPATCH, "dispatchNotifications", null, dispatched);
+
+            if (transportMode == TRANSPORT_MODE_JSON)
+                sendDataEvents();
+        }
+    };
+
+    /**
+     * Sends the buffered notifications as json events, one channel after the other so a busy sensor does not starve
+     * the others, until the buffers are empty or the limit of events in flight is reached.
+     */
+    private void sendDataEvents() {
+        int deviceCount = deviceIds.size();
+        boolean sent = true;
+        while (sent) {
+            sent = false;
+            for (int i = 0; i < deviceCount; i++) {
+                int limit = maxEventsInFlight;
+                if (limit > 0 && eventsInFlight.get() >= limit)
+                    return;
+
+                SensorChannel channel = channelsByIndex.get(i);
+                if (channel == null || !channel.delivery.poll(eventRecord))
+                    continue;
+
+                int characteristicId = eventRecord.characteristicId;
+                if (quotedCharacteristicUuids[characteristicId] == null)
+                    quotedCharacteristicUuids[characteristicId] = JsonWriter.quote(characteristicIds.getKey(characteristicId).toString());
+
+                eventsInFlight.incrementAndGet();
+                long traceStart = tracer.begin("DataReceivedJson");
+                String json = DataReceivedJson.buildJson(
+                        channel,
+                        quotedCharacteristicUuids[characteristicId],
+                        eventRecord.payload,
+                        eventRecord.length,
+                        eventRecord.timestampNanos
+                );
+                tracer.end(traceStart, Tracer.CATEGORY_DISPATCH, "DataReceivedJson", channel.address, json.length());
+                recordDelivery(channel, eventRecord);
+                events.send("OnDataReceived", json);
+                sent = true;
+            }
+        }
+    }
+
+    private void dispatchNotification(SensorChannel channel, NotificationQueue.Record record) {
+        UUID characteristicUuid = characteristicIds.getKey(record.characteristicId);
+
+        SessionRecorder currentRecorder = recorder;
+        if (currentRecorder != null)
+            currentRecorder.record(channel.deviceIndex, record.characteristicId, record.timestampNanos, record.payload, record.length);
+
+        channel.delivery.setLatest(record.characteristicId, record.timestampNanos, record.payload, record.length);
+
+        boolean motion = SensorUuids.ACCL_GYRO_CHARACTERISTIC_UUID.equals(characteristicUuid);
+        long sampleTimeNanos = record.timestampNanos;
+        if (motion && record.length >= MotionSampleBuffer.PACKET_SIZE) {
+            sampleTimeNanos = channel.clock.onSample(record.payload[0], record.timestampNanos);
+            if (sampleAlignment)
+                sampleAligner.add(channel.deviceIndex, sampleTimeNanos, record.payload);
+            if (motionProcessor.isActive())
+                motionProcessor.process(channel.deviceIndex, sampleTimeNanos, record.payload);
+            if (cadenceDetector.isEnabled())
+                cadenceDetector.process(channel, sampleTimeNanos, record.payload);
+        }
+
+        if (motion && !rawMotionForwarding)
+            return;
+
+        if (motionDecoding && motion) {
+            motionSamples.decode(channel.deviceIndex, record.payload, record.length, record.timestampNanos, sampleTimeNanos);
+            return;
+        }
+
+        channel.delivery.offer(record.characteristicId, record.timestampNanos, record.payload, record.length);
+    }
+
+    /**
+     * @return false if the mode is unknown
+     */
+    public boolean setTransportMode(int mode) {
+        if (mode != TRANSPORT_MODE_JSON && mode != TRANSPORT_MODE_BINARY)
+            return false;
+        if (mode != transportMode) {
+            notificationBuffer.clear();
+            for (SensorChannel channel : getChannels()) {
+                channel.delivery.clear();
+            }
+        }
+        transportMode = mode;
+        return true;
+    }
+
+    public int getTransportMode() {
+        return transportMode;
+    }
+
+    public byte[] drainNotifications() {
+        moveToNotificationBuffer();
+        return notificationBuffer.drain();
+    }
+
+    public int drainNotifications(ByteBuffer target) {
+        moveToNotificationBuffer();
+        return notificationBuffer.drainInto(target);
+    }
+
+    /**
+     * Frames the notifications waiting in the delivery buffers, in binary mode.
+     */
+    private void moveToNotificationBuffer() {
+        if (transportMode != TRANSPORT_MODE_BINARY)
+            return;
+
+        synchronized (drainRecord) {
+            int deviceCount = deviceIds.size();
+            for (int i = 0; i < deviceCount; i++) {
+                SensorChannel channel = channelsByIndex.get(i);
+                if (channel == null)
+                    continue;
+
+                while (channel.delivery.poll(drainRecord)) {
+                    recordDelivery(channel, drainRecord);
+                    notificationBuffer.write(channel.deviceIndex, drainRecord.characteristicId, drainRecord.timestampNanos,
+                            drainRecord.payload, drainRecord.length);
+                }
+            }
+        }
+    }
+
+    /**
+     * Measures the latency of a notification from its arrival to its hand-over to Unity, as it leaves its delivery
+     * buffer for the event sink or the frames Unity drains, so the time spent waiting in the buffer is included.
+     */
+    private void recordDelivery(SensorChannel channel, NotificationQueue.Record record) {
+        CharacteristicMetrics metrics = channel.metrics.getCharacteristic(record.characteristicId);
+        if (metrics != null)
+            metrics.recordDelivery(record.timestampNanos, time.nowNanos());
+    }
+
+    /**
+     * @return the number of notifications dropped because the binary buffer, or a delivery buffer, was full
+     */
+    public long getDroppedNotificationCount() {
+        long dropped = notificationBuffer.getDroppedFrames();
+        for (SensorChannel channel : getChannels()) {
+            dropped += channel.delivery.getDropped();
+        }
+        return dropped;
+    }
+
+    /**
+     * Sets how notifications are buffered for Unity, for current and future channels, see DeliveryBuffer. Buffered
+     * notifications are discarded.
+     *
+     * @param policy            one of DeliveryBuffer.POLICY_*
+     * @param capacity          notifications buffered per device
+     * @param coalesceCount     notifications kept per characteristic with POLICY_COALESCE
+     * @param maxEventsInFlight json events sent but not acknowledged yet before sending pauses, 0 for no limit
+     * @return false if the policy is unknown
+     */
+    public boolean configureDelivery(int policy, int capacity, int coalesceCount, int maxEventsInFlight) {
+        if (policy < DeliveryBuffer.POLICY_DROP_OLDEST || policy > DeliveryBuffer.POLICY_COALESCE)
+            return false;
+
+        deliveryPolicy = policy;
+        deliveryCapacity = capacity > 0 ? capacity : DeliveryBuffer.DEFAULT_CAPACITY;
+        deliveryCoalesceCount = coalesceCount;
+        this.maxEventsInFlight = Math.max(0, maxEventsInFlight);
+        for (SensorChannel channel : getChannels()) {
+            channel.delivery.configure(deliveryPolicy, deliveryCapacity, deliveryCoalesceCount);
+        }
+        scheduleDispatch();
+        return true;
+    }
+
+    /**
+     * Called by Unity with the number of OnDataReceived events it handled, which lets that many more be sent.
+     */
+    public void acknowledgeDataEvents(int count) {
+        if (eventsInFlight.addAndGet(-count) < 0)
+            eventsInFlight.set(0);
+        scheduleDispatch();
+    }
+
+    /**
+     * Frames the latest notification of every characteristic of every registered channel, as described in
+     * NotificationRingBuffer, without taking anything out of the delivery buffers.
+     *
+     * @return the framed notifications, or null if there are none
+     */
+    public byte[] getLatestNotifications() {
+        List<NotificationQueue.Record> latest = new ArrayList<>();
+        List<SensorChannel> owners = new ArrayList<>();
+        int size = 0;
+        int characteristicCount = characteristicIds.size();
+        for (SensorChannel channel : getChannels()) {
+            for (int id = 0; id < characteristicCount; id++) {
+                NotificationQueue.Record record = new NotificationQueue.Record();
+                if (channel.delivery.getLatest(id, record)) {
+                    latest.add(record);
+                    owners.add(channel);
+                    size += NotificationRingBuffer.HEADER_SIZE + record.length;
+                }
+            }
+        }
+        if (latest.isEmpty())
+            return null;
+
+        ByteBuffer frames = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < latest.size(); i++) {
+            NotificationQueue.Record record = latest.get(i);
+            frames.put((byte) owners.get(i).deviceIndex);
+            frames.put((byte) record.characteristicId);
+            frames.putShort((short) record.length);
+            frames.putLong(record.timestampNanos);
+            frames.put(record.payload, 0, record.length);
+        }
+        return frames.array();
+    }
+
+    public void setMotionDecoding(boolean enable) {
+        if (!enable)
+            motionSamples.clear();
+        motionDecoding = enable;
+    }
+
+    public boolean isMotionDecodingEnabled() {
+        return motionDecoding;
+    }
+
+    public MotionSampleBatch drainMotionSamples() {
+        return motionSamples.drain();
+    }
+
+    public long getDroppedMotionSampleCount() {
+        return motionSamples.getDroppedSamples();
+    }
+
+    /**
+     * Sets the rate motion samples are expected at, which helps SensorClockModel recover from long losses and
+     * reject bad fits. 0 lets the rate be learned from the received packets.
+     */
+    public void setNominalSampleRate(float rateHz) {
+        nominalSampleRateHz = rateHz;
+        for (SensorChannel channel : getChannels()) {
+            channel.clock.setNominalRate(rateHz);
+        }
+    }
+
+    /**
+     * @return the clock estimate of every registered channel
+     */
+    public List<SensorClockJson> getClockEstimates() {
+        List<SensorClockJson> clocks = new ArrayList<>();
+        for (SensorChannel channel : getChannels()) {
+            clocks.add(channel.clock.snapshot(channel.address));
+        }
+        return clocks;
+    }
+
+    /**
+     * When enabled, motion samples of every sensor are also resampled onto a common timeline, see SampleAligner.
+     */
+    public void setSampleAlignment(boolean enable, int outputRateHz, int maxLatencyMillis) {
+        sampleAlignment = false;
+        sampleAligner.clear();
+        sampleAligner.configure(outputRateHz, maxLatencyMillis);
+        sampleAlignment = enable;
+    }
+
+    public boolean isSampleAlignmentEnabled() {
+        return sampleAlignment;
+    }
+
+    public MotionSampleBatch drainAlignedSamples() {
+        return sampleAligner.drain();
+    }
+
+    public long getDroppedAlignedSampleCount() {
+        return sampleAligner.getDroppedRows();
+    }
+
+    /**
+     * The per-sensor processing stages, whose outputs are subscribed to and drained independently of the raw samples.
+     */
+    public MotionProcessor getMotionProcessor() {
+        return motionProcessor;
+    }
+
+    /**
+     * Traces dispatching notifications and serializing them into json events, see Tracer.
+     */
+    public Tracer getTracer() {
+        return tracer;
+    }
+
+    /**
+     * Reports the cadence of every sensor through events, see CadenceDetector.
+     */
+    public CadenceDetector getCadenceDetector() {
+        return cadenceDetector;
+    }
+
+    /**
+     * When disabled, motion packets only feed the clock estimation, alignment, processing, cadence detection and
+     * recording, and are neither decoded into drainMotionSamples nor sent through the transport mode.
+     */
+    public void setRawMotionForwarding(boolean enable) {
+        rawMotionForwarding = enable;
+    }
+
+    public boolean isRawMotionForwardingEnabled() {
+        return rawMotionForwarding;
+    }
+
+    /**
+     * @param recorder the recorder every dispatched notification is written to, or null to stop recording
+     */
+    public void setRecorder(SessionRecorder recorder) {
+        this.recorder = recorder;
+    }
+}
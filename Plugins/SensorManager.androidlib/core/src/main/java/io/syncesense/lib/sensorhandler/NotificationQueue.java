@@ -0,0 +1,121 @@
+package io.syncsense.lib.sensorhandler;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, lock-free single-producer/multi-consumer queue of characteristic notifications for one device.
+ *
+ * The producer is the GATT callback of the device (Android delivers the callbacks of one connection serially).
+ * Slots and their payload buffers are preallocated and reused, a payload buffer only grows when a notification is
+ * larger than any seen before in that slot. When the queue is full the notification is dropped and counted, so
+ * the Bluetooth stack never waits on a slow consumer.
+ */
+public class NotificationQueue {
+
+    private static final int INITIAL_PAYLOAD_SIZE = 32;
+
+    /**
+     * Reusable holder a consumer polls notifications into.
+     */
+    public static class Record {
+        public int characteristicId;
+        public long timestampNanos;
+        public int length;
+        public byte[] payload = new byte[INITIAL_PAYLOAD_SIZE];
+    }
+
+    private final int mask;
+    private final int[] characteristicIds;
+    private final long[] timestamps;
+    private final int[] lengths;
+    private final byte[][] payloads;
+
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * @param capacity number of slots, rounded up to a power of two
+     */
+    public NotificationQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.mask = size - 1;
+        this.characteristicIds = new int[size];
+        this.timestamps = new long[size];
+        this.lengths = new int[size];
+        this.payloads = new byte[size][];
+        for (int i = 0; i < size; i++) {
+            payloads[i] = new byte[INITIAL_PAYLOAD_SIZE];
+        }
+    }
+
+    /**
+     * Publishes a notification. Must only be called from the single producer thread.
+     *
+     * @return false if the queue was full and the notification was dropped
+     */
+    public boolean offer(int characteristicId, long timestampNanos, byte[] value) {
+        long currentTail = tail.get();
+        if (currentTail - head.get() > mask) {
+            dropped.incrementAndGet();
+            return false;
+        }
+
+        int slot = (int) currentTail & mask;
+        int length = value != null ? value.length : 0;
+        if (payloads[slot].length < length)
+            payloads[slot] = new byte[length];
+        if (length > 0)
+            System.arraycopy(value, 0, payloads[slot], 0, length);
+        characteristicIds[slot] = characteristicId;
+        timestamps[slot] = timestampNanos;
+        lengths[slot] = length;
+
+        tail.lazySet(currentTail + 1);
+        return true;
+    }
+
+    /**
+     * Takes the oldest notification. Safe to call from any number of consumer threads.
+     *
+     * @return false if the queue is empty
+     */
+    public boolean poll(Record out) {
+        while (true) {
+            long currentHead = head.get();
+            if (currentHead >= tail.get())
+                return false;
+
+            int slot = (int) currentHead & mask;
+            // Once another consumer took the slot, the producer may be refilling it: the length may then belong to
+            // a larger payload than the buffer read, so the copy is bounded by the buffer until the CAS rejects it
+            byte[] payload = payloads[slot];
+            int length = Math.min(lengths[slot], payload.length);
+            if (out.payload.length < length)
+                out.payload = new byte[Math.max(length, out.payload.length * 2)];
+            System.arraycopy(payload, 0, out.payload, 0, length);
+            out.length = length;
+            out.characteristicId = characteristicIds[slot];
+            out.timestampNanos = timestamps[slot];
+
+            // Another consumer may have taken this slot, and the producer may have overwritten it, while copying
+            if (head.compareAndSet(currentHead, currentHead + 1))
+                return true;
+        }
+    }
+
+    public boolean isEmpty() {
+        return head.get() >= tail.get();
+    }
+
+    /**
+     * @return the number of queued notifications, approximate while the queue is in use
+     */
+    public int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+}
@@ -0,0 +1,125 @@
+package io.syncsense.lib.sensorhandler;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Preallocated ring buffer of framed characteristic notifications, used by the binary transport mode.
+ *
+ * Every record is laid out little-endian as:
+ * <pre>
+ *  offset 0  : uint8  device index
+ *  offset 1  : uint8  characteristic id
+ *  offset 2  : uint16 payload length
+ *  offset 4  : int64  receive timestamp (SystemClock.elapsedRealtimeNanos)
+ *  offset 12 : payload bytes
+ * </pre>
+ * Records are appended by the notification dispatcher and drained once per frame by Unity. When the buffer is full
+ * new records are dropped and counted, so a stalled consumer never makes the producer wait.
+ */
+public class NotificationRingBuffer {
+
+    public static final int HEADER_SIZE = 12;
+    public static final int MAX_PAYLOAD_SIZE = 0xFFFF;
+
+    private final byte[] buffer;
+    private final int capacity;
+
+    private long writePosition = 0;
+    private long readPosition = 0;
+    private long droppedFrames = 0;
+
+    public NotificationRingBuffer(int capacity) {
+        this.capacity = capacity;
+        this.buffer = new byte[capacity];
+    }
+
+    /**
+     * Appends a framed record.
+     *
+     * @return false if the record did not fit and was dropped
+     */
+    public synchronized boolean write(int deviceIndex, int characteristicId, long timestampNanos, byte[] payload, int payloadLength) {
+        int recordSize = HEADER_SIZE + payloadLength;
+        if (payloadLength > MAX_PAYLOAD_SIZE || recordSize > capacity - (int) (writePosition - readPosition)) {
+            droppedFrames++;
+            return false;
+        }
+
+        putByte(deviceIndex);
+        putByte(characteristicId);
+        putByte(payloadLength);
+        putByte(payloadLength >>> 8);
+        for (int i = 0; i < 8; i++) {
+            putByte((int) (timestampNanos >>> (8 * i)));
+        }
+        if (payloadLength > 0) {
+            int offset = (int) (writePosition % capacity);
+            int firstPart = Math.min(payloadLength, capacity - offset);
+            System.arraycopy(payload, 0, buffer, offset, firstPart);
+            System.arraycopy(payload, firstPart, buffer, 0, payloadLength - firstPart);
+            writePosition += payloadLength;
+        }
+        return true;
+    }
+
+    /**
+     * Removes every pending record and returns them back to back.
+     *
+     * @return the pending records, or null if there are none
+     */
+    public synchronized byte[] drain() {
+        int available = (int) (writePosition - readPosition);
+        if (available == 0)
+            return null;
+
+        byte[] out = new byte[available];
+        copyOut(out, 0, available);
+        return out;
+    }
+
+    /**
+     * Moves as many whole records as fit into the target, starting at its current position.
+     *
+     * @return the number of bytes written to the target
+     */
+    public synchronized int drainInto(ByteBuffer target) {
+        int written = 0;
+        int remaining = target.remaining();
+        while (writePosition - readPosition >= HEADER_SIZE) {
+            int offset = (int) ((readPosition + 2) % capacity);
+            int payloadLength = (buffer[offset] & 0xFF) | ((buffer[(offset + 1) % capacity] & 0xFF) << 8);
+            int recordSize = HEADER_SIZE + payloadLength;
+            if (recordSize > remaining - written)
+                break;
+
+            int start = (int) (readPosition % capacity);
+            int firstPart = Math.min(recordSize, capacity - start);
+            target.put(buffer, start, firstPart);
+            target.put(buffer, 0, recordSize - firstPart);
+            readPosition += recordSize;
+            written += recordSize;
+        }
+        return written;
+    }
+
+    public synchronized long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    public synchronized void clear() {
+        readPosition = writePosition;
+    }
+
+    private void putByte(int value) {
+        buffer[(int) (writePosition % capacity)] = (byte) value;
+        writePosition++;
+    }
+
+    private void copyOut(byte[] out, int outOffset, int length) {
+        int start = (int) (readPosition % capacity);
+        int firstPart = Math.min(length, capacity - start);
+        System.arraycopy(buffer, start, out, outOffset, firstPart);
+        System.arraycopy(buffer, 0, out, outOffset + firstPart, length - firstPart);
+        readPosition += length;
+    }
+}
@@ -0,0 +1,148 @@
+package io.syncsense.lib.sensorhandler;
+
+/**
+ * Fuses gyroscope and accelerometer samples into an orientation quaternion.
+ *
+ * The gyroscope rate is integrated every sample, and the accelerometer, taken as the direction of gravity, pulls
+ * roll and pitch back against gyroscope drift. Yaw is not observable without a magnetometer and drifts with the
+ * gyroscope bias.
+ * <ul>
+ * <li>ALGORITHM_COMPLEMENTARY: the gyroscope rate is corrected proportionally to the angle between measured and
+ * estimated gravity (Mahony, without the integral term). The gain is in rad/s per unit of error.</li>
+ * <li>ALGORITHM_MADGWICK: one gradient descent step towards measured gravity per sample (Madgwick, IMU variant).
+ * The gain is beta, in rad/s.</li>
+ * </ul>
+ * The quaternion is w, x, y, z and rotates sensor coordinates into the world frame.
+ */
+public class OrientationFilter {
+
+    public static final int ALGORITHM_COMPLEMENTARY = 0;
+    public static final int ALGORITHM_MADGWICK = 1;
+
+    public static final float DEFAULT_COMPLEMENTARY_GAIN = 1.0f;
+    public static final float DEFAULT_MADGWICK_GAIN = 0.1f;
+
+    private int algorithm = ALGORITHM_MADGWICK;
+    private float gain = DEFAULT_MADGWICK_GAIN;
+
+    private float q0 = 1, q1 = 0, q2 = 0, q3 = 0;
+
+    /**
+     * @return false if the algorithm is unknown
+     */
+    public boolean configure(int algorithm, float gain) {
+        if (algorithm != ALGORITHM_COMPLEMENTARY && algorithm != ALGORITHM_MADGWICK)
+            return false;
+        this.algorithm = algorithm;
+        this.gain = gain;
+        return true;
+    }
+
+    /**
+     * @param gx gyroscope rate around x in rad/s, likewise gy and gz
+     * @param ax accelerometer along x in any unit, likewise ay and az
+     * @param dt seconds since the previous sample
+     */
+    public void update(float gx, float gy, float gz, float ax, float ay, float az, float dt) {
+        if (algorithm == ALGORITHM_COMPLEMENTARY) {
+            updateComplementary(gx, gy, gz, ax, ay, az, dt);
+        } else {
+            updateMadgwick(gx, gy, gz, ax, ay, az, dt);
+        }
+    }
+
+    /**
+     * Copies the quaternion, w, x, y, z, into target[offset] to target[offset + 3].
+     */
+    public void getQuaternion(float[] target, int offset) {
+        target[offset] = q0;
+        target[offset + 1] = q1;
+        target[offset + 2] = q2;
+        target[offset + 3] = q3;
+    }
+
+    public void reset() {
+        q0 = 1;
+        q1 = 0;
+        q2 = 0;
+        q3 = 0;
+    }
+
+    private void updateComplementary(float gx, float gy, float gz, float ax, float ay, float az, float dt) {
+        float norm = (float) Math.sqrt(ax * ax + ay * ay + az * az);
+        if (norm > 0) {
+            ax /= norm;
+            ay /= norm;
+            az /= norm;
+
+            // Gravity as the current estimate sees it
+            float vx = 2 * (q1 * q3 - q0 * q2);
+            float vy = 2 * (q0 * q1 + q2 * q3);
+            float vz = q0 * q0 - q1 * q1 - q2 * q2 + q3 * q3;
+
+            // Rotation from estimated to measured gravity
+            gx += gain * (ay * vz - az * vy);
+            gy += gain * (az * vx - ax * vz);
+            gz += gain * (ax * vy - ay * vx);
+        }
+
+        float halfDt = 0.5f * dt;
+        float w = q0, x = q1, y = q2, z = q3;
+        q0 += (-x * gx - y * gy - z * gz) * halfDt;
+        q1 += (w * gx + y * gz - z * gy) * halfDt;
+        q2 += (w * gy - x * gz + z * gx) * halfDt;
+        q3 += (w * gz + x * gy - y * gx) * halfDt;
+        normalize();
+    }
+
+    private void updateMadgwick(float gx, float gy, float gz, float ax, float ay, float az, float dt) {
+        // Rate of change of the quaternion from the gyroscope
+        float qDot0 = 0.5f * (-q1 * gx - q2 * gy - q3 * gz);
+        float qDot1 = 0.5f * (q0 * gx + q2 * gz - q3 * gy);
+        float qDot2 = 0.5f * (q0 * gy - q1 * gz + q3 * gx);
+        float qDot3 = 0.5f * (q0 * gz + q1 * gy - q2 * gx);
+
+        float norm = (float) Math.sqrt(ax * ax + ay * ay + az * az);
+        if (norm > 0) {
+            ax /= norm;
+            ay /= norm;
+            az /= norm;
+
+            float q0q0 = q0 * q0, q1q1 = q1 * q1, q2q2 = q2 * q2, q3q3 = q3 * q3;
+
+            // Gradient of the error between estimated and measured gravity
+            float s0 = 4 * q0 * q2q2 + 2 * q2 * ax + 4 * q0 * q1q1 - 2 * q1 * ay;
+            float s1 = 4 * q1 * q3q3 - 2 * q3 * ax + 4 * q0q0 * q1 - 2 * q0 * ay - 4 * q1 + 8 * q1 * q1q1
+                    + 8 * q1 * q2q2 + 4 * q1 * az;
+            float s2 = 4 * q0q0 * q2 + 2 * q0 * ax + 4 * q2 * q3q3 - 2 * q3 * ay - 4 * q2 + 8 * q2 * q1q1
+                    + 8 * q2 * q2q2 + 4 * q2 * az;
+            float s3 = 4 * q1q1 * q3 - 2 * q1 * ax + 4 * q2q2 * q3 - 2 * q2 * ay;
+
+            float stepNorm = (float) Math.sqrt(s0 * s0 + s1 * s1 + s2 * s2 + s3 * s3);
+            if (stepNorm > 0) {
+                qDot0 -= gain * s0 / stepNorm;
+                qDot1 -= gain * s1 / stepNorm;
+                qDot2 -= gain * s2 / stepNorm;
+                qDot3 -= gain * s3 / stepNorm;
+            }
+        }
+
+        q0 += qDot0 * dt;
+        q1 += qDot1 * dt;
+        q2 += qDot2 * dt;
+        q3 += qDot3 * dt;
+        normalize();
+    }
+
+    private void normalize() {
+        float norm = (float) Math.sqrt(q0 * q0 + q1 * q1 + q2 * q2 + q3 * q3);
+        if (norm == 0) {
+            reset();
+            return;
+        }
+        q0 /= norm;
+        q1 /= norm;
+        q2 /= norm;
+        q3 /= norm;
+    }
+}
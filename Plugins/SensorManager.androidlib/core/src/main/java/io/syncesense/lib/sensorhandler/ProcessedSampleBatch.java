@@ -0,0 +1,28 @@
+package io.syncsense.lib.sensorhandler;
+
+/**
+ * A batch of rows of one MotionProcessor output, stored column by column so Unity can fetch each column with a single
+ * call.
+ *
+ * deviceIndex and timestampNanos hold count entries, values holds count * width entries, row after row. The
+ * timestamps are estimated sample times on the SystemClock.elapsedRealtimeNanos timeline.
+ */
+public class ProcessedSampleBatch {
+
+    public final int output;
+    public final int count;
+    public final int width;
+
+    public final int[] deviceIndex;
+    public final long[] timestampNanos;
+    public final float[] values;
+
+    public ProcessedSampleBatch(int output, int count, int width) {
+        this.output = output;
+        this.count = count;
+        this.width = width;
+        this.deviceIndex = new int[count];
+        this.timestampNanos = new long[count];
+        this.values = new float[count * width];
+    }
+}
@@ -0,0 +1,80 @@
+package io.syncsense.lib.sensorhandler;
+
+/**
+ * Keeps the rows of one MotionProcessor output in preallocated columns until Unity drains them. When the buffer is
+ * full new rows are dropped and counted.
+ */
+public class ProcessedSampleBuffer {
+
+    private final int output;
+    private final int capacity;
+    private final int width;
+
+    private final int[] deviceIndex;
+    private final long[] timestampNanos;
+    private final float[] values;
+
+    private int head = 0;
+    private int size = 0;
+    private long droppedRows = 0;
+
+    public ProcessedSampleBuffer(int output, int capacity, int width) {
+        this.output = output;
+        this.capacity = capacity;
+        this.width = width;
+        this.deviceIndex = new int[capacity];
+        this.timestampNanos = new long[capacity];
+        this.values = new float[capacity * width];
+    }
+
+    /**
+     * Appends a row made of row[offset] to row[offset + width - 1].
+     *
+     * @return false if the buffer is full
+     */
+    public synchronized boolean append(int device, long timeNanos, float[] row, int offset) {
+        if (size == capacity) {
+            droppedRows++;
+            return false;
+        }
+
+        int slot = (head + size) % capacity;
+        deviceIndex[slot] = device;
+        timestampNanos[slot] = timeNanos;
+        System.arraycopy(row, offset, values, slot * width, width);
+        size++;
+        return true;
+    }
+
+    /**
+     * Removes every pending row.
+     *
+     * @return the pending rows, or null if there are none
+     */
+    public synchronized ProcessedSampleBatch drain() {
+        if (size == 0)
+            return null;
+
+        ProcessedSampleBatch batch = new ProcessedSampleBatch(output, size, width);
+        int firstPart = Math.min(size, capacity - head);
+        System.arraycopy(deviceIndex, head, batch.deviceIndex, 0, firstPart);
+        System.arraycopy(deviceIndex, 0, batch.deviceIndex, firstPart, size - firstPart);
+        System.arraycopy(timestampNanos, head, batch.timestampNanos, 0, firstPart);
+        System.arraycopy(timestampNanos, 0, batch.timestampNanos, firstPart, size - firstPart);
+        System.arraycopy(values, head * width, batch.values, 0, firstPart * width);
+        System.arraycopy(values, 0, batch.values, firstPart * width, (size - firstPart) * width);
+
+        head = (head + size) % capacity;
+        size = 0;
+        return batch;
+    }
+
+    public synchronized long getDroppedRows() {
+        return droppedRows;
+    }
+
+    public synchronized void clear() {
+        head = 0;
+        size = 0;
+    }
+}
@@ -0,0 +1,68 @@
+package io.syncsense.lib.sensorhandler;
+
+import java.util.Random;
+
+/**
+ * When and how a managed connection tries to come back after losing its link.
+ *
+ * The first attempt is immediate, a direct connection to the cached device, since most links come back right away.
+ * Later attempts wait an exponentially growing, slightly randomized delay, so sensors dropped together do not all
+ * retry at once. After the direct attempts the stack is left to connect in the background (autoConnect), which has
+ * no timeout and catches the device as soon as it advertises again.
+ */
+public class ReconnectPolicy {
+
+    public static final int DEFAULT_INITIAL_DELAY_MILLIS = 250;
+    public static final int DEFAULT_MAX_DELAY_MILLIS = 30_000;
+    public static final int DEFAULT_DIRECT_ATTEMPTS = 4;
+
+    private static final double JITTER = 0.2;
+
+    private volatile int initialDelayMillis = DEFAULT_INITIAL_DELAY_MILLIS;
+    private volatile int maxDelayMillis = DEFAULT_MAX_DELAY_MILLIS;
+    private volatile int maxAttempts = 0;
+    private volatile int directAttempts = DEFAULT_DIRECT_ATTEMPTS;
+
+    private final Random random = new Random();
+
+    /**
+     * @param initialDelayMillis the delay before the second attempt, doubled for every further attempt
+     * @param maxDelayMillis     the longest delay between attempts
+     * @param maxAttempts        attempts before giving up, 0 to never give up
+     * @param directAttempts     direct connection attempts before falling back to a background connection
+     */
+    public void configure(int initialDelayMillis, int maxDelayMillis, int maxAttempts, int directAttempts) {
+        this.initialDelayMillis = Math.max(0, initialDelayMillis);
+        this.maxDelayMillis = Math.max(this.initialDelayMillis, maxDelayMillis);
+        this.maxAttempts = Math.max(0, maxAttempts);
+        this.directAttempts = Math.max(1, directAttempts);
+    }
+
+    /**
+     * @param attempt the attempt about to be made, starting at 1
+     * @return how long to wait before it
+     */
+    public synchronized long getDelayMillis(int attempt) {
+        if (attempt <= 1)
+            return 0;
+
+        double delay = initialDelayMillis * Math.pow(2, Math.min(30, attempt - 2));
+        delay = Math.min(delay, maxDelayMillis);
+        return (long) (delay * (1 - JITTER + 2 * JITTER * random.nextDouble()));
+    }
+
+    /**
+     * @return true if the attempt should not be made anymore
+     */
+    public boolean isExhausted(int attempt) {
+        int max = maxAttempts;
+        return max > 0 && attempt > max;
+    }
+
+    /**
+     * @return true if the attempt should be a background connection rather than a direct one
+     */
+    public boolean useAutoConnect(int attempt) {
+        return attempt > directAttempts;
+    }
+}
@@ -0,0 +1,93 @@
+package io.syncsense.lib.sensorhandler;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Converts a SessionRecorder file into the motion CSV format previously written by the Unity side, with the native
+ * receive timestamp appended as an extra column.
+ *
+ * Has no Android dependencies, so it can also run offline on a desktop JVM:
+ * <pre>
+ *  java -cp sensorhandler.jar io.syncsense.lib.sensorhandler.RecordingCsvConverter session.ssr session.csv
+ * </pre>
+ */
+public class RecordingCsvConverter {
+
+    public static final String CSV_HEADER = "Mac Address, Timestamp, index, Acc X, Acc Y, Acc Z, Gyro X, Gyro Y, Gyro Z, Timestamp Nanos";
+
+    private static final String MOTION_UUID = SensorUuids.ACCL_GYRO_CHARACTERISTIC_UUID.toString();
+
+    /**
+     * @return the number of motion samples written
+     */
+    public static long convert(String recordingPath, String csvPath) throws IOException {
+        final SessionRecordingReader reader = new SessionRecordingReader(recordingPath);
+        final String[] addresses = new String[256];
+        final boolean[] motionCharacteristics = new boolean[256];
+        final SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm:ss.SSS", Locale.US);
+        final Date time = new Date();
+        final long[] written = new long[1];
+
+        try (final BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(csvPath), StandardCharsets.UTF_8))) {
+            writer.write(CSV_HEADER);
+            writer.newLine();
+
+            reader.read(new SessionRecordingReader.Listener() {
+                @Override
+                public void onDevice(int deviceIndex, String deviceAddress, String deviceName) {
+                    addresses[deviceIndex] = deviceAddress;
+                }
+
+                @Override
+                public void onCharacteristic(int characteristicId, String characteristicUuid) {
+                    motionCharacteristics[characteristicId] = MOTION_UUID.equalsIgnoreCase(characteristicUuid);
+                }
+
+                @Override
+                public void onNotification(int deviceIndex, int characteristicId, long timestampNanos, byte[] payload, int length) {
+                    if (!motionCharacteristics[characteristicId] || length < MotionSampleBuffer.PACKET_SIZE)
+                        return;
+
+                    time.setTime(reader.getStartWallClockMillis() + (timestampNanos - reader.getStartElapsedNanos()) / 1000000);
+                    StringBuilder line = new StringBuilder(128)
+                            .append(addresses[deviceIndex]).append(',')
+                            .append(timeFormat.format(time)).append(',')
+                            .append(payload[0] & 0xFF);
+                    for (int offset = 1; offset < MotionSampleBuffer.PACKET_SIZE; offset += 4) {
+                        line.append(',').append(MotionSampleBuffer.readFloat(payload, offset));
+                    }
+                    line.append(',').append(timestampNanos);
+
+                    try {
+                        writer.write(line.toString());
+                        writer.newLine();
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                    written[0]++;
+                }
+            });
+        } catch (RuntimeException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw e;
+        }
+        return written[0];
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: RecordingCsvConverter <recording> <csv>");
+            System.exit(1);
+        }
+        long samples = convert(args[0], args[1]);
+        System.out.println("Wrote " + samples + " motion samples to " + args[1]);
+    }
+}
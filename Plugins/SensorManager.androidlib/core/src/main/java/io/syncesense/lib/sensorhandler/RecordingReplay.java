@@ -0,0 +1,297 @@
+package io.syncsense.lib.sensorhandler;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Plays a recording of SessionRecorder back as a set of virtual devices, so a session captured in the field can be
+ * fed through the notification path again, as often as needed and without hardware.
+ *
+ * Every recorded device connects right before its first notification and disconnects at the end of the recording.
+ * Notifications keep the spacing they were recorded with, divided by the speed: 1 plays in real time, 10 ten times
+ * faster, and SPEED_AS_FAST_AS_POSSIBLE does not wait between notifications, only for the session, see setSession.
+ * They are timestamped with the time they are replayed at, or were due at if the replay fell behind.
+ *
+ * Devices of a replay connect on their own and notify every recorded characteristic: they can not be driven with
+ * connect, subscribe and the like. Once the recording is over, or the replay released, OnReplayComplete reports how
+ * many notifications were replayed and how fast.
+ *
+ * The recording is read and replayed on a single "SyncsenseReplay" thread.
+ */
+public class RecordingReplay implements SensorTransport {
+
+    public static final float SPEED_AS_FAST_AS_POSSIBLE = 0;
+
+    private static final int MAX_IDS = 256;
+    // The longest attribute value
+    private static final int MAX_VALUE_LENGTH = 512;
+
+    // Well below the queue and delivery buffer of a channel
+    private static final int MAX_BACKLOG = 256;
+    private static final long BACKLOG_WAIT_NANOS = 100_000;
+    private static final long DRAIN_TIMEOUT_NANOS = 2_000_000_000L;
+
+    private final String filePath;
+    private final float speed;
+    private final TimeSource time;
+    private final EventSink events;
+
+    private volatile Listener listener;
+    private volatile TransportSession session;
+    private volatile Thread thread;
+    private volatile boolean stopped = false;
+    private volatile boolean finished = false;
+
+    private final String[] deviceAddresses = new String[MAX_IDS];
+    private final String[] deviceNames = new String[MAX_IDS];
+    private final UUID[] characteristicUuids = new UUID[MAX_IDS];
+    private final boolean[] isConnected = new boolean[MAX_IDS];
+    private final ArrayList<Integer> connected = new ArrayList<>();
+    // Values handed to the listener are copied by the pipeline, so one array per length is enough
+    private final byte[][] valuesByLength = new byte[MAX_VALUE_LENGTH + 1][];
+
+    private long firstTimestampNanos = -1;
+    private long lastTimestampNanos = -1;
+    private long replayStartNanos;
+    private final AtomicLong replayed = new AtomicLong();
+
+    /**
+     * @param speed how many times faster than recorded to replay, SPEED_AS_FAST_AS_POSSIBLE not to wait at all
+     */
+    public RecordingReplay(String filePath, float speed, TimeSource time, EventSink events) {
+        this.filePath = filePath;
+        this.speed = Math.max(SPEED_AS_FAST_AS_POSSIBLE, speed);
+        this.time = time;
+        this.events = events;
+    }
+
+    /**
+     * Starts replaying, from the beginning of the recording.
+     */
+    public synchronized void start() {
+        if (thread != null)
+            return;
+
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                replay();
+            }
+        }, "SyncsenseReplay");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * @return the number of notifications replayed so far
+     */
+    public long getReplayedNotifications() {
+        return replayed.get();
+    }
+
+    @Override
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Has the replay wait, whatever its speed, while a channel of the session has more than MAX_BACKLOG notifications
+     * waiting, and for the last ones to be delivered before its devices disconnect. A replay faster than the pipeline
+     * and Unity then slows down to their pace instead of losing notifications.
+     */
+    public void setSession(TransportSession session) {
+        this.session = session;
+    }
+
+    /**
+     * @return the addresses of the recorded devices seen so far
+     */
+    @Override
+    public synchronized String[] getDeviceAddresses() {
+        String[] addresses = new String[connected.size()];
+        for (int i = 0; i < addresses.length; i++) {
+            addresses[i] = deviceAddresses[connected.get(i)];
+        }
+        return addresses;
+    }
+
+    @Override
+    public boolean connect(String deviceAddress) {
+        return false;
+    }
+
+    @Override
+    public boolean disconnect(String deviceAddress) {
+        return false;
+    }
+
+    @Override
+    public boolean subscribe(String deviceAddress, UUID serviceUuid, UUID characteristicUuid) {
+        return false;
+    }
+
+    @Override
+    public boolean unsubscribe(String deviceAddress, UUID serviceUuid, UUID characteristicUuid) {
+        return false;
+    }
+
+    /**
+     * Stops the replay, disconnecting its devices.
+     */
+    @Override
+    public void release() {
+        stopped = true;
+        Thread current = thread;
+        if (current != null) {
+            LockSupport.unpark(current);
+            try {
+                current.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void replay() {
+        long startedAt = time.nowNanos();
+        String error = null;
+        try {
+            new SessionRecordingReader(filePath).read(entries);
+        } catch (IOException e) {
+            error = e.getMessage();
+        } catch (StoppedException e) {
+            // Released
+        }
+
+        TransportSession current = session;
+        long drainDeadlineNanos = time.nowNanos() + DRAIN_TIMEOUT_NANOS;
+        while (current != null && !stopped && current.getBacklog() > 0 && time.nowNanos() < drainDeadlineNanos) {
+            LockSupport.parkNanos(BACKLOG_WAIT_NANOS);
+        }
+
+        synchronized (this) {
+            for (int deviceIndex : connected) {
+                isConnected[deviceIndex] = false;
+                notifyConnectionState(deviceAddresses[deviceIndex], deviceNames[deviceIndex], STATE_DISCONNECTED);
+            }
+            connected.clear();
+        }
+
+        long elapsedNanos = time.nowNanos() - startedAt;
+        long notifications = replayed.get();
+        finished = true;
+        events.send("OnReplayComplete",
+                ReplayJson.buildJson(
+                        filePath,
+                        speed,
+                        notifications,
+                        firstTimestampNanos >= 0 ? (lastTimestampNanos - firstTimestampNanos) / 1_000_000 : 0,
+                        elapsedNanos / 1_000_000,
+                        elapsedNanos > 0 ? notifications * 1e9 / elapsedNanos : 0,
+                        stopped,
+                        error
+                )
+        );
+    }
+
+    private final SessionRecordingReader.Listener entries = new SessionRecordingReader.Listener() {
+        @Override
+        public void onDevice(int deviceIndex, String deviceAddress, String deviceName) {
+            deviceAddresses[deviceIndex] = deviceAddress;
+            deviceNames[deviceIndex] = deviceName;
+        }
+
+        @Override
+        public void onCharacteristic(int characteristicId, String characteristicUuid) {
+            characteristicUuids[characteristicId] = UUID.fromString(characteristicUuid);
+        }
+
+        @Override
+        public void onNotification(int deviceIndex, int characteristicId, long timestampNanos, byte[] payload, int length) {
+            String deviceAddress = deviceAddresses[deviceIndex];
+            UUID characteristicUuid = characteristicUuids[characteristicId];
+            if (deviceAddress == null || characteristicUuid == null)
+                return;
+
+            long replayTimestampNanos = waitFor(timestampNanos);
+
+            if (!isConnected[deviceIndex]) {
+                synchronized (RecordingReplay.this) {
+                    isConnected[deviceIndex] = true;
+                    connected.add(deviceIndex);
+                }
+                notifyConnectionState(deviceAddress, deviceNames[deviceIndex], STATE_CONNECTED);
+            }
+
+            byte[] value = length <= MAX_VALUE_LENGTH ? valuesByLength[length] : null;
+            if (value == null) {
+                value = new byte[length];
+                if (length <= MAX_VALUE_LENGTH)
+                    valuesByLength[length] = value;
+            }
+            System.arraycopy(payload, 0, value, 0, length);
+
+            Listener current = listener;
+            if (current != null)
+                current.onNotification(deviceAddress, characteristicUuid, replayTimestampNanos, value);
+            replayed.incrementAndGet();
+        }
+    };
+
+    /**
+     * Waits until a recorded notification is due.
+     *
+     * @return the time it is replayed at
+     */
+    private long waitFor(long recordedTimestampNanos) {
+        if (firstTimestampNanos < 0) {
+            firstTimestampNanos = recordedTimestampNanos;
+            replayStartNanos = time.nowNanos();
+        }
+        lastTimestampNanos = Math.max(lastTimestampNanos, recordedTimestampNanos);
+
+        TransportSession current = session;
+        while (!stopped && current != null && current.getBacklog() > MAX_BACKLOG) {
+            LockSupport.parkNanos(BACKLOG_WAIT_NANOS);
+        }
+
+        if (speed == SPEED_AS_FAST_AS_POSSIBLE) {
+            if (stopped)
+                throw new StoppedException();
+            return time.nowNanos();
+        }
+
+        long dueNanos = replayStartNanos + (long) ((recordedTimestampNanos - firstTimestampNanos) / speed);
+        long waitNanos;
+        while (!stopped && (waitNanos = dueNanos - time.nowNanos()) > 0) {
+            LockSupport.parkNanos(waitNanos);
+        }
+        if (stopped)
+            throw new StoppedException();
+        return dueNanos;
+    }
+
+    private void notifyConnectionState(String deviceAddress, String deviceName, int newState) {
+        Listener current = listener;
+        if (current != null)
+            current.onConnectionStateChange(deviceAddress, deviceName, 0, newState);
+    }
+
+    /**
+     * Unwinds SessionRecordingReader.read once the replay is released.
+     */
+    private static final class StoppedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        StoppedException() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package io.syncsense.lib.sensorhandler;
+
+import static io.syncsense.lib.sensorhandler.JsonUtils.GSON;
+
+public class ReplayJson {
+
+    public String filePath;
+    public float speed;
+    public long notifications;
+    public long recordedMillis;
+    public long elapsedMillis;
+    public double notificationsPerSecond;
+    // Released before the end of the recording
+    public boolean stopped;
+    public String error;
+
+    public ReplayJson() {
+    }
+
+    public ReplayJson(String filePath, float speed, long notifications, long recordedMillis, long elapsedMillis,
+                      double notificationsPerSecond, boolean stopped, String error) {
+        this.filePath = filePath;
+        this.speed = speed;
+        this.notifications = notifications;
+        this.recordedMillis = recordedMillis;
+        this.elapsedMillis = elapsedMillis;
+        this.notificationsPerSecond = notificationsPerSecond;
+        this.stopped = stopped;
+        this.error = error;
+    }
+
+    public static String buildJson(String filePath, float speed, long notifications, long recordedMillis,
+                                   long elapsedMillis, double notificationsPerSecond, boolean stopped, String error) {
+        return GSON.toJson(new ReplayJson(filePath, speed, notifications, recordedMillis, elapsedMillis,
+                notificationsPerSecond, stopped, error));
+    }
+}
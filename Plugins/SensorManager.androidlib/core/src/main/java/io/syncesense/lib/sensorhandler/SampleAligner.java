@@ -0,0 +1,183 @@
+package io.syncsense.lib.sensorhandler;
+
+/**
+ * Resamples the motion samples of every sensor onto a common timeline.
+ *
+ * Samples are added with their estimated sample time from SensorClockModel. Frames are produced on a fixed grid of
+ * the output rate: for every grid time, each sensor gets a row linearly interpolated between its two surrounding
+ * samples. A frame is produced once every sensor has a sample past its grid time; a sensor that has been silent for
+ * longer than the maximum latency is left out of the frames instead of holding them back.
+ *
+ * Rows are kept in a MotionSampleBuffer until drained: rows of the same frame are consecutive and share their
+ * timestamps, and the index column holds the frame number.
+ */
+public class SampleAligner {
+
+    private static final int TRACK_SIZE = 64;
+
+    private final Track[] tracks = new Track[NotificationPipeline.MAX_DEVICES];
+    private final MotionSampleBuffer output;
+
+    private long outputPeriodNanos = 10_000_000;
+    private long maxLatencyNanos = 100_000_000;
+
+    private long nextFrameNanos = Long.MIN_VALUE;
+    private int frame = 0;
+    private long newestSampleNanos = Long.MIN_VALUE;
+
+    public SampleAligner(int capacity) {
+        this.output = new MotionSampleBuffer(capacity);
+    }
+
+    /**
+     * @param outputRateHz      the rate of the common timeline
+     * @param maxLatencyMillis  how long a frame waits for a late sensor
+     */
+    public synchronized void configure(int outputRateHz, int maxLatencyMillis) {
+        outputPeriodNanos = 1_000_000_000L / Math.max(1, outputRateHz);
+        maxLatencyNanos = Math.max(0, maxLatencyMillis) * 1_000_000L;
+        nextFrameNanos = Long.MIN_VALUE;
+    }
+
+    /**
+     * Adds a motion packet of a sensor, and produces every frame it completes.
+     */
+    public synchronized void add(int device, long sampleTimeNanos, byte[] packet) {
+        Track track = tracks[device];
+        if (track == null) {
+            track = new Track();
+            tracks[device] = track;
+        }
+        if (track.size > 0 && sampleTimeNanos <= track.latest())
+            return;
+
+        track.append(sampleTimeNanos, packet);
+        newestSampleNanos = Math.max(newestSampleNanos, sampleTimeNanos);
+        if (nextFrameNanos == Long.MIN_VALUE)
+            nextFrameNanos = alignToGrid(sampleTimeNanos);
+
+        produceFrames();
+    }
+
+    /**
+     * Leaves a sensor out of the next frames, when it disconnects.
+     */
+    public synchronized void removeDevice(int device) {
+        if (tracks[device] != null) {
+            tracks[device].size = 0;
+            produceFrames();
+        }
+    }
+
+    public MotionSampleBatch drain() {
+        return output.drain();
+    }
+
+    public long getDroppedRows() {
+        return output.getDroppedSamples();
+    }
+
+    public synchronized void clear() {
+        for (Track track : tracks) {
+            if (track != null)
+                track.size = 0;
+        }
+        output.clear();
+        nextFrameNanos = Long.MIN_VALUE;
+        newestSampleNanos = Long.MIN_VALUE;
+    }
+
+    private void produceFrames() {
+        while (true) {
+            boolean any = false;
+            long earliestSample = Long.MAX_VALUE;
+            for (Track track : tracks) {
+                if (!isActive(track))
+                    continue;
+                if (track.latest() < nextFrameNanos)
+                    return;
+                any = true;
+                earliestSample = Math.min(earliestSample, track.earliest());
+            }
+            if (!any)
+                return;
+
+            // Nothing to interpolate before the earliest sample, after a pause of every sensor
+            if (earliestSample > nextFrameNanos + outputPeriodNanos)
+                nextFrameNanos = alignToGrid(earliestSample);
+
+            for (int device = 0; device < tracks.length; device++) {
+                Track track = tracks[device];
+                if (isActive(track))
+                    track.interpolate(nextFrameNanos, device, frame, output);
+            }
+            frame++;
+            nextFrameNanos += outputPeriodNanos;
+        }
+    }
+
+    private boolean isActive(Track track) {
+        return track != null && track.size > 0 && track.latest() >= newestSampleNanos - maxLatencyNanos;
+    }
+
+    private long alignToGrid(long timeNanos) {
+        long frameNanos = timeNanos - Math.floorMod(timeNanos, outputPeriodNanos);
+        return frameNanos < timeNanos ? frameNanos + outputPeriodNanos : frameNanos;
+    }
+
+    /**
+     * The most recent samples of one sensor.
+     */
+    private static class Track {
+        final long[] time = new long[TRACK_SIZE];
+        final float[] values = new float[TRACK_SIZE * 6];
+        int head = 0;
+        int size = 0;
+
+        void append(long sampleTimeNanos, byte[] packet) {
+            int slot = (head + size) % TRACK_SIZE;
+            if (size == TRACK_SIZE) {
+                head = (head + 1) % TRACK_SIZE;
+            } else {
+                size++;
+            }
+            time[slot] = sampleTimeNanos;
+            for (int axis = 0; axis < 6; axis++) {
+                values[slot * 6 + axis] = MotionSampleBuffer.readFloat(packet, 1 + 4 * axis);
+            }
+        }
+
+        long earliest() {
+            return time[head];
+        }
+
+        long latest() {
+            return time[(head + size - 1) % TRACK_SIZE];
+        }
+
+        void interpolate(long frameNanos, int device, int frame, MotionSampleBuffer output) {
+            if (frameNanos < earliest())
+                return;
+
+            for (int i = 0; i < size; i++) {
+                int after = (head + i) % TRACK_SIZE;
+                if (time[after] < frameNanos)
+                    continue;
+
+                // A sample right on the frame time is taken as is, even if it is the latest one
+                int before = time[after] == frameNanos ? after : (head + i - 1) % TRACK_SIZE;
+                float weight = before == after ? 0
+                        : (float) ((frameNanos - time[before]) / (double) (time[after] - time[before]));
+                output.append(device, frame, frameNanos, frameNanos,
+                        lerp(before, after, 0, weight), lerp(before, after, 1, weight), lerp(before, after, 2, weight),
+                        lerp(before, after, 3, weight), lerp(before, after, 4, weight), lerp(before, after, 5, weight));
+                return;
+            }
+        }
+
+        private float lerp(int before, int after, int axis, float weight) {
+            float from = values[before * 6 + axis];
+            return from + (values[after * 6 + axis] - from) * weight;
+        }
+    }
+}
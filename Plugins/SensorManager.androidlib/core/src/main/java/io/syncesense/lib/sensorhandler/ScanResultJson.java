@@ -0,0 +1,31 @@
+package io.syncsense.lib.sensorhandler;
+
+/**
+ * Written by hand with JsonWriter, as it is sent for every scan result.
+ */
+public class ScanResultJson {
+
+    public int rssi;
+    public String name;
+    public String address;
+    public int handle;
+
+    public ScanResultJson() {
+    }
+
+    public ScanResultJson(int rssi, String name, String address, int handle) {
+        this.rssi = rssi;
+        this.name = name;
+        this.address = address;
+        this.handle = handle;
+    }
+
+    public static String buildJson(String name, String address, int rssi, int handle) {
+        return JsonWriter.beginObject()
+                .field("rssi", rssi)
+                .field("name", name)
+                .field("address", address)
+                .field("handle", handle)
+                .endObject();
+    }
+}
@@ -0,0 +1,32 @@
+package io.syncsense.lib.sensorhandler;
+
+/**
+ * Notification state of one device, whatever transport it is reached through.
+ */
+public class SensorChannel {
+
+    private static final int NOTIFICATION_QUEUE_SIZE = 1024;
+
+    public final String address;
+    public final int deviceIndex;
+    public final String name;
+
+    /**
+     * The address and name as json values, written once for every OnDataReceived event of the channel.
+     */
+    public final String quotedAddress;
+    public final String quotedName;
+
+    public final NotificationQueue notifications = new NotificationQueue(NOTIFICATION_QUEUE_SIZE);
+    public final DeliveryBuffer delivery = new DeliveryBuffer(DeliveryBuffer.DEFAULT_CAPACITY);
+    public final LinkMetrics metrics = new LinkMetrics(NotificationPipeline.MAX_CHARACTERISTICS);
+    public final SensorClockModel clock = new SensorClockModel(0);
+
+    public SensorChannel(String address, int deviceIndex, String name) {
+        this.address = address;
+        this.deviceIndex = deviceIndex;
+        this.name = name;
+        this.quotedAddress = address != null ? JsonWriter.quote(address) : null;
+        this.quotedName = name != null ? JsonWriter.quote(name) : null;
+    }
+}
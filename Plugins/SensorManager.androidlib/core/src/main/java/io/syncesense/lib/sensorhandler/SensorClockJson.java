@@ -0,0 +1,33 @@
+package io.syncsense.lib.sensorhandler;
+
+import static io.syncsense.lib.sensorhandler.JsonUtils.GSON;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SensorClockJson {
+
+    public String deviceAddress;
+    public long samples;
+    public boolean converged;
+
+    public double rateHz;
+    public double periodMillis;
+    public double driftPpm;
+
+    public double latencyMeanMillis;
+    public double latencyJitterMillis;
+
+    public SensorClockJson() {
+    }
+
+    public static class ListJson {
+        public List<SensorClockJson> devices = new ArrayList<>();
+    }
+
+    public static String buildJson(List<SensorClockJson> clocks) {
+        ListJson list = new ListJson();
+        list.devices = clocks;
+        return GSON.toJson(list);
+    }
+}
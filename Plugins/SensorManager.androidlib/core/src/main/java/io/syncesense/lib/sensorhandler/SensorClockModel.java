@@ -0,0 +1,205 @@
+package io.syncsense.lib.sensorhandler;
+
+/**
+ * Estimates when a sensor actually took each motion sample, from the rolling packet index and the native receive
+ * timestamps.
+ *
+ * The sensor samples at a steady rate, so the sample time is linear in the unwrapped packet index:
+ * <pre>
+ *  sampleTime(n) = offset + n * period
+ * </pre>
+ * The period, which includes the drift of the sensor clock against the phone clock, is the least squares slope of the
+ * receive timestamps over a sliding window. Receive timestamps are late by a variable transport latency (connection
+ * interval, retransmissions, batching in the stack) but never early, so the offset follows the lower envelope of the
+ * window: the packets that arrived fastest. Sample times of different sensors are therefore comparable well below the
+ * connection interval.
+ *
+ * Updated from the dispatch thread only, read from any thread.
+ */
+public class SensorClockModel {
+
+    public static final int WINDOW_SIZE = 2048;
+
+    private static final int INDEX_MODULO = 256;
+    private static final int MIN_FIT_SAMPLES = 32;
+    private static final int REFIT_INTERVAL = 16;
+
+    /**
+     * Fitted periods further than this from the nominal period are rejected as nonsense.
+     */
+    private static final double MAX_RELATIVE_DRIFT = 0.05;
+
+    private final long[] windowSample = new long[WINDOW_SIZE];
+    private final long[] windowArrival = new long[WINDOW_SIZE];
+    private int windowHead = 0;
+    private int windowSize = 0;
+    private int samplesSinceFit = 0;
+
+    private double nominalPeriodNanos;
+
+    private boolean started = false;
+    private int lastIndex;
+    private long lastSample;
+    private long lastArrivalNanos;
+
+    private boolean converged = false;
+    private double periodNanos;
+    private double offsetNanos;
+    private double latencyMeanNanos;
+    private double latencyJitterNanos;
+    private long samples = 0;
+
+    /**
+     * @param nominalRateHz the rate the sensor is configured for, or 0 if unknown
+     */
+    public SensorClockModel(float nominalRateHz) {
+        setNominalRate(nominalRateHz);
+    }
+
+    public synchronized void setNominalRate(float nominalRateHz) {
+        nominalPeriodNanos = nominalRateHz > 0 ? 1e9 / nominalRateHz : 0;
+        if (!converged)
+            periodNanos = nominalPeriodNanos;
+    }
+
+    /**
+     * Adds a motion packet.
+     *
+     * @param rollingIndex   the 8 bit packet index
+     * @param arrivalNanos   the native receive timestamp
+     * @return the estimated sample time, or the receive timestamp until enough packets were received to fit the clock
+     */
+    public synchronized long onSample(int rollingIndex, long arrivalNanos) {
+        rollingIndex &= INDEX_MODULO - 1;
+        samples++;
+
+        if (!started) {
+            started = true;
+            lastIndex = rollingIndex;
+            lastSample = rollingIndex;
+            lastArrivalNanos = arrivalNanos;
+            addToWindow(lastSample, arrivalNanos);
+            return arrivalNanos;
+        }
+
+        long step = (rollingIndex - lastIndex + INDEX_MODULO) % INDEX_MODULO;
+        if (periodNanos > 0) {
+            // The elapsed time tells how many whole index cycles were lost, or that the packet is late
+            double elapsedSteps = (arrivalNanos - lastArrivalNanos) / periodNanos;
+            step += INDEX_MODULO * Math.round((elapsedSteps - step) / INDEX_MODULO);
+        } else if (step > INDEX_MODULO / 2) {
+            step -= INDEX_MODULO;
+        }
+
+        if (step <= 0) {
+            // Duplicate or late packet: place it, but keep it out of the fit
+            return converged ? getSampleTimeNanos(lastSample + step) : arrivalNanos;
+        }
+
+        lastIndex = rollingIndex;
+        lastSample += step;
+        lastArrivalNanos = arrivalNanos;
+        addToWindow(lastSample, arrivalNanos);
+
+        if (++samplesSinceFit >= REFIT_INTERVAL && windowSize >= MIN_FIT_SAMPLES) {
+            samplesSinceFit = 0;
+            fit();
+        }
+        return converged ? getSampleTimeNanos(lastSample) : arrivalNanos;
+    }
+
+    /**
+     * @return the estimated time of an unwrapped sample number
+     */
+    public synchronized long getSampleTimeNanos(long sample) {
+        return (long) (offsetNanos + sample * periodNanos);
+    }
+
+    public synchronized boolean isConverged() {
+        return converged;
+    }
+
+    /**
+     * Forgets everything, for a new connection of the sensor.
+     */
+    public synchronized void reset() {
+        started = false;
+        converged = false;
+        periodNanos = nominalPeriodNanos;
+        windowHead = 0;
+        windowSize = 0;
+        samplesSinceFit = 0;
+        samples = 0;
+    }
+
+    public synchronized SensorClockJson snapshot(String deviceAddress) {
+        SensorClockJson out = new SensorClockJson();
+        out.deviceAddress = deviceAddress;
+        out.samples = samples;
+        out.converged = converged;
+        if (periodNanos > 0) {
+            out.periodMillis = periodNanos / 1e6;
+            out.rateHz = 1e9 / periodNanos;
+        }
+        if (converged && nominalPeriodNanos > 0)
+            out.driftPpm = (periodNanos / nominalPeriodNanos - 1) * 1e6;
+        out.latencyMeanMillis = latencyMeanNanos / 1e6;
+        out.latencyJitterMillis = latencyJitterNanos / 1e6;
+        return out;
+    }
+
+    private void addToWindow(long sample, long arrivalNanos) {
+        int slot = (windowHead + windowSize) % WINDOW_SIZE;
+        if (windowSize == WINDOW_SIZE) {
+            windowHead = (windowHead + 1) % WINDOW_SIZE;
+        } else {
+            windowSize++;
+        }
+        windowSample[slot] = sample;
+        windowArrival[slot] = arrivalNanos;
+    }
+
+    private void fit() {
+        // Relative to the oldest point of the window, so doubles keep sub-nanosecond precision
+        long baseSample = windowSample[windowHead];
+        long baseArrival = windowArrival[windowHead];
+
+        double sumN = 0, sumT = 0, sumNN = 0, sumNT = 0;
+        for (int i = 0; i < windowSize; i++) {
+            int slot = (windowHead + i) % WINDOW_SIZE;
+            double n = windowSample[slot] - baseSample;
+            double t = windowArrival[slot] - baseArrival;
+            sumN += n;
+            sumT += t;
+            sumNN += n * n;
+            sumNT += n * t;
+        }
+        double denominator = windowSize * sumNN - sumN * sumN;
+        if (denominator <= 0)
+            return;
+
+        double slope = (windowSize * sumNT - sumN * sumT) / denominator;
+        if (slope <= 0)
+            return;
+        if (nominalPeriodNanos > 0 && Math.abs(slope / nominalPeriodNanos - 1) > MAX_RELATIVE_DRIFT)
+            return;
+
+        // Lower envelope: the offset of the fastest packet, every other one arrived later than its sample time
+        double minResidual = Double.MAX_VALUE;
+        double sumResidual = 0, sumResidualSquares = 0;
+        for (int i = 0; i < windowSize; i++) {
+            int slot = (windowHead + i) % WINDOW_SIZE;
+            double residual = (windowArrival[slot] - baseArrival) - (windowSample[slot] - baseSample) * slope;
+            minResidual = Math.min(minResidual, residual);
+            sumResidual += residual;
+            sumResidualSquares += residual * residual;
+        }
+
+        periodNanos = slope;
+        offsetNanos = baseArrival + minResidual - baseSample * slope;
+        double meanResidual = sumResidual / windowSize;
+        latencyMeanNanos = meanResidual - minResidual;
+        latencyJitterNanos = Math.sqrt(Math.max(0, sumResidualSquares / windowSize - meanResidual * meanResidual));
+        converged = true;
+    }
+}
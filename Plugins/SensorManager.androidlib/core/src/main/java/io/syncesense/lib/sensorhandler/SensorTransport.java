@@ -0,0 +1,44 @@
+package io.syncsense.lib.sensorhandler;
+
+import java.util.UUID;
+
+/**
+ * A source of sensor connections and notifications that does not depend on Android, like SimulatedSensorFleet.
+ *
+ * Listener callbacks may arrive on any thread.
+ */
+public interface SensorTransport {
+
+    /**
+     * Same values as BluetoothProfile.STATE_*.
+     */
+    int STATE_DISCONNECTED = 0;
+    int STATE_CONNECTED = 2;
+
+    interface Listener {
+
+        void onConnectionStateChange(String deviceAddress, String deviceName, int status, int newState);
+
+        void onNotification(String deviceAddress, UUID characteristicUuid, long timestampNanos, byte[] value);
+    }
+
+    void setListener(Listener listener);
+
+    /**
+     * @return the addresses of the devices this transport can connect to
+     */
+    String[] getDeviceAddresses();
+
+    boolean connect(String deviceAddress);
+
+    boolean disconnect(String deviceAddress);
+
+    boolean subscribe(String deviceAddress, UUID serviceUuid, UUID characteristicUuid);
+
+    boolean unsubscribe(String deviceAddress, UUID serviceUuid, UUID characteristicUuid);
+
+    /**
+     * Disconnects every device and stops the transport.
+     */
+    void release();
+}
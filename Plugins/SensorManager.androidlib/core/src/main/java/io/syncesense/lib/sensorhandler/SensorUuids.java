@@ -0,0 +1,25 @@
+package io.syncsense.lib.sensorhandler;
+
+import java.util.UUID;
+
+/**
+ * Services and characteristics exposed by the Syncsense sensors. Mirrors the constants of the Unity side.
+ */
+public final class SensorUuids {
+
+    public static final UUID MOTION_SERVICE_UUID = UUID.fromString("49740000-0f51-43fc-be01-5ce169d39b47");
+    public static final UUID ACCL_GYRO_CHARACTERISTIC_UUID = UUID.fromString("49740004-0f51-43fc-be01-5ce169d39b47");
+
+    public static final UUID BATTERY_SERVICE_UUID = UUID.fromString("0000180f-0000-1000-8000-00805f9b34fb");
+    public static final UUID BATTERY_CHARACTERISTIC_UUID = UUID.fromString("00002a19-0000-1000-8000-00805f9b34fb");
+
+    public static final UUID LED_SERVICE_UUID = UUID.fromString("49730000-0f51-43fc-be01-5ce169d39b47");
+    public static final UUID LED1_CHARACTERISTIC_UUID = UUID.fromString("49730001-0f51-43fc-be01-5ce169d39b47");
+    public static final UUID LED2_CHARACTERISTIC_UUID = UUID.fromString("49730002-0f51-43fc-be01-5ce169d39b47");
+
+    public static final UUID DEVICE_INFORMATION_SERVICE_UUID = UUID.fromString("0000180a-0000-1000-8000-00805f9b34fb");
+    public static final UUID FIRMWARE_REVISION_CHARACTERISTIC_UUID = UUID.fromString("00002a26-0000-1000-8000-00805f9b34fb");
+
+    private SensorUuids() {
+    }
+}
@@ -0,0 +1,356 @@
+package io.syncsense.lib.sensorhandler;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Records raw notifications into a compact, chunked binary file from a background thread.
+ *
+ * File layout, little-endian:
+ * <pre>
+ *  header : int32 magic "SSRC", uint16 version, uint16 flags, int64 start elapsedRealtimeNanos, int64 start wall clock millis
+ *  chunk  : uint32 raw length, uint32 stored length, uint32 entry count, uint32 crc32 of the raw bytes, stored bytes
+ * </pre>
+ * With FLAG_COMPRESSED the stored bytes of every chunk are deflated. The raw bytes of a chunk are a sequence of entries,
+ * each starting with its uint8 type:
+ * <pre>
+ *  ENTRY_NOTIFICATION   : a NotificationRingBuffer frame (12 byte header and payload)
+ *  ENTRY_DEVICE         : uint8 device index, uint16 length + utf8 address, uint16 length + utf8 name
+ *  ENTRY_CHARACTERISTIC : uint8 characteristic id, uint16 length + utf8 uuid
+ * </pre>
+ * Every chunk is self-contained and checksummed, and chunks are forced to disk as they are written, so a crash
+ * loses at most the chunk being filled.
+ *
+ * record is called by a single producer thread and only copies into a preallocated chunk. If the writer falls
+ * behind and no chunk is free, entries are dropped and counted rather than blocking the producer.
+ */
+public class SessionRecorder {
+
+    public static final int MAGIC = 0x43525353;
+    public static final int VERSION = 1;
+    public static final int FLAG_COMPRESSED = 1;
+
+    public static final int FILE_HEADER_SIZE = 24;
+    public static final int CHUNK_HEADER_SIZE = 16;
+
+    public static final int ENTRY_NOTIFICATION = 0;
+    public static final int ENTRY_DEVICE = 1;
+    public static final int ENTRY_CHARACTERISTIC = 2;
+
+    public static final int DEFAULT_FLUSH_INTERVAL_MILLIS = 1000;
+
+    /**
+     * Largest raw length of a chunk, and of its stored bytes when not compressed.
+     */
+    static final int CHUNK_SIZE = 64 * 1024;
+    /**
+     * Largest stored length of a compressed chunk: deflate can grow incompressible data a little.
+     */
+    static final int MAX_COMPRESSED_CHUNK_SIZE = CHUNK_SIZE + CHUNK_SIZE / 8 + 64;
+    private static final int CHUNK_COUNT = 4;
+    private static final int MAX_IDS = 256;
+
+    /**
+     * Resolves the ids found in notification frames, written once per recording the first time an id is seen.
+     */
+    public interface Dictionary {
+        String getDeviceAddress(int deviceIndex);
+
+        String getDeviceName(int deviceIndex);
+
+        String getCharacteristicUuid(int characteristicId);
+    }
+
+    private static class Chunk {
+        final byte[] data = new byte[CHUNK_SIZE];
+        int length = 0;
+        int entries = 0;
+    }
+
+    private final Dictionary dictionary;
+    private final boolean compress;
+    private final int flushIntervalMillis;
+
+    private final FileOutputStream output;
+    private final FileChannel channel;
+    private final Thread writerThread;
+
+    /**
+     * Queued after the last chunk to stop the writer thread.
+     */
+    private static final Chunk STOP = new Chunk();
+
+    private final ArrayBlockingQueue<Chunk> freeChunks = new ArrayBlockingQueue<>(CHUNK_COUNT);
+    private final ArrayBlockingQueue<Chunk> fullChunks = new ArrayBlockingQueue<>(CHUNK_COUNT + 1);
+    private Chunk activeChunk;
+
+    private final boolean[] devicesWritten = new boolean[MAX_IDS];
+    private final boolean[] characteristicsWritten = new boolean[MAX_IDS];
+
+    private volatile boolean running = true;
+    private volatile IOException writeError = null;
+    private long droppedEntries = 0;
+    private long recordedNotifications = 0;
+
+    public SessionRecorder(String filePath, boolean compress, Dictionary dictionary,
+                           long startElapsedNanos, long startWallClockMillis) throws IOException {
+        this(filePath, compress, DEFAULT_FLUSH_INTERVAL_MILLIS, dictionary, startElapsedNanos, startWallClockMillis);
+    }
+
+    public SessionRecorder(String filePath, boolean compress, int flushIntervalMillis, Dictionary dictionary,
+                           long startElapsedNanos, long startWallClockMillis) throws IOException {
+        this.dictionary = dictionary;
+        this.compress = compress;
+        this.flushIntervalMillis = flushIntervalMillis;
+
+        output = new FileOutputStream(filePath);
+        channel = output.getChannel();
+
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC);
+        header.putShort((short) VERSION);
+        header.putShort((short) (compress ? FLAG_COMPRESSED : 0));
+        header.putLong(startElapsedNanos);
+        header.putLong(startWallClockMillis);
+        header.flip();
+        writeFully(header);
+        channel.force(false);
+
+        for (int i = 0; i < CHUNK_COUNT - 1; i++) {
+            freeChunks.add(new Chunk());
+        }
+        activeChunk = new Chunk();
+
+        writerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeLoop();
+            }
+        }, "SyncsenseRecorder");
+        writerThread.start();
+    }
+
+    /**
+     * Appends a notification. Never blocks on I/O.
+     */
+    public synchronized void record(int deviceIndex, int characteristicId, long timestampNanos, byte[] payload, int length) {
+        if (!running)
+            return;
+
+        if (!devicesWritten[deviceIndex]) {
+            if (!appendDevice(deviceIndex))
+                return;
+            devicesWritten[deviceIndex] = true;
+        }
+        if (!characteristicsWritten[characteristicId]) {
+            if (!appendCharacteristic(characteristicId))
+                return;
+            characteristicsWritten[characteristicId] = true;
+        }
+
+        Chunk chunk = reserve(1 + NotificationRingBuffer.HEADER_SIZE + length);
+        if (chunk == null)
+            return;
+
+        putByte(chunk, ENTRY_NOTIFICATION);
+        putByte(chunk, deviceIndex);
+        putByte(chunk, characteristicId);
+        putShort(chunk, length);
+        putLong(chunk, timestampNanos);
+        System.arraycopy(payload, 0, chunk.data, chunk.length, length);
+        chunk.length += length;
+        chunk.entries++;
+        recordedNotifications++;
+    }
+
+    /**
+     * Writes every pending entry, closes the file and stops the writer thread.
+     *
+     * @throws IOException the first error the writer thread ran into, if any
+     */
+    public void stop() throws IOException {
+        synchronized (this) {
+            if (!running)
+                return;
+            running = false;
+
+            if (activeChunk != null && activeChunk.entries > 0) {
+                fullChunks.add(activeChunk);
+                activeChunk = null;
+            }
+            fullChunks.add(STOP);
+        }
+        // Not interrupted: an interrupt during a write would close the channel
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        output.close();
+
+        if (writeError != null)
+            throw writeError;
+    }
+
+    public synchronized long getDroppedEntries() {
+        return droppedEntries;
+    }
+
+    public synchronized long getRecordedNotifications() {
+        return recordedNotifications;
+    }
+
+    private boolean appendDevice(int deviceIndex) {
+        byte[] address = utf8(dictionary.getDeviceAddress(deviceIndex));
+        byte[] name = utf8(dictionary.getDeviceName(deviceIndex));
+        Chunk chunk = reserve(1 + 1 + 2 + address.length + 2 + name.length);
+        if (chunk == null)
+            return false;
+
+        putByte(chunk, ENTRY_DEVICE);
+        putByte(chunk, deviceIndex);
+        putBytes(chunk, address);
+        putBytes(chunk, name);
+        chunk.entries++;
+        return true;
+    }
+
+    private boolean appendCharacteristic(int characteristicId) {
+        byte[] uuid = utf8(dictionary.getCharacteristicUuid(characteristicId));
+        Chunk chunk = reserve(1 + 1 + 2 + uuid.length);
+        if (chunk == null)
+            return false;
+
+        putByte(chunk, ENTRY_CHARACTERISTIC);
+        putByte(chunk, characteristicId);
+        putBytes(chunk, uuid);
+        chunk.entries++;
+        return true;
+    }
+
+    /**
+     * @return a chunk with room for the entry, or null if the entry has to be dropped
+     */
+    private Chunk reserve(int size) {
+        if (activeChunk != null && activeChunk.length + size > CHUNK_SIZE) {
+            fullChunks.add(activeChunk);
+            activeChunk = null;
+        }
+        if (activeChunk == null)
+            activeChunk = freeChunks.poll();
+        if (activeChunk == null || size > CHUNK_SIZE) {
+            droppedEntries++;
+            return null;
+        }
+        return activeChunk;
+    }
+
+    private void writeLoop() {
+        Deflater deflater = compress ? new Deflater(Deflater.BEST_SPEED) : null;
+        byte[] compressed = compress ? new byte[MAX_COMPRESSED_CHUNK_SIZE] : null;
+        ByteBuffer header = ByteBuffer.allocate(CHUNK_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        CRC32 crc = new CRC32();
+
+        while (true) {
+            Chunk chunk;
+            try {
+                chunk = fullChunks.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                continue;
+            }
+
+            if (chunk == STOP)
+                break;
+
+            if (chunk == null) {
+                // Periodic flush of the partially filled chunk
+                synchronized (this) {
+                    if (activeChunk != null && activeChunk.entries > 0) {
+                        chunk = activeChunk;
+                        activeChunk = freeChunks.poll();
+                    }
+                }
+                if (chunk == null)
+                    continue;
+            }
+
+            try {
+                if (writeError == null)
+                    writeChunk(chunk, header, crc, deflater, compressed);
+            } catch (IOException e) {
+                writeError = e;
+            }
+            chunk.length = 0;
+            chunk.entries = 0;
+            freeChunks.add(chunk);
+        }
+
+        if (deflater != null)
+            deflater.end();
+    }
+
+    private void writeChunk(Chunk chunk, ByteBuffer header, CRC32 crc, Deflater deflater, byte[] compressed) throws IOException {
+        crc.reset();
+        crc.update(chunk.data, 0, chunk.length);
+
+        byte[] stored = chunk.data;
+        int storedLength = chunk.length;
+        if (deflater != null) {
+            deflater.reset();
+            deflater.setInput(chunk.data, 0, chunk.length);
+            deflater.finish();
+            storedLength = deflater.deflate(compressed);
+            stored = compressed;
+        }
+
+        header.clear();
+        header.putInt(chunk.length);
+        header.putInt(storedLength);
+        header.putInt(chunk.entries);
+        header.putInt((int) crc.getValue());
+        header.flip();
+        writeFully(header);
+        writeFully(ByteBuffer.wrap(stored, 0, storedLength));
+        channel.force(false);
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static byte[] utf8(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : new byte[0];
+    }
+
+    private static void putByte(Chunk chunk, int value) {
+        chunk.data[chunk.length++] = (byte) value;
+    }
+
+    private static void putShort(Chunk chunk, int value) {
+        putByte(chunk, value);
+        putByte(chunk, value >>> 8);
+    }
+
+    private static void putLong(Chunk chunk, long value) {
+        for (int i = 0; i < 8; i++) {
+            putByte(chunk, (int) (value >>> (8 * i)));
+        }
+    }
+
+    private static void putBytes(Chunk chunk, byte[] value) {
+        putShort(chunk, value.length);
+        System.arraycopy(value, 0, chunk.data, chunk.length, value.length);
+        chunk.length += value.length;
+    }
+}
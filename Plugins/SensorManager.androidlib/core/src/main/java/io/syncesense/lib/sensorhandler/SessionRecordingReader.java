@@ -0,0 +1,168 @@
+package io.syncsense.lib.sensorhandler;
+
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads files written by SessionRecorder, entry by entry.
+ *
+ * A truncated or corrupted trailing chunk, as left behind by a crash, ends the recording without an error.
+ */
+public class SessionRecordingReader {
+
+    public interface Listener {
+        void onDevice(int deviceIndex, String deviceAddress, String deviceName);
+
+        void onCharacteristic(int characteristicId, String characteristicUuid);
+
+        /**
+         * The payload buffer is reused, only the first length bytes belong to this notification.
+         */
+        void onNotification(int deviceIndex, int characteristicId, long timestampNanos, byte[] payload, int length);
+    }
+
+    private final String filePath;
+
+    private long startElapsedNanos;
+    private long startWallClockMillis;
+    private boolean compressed;
+
+    public SessionRecordingReader(String filePath) {
+        this.filePath = filePath;
+    }
+
+    public long getStartElapsedNanos() {
+        return startElapsedNanos;
+    }
+
+    public long getStartWallClockMillis() {
+        return startWallClockMillis;
+    }
+
+    /**
+     * Reads the whole recording, calling the listener for every entry in file order.
+     *
+     * @return the number of notifications read
+     */
+    public long read(Listener listener) throws IOException {
+        try (FileInputStream input = new FileInputStream(filePath)) {
+            FileChannel channel = input.getChannel();
+
+            ByteBuffer header = ByteBuffer.allocate(SessionRecorder.FILE_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            if (!readFully(channel, header) || header.getInt() != SessionRecorder.MAGIC)
+                throw new IOException("Not a Syncsense recording: " + filePath);
+            int version = header.getShort() & 0xFFFF;
+            if (version != SessionRecorder.VERSION)
+                throw new IOException("Unsupported recording version " + version);
+            compressed = (header.getShort() & SessionRecorder.FLAG_COMPRESSED) != 0;
+            startElapsedNanos = header.getLong();
+            startWallClockMillis = header.getLong();
+
+            ByteBuffer chunkHeader = ByteBuffer.allocate(SessionRecorder.CHUNK_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            Inflater inflater = new Inflater();
+            CRC32 crc = new CRC32();
+            byte[] payload = new byte[64];
+            long notifications = 0;
+
+            try {
+                while (readFully(channel, chunkHeader)) {
+                    int rawLength = chunkHeader.getInt();
+                    int storedLength = chunkHeader.getInt();
+                    chunkHeader.getInt();
+                    int checksum = chunkHeader.getInt();
+
+                    // A corrupted header must not size the buffers below
+                    if (rawLength < 0 || rawLength > SessionRecorder.CHUNK_SIZE)
+                        break;
+                    if (compressed ? storedLength < 0 || storedLength > SessionRecorder.MAX_COMPRESSED_CHUNK_SIZE
+                            : storedLength != rawLength)
+                        break;
+
+                    ByteBuffer stored = ByteBuffer.allocate(storedLength);
+                    if (!readFully(channel, stored))
+                        break;
+
+                    byte[] raw = stored.array();
+                    if (compressed) {
+                        raw = new byte[rawLength];
+                        inflater.reset();
+                        inflater.setInput(stored.array(), 0, storedLength);
+                        if (inflater.inflate(raw) != rawLength)
+                            break;
+                    }
+
+                    crc.reset();
+                    crc.update(raw, 0, rawLength);
+                    if ((int) crc.getValue() != checksum)
+                        break;
+
+                    ByteBuffer entries = ByteBuffer.wrap(raw, 0, rawLength).order(ByteOrder.LITTLE_ENDIAN);
+                    while (entries.hasRemaining()) {
+                        int type = entries.get() & 0xFF;
+                        switch (type) {
+                            case SessionRecorder.ENTRY_NOTIFICATION: {
+                                int deviceIndex = entries.get() & 0xFF;
+                                int characteristicId = entries.get() & 0xFF;
+                                int length = entries.getShort() & 0xFFFF;
+                                long timestampNanos = entries.getLong();
+                                if (payload.length < length)
+                                    payload = new byte[length];
+                                entries.get(payload, 0, length);
+                                listener.onNotification(deviceIndex, characteristicId, timestampNanos, payload, length);
+                                notifications++;
+                                break;
+                            }
+                            case SessionRecorder.ENTRY_DEVICE: {
+                                int deviceIndex = entries.get() & 0xFF;
+                                String address = readString(entries);
+                                String name = readString(entries);
+                                listener.onDevice(deviceIndex, address, name.isEmpty() ? null : name);
+                                break;
+                            }
+                            case SessionRecorder.ENTRY_CHARACTERISTIC: {
+                                int characteristicId = entries.get() & 0xFF;
+                                listener.onCharacteristic(characteristicId, readString(entries));
+                                break;
+                            }
+                            default:
+                                throw new IOException("Unknown entry type " + type);
+                        }
+                    }
+                }
+            } catch (DataFormatException | EOFException e) {
+                // Corrupted trailing chunk
+            } finally {
+                inflater.end();
+            }
+            return notifications;
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getShort() & 0xFFFF;
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    /**
+     * @return false if the end of the file was reached before the buffer was filled
+     */
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0)
+                return false;
+        }
+        buffer.flip();
+        return true;
+    }
+}
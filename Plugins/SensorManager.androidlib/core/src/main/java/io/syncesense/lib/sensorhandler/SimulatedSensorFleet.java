@@ -0,0 +1,364 @@
+package io.syncsense.lib.sensorhandler;
+
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Emulates a fleet of Cadence sensors, without any Bluetooth hardware.
+ *
+ * Every connected sensor notifies motion packets at the configured rate, in the format decoded by MotionSampleBuffer,
+ * and its battery level once per second. Packets can be lost (the rolling index still advances, like over the air),
+ * delayed by a random jitter, and sensors can drop their connection at random, reporting GATT_CONN_TIMEOUT.
+ *
+ * All sensors are driven by a single "SyncsenseSimulator" thread. Randomness comes from a seeded generator so that a
+ * load test can be repeated.
+ */
+public class SimulatedSensorFleet implements SensorTransport {
+
+    public static final String DEVICE_NAME = "Cadence_Sensor";
+
+    /**
+     * Same value as BluetoothGatt's GATT_CONN_TIMEOUT status, reported for simulated link losses.
+     */
+    public static final int STATUS_CONNECTION_TIMEOUT = 8;
+
+    private static final long BATTERY_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long MAX_IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final int STATE_CONNECTING = 1;
+
+    private final SimulatedSensor[] sensors;
+    private final TimeSource time;
+    private final Random random;
+
+    private volatile Listener listener;
+    private volatile Thread thread;
+
+    private volatile long motionPeriodNanos;
+    private volatile float packetLoss = 0;
+    private volatile long jitterNanos = 0;
+    private volatile float disconnectsPerMinute = 0;
+    private volatile long connectDelayNanos = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final AtomicLong sentPackets = new AtomicLong();
+    private final AtomicLong lostPackets = new AtomicLong();
+
+    public SimulatedSensorFleet(int sensorCount, int motionRateHz, TimeSource time, long seed) {
+        this.time = time;
+        this.random = new Random(seed);
+        this.sensors = new SimulatedSensor[sensorCount];
+        for (int i = 0; i < sensorCount; i++) {
+            // Locally administered addresses, so they never collide with a real sensor
+            sensors[i] = new SimulatedSensor(String.format("5E:00:00:00:%02X:%02X", (i >> 8) & 0xFF, i & 0xFF), i);
+        }
+        setMotionRate(motionRateHz);
+    }
+
+    public void setMotionRate(int motionRateHz) {
+        motionPeriodNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, motionRateHz);
+    }
+
+    /**
+     * @param packetLoss probability for every packet to be lost, between 0 and 1
+     */
+    public void setPacketLoss(float packetLoss) {
+        this.packetLoss = packetLoss;
+    }
+
+    /**
+     * @param jitterMicros maximum random delay of every packet after its nominal time
+     */
+    public void setJitter(int jitterMicros) {
+        jitterNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(0, jitterMicros));
+    }
+
+    /**
+     * @param disconnectsPerMinute average number of link losses per connected sensor and minute, 0 for none
+     */
+    public void setDisconnectRate(float disconnectsPerMinute) {
+        this.disconnectsPerMinute = disconnectsPerMinute;
+    }
+
+    public void setConnectDelay(int connectDelayMillis) {
+        connectDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, connectDelayMillis));
+    }
+
+    /**
+     * @return the number of packets notified so far
+     */
+    public long getSentPackets() {
+        return sentPackets.get();
+    }
+
+    /**
+     * @return the number of packets lost on purpose so far
+     */
+    public long getLostPackets() {
+        return lostPackets.get();
+    }
+
+    @Override
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public String[] getDeviceAddresses() {
+        String[] addresses = new String[sensors.length];
+        for (int i = 0; i < sensors.length; i++) {
+            addresses[i] = sensors[i].address;
+        }
+        return addresses;
+    }
+
+    @Override
+    public boolean connect(String deviceAddress) {
+        SimulatedSensor sensor = find(deviceAddress);
+        if (sensor == null)
+            return false;
+
+        synchronized (sensor) {
+            if (sensor.state != STATE_DISCONNECTED)
+                return false;
+            sensor.state = STATE_CONNECTING;
+            sensor.connectAtNanos = time.nowNanos() + connectDelayNanos;
+        }
+        start();
+        return true;
+    }
+
+    @Override
+    public boolean disconnect(String deviceAddress) {
+        SimulatedSensor sensor = find(deviceAddress);
+        if (sensor == null)
+            return false;
+
+        synchronized (sensor) {
+            if (sensor.state == STATE_DISCONNECTED)
+                return false;
+            disconnect(sensor, 0);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean subscribe(String deviceAddress, UUID serviceUuid, UUID characteristicUuid) {
+        return setSubscribed(deviceAddress, characteristicUuid, true);
+    }
+
+    @Override
+    public boolean unsubscribe(String deviceAddress, UUID serviceUuid, UUID characteristicUuid) {
+        return setSubscribed(deviceAddress, characteristicUuid, false);
+    }
+
+    @Override
+    public void release() {
+        for (SimulatedSensor sensor : sensors) {
+            synchronized (sensor) {
+                if (sensor.state != STATE_DISCONNECTED)
+                    disconnect(sensor, 0);
+            }
+        }
+
+        Thread current = thread;
+        thread = null;
+        if (current != null) {
+            LockSupport.unpark(current);
+            try {
+                current.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private synchronized void start() {
+        if (thread != null)
+            return;
+
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                simulate();
+            }
+        }, "SyncsenseSimulator");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void simulate() {
+        while (thread == Thread.currentThread()) {
+            long now = time.nowNanos();
+            long nextEventNanos = now + MAX_IDLE_NANOS;
+
+            for (SimulatedSensor sensor : sensors) {
+                synchronized (sensor) {
+                    nextEventNanos = Math.min(nextEventNanos, step(sensor, now));
+                }
+            }
+
+            long idleNanos = nextEventNanos - time.nowNanos();
+            if (idleNanos > 0)
+                LockSupport.parkNanos(idleNanos);
+        }
+    }
+
+    /**
+     * Advances a sensor up to now.
+     *
+     * @return when the sensor has something to do next
+     */
+    private long step(SimulatedSensor sensor, long now) {
+        if (sensor.state == STATE_CONNECTING && now >= sensor.connectAtNanos) {
+            sensor.state = STATE_CONNECTED;
+            sensor.nextMotionNanos = now;
+            sensor.nextBatteryNanos = now;
+            sensor.disconnectAtNanos = scheduleDisconnect(now);
+            notifyConnectionState(sensor, 0, STATE_CONNECTED);
+        }
+
+        if (sensor.state == STATE_CONNECTING)
+            return sensor.connectAtNanos;
+        if (sensor.state != STATE_CONNECTED)
+            return Long.MAX_VALUE;
+
+        if (now >= sensor.disconnectAtNanos) {
+            disconnect(sensor, STATUS_CONNECTION_TIMEOUT);
+            return Long.MAX_VALUE;
+        }
+
+        while (now >= sensor.nextMotionNanos + sensor.jitterNanos) {
+            sensor.sequence = (sensor.sequence + 1) & 0xFF;
+            sensor.nextMotionNanos += motionPeriodNanos;
+            if (sensor.motionSubscribed)
+                notifyMotion(sensor);
+            sensor.jitterNanos = jitterNanos > 0 ? (long) (random.nextDouble() * jitterNanos) : 0;
+        }
+
+        if (now >= sensor.nextBatteryNanos) {
+            sensor.nextBatteryNanos += BATTERY_INTERVAL_NANOS;
+            if (sensor.batterySubscribed) {
+                sensor.battery[0] = (byte) Math.max(0, 100 - (int) (sensor.elapsedSeconds++ / 60));
+                notify(sensor, SensorUuids.BATTERY_CHARACTERISTIC_UUID, sensor.battery);
+            }
+        }
+
+        return Math.min(sensor.nextMotionNanos + sensor.jitterNanos, Math.min(sensor.nextBatteryNanos, sensor.disconnectAtNanos));
+    }
+
+    private void notifyMotion(SimulatedSensor sensor) {
+        if (packetLoss > 0 && random.nextFloat() < packetLoss) {
+            lostPackets.incrementAndGet();
+            return;
+        }
+
+        // Walking at a cadence that differs a little between sensors
+        double t = sensor.nextMotionNanos / 1e9;
+        double phase = 2 * Math.PI * (1.5 + 0.05 * sensor.number) * t;
+        byte[] packet = sensor.motion;
+        packet[0] = (byte) sensor.sequence;
+        putFloat(packet, 1, (float) (0.1 * Math.cos(phase)));
+        putFloat(packet, 5, (float) (1.0 + 0.5 * Math.sin(phase)));
+        putFloat(packet, 9, (float) (0.2 * Math.sin(2 * phase)));
+        putFloat(packet, 13, (float) (120 * Math.cos(phase)));
+        putFloat(packet, 17, (float) (15 * Math.sin(phase)));
+        putFloat(packet, 21, (float) (30 * Math.sin(2 * phase)));
+        notify(sensor, SensorUuids.ACCL_GYRO_CHARACTERISTIC_UUID, packet);
+    }
+
+    private void notify(SimulatedSensor sensor, UUID characteristicUuid, byte[] value) {
+        Listener current = listener;
+        if (current != null)
+            current.onNotification(sensor.address, characteristicUuid, time.nowNanos(), value);
+        sentPackets.incrementAndGet();
+    }
+
+    private void disconnect(SimulatedSensor sensor, int status) {
+        sensor.state = STATE_DISCONNECTED;
+        sensor.motionSubscribed = false;
+        sensor.batterySubscribed = false;
+        notifyConnectionState(sensor, status, STATE_DISCONNECTED);
+    }
+
+    private void notifyConnectionState(SimulatedSensor sensor, int status, int newState) {
+        Listener current = listener;
+        if (current != null)
+            current.onConnectionStateChange(sensor.address, DEVICE_NAME, status, newState);
+    }
+
+    private long scheduleDisconnect(long now) {
+        float rate = disconnectsPerMinute;
+        if (rate <= 0)
+            return Long.MAX_VALUE;
+
+        // Exponentially distributed time to the next link loss
+        double minutes = -Math.log(1 - random.nextDouble()) / rate;
+        return now + (long) (minutes * TimeUnit.MINUTES.toNanos(1));
+    }
+
+    private boolean setSubscribed(String deviceAddress, UUID characteristicUuid, boolean subscribed) {
+        SimulatedSensor sensor = find(deviceAddress);
+        if (sensor == null)
+            return false;
+
+        synchronized (sensor) {
+            if (sensor.state != STATE_CONNECTED)
+                return false;
+
+            if (SensorUuids.ACCL_GYRO_CHARACTERISTIC_UUID.equals(characteristicUuid)) {
+                sensor.motionSubscribed = subscribed;
+            } else if (SensorUuids.BATTERY_CHARACTERISTIC_UUID.equals(characteristicUuid)) {
+                sensor.batterySubscribed = subscribed;
+            } else {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private SimulatedSensor find(String deviceAddress) {
+        for (SimulatedSensor sensor : sensors) {
+            if (sensor.address.equals(deviceAddress))
+                return sensor;
+        }
+        return null;
+    }
+
+    private static void putFloat(byte[] data, int offset, float value) {
+        int bits = Float.floatToIntBits(value);
+        data[offset] = (byte) bits;
+        data[offset + 1] = (byte) (bits >>> 8);
+        data[offset + 2] = (byte) (bits >>> 16);
+        data[offset + 3] = (byte) (bits >>> 24);
+    }
+
+    /**
+     * State of one simulated sensor, guarded by its own monitor.
+     */
+    private static class SimulatedSensor {
+        final String address;
+        final int number;
+        final byte[] motion = new byte[MotionSampleBuffer.PACKET_SIZE];
+        final byte[] battery = new byte[1];
+
+        int state = STATE_DISCONNECTED;
+        boolean motionSubscribed;
+        boolean batterySubscribed;
+        int sequence = 0;
+        long elapsedSeconds = 0;
+
+        long connectAtNanos;
+        long disconnectAtNanos;
+        long nextMotionNanos;
+        long nextBatteryNanos;
+        long jitterNanos;
+
+        SimulatedSensor(String address, int number) {
+            this.address = address;
+            this.number = number;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package io.syncsense.lib.sensorhandler;
+
+/**
+ * Monotonic clock of the notification timestamps. SystemClock.elapsedRealtimeNanos in the app.
+ */
+public interface TimeSource {
+
+    TimeSource NANO_TIME = new TimeSource() {
+        @Override
+        public long nowNanos() {
+            return System.nanoTime();
+        }
+    };
+
+    long nowNanos();
+}
@@ -0,0 +1,315 @@
+package io.syncsense.lib.sensorhandler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Opt-in tracing of the work the plugin does on its threads, to tell which of GATT operations, scan callbacks, json
+ * serialization or the hand-over to Unity a frame hitch comes from.
+ *
+ * Two kinds of spans are traced:
+ * <pre>
+ *  begin / end           work done on one thread, e.g. dispatching notifications or sending an event
+ *  beginAsync / endAsync work spanning callbacks and threads, e.g. a connection or a GATT operation
+ * </pre>
+ * Spans are kept in a ring of the last capacity spans, which writeChromeTrace dumps in the Chrome trace event format,
+ * to open in Perfetto or chrome://tracing. They are also forwarded to a SystemTrace, android.os.Trace in the app, so
+ * they show up in system traces captured with Perfetto or systrace.
+ *
+ * While disabled, begin returns NOT_TRACED and every other call returns right after reading a volatile flag. While
+ * enabled, recording a span takes a short lock and allocates nothing: the names and details passed in must be
+ * constants, or strings that already exist, like the address of a channel.
+ */
+public class Tracer {
+
+    public static final int DEFAULT_CAPACITY = 8192;
+    public static final long NOT_TRACED = -1;
+
+    public static final String CATEGORY_GATT = "gatt";
+    public static final String CATEGORY_SCAN = "scan";
+    public static final String CATEGORY_DISPATCH = "dispatch";
+    public static final String CATEGORY_UNITY = "unity";
+
+    private static final byte PHASE_COMPLETE = 'X';
+    private static final byte PHASE_ASYNC_BEGIN = 'b';
+    private static final byte PHASE_ASYNC_END = 'e';
+    private static final byte PHASE_INSTANT = 'i';
+
+    /**
+     * Where spans are forwarded to, on the thread they are traced on.
+     */
+    public interface SystemTrace {
+        void beginSection(String name);
+
+        void endSection();
+
+        void beginAsyncSection(String name, int cookie);
+
+        void endAsyncSection(String name, int cookie);
+    }
+
+    private final TimeSource time;
+    private final AtomicInteger nextCookie = new AtomicInteger();
+
+    private volatile boolean enabled = false;
+    private volatile SystemTrace systemTrace = null;
+
+    private byte[] phases;
+    private String[] names;
+    private String[] categories;
+    private long[] timestampsNanos;
+    private long[] durationsNanos;
+    private int[] cookies;
+    private long[] threadIds;
+    private String[] threadNames;
+    private String[] details;
+    private long[] values;
+    private int next = 0;
+    private int count = 0;
+    private long recorded = 0;
+
+    public Tracer(TimeSource time) {
+        this(time, DEFAULT_CAPACITY);
+    }
+
+    private Tracer(TimeSource time, int capacity) {
+        this.time = time;
+        allocate(capacity);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts or stops tracing. The spans traced so far are kept, unless the capacity changes.
+     *
+     * @param capacity the number of spans kept, the oldest are overwritten
+     * @return false if the capacity is not positive
+     */
+    public synchronized boolean setEnabled(boolean enable, int capacity) {
+        if (capacity <= 0)
+            return false;
+
+        if (capacity != phases.length)
+            allocate(capacity);
+        enabled = enable;
+        return true;
+    }
+
+    /**
+     * Best changed while disabled: a span begun before the change and ended after it is only half forwarded.
+     *
+     * @param systemTrace null to only keep spans in the ring
+     */
+    public void setSystemTrace(SystemTrace systemTrace) {
+        this.systemTrace = systemTrace;
+    }
+
+    /**
+     * Begins a span on the current thread, to be ended by end on the same thread. Spans begun on a thread must be
+     * ended in reverse order.
+     *
+     * @return the start of the span, to pass to end, or NOT_TRACED while disabled
+     */
+    public long begin(String name) {
+        if (!enabled)
+            return NOT_TRACED;
+
+        SystemTrace current = systemTrace;
+        if (current != null)
+            current.beginSection(name);
+        return time.nowNanos();
+    }
+
+    /**
+     * Ends a span begun by begin. Does nothing if it was begun while disabled.
+     *
+     * @param detail the device address or event the span is about, or null
+     * @param value  a count, status or size worth keeping with the span
+     */
+    public void end(long startNanos, String category, String name, String detail, long value) {
+        if (startNanos == NOT_TRACED)
+            return;
+
+        long nowNanos = time.nowNanos();
+        SystemTrace current = systemTrace;
+        if (current != null)
+            current.endSection();
+        record(PHASE_COMPLETE, category, name, startNanos, nowNanos - startNanos, 0, detail, value);
+    }
+
+    /**
+     * Begins a span that may end on another thread.
+     *
+     * @return the cookie to pass to endAsync, 0 while disabled
+     */
+    public int beginAsync(String category, String name, String detail) {
+        if (!enabled)
+            return 0;
+
+        int cookie = nextCookie.incrementAndGet();
+        if (cookie == 0)
+            cookie = nextCookie.incrementAndGet();
+        SystemTrace current = systemTrace;
+        if (current != null)
+            current.beginAsyncSection(name, cookie);
+        record(PHASE_ASYNC_BEGIN, category, name, time.nowNanos(), 0, cookie, detail, 0);
+        return cookie;
+    }
+
+    /**
+     * Ends a span begun by beginAsync, with the same category and name. Does nothing if it was begun while disabled.
+     */
+    public void endAsync(int cookie, String category, String name, String detail, long value) {
+        if (cookie == 0)
+            return;
+
+        SystemTrace current = systemTrace;
+        if (current != null)
+            current.endAsyncSection(name, cookie);
+        record(PHASE_ASYNC_END, category, name, time.nowNanos(), 0, cookie, detail, value);
+    }
+
+    /**
+     * Marks a point in time, e.g. a link loss.
+     */
+    public void instant(String category, String name, String detail, long value) {
+        if (!enabled)
+            return;
+
+        record(PHASE_INSTANT, category, name, time.nowNanos(), 0, 0, detail, value);
+    }
+
+    /**
+     * @return the number of spans traced since the ring was allocated, including the overwritten ones
+     */
+    public synchronized long getRecordedCount() {
+        return recorded;
+    }
+
+    public synchronized void clear() {
+        next = 0;
+        count = 0;
+        recorded = 0;
+    }
+
+    /**
+     * Writes the spans in the ring as a Chrome trace json object, oldest first, with the name of every thread seen.
+     * Tracing goes on while writing: the ring is copied first.
+     */
+    public void writeChromeTrace(Writer writer) throws IOException {
+        Tracer copy;
+        synchronized (this) {
+            copy = new Tracer(time, count);
+            for (int i = 0; i < count; i++) {
+                int index = (next - count + i + phases.length) % phases.length;
+                copy.phases[i] = phases[index];
+                copy.names[i] = names[index];
+                copy.categories[i] = categories[index];
+                copy.timestampsNanos[i] = timestampsNanos[index];
+                copy.durationsNanos[i] = durationsNanos[index];
+                copy.cookies[i] = cookies[index];
+                copy.threadIds[i] = threadIds[index];
+                copy.threadNames[i] = threadNames[index];
+                copy.details[i] = details[index];
+                copy.values[i] = values[index];
+            }
+            copy.count = count;
+        }
+
+        StringBuilder json = new StringBuilder(256);
+        writer.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+        HashSet<Long> threads = new HashSet<>();
+        for (int i = 0; i < copy.count; i++) {
+            json.setLength(0);
+            if (i > 0)
+                json.append(',');
+            copy.appendEvent(json, i);
+            writer.write(json.toString());
+
+            if (threads.add(copy.threadIds[i])) {
+                json.setLength(0);
+                json.append(",{\"ph\":\"M\",\"name\":\"thread_name\",\"pid\":1,\"tid\":").append(copy.threadIds[i])
+                        .append(",\"args\":{\"name\":").append(JsonWriter.quote(String.valueOf(copy.threadNames[i])))
+                        .append("}}");
+                writer.write(json.toString());
+            }
+        }
+        writer.write("]}");
+    }
+
+    private void appendEvent(StringBuilder json, int i) {
+        json.append("{\"ph\":\"").append((char) phases[i])
+                .append("\",\"cat\":").append(JsonWriter.quote(categories[i]))
+                .append(",\"name\":").append(JsonWriter.quote(names[i]))
+                .append(",\"pid\":1,\"tid\":").append(threadIds[i])
+                .append(",\"ts\":");
+        appendMicros(json, timestampsNanos[i]);
+        if (phases[i] == PHASE_COMPLETE) {
+            json.append(",\"dur\":");
+            appendMicros(json, durationsNanos[i]);
+        } else if (phases[i] == PHASE_INSTANT) {
+            json.append(",\"s\":\"t\"");
+        } else {
+            json.append(",\"id\":").append(cookies[i]);
+        }
+        json.append(",\"args\":{");
+        if (details[i] != null)
+            json.append("\"detail\":").append(JsonWriter.quote(details[i])).append(',');
+        json.append("\"value\":").append(values[i]).append("}}");
+    }
+
+    /**
+     * Chrome traces are in microseconds, kept to the nanosecond with three decimals.
+     */
+    private static void appendMicros(StringBuilder json, long nanos) {
+        long fraction = Math.abs(nanos % 1000);
+        if (nanos < 0 && nanos > -1000)
+            json.append('-');
+        json.append(nanos / 1000).append('.');
+        if (fraction < 100)
+            json.append('0');
+        if (fraction < 10)
+            json.append('0');
+        json.append(fraction);
+    }
+
+    private synchronized void record(byte phase, String category, String name, long timestampNanos,
+                                     long durationNanos, int cookie, String detail, long value) {
+        Thread thread = Thread.currentThread();
+        int index = next;
+        phases[index] = phase;
+        names[index] = name;
+        categories[index] = category;
+        timestampsNanos[index] = timestampNanos;
+        durationsNanos[index] = durationNanos;
+        cookies[index] = cookie;
+        threadIds[index] = thread.getId();
+        threadNames[index] = thread.getName();
+        details[index] = detail;
+        values[index] = value;
+
+        next = (index + 1) % phases.length;
+        count = Math.min(count + 1, phases.length);
+        recorded++;
+    }
+
+    private void allocate(int capacity) {
+        phases = new byte[capacity];
+        names = new String[capacity];
+        categories = new String[capacity];
+        timestampsNanos = new long[capacity];
+        durationsNanos = new long[capacity];
+        cookies = new int[capacity];
+        threadIds = new long[capacity];
+        threadNames = new String[capacity];
+        details = new String[capacity];
+        values = new long[capacity];
+        next = 0;
+        count = 0;
+        recorded = 0;
+    }
+}
@@ -0,0 +1,86 @@
+package io.syncsense.lib.sensorhandler;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Connects a SensorTransport to a NotificationPipeline: devices get a channel while they are connected, their
+ * notifications go through the same dispatch path as the ones received over Bluetooth, and connection state changes
+ * are reported as OnDeviceConnectionStateChange events.
+ */
+public class TransportSession implements SensorTransport.Listener {
+
+    private final NotificationPipeline pipeline;
+    private final EventSink events;
+    private final ConcurrentHashMap<String, SensorChannel> channels = new ConcurrentHashMap<>();
+
+    private final AtomicLong rejectedNotifications = new AtomicLong();
+
+    public TransportSession(NotificationPipeline pipeline, EventSink events) {
+        this.pipeline = pipeline;
+        this.events = events;
+    }
+
+    @Override
+    public void onConnectionStateChange(String deviceAddress, String deviceName, int status, int newState) {
+        if (newState == SensorTransport.STATE_CONNECTED) {
+            int deviceIndex = pipeline.deviceIds.getOrAssign(deviceAddress);
+            if (deviceIndex == CompactIdTable.NO_ID)
+                return;
+
+            SensorChannel channel = new SensorChannel(deviceAddress, deviceIndex, deviceName);
+            channels.put(deviceAddress, channel);
+            pipeline.register(channel);
+        } else if (newState == SensorTransport.STATE_DISCONNECTED) {
+            SensorChannel channel = channels.remove(deviceAddress);
+            if (channel != null)
+                pipeline.unregister(channel);
+        }
+
+        events.send("OnDeviceConnectionStateChange",
+                ConnectionStateChangeJson.buildJson(
+                        status,
+                        newState,
+                        deviceName,
+                        deviceAddress
+                )
+        );
+    }
+
+    @Override
+    public void onNotification(String deviceAddress, UUID characteristicUuid, long timestampNanos, byte[] value) {
+        SensorChannel channel = channels.get(deviceAddress);
+        if (channel == null || !pipeline.publish(channel, characteristicUuid, timestampNanos, value))
+            rejectedNotifications.incrementAndGet();
+    }
+
+    /**
+     * @return the most notifications any channel of the session has waiting, for the dispatch thread or for Unity
+     */
+    public int getBacklog() {
+        int backlog = 0;
+        for (SensorChannel channel : channels.values()) {
+            backlog = Math.max(backlog, channel.notifications.size() + channel.delivery.size());
+        }
+        return backlog;
+    }
+
+    /**
+     * Forgets every channel of the session, as if all its devices disconnected.
+     */
+    public void close() {
+        for (SensorChannel channel : channels.values()) {
+            pipeline.unregister(channel);
+        }
+        channels.clear();
+    }
+
+    /**
+     * @return the number of notifications received for a device that was not connected, or without a free
+     * characteristic id
+     */
+    public long getRejectedNotifications() {
+        return rejectedNotifications.get();
+    }
+}
@@ -0,0 +1,94 @@
+package io.syncsense.lib.sensorhandler;
+
+/**
+ * Mean and standard deviation of several channels over a sliding window of the last samples, updated in constant
+ * time per sample from running sums.
+ */
+public class WindowStatistics {
+
+    public static final int MAX_WINDOW_SIZE = 1024;
+
+    private final int channels;
+    private final float[] window;
+    private final double[] sums;
+    private final double[] sumSquares;
+
+    private int windowSize;
+    private int head = 0;
+    private int size = 0;
+
+    public WindowStatistics(int channels, int windowSize) {
+        this.channels = channels;
+        this.window = new float[channels * MAX_WINDOW_SIZE];
+        this.sums = new double[channels];
+        this.sumSquares = new double[channels];
+        setWindowSize(windowSize);
+    }
+
+    /**
+     * Also clears the window.
+     */
+    public void setWindowSize(int windowSize) {
+        this.windowSize = Math.max(1, Math.min(MAX_WINDOW_SIZE, windowSize));
+        reset();
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    /**
+     * Adds one sample of every channel, values[offset] to values[offset + channels - 1].
+     */
+    public void add(float[] values, int offset) {
+        int slot;
+        if (size == windowSize) {
+            slot = head;
+            head = (head + 1) % windowSize;
+            for (int channel = 0; channel < channels; channel++) {
+                float oldest = window[slot * channels + channel];
+                sums[channel] -= oldest;
+                sumSquares[channel] -= oldest * (double) oldest;
+            }
+        } else {
+            slot = (head + size) % windowSize;
+            size++;
+        }
+
+        for (int channel = 0; channel < channels; channel++) {
+            float value = values[offset + channel];
+            window[slot * channels + channel] = value;
+            sums[channel] += value;
+            sumSquares[channel] += value * (double) value;
+        }
+    }
+
+    /**
+     * Writes the mean of every channel followed by the standard deviation of every channel, 2 * channels values, into
+     * target starting at offset.
+     */
+    public void get(float[] target, int offset) {
+        for (int channel = 0; channel < channels; channel++) {
+            double mean = size > 0 ? sums[channel] / size : 0;
+            double variance = size > 0 ? sumSquares[channel] / size - mean * mean : 0;
+            target[offset + channel] = (float) mean;
+            target[offset + channels + channel] = (float) Math.sqrt(Math.max(0, variance));
+        }
+    }
+
+    /**
+     * @return the number of samples in the window, up to the window size
+     */
+    public int size() {
+        return size;
+    }
+
+    public void reset() {
+        head = 0;
+        size = 0;
+        for (int channel = 0; channel < channels; channel++) {
+            sums[channel] = 0;
+            sumSquares[channel] = 0;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package io.syncsense.lib.sensorhandler;
+
+import java.util.ArrayDeque;
+
+/**
+ * Bytes waiting to be written, without response, to one characteristic of a connection.
+ *
+ * The app offers messages from any thread, and is refused once the buffer is full, which is its signal to slow down.
+ * The GattOperationQueue of the connection pulls chunks whenever it has nothing else to do, so a stream only ever has
+ * one write in flight: its credit is given back by onCharacteristicWrite. Every chunk is filled up to the payload the
+ * negotiated MTU allows, with as many whole messages as fit, unless the stream keeps one message per write. Messages
+ * larger than a payload are split.
+ */
+public class WriteStream {
+
+    public static final int DEFAULT_BUFFER_BYTES = 16 * 1024;
+
+    private static final long RATE_WINDOW_NANOS = 1_000_000_000L;
+
+    public final int characteristicIndex;
+    public final int bufferBytes;
+    public final boolean packMessages;
+
+    private final ArrayDeque<byte[]> messages = new ArrayDeque<>();
+    private int headOffset = 0;
+    private int queuedBytes = 0;
+    private boolean closed = false;
+
+    private long bytesWritten = 0;
+    private long writes = 0;
+    private long failedWrites = 0;
+    private long bufferFullCount = 0;
+    private long refusedMessages = 0;
+    private long firstWriteNanos = 0;
+    private long firstWriteBytes = 0;
+    private long lastWriteNanos = 0;
+    private long windowStartNanos = 0;
+    private long windowStartBytes = 0;
+    private float bytesPerSecond = 0;
+
+    /**
+     * @param characteristicIndex the index of the characteristic in the CharacteristicHandleTable of the connection
+     * @param bufferBytes         how many bytes may wait before offer refuses new messages
+     * @param packMessages        true to fill every write with as many messages as fit, false to write every
+     *                            message on its own
+     */
+    public WriteStream(int characteristicIndex, int bufferBytes, boolean packMessages) {
+        this.characteristicIndex = characteristicIndex;
+        this.bufferBytes = bufferBytes > 0 ? bufferBytes : DEFAULT_BUFFER_BYTES;
+        this.packMessages = packMessages;
+    }
+
+    /**
+     * Queues a message. The array is kept, not copied. Can be called from any thread.
+     *
+     * @return false if the stream is closed or the message does not fit in the buffer
+     */
+    public synchronized boolean offer(byte[] message) {
+        if (closed || message == null)
+            return false;
+        if (message.length == 0)
+            return true;
+        if (queuedBytes + message.length > bufferBytes) {
+            refusedMessages++;
+            return false;
+        }
+        messages.add(message);
+        queuedBytes += message.length;
+        return true;
+    }
+
+    /**
+     * Takes the next chunk to write. Called from the GATT thread.
+     *
+     * @param maxLength the payload of a write at the current MTU
+     * @return the chunk, or null if nothing is waiting
+     */
+    public synchronized byte[] poll(int maxLength) {
+        byte[] head = messages.peek();
+        if (head == null || maxLength <= 0)
+            return null;
+
+        int length = Math.min(head.length - headOffset, maxLength);
+        if (packMessages && headOffset + length == head.length) {
+            boolean first = true;
+            for (byte[] message : messages) {
+                if (first) {
+                    first = false;
+                    continue;
+                }
+                if (length + message.length > maxLength)
+                    break;
+                length += message.length;
+            }
+        }
+
+        byte[] chunk = new byte[length];
+        int filled = 0;
+        while (filled < length) {
+            head = messages.peek();
+            int count = Math.min(head.length - headOffset, length - filled);
+            System.arraycopy(head, headOffset, chunk, filled, count);
+            filled += count;
+            headOffset += count;
+            if (headOffset == head.length) {
+                messages.poll();
+                headOffset = 0;
+            }
+        }
+        queuedBytes -= length;
+        return chunk;
+    }
+
+    /**
+     * Called from the GATT thread when a chunk of this stream was handed to the controller, or failed.
+     */
+    public synchronized void onWriteComplete(int length, boolean success, long nowNanos) {
+        if (!success) {
+            failedWrites++;
+            return;
+        }
+
+        writes++;
+        bytesWritten += length;
+        lastWriteNanos = nowNanos;
+        if (writes == 1) {
+            // Rates count the bytes written after a point in time, the first write only starts the clock
+            firstWriteNanos = nowNanos;
+            firstWriteBytes = length;
+            windowStartNanos = nowNanos;
+            windowStartBytes = bytesWritten;
+            return;
+        }
+
+        long elapsed = nowNanos - windowStartNanos;
+        if (elapsed >= RATE_WINDOW_NANOS) {
+            bytesPerSecond = (bytesWritten - windowStartBytes) * 1e9f / elapsed;
+            windowStartNanos = nowNanos;
+            windowStartBytes = bytesWritten;
+        }
+    }
+
+    /**
+     * Called from the GATT thread when the stack refused a chunk because its buffer is full.
+     */
+    public synchronized void onBufferFull() {
+        bufferFullCount++;
+    }
+
+    /**
+     * Discards the waiting messages and refuses new ones.
+     */
+    public synchronized void close() {
+        closed = true;
+        messages.clear();
+        headOffset = 0;
+        queuedBytes = 0;
+    }
+
+    public synchronized WriteStreamJson snapshot(String deviceAddress, int characteristicHandle, int payloadBytes,
+                                                 long nowNanos) {
+        // The rate of the last full window, or of the writes so far in the first one. An idle stream writes nothing.
+        float rate = bytesPerSecond;
+        if (writes == 0 || nowNanos - lastWriteNanos >= RATE_WINDOW_NANOS) {
+            rate = 0;
+        } else if (windowStartNanos == firstWriteNanos && lastWriteNanos > windowStartNanos) {
+            rate = (bytesWritten - windowStartBytes) * 1e9f / (lastWriteNanos - windowStartNanos);
+        }
+        long activeNanos = lastWriteNanos - firstWriteNanos;
+        return new WriteStreamJson(
+                deviceAddress,
+                characteristicHandle,
+                payloadBytes,
+                queuedBytes,
+                bytesWritten,
+                writes,
+                failedWrites,
+                bufferFullCount,
+                refusedMessages,
+                rate,
+                activeNanos > 0 ? (bytesWritten - firstWriteBytes) * 1e9f / activeNanos : 0
+        );
+    }
+}
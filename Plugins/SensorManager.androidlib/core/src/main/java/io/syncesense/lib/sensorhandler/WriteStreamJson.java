@@ -0,0 +1,41 @@
+package io.syncsense.lib.sensorhandler;
+
+import static io.syncsense.lib.sensorhandler.JsonUtils.GSON;
+
+public class WriteStreamJson {
+
+    public String deviceAddress;
+    public int characteristicHandle;
+    public int payloadBytes;
+    public int queuedBytes;
+    public long bytesWritten;
+    public long writes;
+    public long failedWrites;
+    public long bufferFullCount;
+    public long refusedMessages;
+    public float bytesPerSecond;
+    public float averageBytesPerSecond;
+
+    public WriteStreamJson() {
+    }
+
+    public WriteStreamJson(String deviceAddress, int characteristicHandle, int payloadBytes, int queuedBytes,
+                           long bytesWritten, long writes, long failedWrites, long bufferFullCount,
+                           long refusedMessages, float bytesPerSecond, float averageBytesPerSecond) {
+        this.deviceAddress = deviceAddress;
+        this.characteristicHandle = characteristicHandle;
+        this.payloadBytes = payloadBytes;
+        this.queuedBytes = queuedBytes;
+        this.bytesWritten = bytesWritten;
+        this.writes = writes;
+        this.failedWrites = failedWrites;
+        this.bufferFullCount = bufferFullCount;
+        this.refusedMessages = refusedMessages;
+        this.bytesPerSecond = bytesPerSecond;
+        this.averageBytesPerSecond = averageBytesPerSecond;
+    }
+
+    public static String buildJson(WriteStreamJson stats) {
+        return GSON.toJson(stats);
+    }
+}
@@ -0,0 +1,105 @@
+package io.syncsense.lib.sensorhandler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class BiquadFilterTest {
+
+    private static final float RATE_HZ = 100;
+
+    /**
+     * @return the amplitude of a sine of the given frequency once the filter settled
+     */
+    private static float amplitude(float cutoffHz, float frequencyHz) {
+        BiquadFilter filter = new BiquadFilter(1);
+        assertTrue(filter.setLowPass(RATE_HZ, cutoffHz));
+
+        float[] value = new float[1];
+        float peak = 0;
+        for (int i = 0; i < 2000; i++) {
+            value[0] = (float) Math.sin(2 * Math.PI * frequencyHz * i / RATE_HZ);
+            filter.process(value, 0);
+            if (i >= 1000)
+                peak = Math.max(peak, Math.abs(value[0]));
+        }
+        return peak;
+    }
+
+    @Test
+    public void passesValuesThroughUntilEnabled() {
+        BiquadFilter filter = new BiquadFilter(2);
+        assertFalse(filter.isEnabled());
+        float[] values = {1, -3};
+        filter.process(values, 0);
+        assertEquals(1, values[0], 0);
+        assertEquals(-3, values[1], 0);
+
+        assertTrue(filter.setLowPass(RATE_HZ, 10));
+        assertTrue(filter.isEnabled());
+        assertTrue(filter.setLowPass(RATE_HZ, 0));
+        assertFalse(filter.isEnabled());
+    }
+
+    @Test
+    public void rejectsCutoffsFromTheNyquistFrequency() {
+        BiquadFilter filter = new BiquadFilter(1);
+        assertFalse(filter.setLowPass(RATE_HZ, 50));
+        assertFalse(filter.setLowPass(RATE_HZ, 80));
+        assertFalse(filter.setLowPass(0, 10));
+        assertFalse(filter.isEnabled());
+    }
+
+    /**
+     * A constant input comes out unchanged from the first sample, since the filter is primed with it.
+     */
+    @Test
+    public void startsFromTheSteadyState() {
+        BiquadFilter filter = new BiquadFilter(3);
+        filter.setLowPass(RATE_HZ, 5);
+        for (int i = 0; i < 10; i++) {
+            float[] values = {9.81f, -2, 0};
+            filter.process(values, 0);
+            assertEquals(9.81f, values[0], 1e-4f);
+            assertEquals(-2, values[1], 1e-4f);
+            assertEquals(0, values[2], 1e-4f);
+        }
+
+        // Primed again after a reset
+        filter.reset();
+        float[] values = {1, 1, 1};
+        filter.process(values, 0);
+        assertEquals(1, values[0], 1e-4f);
+    }
+
+    @Test
+    public void followsTheButterworthResponse() {
+        assertEquals(1, amplitude(10, 1), 0.01f);
+        assertEquals(1 / Math.sqrt(2), amplitude(10, 10), 0.01f);
+        // Second order: at least 40 dB per decade above the cutoff, more towards the Nyquist frequency
+        assertTrue(amplitude(4, 40) < 0.01f);
+        assertTrue(amplitude(4, 40) > 0);
+    }
+
+    @Test
+    public void filtersEveryChannelOnItsOwn() {
+        BiquadFilter filter = new BiquadFilter(2);
+        filter.setLowPass(RATE_HZ, 5);
+        // Two channels at offset 1, between values the filter must not touch
+        float[] values = new float[4];
+        for (int i = 0; i < 200; i++) {
+            values[0] = 7;
+            values[1] = i == 0 ? 0 : 1;
+            values[2] = 0;
+            values[3] = 7;
+            filter.process(values, 1);
+            assertEquals(7, values[0], 0);
+            assertEquals(0, values[2], 1e-6f);
+            assertEquals(7, values[3], 0);
+        }
+        // The step settled
+        assertEquals(1, values[1], 1e-3f);
+    }
+}
@@ -0,0 +1,117 @@
+package io.syncsense.lib.sensorhandler;
+
+import static io.syncsense.lib.sensorhandler.JsonUtils.GSON;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class CadenceDetectorTest {
+
+    private static final float RATE_HZ = 100;
+    private static final long PERIOD_NANOS = (long) (1e9 / RATE_HZ);
+
+    private final List<CadenceJson> updates = new ArrayList<>();
+    private final List<CadenceJson.CycleJson> cycles = new ArrayList<>();
+
+    private final CadenceDetector detector = new CadenceDetector(new EventSink() {
+        @Override
+        public void send(String method, String message) {
+            if (method.equals("OnCadenceUpdate"))
+                updates.add(GSON.fromJson(message, CadenceJson.class));
+            else if (method.equals("OnCadenceCycle"))
+                cycles.add(GSON.fromJson(message, CadenceJson.CycleJson.class));
+        }
+    });
+
+    private final SensorChannel channel = new SensorChannel("5E:00:00:00:00:01", 3, "Cadence_Sensor");
+    private final byte[] packet = new byte[MotionSampleBuffer.PACKET_SIZE];
+    private final Random random = new Random(3);
+    private long sample = 0;
+
+    private static void putFloat(byte[] data, int offset, float value) {
+        int bits = Float.floatToIntBits(value);
+        data[offset] = (byte) bits;
+        data[offset + 1] = (byte) (bits >>> 8);
+        data[offset + 2] = (byte) (bits >>> 16);
+        data[offset + 3] = (byte) (bits >>> 24);
+    }
+
+    /**
+     * Feeds a sine on the vertical acceleration, on top of gravity and some noise.
+     */
+    private void walk(double cadence, double amplitude, double seconds) {
+        for (int i = 0; i < seconds * RATE_HZ; i++, sample++) {
+            double t = sample / RATE_HZ;
+            float y = (float) (1 + amplitude * Math.sin(2 * Math.PI * cadence / 60 * t) + 0.02 * random.nextGaussian());
+            packet[0] = (byte) sample;
+            putFloat(packet, 1, 0.01f * (float) random.nextGaussian());
+            putFloat(packet, 5, y);
+            putFloat(packet, 9, 0.01f * (float) random.nextGaussian());
+            detector.process(channel, sample * PERIOD_NANOS, packet);
+        }
+    }
+
+    private CadenceJson lastUpdate() {
+        return updates.get(updates.size() - 1);
+    }
+
+    @Test
+    public void measuresTheCadenceOfASine() {
+        assertTrue(detector.configure(true, CadenceDetector.SIGNAL_ACCEL_Y, RATE_HZ, 20, 240, 0.1f, 1000, true));
+
+        walk(90, 0.5, 20);
+        CadenceJson update = lastUpdate();
+        assertTrue(update.active);
+        assertEquals(90, update.cadence, 1.5);
+        assertEquals(channel.address, update.deviceAddress);
+        assertEquals(channel.deviceIndex, update.deviceIndex);
+        // About one update per second once active
+        assertTrue(updates.size() >= 15 && updates.size() <= 21);
+
+        // 30 cycles, give or take the first ones while the filters settle
+        assertTrue(Math.abs(update.cycles - 30) <= 2);
+        assertEquals(update.cycles, cycles.get(cycles.size() - 1).cycles);
+        assertEquals(667, cycles.get(cycles.size() - 1).intervalMillis, 20);
+
+        walk(150, 0.5, 20);
+        assertEquals(150, lastUpdate().cadence, 2.5);
+    }
+
+    @Test
+    public void becomesIdleWhenTheMotionStops() {
+        detector.configure(true, CadenceDetector.SIGNAL_ACCEL_MAGNITUDE, RATE_HZ, 30, 240, 0.1f, 1000, false);
+
+        walk(60, 0.5, 10);
+        assertTrue(lastUpdate().active);
+
+        walk(60, 0, 5);
+        CadenceJson update = lastUpdate();
+        assertFalse(update.active);
+        assertEquals(0, update.cadence, 0);
+        assertTrue(cycles.isEmpty());
+    }
+
+    @Test
+    public void staysQuietBelowTheMinimumAmplitude() {
+        detector.configure(true, CadenceDetector.SIGNAL_ACCEL_Y, RATE_HZ, 20, 240, 0.2f, 1000, true);
+
+        walk(90, 0.1, 20);
+        assertTrue(updates.isEmpty());
+        assertTrue(cycles.isEmpty());
+    }
+
+    @Test
+    public void rejectsParametersOutOfRange() {
+        assertFalse(detector.configure(true, 8, RATE_HZ, 20, 240, 0, 1000, false));
+        assertFalse(detector.configure(true, CadenceDetector.SIGNAL_ACCEL_Y, RATE_HZ, 120, 60, 0, 1000, false));
+        // 240 cycles per minute need more than 8 samples per second
+        assertFalse(detector.configure(true, CadenceDetector.SIGNAL_ACCEL_Y, 8, 20, 240, 0, 1000, false));
+        assertFalse(detector.isEnabled());
+    }
+}
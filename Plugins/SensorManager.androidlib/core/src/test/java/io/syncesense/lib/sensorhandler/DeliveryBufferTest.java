@@ -0,0 +1,144 @@
+package io.syncsense.lib.sensorhandler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class DeliveryBufferTest {
+
+    private static final int A = 1;
+    private static final int B = 2;
+
+    private static boolean offer(DeliveryBuffer buffer, int characteristicId, long timestampNanos) {
+        return buffer.offer(characteristicId, timestampNanos, new byte[]{(byte) timestampNanos}, 1);
+    }
+
+    /**
+     * @return the buffered notifications as "characteristic:timestamp", oldest first
+     */
+    private static List<String> drain(DeliveryBuffer buffer) {
+        List<String> out = new ArrayList<>();
+        NotificationQueue.Record record = new NotificationQueue.Record();
+        while (buffer.poll(record)) {
+            assertEquals(1, record.length);
+            assertEquals((byte) record.timestampNanos, record.payload[0]);
+            out.add(record.characteristicId + ":" + record.timestampNanos);
+        }
+        return out;
+    }
+
+    private static List<String> list(String... entries) {
+        List<String> out = new ArrayList<>();
+        for (String entry : entries) {
+            out.add(entry);
+        }
+        return out;
+    }
+
+    @Test
+    public void dropNewestKeepsTheOldest() {
+        DeliveryBuffer buffer = new DeliveryBuffer(3);
+        buffer.configure(DeliveryBuffer.POLICY_DROP_NEWEST, 3, 1);
+        assertTrue(offer(buffer, A, 1));
+        assertTrue(offer(buffer, B, 2));
+        assertTrue(offer(buffer, A, 3));
+        assertFalse(offer(buffer, A, 4));
+        assertFalse(offer(buffer, B, 5));
+
+        assertEquals(2, buffer.getDropped());
+        assertEquals(list("1:1", "2:2", "1:3"), drain(buffer));
+    }
+
+    @Test
+    public void dropOldestKeepsTheMostRecent() {
+        DeliveryBuffer buffer = new DeliveryBuffer(3);
+        buffer.configure(DeliveryBuffer.POLICY_DROP_OLDEST, 3, 1);
+        for (int i = 1; i <= 5; i++) {
+            assertTrue(offer(buffer, i % 2 == 0 ? B : A, i));
+        }
+
+        assertEquals(2, buffer.getDropped());
+        assertEquals(list("1:3", "2:4", "1:5"), drain(buffer));
+    }
+
+    @Test
+    public void latestOnlyKeepsOnePerCharacteristic() {
+        DeliveryBuffer buffer = new DeliveryBuffer(8);
+        buffer.configure(DeliveryBuffer.POLICY_LATEST_ONLY, 8, 1);
+        offer(buffer, A, 1);
+        offer(buffer, B, 2);
+        offer(buffer, A, 3);
+        offer(buffer, A, 4);
+
+        assertEquals(2, buffer.size());
+        assertEquals(2, buffer.getDropped());
+        assertEquals(list("2:2", "1:4"), drain(buffer));
+    }
+
+    @Test
+    public void coalesceKeepsTheLatestOfEachCharacteristic() {
+        DeliveryBuffer buffer = new DeliveryBuffer(8);
+        buffer.configure(DeliveryBuffer.POLICY_COALESCE, 8, 2);
+        offer(buffer, A, 1);
+        offer(buffer, A, 2);
+        offer(buffer, B, 3);
+        offer(buffer, A, 4);
+        offer(buffer, B, 5);
+        offer(buffer, B, 6);
+
+        assertEquals(2, buffer.getDropped());
+        assertEquals(list("1:2", "1:4", "2:5", "2:6"), drain(buffer));
+    }
+
+    /**
+     * Holes left by coalescing are closed up once the slots run out, without losing order.
+     */
+    @Test
+    public void coalesceReusesHoles() {
+        DeliveryBuffer buffer = new DeliveryBuffer(4);
+        buffer.configure(DeliveryBuffer.POLICY_COALESCE, 4, 1);
+        for (int i = 1; i <= 20; i++) {
+            assertTrue(offer(buffer, A, i));
+            assertTrue(offer(buffer, B, 100 + i));
+        }
+
+        assertEquals(38, buffer.getDropped());
+        assertEquals(list("1:20", "2:120"), drain(buffer));
+    }
+
+    @Test
+    public void latestIsKeptApart() {
+        DeliveryBuffer buffer = new DeliveryBuffer(2);
+        NotificationQueue.Record record = new NotificationQueue.Record();
+        assertFalse(buffer.getLatest(A, record));
+
+        buffer.setLatest(A, 7, new byte[]{7, 8}, 2);
+        buffer.setLatest(A, 9, new byte[]{9}, 1);
+        buffer.clear();
+        assertTrue(buffer.getLatest(A, record));
+        assertEquals(9, record.timestampNanos);
+        assertEquals(1, record.length);
+        assertEquals(9, record.payload[0]);
+        assertFalse(buffer.getLatest(B, record));
+    }
+
+    @Test
+    public void configureDiscardsAndResizes() {
+        DeliveryBuffer buffer = new DeliveryBuffer(2);
+        offer(buffer, A, 1);
+        offer(buffer, A, 2);
+        assertFalse(offer(buffer, A, 3));
+
+        buffer.configure(DeliveryBuffer.POLICY_DROP_NEWEST, 4, 1);
+        assertEquals(0, buffer.size());
+        for (int i = 1; i <= 4; i++) {
+            assertTrue(offer(buffer, A, i));
+        }
+        assertFalse(offer(buffer, A, 5));
+    }
+}
@@ -0,0 +1,91 @@
+package io.syncsense.lib.sensorhandler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load test of the notification path on a plain JVM, kept out of the plugin. Run it with:
+ *   ./gradlew -p core loadTest -Pargs="16 200 30"
+ */
+public class FleetLoadTest {
+
+    /**
+     * Connects a simulated fleet, streams for a while and prints the link metrics of every sensor.
+     *
+     * Arguments: sensor count (8), motion rate in Hz (100), duration in seconds (10), packet loss (0.01),
+     * jitter in microseconds (2000), disconnects per minute (0), "json" or "binary" transport (json).
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int sensorCount = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int rateHz = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        float loss = args.length > 3 ? Float.parseFloat(args[3]) : 0.01f;
+        int jitterMicros = args.length > 4 ? Integer.parseInt(args[4]) : 2000;
+        float disconnects = args.length > 5 ? Float.parseFloat(args[5]) : 0;
+        boolean binary = args.length > 6 && args[6].equals("binary");
+
+        final AtomicLong events = new AtomicLong();
+        EventSink sink = new EventSink() {
+            @Override
+            public void send(String method, String message) {
+                events.incrementAndGet();
+            }
+        };
+
+        ExecutorService dispatcher = Executors.newSingleThreadExecutor();
+        NotificationPipeline pipeline = new NotificationPipeline(sink, TimeSource.NANO_TIME, dispatcher);
+        pipeline.setTransportMode(binary ? NotificationPipeline.TRANSPORT_MODE_BINARY : NotificationPipeline.TRANSPORT_MODE_JSON);
+
+        final SimulatedSensorFleet fleet = new SimulatedSensorFleet(sensorCount, rateHz, TimeSource.NANO_TIME, 42);
+        fleet.setPacketLoss(loss);
+        fleet.setJitter(jitterMicros);
+        fleet.setDisconnectRate(disconnects);
+        final TransportSession session = new TransportSession(pipeline, sink);
+        fleet.setListener(new SensorTransport.Listener() {
+            @Override
+            public void onConnectionStateChange(String deviceAddress, String deviceName, int status, int newState) {
+                session.onConnectionStateChange(deviceAddress, deviceName, status, newState);
+                if (newState == SensorTransport.STATE_CONNECTED) {
+                    fleet.subscribe(deviceAddress, SensorUuids.MOTION_SERVICE_UUID, SensorUuids.ACCL_GYRO_CHARACTERISTIC_UUID);
+                    fleet.subscribe(deviceAddress, SensorUuids.BATTERY_SERVICE_UUID, SensorUuids.BATTERY_CHARACTERISTIC_UUID);
+                } else if (status != 0) {
+                    fleet.connect(deviceAddress);
+                }
+            }
+
+            @Override
+            public void onNotification(String deviceAddress, UUID characteristicUuid, long timestampNanos, byte[] value) {
+                session.onNotification(deviceAddress, characteristicUuid, timestampNanos, value);
+            }
+        });
+
+        for (String address : fleet.getDeviceAddresses()) {
+            fleet.connect(address);
+        }
+
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        while (System.nanoTime() < end) {
+            Thread.sleep(16);
+            if (binary)
+                pipeline.drainNotifications();
+        }
+
+        List<LinkMetricsJson> snapshots = new ArrayList<>();
+        for (SensorChannel channel : pipeline.getChannels()) {
+            snapshots.add(channel.metrics.snapshot(channel.address, channel.notifications.getDropped(), channel.delivery.getDropped(), System.nanoTime()));
+        }
+        fleet.release();
+        dispatcher.shutdown();
+        dispatcher.awaitTermination(1, TimeUnit.SECONDS);
+
+        System.out.println(LinkMetricsJson.buildJson(snapshots));
+        System.out.println("Sent " + fleet.getSentPackets() + " packets, lost " + fleet.getLostPackets()
+                + " on purpose, " + events.get() + " events, " + session.getRejectedNotifications() + " rejected, "
+                + pipeline.getDroppedNotificationCount() + " dropped by the binary buffer");
+    }
+}
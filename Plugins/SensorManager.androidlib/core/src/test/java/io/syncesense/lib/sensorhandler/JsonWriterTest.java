@@ -0,0 +1,79 @@
+package io.syncsense.lib.sensorhandler;
+
+import static io.syncsense.lib.sensorhandler.JsonUtils.GSON;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+
+/**
+ * The json written by hand must be byte for byte what GSON writes for the same *Json object, Unity parses both.
+ */
+public class JsonWriterTest {
+
+    private static final String[] NAMES = {
+            "Cadence_Sensor",
+            "",
+            "quote \" backslash \\ slash /",
+            "<html> & 'apostrophe' = equals",
+            "tab\t newline\n return\r backspace\b form feed\f",
+            "control \u0000 \u0001 \u001f delete \u007f",
+            "separators \u2028 \u2029",
+            "unicode \u00e9\u00df\u4e2d \ud83d\ude00",
+    };
+
+    private static final Base64.Encoder MIME = Base64.getMimeEncoder(76, "\n".getBytes(StandardCharsets.US_ASCII));
+
+    /**
+     * Like android.util.Base64.DEFAULT.
+     */
+    private static String encode(byte[] value) {
+        return value.length == 0 ? "" : MIME.encodeToString(value) + "\n";
+    }
+
+    @Test
+    public void dataReceivedMatchesGson() {
+        Random random = new Random(42);
+        String characteristicUuid = SensorUuids.ACCL_GYRO_CHARACTERISTIC_UUID.toString();
+        String quotedCharacteristicUuid = JsonWriter.quote(characteristicUuid);
+
+        for (String name : NAMES) {
+            SensorChannel channel = new SensorChannel("5E:00:00:00:00:01", 1, name);
+            // Every padding and every line break case, up to several lines
+            for (int length = 0; length <= 200; length++) {
+                byte[] buffer = new byte[length + 7];
+                random.nextBytes(buffer);
+                byte[] value = Arrays.copyOf(buffer, length);
+                long timestampNanos = random.nextLong();
+
+                String expected = GSON.toJson(new DataReceivedJson(name, channel.address, characteristicUuid,
+                        encode(value), timestampNanos));
+                assertEquals(expected, DataReceivedJson.buildJson(channel, quotedCharacteristicUuid, buffer, length,
+                        timestampNanos));
+            }
+        }
+    }
+
+    @Test
+    public void dataReceivedMatchesGsonWithoutName() {
+        SensorChannel channel = new SensorChannel("5E:00:00:00:00:01", 1, null);
+        byte[] value = {1, 2, 3, 4};
+
+        String expected = GSON.toJson(new DataReceivedJson(null, channel.address, "uuid", encode(value), 7));
+        assertEquals(expected, DataReceivedJson.buildJson(channel, JsonWriter.quote("uuid"), value, value.length, 7));
+    }
+
+    @Test
+    public void scanResultMatchesGson() {
+        for (String name : NAMES) {
+            assertEquals(GSON.toJson(new ScanResultJson(-60, name, "5E:00:00:00:00:01", 3)),
+                    ScanResultJson.buildJson(name, "5E:00:00:00:00:01", -60, 3));
+        }
+        assertEquals(GSON.toJson(new ScanResultJson(Integer.MIN_VALUE, null, "5E:00:00:00:00:01", -1)),
+                ScanResultJson.buildJson(null, "5E:00:00:00:00:01", Integer.MIN_VALUE, -1));
+    }
+}
@@ -0,0 +1,30 @@
+package io.syncsense.lib.sensorhandler;
+
+/**
+ * Builds accel/gyro packets in the format MotionSampleBuffer decodes.
+ */
+final class MotionPackets {
+
+    private MotionPackets() {
+    }
+
+    static byte[] packet(int index, float ax, float ay, float az, float gx, float gy, float gz) {
+        byte[] packet = new byte[MotionSampleBuffer.PACKET_SIZE];
+        packet[0] = (byte) index;
+        putFloat(packet, 1, ax);
+        putFloat(packet, 5, ay);
+        putFloat(packet, 9, az);
+        putFloat(packet, 13, gx);
+        putFloat(packet, 17, gy);
+        putFloat(packet, 21, gz);
+        return packet;
+    }
+
+    static void putFloat(byte[] data, int offset, float value) {
+        int bits = Float.floatToIntBits(value);
+        data[offset] = (byte) bits;
+        data[offset + 1] = (byte) (bits >>> 8);
+        data[offset + 2] = (byte) (bits >>> 16);
+        data[offset + 3] = (byte) (bits >>> 24);
+    }
+}
@@ -0,0 +1,191 @@
+package io.syncsense.lib.sensorhandler;
+
+import static io.syncsense.lib.sensorhandler.MotionPackets.packet;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class MotionProcessorTest {
+
+    private static final long PERIOD_NANOS = 10_000_000;
+    private static final long START_NANOS = 1_000_000_000L;
+
+    private final MotionProcessor processor = new MotionProcessor();
+
+    /**
+     * Feeds a sensor lying flat and spinning around z, at 100 Hz.
+     */
+    private void stream(int device, int samples, float degreesPerSecond) {
+        for (int i = 0; i < samples; i++) {
+            processor.process(device, START_NANOS + i * PERIOD_NANOS, packet(i, 0, 0, 1, 0, 0, degreesPerSecond));
+        }
+    }
+
+    @Test
+    public void activeWhileAnOutputIsSubscribed() {
+        assertFalse(processor.isActive());
+        assertFalse(processor.subscribe(MotionProcessor.OUTPUT_COUNT, 10));
+        assertFalse(processor.subscribe(MotionProcessor.OUTPUT_FILTERED, -1));
+        assertFalse(processor.isActive());
+
+        assertTrue(processor.subscribe(MotionProcessor.OUTPUT_FILTERED, 10));
+        assertTrue(processor.subscribe(MotionProcessor.OUTPUT_STATISTICS, 10));
+        assertTrue(processor.isActive());
+        processor.subscribe(MotionProcessor.OUTPUT_FILTERED, 0);
+        assertTrue(processor.isActive());
+        processor.subscribe(MotionProcessor.OUTPUT_STATISTICS, 0);
+        assertFalse(processor.isActive());
+
+        assertNull(processor.drain(-1));
+        assertNull(processor.drain(MotionProcessor.OUTPUT_FILTERED));
+    }
+
+    @Test
+    public void decimatesToTheSubscribedRate() {
+        processor.subscribe(MotionProcessor.OUTPUT_FILTERED, 25);
+        stream(0, 100, 0);
+
+        ProcessedSampleBatch batch = processor.drain(MotionProcessor.OUTPUT_FILTERED);
+        assertEquals(MotionProcessor.OUTPUT_FILTERED, batch.output);
+        assertEquals(6, batch.width);
+        assertEquals(25, batch.count);
+        for (int row = 0; row < batch.count; row++) {
+            assertEquals(START_NANOS + row * 4 * PERIOD_NANOS, batch.timestampNanos[row]);
+            // Without a low-pass filter the values are the decoded ones
+            assertEquals(1, batch.values[row * 6 + 2], 0);
+        }
+        assertNull(processor.drain(MotionProcessor.OUTPUT_FILTERED));
+
+        // Outputs that are not subscribed get nothing
+        assertNull(processor.drain(MotionProcessor.OUTPUT_ORIENTATION));
+        assertNull(processor.drain(MotionProcessor.OUTPUT_STATISTICS));
+    }
+
+    @Test
+    public void tagsRowsWithTheirSensor() {
+        processor.subscribe(MotionProcessor.OUTPUT_FILTERED, 100);
+        for (int i = 0; i < 10; i++) {
+            processor.process(i % 2, START_NANOS + i / 2 * PERIOD_NANOS, packet(i, i, 0, 0, 0, 0, 0));
+        }
+
+        ProcessedSampleBatch batch = processor.drain(MotionProcessor.OUTPUT_FILTERED);
+        assertEquals(10, batch.count);
+        for (int row = 0; row < batch.count; row++) {
+            assertEquals(row % 2, batch.deviceIndex[row]);
+            assertEquals(row, batch.values[row * 6], 0);
+        }
+    }
+
+    @Test
+    public void rejectsLowPassCutoffsFromHalfTheInputRate() {
+        assertFalse(processor.setLowPassFilter(100, 50));
+        assertFalse(processor.setLowPassFilter(0, 10));
+        assertTrue(processor.setLowPassFilter(100, 10));
+        assertTrue(processor.setLowPassFilter(0, 0));
+    }
+
+    @Test
+    public void lowPassFiltersEveryAxis() {
+        processor.setLowPassFilter(100, 5);
+        processor.subscribe(MotionProcessor.OUTPUT_FILTERED, 100);
+        // Alternating at the Nyquist frequency around 1
+        for (int i = 0; i < 200; i++) {
+            float value = i % 2 == 0 ? 0 : 2;
+            processor.process(0, START_NANOS + i * PERIOD_NANOS, packet(i, value, value, value, value, value, value));
+        }
+
+        ProcessedSampleBatch batch = processor.drain(MotionProcessor.OUTPUT_FILTERED);
+        for (int axis = 0; axis < 6; axis++) {
+            assertEquals(1, batch.values[(batch.count - 1) * 6 + axis], 0.01f);
+        }
+    }
+
+    @Test
+    public void computesStatisticsOverTheWindow() {
+        processor.setStatisticsWindow(10);
+        processor.subscribe(MotionProcessor.OUTPUT_STATISTICS, 100);
+        for (int i = 0; i < 30; i++) {
+            // ax alternates between 1 and 3, the other axes are constant
+            processor.process(0, START_NANOS + i * PERIOD_NANOS, packet(i, i % 2 == 0 ? 1 : 3, 2, -1, 0, 0, 0));
+        }
+
+        ProcessedSampleBatch batch = processor.drain(MotionProcessor.OUTPUT_STATISTICS);
+        assertEquals(12, batch.width);
+        assertEquals(30, batch.count);
+        int last = (batch.count - 1) * 12;
+        assertEquals(2, batch.values[last], 1e-5f);
+        assertEquals(2, batch.values[last + 1], 1e-5f);
+        assertEquals(-1, batch.values[last + 2], 1e-5f);
+        assertEquals(1, batch.values[last + 6], 1e-5f);
+        assertEquals(0, batch.values[last + 7], 1e-5f);
+    }
+
+    /**
+     * A sensor lying flat turning at 90 deg/s for a second ends up a quarter turn around z, whatever the algorithm.
+     */
+    @Test
+    public void integratesTheGyroscopeIntoTheOrientation() {
+        for (int algorithm : new int[]{OrientationFilter.ALGORITHM_MADGWICK, OrientationFilter.ALGORITHM_COMPLEMENTARY}) {
+            assertTrue(processor.setOrientationFilter(algorithm, 0.1f, (float) (Math.PI / 180)));
+            processor.subscribe(MotionProcessor.OUTPUT_ORIENTATION, 100);
+            stream(algorithm, 101, 90);
+
+            ProcessedSampleBatch batch = processor.drain(MotionProcessor.OUTPUT_ORIENTATION);
+            assertEquals(4, batch.width);
+            assertEquals(101, batch.count);
+            // The first sample has nothing to integrate
+            assertEquals(1, batch.values[0], 0);
+            int last = (batch.count - 1) * 4;
+            float half = (float) Math.sqrt(0.5);
+            assertEquals(half, batch.values[last], 0.01f);
+            assertEquals(0, batch.values[last + 1], 0.01f);
+            assertEquals(0, batch.values[last + 2], 0.01f);
+            assertEquals(half, batch.values[last + 3], 0.01f);
+        }
+        assertFalse(processor.setOrientationFilter(2, 0.1f, 1));
+    }
+
+    @Test
+    public void skipsGapsInTheOrientation() {
+        processor.subscribe(MotionProcessor.OUTPUT_ORIENTATION, 100);
+        processor.process(0, START_NANOS, packet(0, 0, 0, 1, 0, 0, 90));
+        // A second later: too long to integrate
+        processor.process(0, START_NANOS + 1_000_000_000L, packet(1, 0, 0, 1, 0, 0, 90));
+
+        ProcessedSampleBatch batch = processor.drain(MotionProcessor.OUTPUT_ORIENTATION);
+        assertEquals(2, batch.count);
+        assertEquals(1, batch.values[4], 0);
+    }
+
+    @Test
+    public void removeDeviceStartsTheSensorOver() {
+        processor.subscribe(MotionProcessor.OUTPUT_ORIENTATION, 100);
+        stream(3, 50, 90);
+        processor.removeDevice(3);
+        processor.drain(MotionProcessor.OUTPUT_ORIENTATION);
+
+        // The orientation starts from the identity, and the decimation grid from the first sample
+        processor.process(3, START_NANOS, packet(0, 0, 0, 1, 0, 0, 90));
+        ProcessedSampleBatch batch = processor.drain(MotionProcessor.OUTPUT_ORIENTATION);
+        assertEquals(1, batch.count);
+        assertEquals(1, batch.values[0], 0);
+        assertEquals(0, batch.values[3], 0);
+    }
+
+    @Test
+    public void unsubscribingDiscardsPendingRows() {
+        processor.subscribe(MotionProcessor.OUTPUT_FILTERED, 100);
+        stream(0, 10, 0);
+        processor.subscribe(MotionProcessor.OUTPUT_FILTERED, 0);
+        assertNull(processor.drain(MotionProcessor.OUTPUT_FILTERED));
+
+        // Rows Unity does not drain are dropped once the buffer is full
+        processor.subscribe(MotionProcessor.OUTPUT_FILTERED, 100);
+        stream(1, 3000, 0);
+        assertEquals(2048, processor.drain(MotionProcessor.OUTPUT_FILTERED).count);
+        assertEquals(3000 - 2048, processor.getDroppedRows(MotionProcessor.OUTPUT_FILTERED));
+    }
+}
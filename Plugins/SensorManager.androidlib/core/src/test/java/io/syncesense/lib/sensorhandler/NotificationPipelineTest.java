@@ -0,0 +1,93 @@
+package io.syncsense.lib.sensorhandler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs the pipeline on the calling thread against a manual clock.
+ */
+public class NotificationPipelineTest {
+
+    private static final String ADDRESS = "5E:00:00:00:00:01";
+    private static final long START_NANOS = 1_000_000_000L;
+
+    private long nowNanos = START_NANOS;
+    private final List<String> sentEvents = new ArrayList<>();
+
+    private final NotificationPipeline pipeline = new NotificationPipeline(
+            new EventSink() {
+                @Override
+                public void send(String method, String message) {
+                    if (method.equals("OnDataReceived"))
+                        sentEvents.add(message);
+                }
+            },
+            new TimeSource() {
+                @Override
+                public long nowNanos() {
+                    return nowNanos;
+                }
+            },
+            new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    command.run();
+                }
+            });
+
+    private SensorChannel register() {
+        SensorChannel channel = new SensorChannel(ADDRESS, pipeline.deviceIds.getOrAssign(ADDRESS), "Cadence_Sensor");
+        pipeline.register(channel);
+        return channel;
+    }
+
+    private static LinkMetricsJson.CharacteristicMetricsJson battery(SensorChannel channel, long nowNanos) {
+        LinkMetricsJson metrics = channel.metrics.snapshot(channel.address, 0, 0, nowNanos);
+        for (LinkMetricsJson.CharacteristicMetricsJson characteristic : metrics.characteristics) {
+            if (characteristic.characteristicUuid.equals(SensorUuids.BATTERY_CHARACTERISTIC_UUID.toString()))
+                return characteristic;
+        }
+        return null;
+    }
+
+    /**
+     * The delivery latency includes the time a notification waited in its delivery buffer for Unity to drain it.
+     */
+    @Test
+    public void measuresDeliveryUpToTheBinaryDrain() {
+        pipeline.setTransportMode(NotificationPipeline.TRANSPORT_MODE_BINARY);
+        SensorChannel channel = register();
+        pipeline.publish(channel, SensorUuids.BATTERY_CHARACTERISTIC_UUID, START_NANOS, new byte[]{80});
+
+        nowNanos += 400_000_000L;
+        assertNotNull(pipeline.drainNotifications());
+        LinkMetricsJson.CharacteristicMetricsJson metrics = battery(channel, nowNanos);
+        assertEquals(400, metrics.deliveryLatencyMaxMillis, 1);
+    }
+
+    /**
+     * Held back by the limit of events in flight, the second notification is only delivered once the first one is
+     * acknowledged.
+     */
+    @Test
+    public void measuresDeliveryUpToTheEvent() {
+        pipeline.configureDelivery(DeliveryBuffer.POLICY_DROP_OLDEST, 0, 0, 1);
+        SensorChannel channel = register();
+        pipeline.publish(channel, SensorUuids.BATTERY_CHARACTERISTIC_UUID, START_NANOS, new byte[]{80});
+        pipeline.publish(channel, SensorUuids.BATTERY_CHARACTERISTIC_UUID, START_NANOS, new byte[]{79});
+        assertEquals(1, sentEvents.size());
+
+        nowNanos += 200_000_000L;
+        pipeline.acknowledgeDataEvents(1);
+        assertEquals(2, sentEvents.size());
+        LinkMetricsJson.CharacteristicMetricsJson metrics = battery(channel, nowNanos);
+        assertEquals(100, metrics.deliveryLatencyMeanMillis, 1);
+        assertEquals(200, metrics.deliveryLatencyMaxMillis, 1);
+    }
+}
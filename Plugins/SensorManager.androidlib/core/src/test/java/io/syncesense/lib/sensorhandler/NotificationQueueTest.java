@@ -0,0 +1,160 @@
+package io.syncsense.lib.sensorhandler;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class NotificationQueueTest {
+
+    @Test
+    public void pollsInOrder() {
+        NotificationQueue queue = new NotificationQueue(4);
+        NotificationQueue.Record record = new NotificationQueue.Record();
+        assertFalse(queue.poll(record));
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(queue.offer(i, 100 + i, new byte[]{(byte) i, (byte) (i + 1)}));
+        }
+        assertEquals(3, queue.size());
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(queue.poll(record));
+            assertEquals(i, record.characteristicId);
+            assertEquals(100 + i, record.timestampNanos);
+            assertEquals(2, record.length);
+            assertEquals(i, record.payload[0]);
+            assertEquals(i + 1, record.payload[1]);
+        }
+        assertFalse(queue.poll(record));
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void dropsWhenFull() {
+        // Rounded up to 8 slots
+        NotificationQueue queue = new NotificationQueue(5);
+        for (int i = 0; i < 8; i++) {
+            assertTrue(queue.offer(0, i, new byte[1]));
+        }
+        assertFalse(queue.offer(0, 8, new byte[1]));
+        assertFalse(queue.offer(0, 9, new byte[1]));
+        assertEquals(2, queue.getDropped());
+        assertEquals(8, queue.size());
+
+        NotificationQueue.Record record = new NotificationQueue.Record();
+        assertTrue(queue.poll(record));
+        assertEquals(0, record.timestampNanos);
+        assertTrue(queue.offer(0, 10, new byte[1]));
+    }
+
+    @Test
+    public void growsPayloads() {
+        NotificationQueue queue = new NotificationQueue(2);
+        NotificationQueue.Record record = new NotificationQueue.Record();
+        byte[] large = new byte[300];
+        for (int i = 0; i < large.length; i++) {
+            large[i] = (byte) i;
+        }
+
+        queue.offer(1, 1, large);
+        queue.offer(1, 2, null);
+        assertTrue(queue.poll(record));
+        assertEquals(large.length, record.length);
+        assertArrayEquals(large, Arrays.copyOf(record.payload, record.length));
+        assertTrue(queue.poll(record));
+        assertEquals(0, record.length);
+    }
+
+    /**
+     * Several consumers race for every slot while the producer refills the ones taken: every notification must come
+     * out exactly once and never mixed with another one, whatever its length.
+     */
+    @Test
+    public void concurrentConsumersTakeEveryNotificationOnce() throws InterruptedException {
+        final int count = 50_000;
+        final int consumerCount = 4;
+        final NotificationQueue queue = new NotificationQueue(16);
+        final AtomicInteger taken = new AtomicInteger();
+        final AtomicReference<String> failure = new AtomicReference<>();
+        final int[] seen = new int[count];
+
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < count; i++) {
+                    // Lengths vary so that a slot may be refilled with a larger payload than the one being copied
+                    byte[] value = new byte[1 + i % 97];
+                    Arrays.fill(value, (byte) i);
+                    while (!queue.offer(i % NotificationPipeline.MAX_CHARACTERISTICS, i, value)) {
+                        Thread.yield();
+                    }
+                }
+            }
+        });
+
+        List<Thread> consumers = new ArrayList<>();
+        for (int c = 0; c < consumerCount; c++) {
+            consumers.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        consume();
+                    } catch (RuntimeException e) {
+                        failure.set(e.toString());
+                    }
+                }
+
+                private void consume() {
+                    NotificationQueue.Record record = new NotificationQueue.Record();
+                    while (taken.get() < count && failure.get() == null) {
+                        if (!queue.poll(record)) {
+                            Thread.yield();
+                            continue;
+                        }
+
+                        int i = (int) record.timestampNanos;
+                        if (record.characteristicId != i % NotificationPipeline.MAX_CHARACTERISTICS
+                                || record.length != 1 + i % 97) {
+                            failure.set("Mixed up notification " + i);
+                            return;
+                        }
+                        for (int b = 0; b < record.length; b++) {
+                            if (record.payload[b] != (byte) i) {
+                                failure.set("Torn payload of notification " + i);
+                                return;
+                            }
+                        }
+                        synchronized (seen) {
+                            seen[i]++;
+                        }
+                        taken.incrementAndGet();
+                    }
+                }
+            }));
+        }
+
+        for (Thread consumer : consumers) {
+            consumer.start();
+        }
+        producer.start();
+        producer.join(30_000);
+        for (Thread consumer : consumers) {
+            consumer.join(30_000);
+        }
+
+        assertEquals(null, failure.get());
+        assertEquals(count, taken.get());
+        for (int i = 0; i < count; i++) {
+            assertEquals("Notification " + i, 1, seen[i]);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package io.syncsense.lib.sensorhandler;
+
+import static io.syncsense.lib.sensorhandler.JsonUtils.GSON;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class RecordingReplayTest {
+
+    private static final int DEVICES = 2;
+    private static final long PERIOD_NANOS = 10_000_000;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final CountDownLatch complete = new CountDownLatch(1);
+    private volatile ReplayJson result;
+    private final AtomicLong dataEvents = new AtomicLong();
+
+    private final EventSink sink = new EventSink() {
+        @Override
+        public void send(String method, String message) {
+            if (method.equals("OnReplayComplete")) {
+                result = GSON.fromJson(message, ReplayJson.class);
+                complete.countDown();
+            } else if (method.equals("OnDataReceived")) {
+                // A slow consumer, so the replay has to wait for the pipeline
+                if (dataEvents.incrementAndGet() % 100 == 0) {
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        }
+    };
+
+    private RecordingReplay replay;
+
+    @After
+    public void tearDown() {
+        if (replay != null)
+            replay.release();
+    }
+
+    /**
+     * Everything the replay hands to its listener, in order.
+     */
+    private static class Collector implements SensorTransport.Listener {
+        final List<String> states = new ArrayList<>();
+        final List<String> addresses = new ArrayList<>();
+        final List<UUID> characteristics = new ArrayList<>();
+        final List<Long> timestamps = new ArrayList<>();
+        final List<byte[]> values = new ArrayList<>();
+
+        @Override
+        public synchronized void onConnectionStateChange(String deviceAddress, String deviceName, int status, int newState) {
+            String state = newState == SensorTransport.STATE_CONNECTED ? " connected " : " disconnected ";
+            states.add(deviceAddress + state + deviceName);
+        }
+
+        @Override
+        public synchronized void onNotification(String deviceAddress, UUID characteristicUuid, long timestampNanos, byte[] value) {
+            addresses.add(deviceAddress);
+            characteristics.add(characteristicUuid);
+            timestamps.add(timestampNanos);
+            values.add(Arrays.copyOf(value, value.length));
+        }
+    }
+
+    private static String address(int deviceIndex) {
+        return "5E:00:00:00:00:0" + deviceIndex;
+    }
+
+    private static byte[] value(int i) {
+        return i % 10 == 0 ? new byte[]{(byte) i} : new byte[]{(byte) i, (byte) (i >> 8), 1, 2, 3};
+    }
+
+    private static int device(int i) {
+        return i % DEVICES;
+    }
+
+    private File record(int notifications) throws IOException {
+        File file = folder.newFile();
+        SessionRecorder recorder = new SessionRecorder(file.getPath(), true, new SessionRecorder.Dictionary() {
+            @Override
+            public String getDeviceAddress(int deviceIndex) {
+                return address(deviceIndex);
+            }
+
+            @Override
+            public String getDeviceName(int deviceIndex) {
+                return "Cadence_Sensor";
+            }
+
+            @Override
+            public String getCharacteristicUuid(int characteristicId) {
+                return characteristicId == 0 ? SensorUuids.ACCL_GYRO_CHARACTERISTIC_UUID.toString()
+                        : SensorUuids.BATTERY_CHARACTERISTIC_UUID.toString();
+            }
+        }, 0, 0);
+        for (int i = 0; i < notifications; i++) {
+            byte[] value = value(i);
+            recorder.record(device(i), i % 10 == 0 ? 1 : 0, 5_000_000_000L + i * PERIOD_NANOS, value, value.length);
+        }
+        recorder.stop();
+        return file;
+    }
+
+    private ReplayJson awaitResult() throws InterruptedException {
+        assertTrue(complete.await(30, TimeUnit.SECONDS));
+        assertTrue(replay.isFinished());
+        return result;
+    }
+
+    @Test
+    public void replaysEveryNotificationInOrder() throws IOException, InterruptedException {
+        File file = record(200);
+        Collector collector = new Collector();
+        replay = new RecordingReplay(file.getPath(), RecordingReplay.SPEED_AS_FAST_AS_POSSIBLE, TimeSource.NANO_TIME, sink);
+        replay.setListener(collector);
+        replay.start();
+
+        ReplayJson json = awaitResult();
+        assertEquals(200, json.notifications);
+        assertEquals(199 * PERIOD_NANOS / 1_000_000, json.recordedMillis);
+        assertFalse(json.stopped);
+        assertNull(json.error);
+        assertEquals(200, replay.getReplayedNotifications());
+
+        assertEquals(200, collector.values.size());
+        for (int i = 0; i < 200; i++) {
+            assertEquals(address(device(i)), collector.addresses.get(i));
+            assertEquals(i % 10 == 0 ? SensorUuids.BATTERY_CHARACTERISTIC_UUID : SensorUuids.ACCL_GYRO_CHARACTERISTIC_UUID,
+                    collector.characteristics.get(i));
+            assertArrayEquals(value(i), collector.values.get(i));
+        }
+        // Every device connects before its first notification and disconnects at the end
+        assertEquals(Arrays.asList(
+                address(0) + " connected Cadence_Sensor",
+                address(1) + " connected Cadence_Sensor",
+                address(0) + " disconnected Cadence_Sensor",
+                address(1) + " disconnected Cadence_Sensor"), collector.states);
+        assertEquals(0, replay.getDeviceAddresses().length);
+    }
+
+    @Test
+    public void keepsTheRecordedSpacingDividedByTheSpeed() throws IOException, InterruptedException {
+        File file = record(50);
+        Collector collector = new Collector();
+        replay = new RecordingReplay(file.getPath(), 10, TimeSource.NANO_TIME, sink);
+        replay.setListener(collector);
+        long start = System.nanoTime();
+        replay.start();
+
+        ReplayJson json = awaitResult();
+        assertEquals(50, json.notifications);
+        // 490 ms recorded, replayed in 49 ms
+        assertTrue(System.nanoTime() - start >= 49 * PERIOD_NANOS / 10);
+        for (int i = 1; i < 50; i++) {
+            assertEquals(i * PERIOD_NANOS / 10, collector.timestamps.get(i) - collector.timestamps.get(0));
+        }
+    }
+
+    @Test
+    public void releaseStopsTheReplay() throws IOException, InterruptedException {
+        File file = record(500);
+        Collector collector = new Collector();
+        replay = new RecordingReplay(file.getPath(), 1, TimeSource.NANO_TIME, sink);
+        replay.setListener(collector);
+        replay.start();
+        Thread.sleep(200);
+        replay.release();
+
+        ReplayJson json = awaitResult();
+        assertTrue(json.stopped);
+        assertTrue(json.notifications > 0 && json.notifications < 500);
+        assertEquals(address(1) + " disconnected Cadence_Sensor", collector.states.get(collector.states.size() - 1));
+    }
+
+    @Test
+    public void reportsUnreadableFiles() throws InterruptedException {
+        replay = new RecordingReplay(new File(folder.getRoot(), "missing").getPath(), 1, TimeSource.NANO_TIME, sink);
+        replay.start();
+
+        ReplayJson json = awaitResult();
+        assertNotNull(json.error);
+        assertEquals(0, json.notifications);
+    }
+
+    /**
+     * Replayed as fast as possible through the pipeline to a slow sink: the replay waits instead of losing
+     * notifications.
+     */
+    @Test
+    public void waitsForTheSession() throws IOException, InterruptedException {
+        int notifications = 5000;
+        File file = record(notifications);
+        ExecutorService dispatcher = Executors.newSingleThreadExecutor();
+        try {
+            NotificationPipeline pipeline = new NotificationPipeline(sink, TimeSource.NANO_TIME, dispatcher);
+            TransportSession session = new TransportSession(pipeline, sink);
+            replay = new RecordingReplay(file.getPath(), RecordingReplay.SPEED_AS_FAST_AS_POSSIBLE, TimeSource.NANO_TIME, sink);
+            replay.setListener(session);
+            replay.setSession(session);
+            replay.start();
+
+            ReplayJson json = awaitResult();
+            assertEquals(notifications, json.notifications);
+            assertEquals(notifications, dataEvents.get());
+            assertEquals(0, session.getRejectedNotifications());
+        } finally {
+            dispatcher.shutdown();
+            dispatcher.awaitTermination(1, TimeUnit.SECONDS);
+        }
+    }
+}
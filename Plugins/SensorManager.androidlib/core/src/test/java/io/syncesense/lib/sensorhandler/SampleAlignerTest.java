@@ -0,0 +1,113 @@
+package io.syncsense.lib.sensorhandler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class SampleAlignerTest {
+
+    private static final long START_NANOS = 1_000_000_000L;
+    private static final long INPUT_PERIOD_NANOS = 10_000_000;
+    private static final long OUTPUT_PERIOD_NANOS = 20_000_000;
+
+    private static final int A = 1;
+    private static final int B = 2;
+    // B samples between two samples of A
+    private static final long B_OFFSET_NANOS = 3_000_000;
+
+    private final SampleAligner aligner = new SampleAligner(1024);
+
+    /**
+     * Every axis is linear in the sample time, so interpolated rows can be checked exactly.
+     */
+    private static float millis(long timeNanos) {
+        return (timeNanos - START_NANOS) / 1e6f;
+    }
+
+    private void add(int device, int sample, long timeNanos) {
+        float value = millis(timeNanos);
+        aligner.add(device, timeNanos, MotionPackets.packet(sample, value, -value, 1, 2 * value, 0, device));
+    }
+
+    private void assertRow(MotionSampleBatch batch, int row, int device) {
+        long frameNanos = batch.sampleTimestampNanos[row];
+        assertEquals(device, batch.deviceIndex[row]);
+        assertEquals(frameNanos, batch.timestampNanos[row]);
+        assertEquals(0, Math.floorMod(frameNanos, OUTPUT_PERIOD_NANOS));
+        assertEquals(millis(frameNanos), batch.accX[row], 1e-3f);
+        assertEquals(-millis(frameNanos), batch.accY[row], 1e-3f);
+        assertEquals(1, batch.accZ[row], 0);
+        assertEquals(2 * millis(frameNanos), batch.gyroX[row], 2e-3f);
+        assertEquals(device, batch.gyroZ[row], 0);
+    }
+
+    @Test
+    public void interpolatesEverySensorOntoTheGrid() {
+        aligner.configure(50, 100);
+        for (int i = 0; i < 100; i++) {
+            add(A, i, START_NANOS + i * INPUT_PERIOD_NANOS);
+            add(B, i, START_NANOS + B_OFFSET_NANOS + i * INPUT_PERIOD_NANOS);
+        }
+
+        MotionSampleBatch batch = aligner.drain();
+        assertNotNull(batch);
+        // The first frame precedes the first sample of B
+        assertEquals(0, batch.index[0]);
+        assertEquals(START_NANOS, batch.sampleTimestampNanos[0]);
+        assertRow(batch, 0, A);
+
+        int frames = 1;
+        for (int row = 1; row < batch.count; row += 2, frames++) {
+            assertEquals(frames, batch.index[row]);
+            assertEquals(frames, batch.index[row + 1]);
+            assertEquals(START_NANOS + frames * OUTPUT_PERIOD_NANOS, batch.sampleTimestampNanos[row]);
+            assertRow(batch, row, A);
+            assertRow(batch, row + 1, B);
+        }
+        // Up to the last sample of A, the earlier of the two sensors
+        assertEquals(50, frames);
+        assertNull(aligner.drain());
+    }
+
+    @Test
+    public void leavesASilentSensorOut() {
+        aligner.configure(50, 100);
+        for (int i = 0; i < 50; i++) {
+            add(A, i, START_NANOS + i * INPUT_PERIOD_NANOS);
+            add(B, i, START_NANOS + B_OFFSET_NANOS + i * INPUT_PERIOD_NANOS);
+        }
+        aligner.drain();
+
+        long lastNanos = 0;
+        for (int i = 50; i < 100; i++) {
+            lastNanos = START_NANOS + i * INPUT_PERIOD_NANOS;
+            add(A, i, lastNanos);
+        }
+
+        MotionSampleBatch batch = aligner.drain();
+        assertNotNull(batch);
+        int last = batch.count - 1;
+        assertRow(batch, last, A);
+        assertTrue(batch.sampleTimestampNanos[last] > lastNanos - OUTPUT_PERIOD_NANOS);
+        // B holds the frames back only until it is later than the maximum latency
+        long silentFrom = START_NANOS + B_OFFSET_NANOS + 49 * INPUT_PERIOD_NANOS + 100_000_000;
+        for (int row = 0; row < batch.count; row++) {
+            if (batch.sampleTimestampNanos[row] > silentFrom)
+                assertEquals(A, batch.deviceIndex[row]);
+        }
+    }
+
+    @Test
+    public void ignoresLateSamples() {
+        aligner.configure(50, 100);
+        add(A, 0, START_NANOS);
+        add(A, 2, START_NANOS + 2 * INPUT_PERIOD_NANOS);
+        aligner.drain();
+
+        add(A, 1, START_NANOS + INPUT_PERIOD_NANOS);
+        assertNull(aligner.drain());
+    }
+}
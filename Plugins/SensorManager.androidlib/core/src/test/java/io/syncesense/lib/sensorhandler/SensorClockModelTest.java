@@ -0,0 +1,102 @@
+package io.syncsense.lib.sensorhandler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class SensorClockModelTest {
+
+    private static final double NOMINAL_RATE_HZ = 100;
+    private static final double DRIFT_PPM = 200;
+    private static final double PERIOD_NANOS = 1e9 / NOMINAL_RATE_HZ * (1 + DRIFT_PPM / 1e6);
+
+    private static final long START_NANOS = 5_000_000_000L;
+    private static final long MIN_LATENCY_NANOS = 3_000_000;
+    private static final long CONNECTION_INTERVAL_NANOS = 7_500_000;
+
+    /**
+     * A drifting sensor clock, delivered over a link that holds every packet until the next connection event and
+     * sometimes retransmits it.
+     */
+    private static class Link {
+        final Random random = new Random(7);
+
+        long sampleNanos(long sample) {
+            return START_NANOS + (long) (sample * PERIOD_NANOS);
+        }
+
+        long arrivalNanos(long sample) {
+            long ready = sampleNanos(sample) + MIN_LATENCY_NANOS;
+            long event = (ready + CONNECTION_INTERVAL_NANOS - 1) / CONNECTION_INTERVAL_NANOS * CONNECTION_INTERVAL_NANOS;
+            if (random.nextFloat() < 0.05f)
+                event += CONNECTION_INTERVAL_NANOS * (1 + random.nextInt(4));
+            return event;
+        }
+    }
+
+    @Test
+    public void convergesToTheSensorClock() {
+        SensorClockModel clock = new SensorClockModel((float) NOMINAL_RATE_HZ);
+        Link link = new Link();
+
+        long maxErrorNanos = 0;
+        for (long sample = 0; sample < 6000; sample++) {
+            if (link.random.nextFloat() < 0.02f)
+                continue;
+
+            long estimate = clock.onSample((int) sample, link.arrivalNanos(sample));
+            // Past the first window, the estimate must follow the fastest packets, not the average ones
+            if (sample >= SensorClockModel.WINDOW_SIZE) {
+                assertTrue(clock.isConverged());
+                maxErrorNanos = Math.max(maxErrorNanos,
+                        Math.abs(estimate - (link.sampleNanos(sample) + MIN_LATENCY_NANOS)));
+            }
+        }
+        // The fastest packets of a window still waited a little for their connection event
+        assertTrue("Max error " + maxErrorNanos + " ns", maxErrorNanos < 1_000_000);
+
+        SensorClockJson snapshot = clock.snapshot("5E:00:00:00:00:01");
+        assertTrue(snapshot.converged);
+        // The phase of the samples against the connection events moves slower than the window, which tilts the fit
+        assertEquals(DRIFT_PPM, snapshot.driftPpm, 50);
+        assertTrue(snapshot.latencyMeanMillis > 1);
+    }
+
+    /**
+     * More packets lost at once than the 8 bit index can tell apart: the receive time gives the number of cycles.
+     */
+    @Test
+    public void unwrapsLongGaps() {
+        SensorClockModel clock = new SensorClockModel((float) NOMINAL_RATE_HZ);
+        Link link = new Link();
+
+        for (long sample = 0; sample < 3000; sample++) {
+            clock.onSample((int) sample, link.arrivalNanos(sample));
+        }
+        assertTrue(clock.isConverged());
+
+        for (long sample = 3700; sample < 3800; sample++) {
+            long estimate = clock.onSample((int) sample, link.arrivalNanos(sample));
+            assertEquals(link.sampleNanos(sample) + MIN_LATENCY_NANOS, estimate, 1_000_000);
+        }
+    }
+
+    @Test
+    public void resetForgetsTheFit() {
+        SensorClockModel clock = new SensorClockModel((float) NOMINAL_RATE_HZ);
+        Link link = new Link();
+        for (long sample = 0; sample < 100; sample++) {
+            clock.onSample((int) sample, link.arrivalNanos(sample));
+        }
+        assertTrue(clock.isConverged());
+
+        clock.reset();
+        assertFalse(clock.isConverged());
+        // Until it converges again, the receive time is all there is
+        assertEquals(123_456_789L, clock.onSample(0, 123_456_789L));
+    }
+}
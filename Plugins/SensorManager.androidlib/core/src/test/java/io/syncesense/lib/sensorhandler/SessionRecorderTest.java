@@ -0,0 +1,273 @@
+package io.syncsense.lib.sensorhandler;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Records notifications with SessionRecorder and reads them back with SessionRecordingReader, also from files left
+ * truncated or corrupted by a crash.
+ */
+public class SessionRecorderTest {
+
+    // About 150 KB of entries: more than one chunk, but never more than the chunks the recorder can fill
+    private static final int NOTIFICATIONS = 4000;
+    private static final long START_ELAPSED_NANOS = 123_456_789_000L;
+    private static final long START_WALL_CLOCK_MILLIS = 1_700_000_000_000L;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private static final SessionRecorder.Dictionary DICTIONARY = new SessionRecorder.Dictionary() {
+        @Override
+        public String getDeviceAddress(int deviceIndex) {
+            return "5E:00:00:00:00:0" + deviceIndex;
+        }
+
+        @Override
+        public String getDeviceName(int deviceIndex) {
+            return deviceIndex == 2 ? null : "Cadence_Sensor " + deviceIndex;
+        }
+
+        @Override
+        public String getCharacteristicUuid(int characteristicId) {
+            return characteristicId == 0 ? SensorUuids.ACCL_GYRO_CHARACTERISTIC_UUID.toString()
+                    : SensorUuids.BATTERY_CHARACTERISTIC_UUID.toString();
+        }
+    };
+
+    private static class Notification {
+        final int deviceIndex;
+        final int characteristicId;
+        final long timestampNanos;
+        final byte[] payload;
+
+        Notification(int deviceIndex, int characteristicId, long timestampNanos, byte[] payload) {
+            this.deviceIndex = deviceIndex;
+            this.characteristicId = characteristicId;
+            this.timestampNanos = timestampNanos;
+            this.payload = payload;
+        }
+    }
+
+    private static class Collector implements SessionRecordingReader.Listener {
+        final Map<Integer, String> addresses = new HashMap<>();
+        final Map<Integer, String> names = new HashMap<>();
+        final Map<Integer, String> characteristics = new HashMap<>();
+        final List<Notification> notifications = new ArrayList<>();
+
+        @Override
+        public void onDevice(int deviceIndex, String deviceAddress, String deviceName) {
+            addresses.put(deviceIndex, deviceAddress);
+            names.put(deviceIndex, deviceName);
+        }
+
+        @Override
+        public void onCharacteristic(int characteristicId, String characteristicUuid) {
+            characteristics.put(characteristicId, characteristicUuid);
+        }
+
+        @Override
+        public void onNotification(int deviceIndex, int characteristicId, long timestampNanos, byte[] payload, int length) {
+            notifications.add(new Notification(deviceIndex, characteristicId, timestampNanos,
+                    Arrays.copyOf(payload, length)));
+        }
+    }
+
+    private List<Notification> record(File file, boolean compress) throws IOException {
+        Random random = new Random(11);
+        List<Notification> recorded = new ArrayList<>();
+        SessionRecorder recorder = new SessionRecorder(file.getPath(), compress, DICTIONARY, START_ELAPSED_NANOS,
+                START_WALL_CLOCK_MILLIS);
+        for (int i = 0; i < NOTIFICATIONS; i++) {
+            int characteristicId = i % 50 == 0 ? 1 : 0;
+            byte[] payload = characteristicId == 1 ? new byte[]{(byte) (100 - i / 100)} : new byte[MotionSampleBuffer.PACKET_SIZE];
+            if (characteristicId == 0) {
+                // Mostly repeating, like motion data, so deflate has something to do
+                payload[0] = (byte) i;
+                payload[1 + random.nextInt(payload.length - 1)] = (byte) random.nextInt();
+            }
+            Notification notification = new Notification(1 + i % 3, characteristicId,
+                    START_ELAPSED_NANOS + i * 10_000_000L, payload);
+            recorder.record(notification.deviceIndex, notification.characteristicId, notification.timestampNanos,
+                    notification.payload, notification.payload.length);
+            recorded.add(notification);
+        }
+        recorder.stop();
+
+        assertEquals(0, recorder.getDroppedEntries());
+        assertEquals(NOTIFICATIONS, recorder.getRecordedNotifications());
+        return recorded;
+    }
+
+    private static Collector read(File file) throws IOException {
+        Collector collector = new Collector();
+        long count = new SessionRecordingReader(file.getPath()).read(collector);
+        assertEquals(collector.notifications.size(), count);
+        return collector;
+    }
+
+    private static void assertPrefix(List<Notification> expected, List<Notification> actual) {
+        assertTrue(actual.size() <= expected.size());
+        for (int i = 0; i < actual.size(); i++) {
+            Notification e = expected.get(i);
+            Notification a = actual.get(i);
+            assertEquals(e.deviceIndex, a.deviceIndex);
+            assertEquals(e.characteristicId, a.characteristicId);
+            assertEquals(e.timestampNanos, a.timestampNanos);
+            assertArrayEquals(e.payload, a.payload);
+        }
+    }
+
+    /**
+     * @return the file offset of every chunk header
+     */
+    private static List<Long> chunkOffsets(File file) throws IOException {
+        List<Long> offsets = new ArrayList<>();
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            byte[] header = new byte[SessionRecorder.CHUNK_HEADER_SIZE];
+            long offset = SessionRecorder.FILE_HEADER_SIZE;
+            while (offset < input.length()) {
+                offsets.add(offset);
+                input.seek(offset);
+                input.readFully(header);
+                int storedLength = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN).getInt(4);
+                offset += SessionRecorder.CHUNK_HEADER_SIZE + storedLength;
+            }
+            assertEquals(input.length(), offset);
+        }
+        return offsets;
+    }
+
+    private void roundTrip(boolean compress) throws IOException {
+        File file = folder.newFile();
+        List<Notification> recorded = record(file, compress);
+        assertTrue(chunkOffsets(file).size() > 1);
+
+        SessionRecordingReader reader = new SessionRecordingReader(file.getPath());
+        Collector collector = new Collector();
+        assertEquals(NOTIFICATIONS, reader.read(collector));
+        assertEquals(START_ELAPSED_NANOS, reader.getStartElapsedNanos());
+        assertEquals(START_WALL_CLOCK_MILLIS, reader.getStartWallClockMillis());
+        assertPrefix(recorded, collector.notifications);
+
+        assertEquals(3, collector.addresses.size());
+        assertEquals("5E:00:00:00:00:01", collector.addresses.get(1));
+        assertEquals("Cadence_Sensor 1", collector.names.get(1));
+        assertNull(collector.names.get(2));
+        assertEquals(SensorUuids.ACCL_GYRO_CHARACTERISTIC_UUID.toString(), collector.characteristics.get(0));
+        assertEquals(SensorUuids.BATTERY_CHARACTERISTIC_UUID.toString(), collector.characteristics.get(1));
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        roundTrip(false);
+    }
+
+    @Test
+    public void roundTripCompressed() throws IOException {
+        roundTrip(true);
+    }
+
+    /**
+     * Cuts the file anywhere in its last chunk: the chunks before it are read, then the recording ends.
+     */
+    private void truncated(boolean compress) throws IOException {
+        File file = folder.newFile();
+        List<Notification> recorded = record(file, compress);
+        List<Long> offsets = chunkOffsets(file);
+        long lastChunk = offsets.get(offsets.size() - 1);
+        long length = file.length();
+
+        int complete = -1;
+        for (long cut : new long[]{length - 1, (lastChunk + length) / 2, lastChunk + SessionRecorder.CHUNK_HEADER_SIZE,
+                lastChunk + 5, lastChunk}) {
+            try (RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+                output.setLength(cut);
+            }
+            Collector collector = read(file);
+            assertPrefix(recorded, collector.notifications);
+            if (complete < 0)
+                complete = collector.notifications.size();
+            assertEquals(complete, collector.notifications.size());
+        }
+        assertTrue(complete > 0 && complete < NOTIFICATIONS);
+    }
+
+    @Test
+    public void truncatedTrailingChunk() throws IOException {
+        truncated(false);
+    }
+
+    @Test
+    public void truncatedTrailingChunkCompressed() throws IOException {
+        truncated(true);
+    }
+
+    /**
+     * Overwrites a field of the last chunk header, or a byte of its data.
+     */
+    private void corrupted(boolean compress, int position, int value) throws IOException {
+        File file = folder.newFile();
+        List<Notification> recorded = record(file, compress);
+        List<Long> offsets = chunkOffsets(file);
+        long lastChunk = offsets.get(offsets.size() - 1);
+
+        // The notifications of every chunk but the last one
+        File intact = folder.newFile();
+        try (RandomAccessFile input = new RandomAccessFile(file, "r");
+             RandomAccessFile output = new RandomAccessFile(intact, "rw")) {
+            byte[] head = new byte[(int) lastChunk];
+            input.readFully(head);
+            output.write(head);
+        }
+        int expected = read(intact).notifications.size();
+
+        try (RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+            byte[] bytes = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(value).array();
+            output.seek(lastChunk + position);
+            output.write(bytes);
+        }
+        Collector collector = read(file);
+        assertPrefix(recorded, collector.notifications);
+        assertEquals(expected, collector.notifications.size());
+    }
+
+    @Test
+    public void corruptedChunkHeader() throws IOException {
+        for (boolean compress : new boolean[]{false, true}) {
+            // Raw length, then stored length
+            corrupted(compress, 0, -1);
+            corrupted(compress, 0, Integer.MAX_VALUE);
+            corrupted(compress, 0, SessionRecorder.CHUNK_SIZE + 1);
+            corrupted(compress, 4, -1);
+            corrupted(compress, 4, Integer.MAX_VALUE);
+            corrupted(compress, 4, SessionRecorder.MAX_COMPRESSED_CHUNK_SIZE + 1);
+            // Checksum
+            corrupted(compress, 12, 0);
+        }
+    }
+
+    @Test
+    public void corruptedChunkData() throws IOException {
+        corrupted(false, SessionRecorder.CHUNK_HEADER_SIZE + 20, 0x5A5A5A5A);
+        corrupted(true, SessionRecorder.CHUNK_HEADER_SIZE + 20, 0x5A5A5A5A);
+    }
+}
@@ -0,0 +1,161 @@
+package io.syncsense.lib.sensorhandler;
+
+import static io.syncsense.lib.sensorhandler.JsonUtils.GSON;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streams a simulated fleet through the whole notification path, as FleetLoadTest does, and checks that every
+ * notification reaches the event sink of the right device.
+ */
+public class SimulatedSensorFleetTest {
+
+    private static final int RATE_HZ = 100;
+    private static final long STREAM_MILLIS = 2000;
+
+    private final ExecutorService dispatcher = Executors.newSingleThreadExecutor();
+    private final AtomicLong dataEvents = new AtomicLong();
+    private final AtomicInteger connected = new AtomicInteger();
+    private final ConcurrentHashMap<String, AtomicLong> dataEventsByDevice = new ConcurrentHashMap<>();
+
+    private final EventSink sink = new EventSink() {
+        @Override
+        public void send(String method, String message) {
+            if (method.equals("OnDataReceived")) {
+                DataReceivedJson data = GSON.fromJson(message, DataReceivedJson.class);
+                AtomicLong count = dataEventsByDevice.get(data.deviceAddress);
+                if (count == null) {
+                    dataEventsByDevice.putIfAbsent(data.deviceAddress, new AtomicLong());
+                    count = dataEventsByDevice.get(data.deviceAddress);
+                }
+                count.incrementAndGet();
+                dataEvents.incrementAndGet();
+            } else if (method.equals("OnDeviceConnectionStateChange")) {
+                ConnectionStateChangeJson change = GSON.fromJson(message, ConnectionStateChangeJson.class);
+                if (change.newState == SensorTransport.STATE_CONNECTED)
+                    connected.incrementAndGet();
+            }
+        }
+    };
+
+    private final NotificationPipeline pipeline = new NotificationPipeline(sink, TimeSource.NANO_TIME, dispatcher);
+    private SimulatedSensorFleet fleet;
+
+    @After
+    public void tearDown() throws InterruptedException {
+        if (fleet != null)
+            fleet.release();
+        dispatcher.shutdown();
+        dispatcher.awaitTermination(1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Connects every sensor, streams, then unsubscribes them all and waits for the pipeline to drain.
+     *
+     * @return the channels of the sensors, still holding their metrics
+     */
+    private List<SensorChannel> stream(int sensorCount, float packetLoss) throws InterruptedException {
+        fleet = new SimulatedSensorFleet(sensorCount, RATE_HZ, TimeSource.NANO_TIME, 42);
+        fleet.setConnectDelay(10);
+        fleet.setPacketLoss(packetLoss);
+        final TransportSession session = new TransportSession(pipeline, sink);
+        fleet.setListener(new SensorTransport.Listener() {
+            @Override
+            public void onConnectionStateChange(String deviceAddress, String deviceName, int status, int newState) {
+                session.onConnectionStateChange(deviceAddress, deviceName, status, newState);
+                if (newState == SensorTransport.STATE_CONNECTED) {
+                    fleet.subscribe(deviceAddress, SensorUuids.MOTION_SERVICE_UUID, SensorUuids.ACCL_GYRO_CHARACTERISTIC_UUID);
+                    fleet.subscribe(deviceAddress, SensorUuids.BATTERY_SERVICE_UUID, SensorUuids.BATTERY_CHARACTERISTIC_UUID);
+                }
+            }
+
+            @Override
+            public void onNotification(String deviceAddress, UUID characteristicUuid, long timestampNanos, byte[] value) {
+                session.onNotification(deviceAddress, characteristicUuid, timestampNanos, value);
+            }
+        });
+
+        for (String address : fleet.getDeviceAddresses()) {
+            assertTrue(fleet.connect(address));
+        }
+        Thread.sleep(STREAM_MILLIS);
+
+        // A sensor no longer notifies once unsubscribe returns
+        for (String address : fleet.getDeviceAddresses()) {
+            fleet.unsubscribe(address, SensorUuids.MOTION_SERVICE_UUID, SensorUuids.ACCL_GYRO_CHARACTERISTIC_UUID);
+            fleet.unsubscribe(address, SensorUuids.BATTERY_SERVICE_UUID, SensorUuids.BATTERY_CHARACTERISTIC_UUID);
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (dataEvents.get() < fleet.getSentPackets() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(sensorCount, connected.get());
+        assertEquals(0, session.getRejectedNotifications());
+        return pipeline.getChannels();
+    }
+
+    private void assertEveryNotificationDelivered(int sensorCount) throws InterruptedException {
+        List<SensorChannel> channels = stream(sensorCount, 0);
+        assertEquals(sensorCount, channels.size());
+        assertEquals(fleet.getSentPackets(), dataEvents.get());
+
+        // Each sensor streamed for nearly the whole run
+        long minimum = RATE_HZ * STREAM_MILLIS / 1000 * 8 / 10;
+        for (SensorChannel channel : channels) {
+            AtomicLong count = dataEventsByDevice.get(channel.address);
+            assertTrue(channel.address + " sent " + count, count != null && count.get() >= minimum);
+
+            LinkMetricsJson metrics = channel.metrics.snapshot(channel.address, channel.notifications.getDropped(),
+                    channel.delivery.getDropped(), System.nanoTime());
+            assertEquals(0, metrics.droppedNotifications);
+            assertEquals(0, metrics.droppedDeliveries);
+            long notifications = 0;
+            for (LinkMetricsJson.CharacteristicMetricsJson characteristic : metrics.characteristics) {
+                assertEquals(0, characteristic.lostSamples);
+                notifications += characteristic.notifications;
+            }
+            assertEquals(count.get(), notifications);
+        }
+    }
+
+    @Test
+    public void eightSensors() throws InterruptedException {
+        assertEveryNotificationDelivered(8);
+    }
+
+    @Test
+    public void sixteenSensors() throws InterruptedException {
+        assertEveryNotificationDelivered(16);
+    }
+
+    @Test
+    public void lostPacketsAreCounted() throws InterruptedException {
+        List<SensorChannel> channels = stream(8, 0.05f);
+        assertEquals(fleet.getSentPackets(), dataEvents.get());
+
+        long lostSamples = 0;
+        for (SensorChannel channel : channels) {
+            LinkMetricsJson metrics = channel.metrics.snapshot(channel.address, 0, 0, System.nanoTime());
+            for (LinkMetricsJson.CharacteristicMetricsJson characteristic : metrics.characteristics) {
+                lostSamples += characteristic.lostSamples;
+            }
+        }
+        // Packets lost after the last one received cannot be told apart from the end of the stream
+        long lost = fleet.getLostPackets();
+        assertTrue(lost > 0);
+        assertTrue("Counted " + lostSamples + " of " + lost, lostSamples <= lost && lostSamples >= lost - 8 * 3);
+    }
+}
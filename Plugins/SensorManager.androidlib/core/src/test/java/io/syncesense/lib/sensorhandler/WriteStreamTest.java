@@ -0,0 +1,139 @@
+package io.syncsense.lib.sensorhandler;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class WriteStreamTest {
+
+    private static byte[] message(int first, int length) {
+        byte[] message = new byte[length];
+        for (int i = 0; i < length; i++) {
+            message[i] = (byte) (first + i);
+        }
+        return message;
+    }
+
+    @Test
+    public void packsWholeMessagesUpToThePayload() {
+        WriteStream stream = new WriteStream(0, 0, true);
+        assertTrue(stream.offer(message(0, 5)));
+        assertTrue(stream.offer(message(10, 5)));
+        assertTrue(stream.offer(message(20, 5)));
+        assertTrue(stream.offer(message(30, 5)));
+
+        // Three whole messages fit in 17 bytes, the fourth waits for the next write
+        byte[] chunk = stream.poll(17);
+        assertEquals(15, chunk.length);
+        assertEquals(0, chunk[0]);
+        assertEquals(10, chunk[5]);
+        assertEquals(24, chunk[14]);
+        assertArrayEquals(message(30, 5), stream.poll(17));
+        assertNull(stream.poll(17));
+    }
+
+    @Test
+    public void writesMessagesOnTheirOwnWithoutPacking() {
+        WriteStream stream = new WriteStream(0, 0, false);
+        stream.offer(message(0, 3));
+        stream.offer(message(10, 3));
+
+        assertArrayEquals(message(0, 3), stream.poll(20));
+        assertArrayEquals(message(10, 3), stream.poll(20));
+        assertNull(stream.poll(20));
+    }
+
+    @Test
+    public void splitsMessagesLargerThanThePayload() {
+        WriteStream stream = new WriteStream(0, 0, true);
+        stream.offer(message(0, 50));
+        stream.offer(message(100, 4));
+
+        assertArrayEquals(message(0, 20), stream.poll(20));
+        assertArrayEquals(message(20, 20), stream.poll(20));
+        // The rest of the large message, packed with the next one that fits
+        byte[] chunk = stream.poll(20);
+        assertEquals(14, chunk.length);
+        assertEquals(40, chunk[0]);
+        assertEquals(49, chunk[9]);
+        assertEquals(100, chunk[10]);
+        assertNull(stream.poll(20));
+    }
+
+    @Test
+    public void followsTheMtu() {
+        WriteStream stream = new WriteStream(0, 0, true);
+        stream.offer(message(0, 30));
+
+        assertNull(stream.poll(0));
+        assertEquals(20, stream.poll(20).length);
+        // The MTU grew in between
+        assertArrayEquals(message(20, 10), stream.poll(244));
+    }
+
+    @Test
+    public void refusesMessagesOnceTheBufferIsFull() {
+        WriteStream stream = new WriteStream(0, 10, true);
+        assertTrue(stream.offer(message(0, 6)));
+        assertFalse(stream.offer(message(0, 6)));
+        assertTrue(stream.offer(message(0, 4)));
+        assertTrue(stream.offer(new byte[0]));
+        assertFalse(stream.offer(null));
+
+        WriteStreamJson stats = stream.snapshot("5E:00:00:00:00:01", 3, 20, 0);
+        assertEquals(10, stats.queuedBytes);
+        assertEquals(1, stats.refusedMessages);
+
+        // Polling makes room again
+        stream.poll(20);
+        assertTrue(stream.offer(message(0, 6)));
+    }
+
+    @Test
+    public void closeDiscardsAndRefuses() {
+        WriteStream stream = new WriteStream(0, 0, true);
+        stream.offer(message(0, 6));
+        stream.close();
+
+        assertNull(stream.poll(20));
+        assertFalse(stream.offer(message(0, 6)));
+        assertEquals(0, stream.snapshot("5E:00:00:00:00:01", 3, 20, 0).queuedBytes);
+    }
+
+    /**
+     * 100 bytes every 100 ms is 1000 bytes per second, whichever write the rate is measured from.
+     */
+    @Test
+    public void countsWritesAndRate() {
+        WriteStream stream = new WriteStream(0, 0, true);
+        long now = 1_000_000_000L;
+        for (int i = 0; i < 20; i++) {
+            stream.onWriteComplete(100, true, now);
+            now += 100_000_000L;
+        }
+        stream.onWriteComplete(100, false, now);
+        stream.onBufferFull();
+
+        WriteStreamJson stats = stream.snapshot("5E:00:00:00:00:01", 3, 100, now);
+        assertEquals(2000, stats.bytesWritten);
+        assertEquals(20, stats.writes);
+        assertEquals(1, stats.failedWrites);
+        assertEquals(1, stats.bufferFullCount);
+        assertEquals(1000, stats.bytesPerSecond, 1);
+        assertEquals(1000, stats.averageBytesPerSecond, 1);
+
+        // Within the first window
+        WriteStream starting = new WriteStream(0, 0, true);
+        for (int i = 0; i < 5; i++) {
+            starting.onWriteComplete(100, true, 1_000_000_000L + i * 100_000_000L);
+        }
+        assertEquals(1000, starting.snapshot("5E:00:00:00:00:01", 3, 100, 1_500_000_000L).bytesPerSecond, 1);
+
+        // Idle for a whole window
+        assertEquals(0, stream.snapshot("5E:00:00:00:00:01", 3, 100, now + 2_000_000_000L).bytesPerSecond, 0);
+    }
+}
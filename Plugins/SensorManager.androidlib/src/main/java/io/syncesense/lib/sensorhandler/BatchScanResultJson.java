@@ -0,0 +1,77 @@
+package io.syncsense.lib.sensorhandler;
+
+import static io.syncsense.lib.sensorhandler.JsonUtils.GSON;
+
+import android.annotation.SuppressLint;
+import android.bluetooth.le.ScanResult;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+public class BatchScanResultJson {
+
+    public List<DeviceJson> results = new ArrayList<>();
+
+    public BatchScanResultJson() {
+    }
+
+    /**
+     * One entry per address, aggregating every advertisement of the device in the batch.
+     */
+    public static class DeviceJson {
+        public String name;
+        public String address;
+        public int rssi;
+        public int minRssi;
+        public int maxRssi;
+        public double averageRssi;
+        public int count;
+        public int handle;
+
+        private transient long rssiSum;
+        private transient long lastTimestampNanos;
+    }
+
+    @SuppressLint("MissingPermission")
+    public BatchScanResultJson(List<ScanResult> scanResults, DeviceRegistry deviceRegistry) {
+        LinkedHashMap<String, DeviceJson> byAddress = new LinkedHashMap<>();
+        for (ScanResult result : scanResults) {
+            String address = result.getDevice().getAddress();
+            int rssi = result.getRssi();
+
+            DeviceJson device = byAddress.get(address);
+            if (device == null) {
+                device = new DeviceJson();
+                device.address = address;
+                device.handle = deviceRegistry.getHandle(address);
+                device.minRssi = rssi;
+                device.maxRssi = rssi;
+                byAddress.put(address, device);
+            }
+
+            if (device.name == null)
+                device.name = result.getDevice().getName();
+            device.minRssi = Math.min(device.minRssi, rssi);
+            device.maxRssi = Math.max(device.maxRssi, rssi);
+            device.rssiSum += rssi;
+            device.count++;
+            if (result.getTimestampNanos() >= device.lastTimestampNanos) {
+                device.lastTimestampNanos = result.getTimestampNanos();
+                device.rssi = rssi;
+            }
+        }
+
+        for (DeviceJson device : byAddress.values()) {
+            device.averageRssi = device.rssiSum / (double) device.count;
+            results.add(device);
+        }
+    }
+
+    public static String buildJson(List<ScanResult> scanResults, DeviceRegistry deviceRegistry) {
+        return GSON.toJson(new BatchScanResultJson(
+                scanResults,
+                deviceRegistry
+        ));
+    }
+}
@@ -0,0 +1,84 @@
+package io.syncsense.lib.sensorhandler;
+
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattService;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The characteristics of one connection, by integer handle, so hot calls from Unity resolve their characteristic with
+ * an array lookup instead of parsing and comparing UUIDs.
+ *
+ * The table is rebuilt from every successful service discovery. A characteristic keeps its handle across rebuilds and
+ * reconnections, since handles are assigned once per service and characteristic uuid pair. Handles given to Unity
+ * also carry the device index, see toHandle.
+ */
+public class CharacteristicHandleTable {
+
+    public static final int MAX_CHARACTERISTICS = 256;
+    public static final int NO_HANDLE = -1;
+
+    private final CompactIdTable<List<UUID>> ids = new CompactIdTable<>(MAX_CHARACTERISTICS);
+    private final AtomicReferenceArray<BluetoothGattCharacteristic> characteristics = new AtomicReferenceArray<>(MAX_CHARACTERISTICS);
+
+    /**
+     * Replaces the characteristics with the ones of a freshly discovered gatt. Called from the GATT thread.
+     */
+    public void rebuild(BluetoothGatt gatt) {
+        clear();
+        for (BluetoothGattService service : gatt.getServices()) {
+            for (BluetoothGattCharacteristic characteristic : service.getCharacteristics()) {
+                int index = ids.getOrAssign(Arrays.asList(service.getUuid(), characteristic.getUuid()));
+                // A characteristic declared twice in a service keeps the first declaration
+                if (index != CompactIdTable.NO_ID && characteristics.get(index) == null)
+                    characteristics.set(index, characteristic);
+            }
+        }
+    }
+
+    /**
+     * Forgets the characteristics, e.g. when the gatt they belong to is closed. Their handles stay assigned.
+     */
+    public void clear() {
+        int size = ids.size();
+        for (int i = 0; i < size; i++) {
+            characteristics.set(i, null);
+        }
+    }
+
+    /**
+     * @return the index of a characteristic in this table, or NO_HANDLE if it was not discovered
+     */
+    public int getIndex(UUID serviceUuid, UUID characteristicUuid) {
+        int index = ids.get(Arrays.asList(serviceUuid, characteristicUuid));
+        return index != CompactIdTable.NO_ID && characteristics.get(index) != null ? index : NO_HANDLE;
+    }
+
+    /**
+     * @return the characteristic at an index of this table, or null
+     */
+    public BluetoothGattCharacteristic get(int index) {
+        if (index < 0 || index >= MAX_CHARACTERISTICS)
+            return null;
+        return characteristics.get(index);
+    }
+
+    /**
+     * @return the handle given to Unity for a characteristic index of the connection of a device
+     */
+    public static int toHandle(int deviceIndex, int index) {
+        return deviceIndex << 8 | index;
+    }
+
+    public static int deviceIndexOf(int handle) {
+        return handle >>> 8;
+    }
+
+    public static int indexOf(int handle) {
+        return handle & 0xFF;
+    }
+}
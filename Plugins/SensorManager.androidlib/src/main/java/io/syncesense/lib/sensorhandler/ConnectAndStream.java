@@ -0,0 +1,401 @@
+package io.syncsense.lib.sensorhandler;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Brings a set of sensors from disconnected to streaming in one go: connect, discover services, enable notifications
+ * of the requested characteristics, and wait for the first sample, for every device.
+ *
+ * Devices are pipelined: while one is discovering or subscribing through its own GattOperationQueue, the next ones
+ * are already connecting. Connection attempts are the scarce resource, as the stack only handles a few pending ones
+ * at a time and serializes the rest anyway, so at most maxConcurrentConnects are in progress and they start at least
+ * staggerMillis apart. A device whose link fails before it streams is disconnected and queued again, up to
+ * MAX_ATTEMPTS times.
+ *
+ * Progress is reported per device through OnConnectAndStreamProgress, and once every device streams or failed,
+ * with the time to first sample of each and of the whole set, through OnConnectAndStreamComplete.
+ *
+ * Everything runs on the GATT thread of SyncsenseSensorManager.
+ */
+public class ConnectAndStream {
+
+    public static final int STATE_QUEUED = 0;
+    public static final int STATE_CONNECTING = 1;
+    public static final int STATE_DISCOVERING = 2;
+    public static final int STATE_SUBSCRIBING = 3;
+    public static final int STATE_WAITING_FOR_DATA = 4;
+    public static final int STATE_STREAMING = 5;
+    public static final int STATE_FAILED = 6;
+
+    public static final int DEFAULT_MAX_CONCURRENT_CONNECTS = 2;
+    public static final int DEFAULT_STAGGER_MILLIS = 100;
+    public static final int MAX_ATTEMPTS = 3;
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 10_000;
+    private static final String TAG = "ConnectAndStream";
+
+    /**
+     * The connection management of SyncsenseSensorManager.
+     */
+    public interface Connector {
+        boolean connect(String deviceAddress);
+
+        void disconnect(String deviceAddress);
+
+        /**
+         * @return the connection to a device, or null
+         */
+        DeviceConnection getConnection(String deviceAddress);
+    }
+
+    private class Device {
+        final String address;
+        int state = STATE_QUEUED;
+        int attempts = 0;
+        int pendingSubscriptions = 0;
+        int subscriptions = 0;
+
+        long attemptStartedAt = -1;
+        long connectedAt = -1;
+        long discoveredAt = -1;
+        long subscribedAt = -1;
+        long firstSampleAt = -1;
+
+        final Runnable connectTimeout = new Runnable() {
+            @Override
+            public void run() {
+                if (state == STATE_CONNECTING) {
+                    Log.e(TAG, "Connection to " + address + " timed out");
+                    retryOrFail(Device.this);
+                }
+            }
+        };
+
+        Device(String address) {
+            this.address = address;
+        }
+
+        void reset() {
+            pendingSubscriptions = 0;
+            subscriptions = 0;
+            attemptStartedAt = -1;
+            connectedAt = -1;
+            discoveredAt = -1;
+            subscribedAt = -1;
+            firstSampleAt = -1;
+        }
+    }
+
+    private final Handler handler;
+    private final EventSink events;
+    private final Connector connector;
+    private final UUID[] serviceUuids;
+    private final UUID[] characteristicUuids;
+    private final int maxConcurrentConnects;
+    private final int staggerMillis;
+
+    private final LinkedHashMap<String, Device> devices = new LinkedHashMap<>();
+    private final ArrayDeque<Device> queue = new ArrayDeque<>();
+    private int connecting = 0;
+    private long startedAt;
+    private long nextConnectAt = 0;
+    // Read by isFinished from any thread
+    private volatile boolean finished = false;
+
+    private final Runnable pump = new Runnable() {
+        @Override
+        public void run() {
+            pump();
+        }
+    };
+
+    /**
+     * @param serviceUuids        the services of the characteristics to enable notifications of, on every device
+     * @param characteristicUuids the characteristics, in the same order
+     */
+    public ConnectAndStream(Handler handler, EventSink events, Connector connector, String[] deviceAddresses,
+                            UUID[] serviceUuids, UUID[] characteristicUuids, int maxConcurrentConnects,
+                            int staggerMillis) {
+        this.handler = handler;
+        this.events = events;
+        this.connector = connector;
+        this.serviceUuids = serviceUuids;
+        this.characteristicUuids = characteristicUuids;
+        this.maxConcurrentConnects = maxConcurrentConnects > 0 ? maxConcurrentConnects : DEFAULT_MAX_CONCURRENT_CONNECTS;
+        this.staggerMillis = Math.max(0, staggerMillis);
+        for (String deviceAddress : deviceAddresses) {
+            if (!devices.containsKey(deviceAddress))
+                devices.put(deviceAddress, new Device(deviceAddress));
+        }
+    }
+
+    public void start() {
+        startedAt = SystemClock.elapsedRealtime();
+        for (Device device : devices.values()) {
+            queue.add(device);
+            report(device);
+        }
+        pump();
+    }
+
+    /**
+     * Gives up on every device that does not stream yet. Connections already established are kept.
+     */
+    public void cancel() {
+        handler.removeCallbacks(pump);
+        queue.clear();
+        for (Device device : devices.values()) {
+            if (device.state != STATE_STREAMING && device.state != STATE_FAILED) {
+                handler.removeCallbacks(device.connectTimeout);
+                setState(device, STATE_FAILED);
+            }
+        }
+        connecting = 0;
+        checkFinished();
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Called when the link of a connection came up.
+     */
+    public void onConnected(DeviceConnection connection) {
+        Device device = devices.get(connection.address);
+        if (device == null || device.state != STATE_CONNECTING)
+            return;
+
+        handler.removeCallbacks(device.connectTimeout);
+        connecting--;
+        device.connectedAt = SystemClock.elapsedRealtime();
+        setState(device, STATE_DISCOVERING);
+        connection.operations.enqueue(GattOperation.discoverServices());
+        pump();
+    }
+
+    /**
+     * Called when the link of a connection went down, or could not be established.
+     *
+     * @return true if the device was being brought up, in which case it is taken care of here
+     */
+    public boolean onLinkLost(DeviceConnection connection) {
+        Device device = devices.get(connection.address);
+        if (device == null || device.state == STATE_QUEUED || device.state == STATE_STREAMING
+                || device.state == STATE_FAILED)
+            return false;
+
+        retryOrFail(device);
+        return true;
+    }
+
+    public void onOperationComplete(DeviceConnection connection, GattOperation operation, int status) {
+        Device device = devices.get(connection.address);
+        if (device == null)
+            return;
+
+        if (device.state == STATE_DISCOVERING && operation.type == GattOperation.TYPE_DISCOVER_SERVICES) {
+            if (status != GattOperation.STATUS_SUCCESS) {
+                retryOrFail(device);
+                return;
+            }
+            device.discoveredAt = SystemClock.elapsedRealtime();
+            subscribe(device, connection);
+        } else if (device.state == STATE_SUBSCRIBING && operation.type == GattOperation.TYPE_ENABLE_NOTIFICATIONS
+                && isRequested(operation.characteristic)) {
+            device.pendingSubscriptions--;
+            if (status == GattOperation.STATUS_SUCCESS)
+                device.subscriptions++;
+            if (device.pendingSubscriptions > 0)
+                return;
+
+            device.subscribedAt = SystemClock.elapsedRealtime();
+            if (device.subscriptions == 0) {
+                Log.e(TAG, "No notification could be enabled on " + device.address);
+                fail(device, connection);
+            } else if (device.firstSampleAt >= 0) {
+                setState(device, STATE_STREAMING);
+                checkFinished();
+            } else {
+                setState(device, STATE_WAITING_FOR_DATA);
+            }
+        }
+    }
+
+    /**
+     * Called with the receive time of the first notification of a connection after one of its subscriptions was enabled.
+     */
+    public void onFirstSample(DeviceConnection connection, long timestampNanos) {
+        Device device = devices.get(connection.address);
+        if (device == null || device.firstSampleAt >= 0
+                || (device.state != STATE_SUBSCRIBING && device.state != STATE_WAITING_FOR_DATA))
+            return;
+
+        device.firstSampleAt = timestampNanos / 1_000_000;
+        // While subscribing, the device is only reported as streaming once every subscription completed
+        if (device.state == STATE_WAITING_FOR_DATA) {
+            setState(device, STATE_STREAMING);
+            checkFinished();
+        }
+    }
+
+    private void pump() {
+        handler.removeCallbacks(pump);
+        while (connecting < maxConcurrentConnects && !queue.isEmpty()) {
+            long now = SystemClock.elapsedRealtime();
+            if (now < nextConnectAt) {
+                handler.postDelayed(pump, nextConnectAt - now);
+                return;
+            }
+            nextConnectAt = now + staggerMillis;
+            connect(queue.poll());
+        }
+    }
+
+    private void connect(Device device) {
+        device.reset();
+        device.attempts++;
+        device.attemptStartedAt = SystemClock.elapsedRealtime();
+
+        // Already connected, e.g. by the app beforehand
+        DeviceConnection connection = connector.getConnection(device.address);
+        if (connection != null && connection.gatt != null) {
+            device.connectedAt = device.attemptStartedAt;
+            setState(device, STATE_DISCOVERING);
+            connection.operations.enqueue(GattOperation.discoverServices());
+            return;
+        }
+
+        if (!connector.connect(device.address)) {
+            fail(device, null);
+            return;
+        }
+        connecting++;
+        setState(device, STATE_CONNECTING);
+        handler.postDelayed(device.connectTimeout, CONNECT_TIMEOUT_MILLIS);
+    }
+
+    private void subscribe(Device device, DeviceConnection connection) {
+        setState(device, STATE_SUBSCRIBING);
+        for (int i = 0; i < characteristicUuids.length; i++) {
+            BluetoothGattCharacteristic characteristic = connection.characteristicHandles.get(
+                    connection.characteristicHandles.getIndex(serviceUuids[i], characteristicUuids[i]));
+            if (characteristic == null) {
+                Log.e(TAG, device.address + " does not have " + characteristicUuids[i]);
+                continue;
+            }
+            device.pendingSubscriptions++;
+            connection.awaitingFirstSample = true;
+            connection.operations.enqueue(new GattOperation(GattOperation.TYPE_ENABLE_NOTIFICATIONS, characteristic, null));
+        }
+
+        if (device.pendingSubscriptions == 0) {
+            Log.e(TAG, "None of the characteristics were found on " + device.address);
+            fail(device, connection);
+        }
+    }
+
+    private boolean isRequested(BluetoothGattCharacteristic characteristic) {
+        if (characteristic == null)
+            return false;
+        for (int i = 0; i < characteristicUuids.length; i++) {
+            if (characteristicUuids[i].equals(characteristic.getUuid())
+                    && serviceUuids[i].equals(characteristic.getService().getUuid()))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Drops the connection of a device whose bring-up failed, and queues it again if it has attempts left.
+     */
+    private void retryOrFail(Device device) {
+        handler.removeCallbacks(device.connectTimeout);
+        if (device.state == STATE_CONNECTING)
+            connecting--;
+        connector.disconnect(device.address);
+
+        if (device.attempts < MAX_ATTEMPTS) {
+            setState(device, STATE_QUEUED);
+            queue.add(device);
+        } else {
+            setState(device, STATE_FAILED);
+            checkFinished();
+        }
+        pump();
+    }
+
+    /**
+     * Gives up on a device without retrying. Its connection, if any, is kept.
+     */
+    private void fail(Device device, DeviceConnection connection) {
+        if (connection != null)
+            connection.awaitingFirstSample = false;
+        setState(device, STATE_FAILED);
+        checkFinished();
+    }
+
+    private void setState(Device device, int state) {
+        device.state = state;
+        report(device);
+    }
+
+    private void report(Device device) {
+        events.send("OnConnectAndStreamProgress", ConnectAndStreamJson.DeviceJson.buildJson(toJson(device)));
+    }
+
+    private void checkFinished() {
+        if (finished)
+            return;
+
+        int streaming = 0;
+        long lastFirstSampleAt = startedAt;
+        List<ConnectAndStreamJson.DeviceJson> results = new ArrayList<>();
+        for (Device device : devices.values()) {
+            if (device.state != STATE_STREAMING && device.state != STATE_FAILED)
+                return;
+            if (device.state == STATE_STREAMING) {
+                streaming++;
+                lastFirstSampleAt = Math.max(lastFirstSampleAt, device.firstSampleAt);
+            }
+            results.add(toJson(device));
+        }
+
+        finished = true;
+        events.send("OnConnectAndStreamComplete",
+                ConnectAndStreamJson.buildJson(
+                        results,
+                        streaming,
+                        devices.size() - streaming,
+                        streaming > 0 ? lastFirstSampleAt - startedAt : -1
+                )
+        );
+    }
+
+    private ConnectAndStreamJson.DeviceJson toJson(Device device) {
+        return new ConnectAndStreamJson.DeviceJson(
+                device.address,
+                device.state,
+                device.attempts,
+                elapsed(device.attemptStartedAt, device.connectedAt),
+                elapsed(device.connectedAt, device.discoveredAt),
+                elapsed(device.discoveredAt, device.subscribedAt),
+                elapsed(device.attemptStartedAt, device.firstSampleAt),
+                elapsed(startedAt, device.firstSampleAt),
+                device.subscriptions
+        );
+    }
+
+    private static long elapsed(long from, long to) {
+        return from >= 0 && to >= 0 ? to - from : -1;
+    }
+}
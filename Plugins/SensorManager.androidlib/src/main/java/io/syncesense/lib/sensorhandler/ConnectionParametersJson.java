@@ -0,0 +1,32 @@
+package io.syncsense.lib.sensorhandler;
+
+import static io.syncsense.lib.sensorhandler.JsonUtils.GSON;
+
+public class ConnectionParametersJson {
+
+    public int status;
+    public String deviceAddress;
+    public int mtu;
+    public int txPhy;
+    public int rxPhy;
+    public int connectionPriority;
+
+    public ConnectionParametersJson() {
+    }
+
+    public ConnectionParametersJson(int status, DeviceConnection connection) {
+        this.status = status;
+        this.deviceAddress = connection.address;
+        this.mtu = connection.mtu;
+        this.txPhy = connection.txPhy;
+        this.rxPhy = connection.rxPhy;
+        this.connectionPriority = connection.connectionPriority;
+    }
+
+    public static String buildJson(int status, DeviceConnection connection) {
+        return GSON.toJson(new ConnectionParametersJson(
+                status,
+                connection
+        ));
+    }
+}
@@ -0,0 +1,86 @@
+package io.syncsense.lib.sensorhandler;
+
+import android.annotation.SuppressLint;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothGatt;
+import android.os.Handler;
+
+import java.util.ArrayList;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * State the plugin keeps for every Bluetooth device it is connected, or connecting, to, on top of the notification
+ * state of its channel.
+ *
+ * The gatt reference and the managed connection state are only changed from the GATT thread of
+ * SyncsenseSensorManager.
+ */
+public class DeviceConnection extends SensorChannel {
+
+    public static final int DEFAULT_MTU = 23;
+
+    /**
+     * States of a managed connection. A managed connection outlives link losses: it goes through
+     * CONNECTING -> CONNECTED, then on every link loss BACKOFF -> RECONNECTING -> RESTORING -> CONNECTED, until the app
+     * disconnects or the reconnect policy gives up, which leaves it CLOSED.
+     */
+    public static final int MANAGED_STATE_CONNECTING = 0;
+    public static final int MANAGED_STATE_CONNECTED = 1;
+    public static final int MANAGED_STATE_BACKOFF = 2;
+    public static final int MANAGED_STATE_RECONNECTING = 3;
+    public static final int MANAGED_STATE_RESTORING = 4;
+    public static final int MANAGED_STATE_CLOSED = 5;
+
+    public final BluetoothDevice device;
+    public final GattOperationQueue operations;
+    public final CharacteristicHandleTable characteristicHandles = new CharacteristicHandleTable();
+
+    public volatile BluetoothGatt gatt;
+
+    /**
+     * Link parameters, as negotiated with the device. Defaults apply until the stack reports otherwise.
+     */
+    public volatile int mtu = DEFAULT_MTU;
+    public volatile int txPhy = BluetoothDevice.PHY_LE_1M;
+    public volatile int rxPhy = BluetoothDevice.PHY_LE_1M;
+    public volatile int connectionPriority = BluetoothGatt.CONNECTION_PRIORITY_BALANCED;
+
+    /**
+     * The largest MTU requested by the app, requested again after a reconnection.
+     */
+    public volatile int requestedMtu = 0;
+
+    /**
+     * Service uuid of every characteristic notifications are enabled for, by characteristic uuid.
+     */
+    public final ConcurrentHashMap<UUID, UUID> subscriptions = new ConcurrentHashMap<>();
+
+    /**
+     * Open write streams, by index of their characteristic in characteristicHandles.
+     */
+    public final ConcurrentHashMap<Integer, WriteStream> writeStreams = new ConcurrentHashMap<>();
+
+    /**
+     * Set by ConnectAndStream once a subscription of a device being brought up is enabled, cleared by its first notification.
+     */
+    public volatile boolean awaitingFirstSample = false;
+
+    public final boolean managed;
+    public volatile int managedState = MANAGED_STATE_CONNECTING;
+    int reconnectAttempt = 0;
+    long linkLostAtNanos = 0;
+    final ArrayList<GattOperation> restoreOperations = new ArrayList<>();
+    int restoredSubscriptions = 0;
+    Runnable pendingReconnect = null;
+    volatile int connectTraceCookie = 0;
+
+    @SuppressLint("MissingPermission")
+    public DeviceConnection(BluetoothDevice device, int deviceIndex, boolean managed, Handler gattHandler,
+                            GattOperationQueue.Listener operationListener, Tracer tracer) {
+        super(device.getAddress(), deviceIndex, device.getName());
+        this.device = device;
+        this.managed = managed;
+        this.operations = new GattOperationQueue(gattHandler, this, operationListener, tracer);
+    }
+}
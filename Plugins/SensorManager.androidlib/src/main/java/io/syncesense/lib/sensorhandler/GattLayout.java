@@ -0,0 +1,135 @@
+package io.syncsense.lib.sensorhandler;
+
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattService;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The services and characteristics of a device as flat arrays, in discovery order, with the index of every
+ * characteristic in the CharacteristicHandleTable of the connection.
+ *
+ * Two layouts are equal when they list the same services and characteristics under the same indices, in which case
+ * the handles of one connection resolve the same way as the handles of the other.
+ */
+public class GattLayout {
+
+    public final String[] serviceUuids;
+    public final int[] serviceTypes;
+    public final int[] serviceInstanceIds;
+
+    /**
+     * Per characteristic, the position of its service in serviceUuids.
+     */
+    public final int[] characteristicServices;
+    public final String[] characteristicUuids;
+    public final int[] characteristicProperties;
+    public final int[] characteristicIndices;
+
+    private final int hash;
+
+    private GattLayout(String[] serviceUuids, int[] serviceTypes, int[] serviceInstanceIds,
+                       int[] characteristicServices, String[] characteristicUuids, int[] characteristicProperties,
+                       int[] characteristicIndices) {
+        this.serviceUuids = serviceUuids;
+        this.serviceTypes = serviceTypes;
+        this.serviceInstanceIds = serviceInstanceIds;
+        this.characteristicServices = characteristicServices;
+        this.characteristicUuids = characteristicUuids;
+        this.characteristicProperties = characteristicProperties;
+        this.characteristicIndices = characteristicIndices;
+
+        int h = Arrays.hashCode(serviceUuids);
+        h = 31 * h + Arrays.hashCode(serviceTypes);
+        h = 31 * h + Arrays.hashCode(serviceInstanceIds);
+        h = 31 * h + Arrays.hashCode(characteristicServices);
+        h = 31 * h + Arrays.hashCode(characteristicUuids);
+        h = 31 * h + Arrays.hashCode(characteristicProperties);
+        this.hash = 31 * h + Arrays.hashCode(characteristicIndices);
+    }
+
+    /**
+     * Describes a freshly discovered gatt. Called from the GATT thread, after the handle table was rebuilt.
+     */
+    public static GattLayout describe(BluetoothGatt gatt, CharacteristicHandleTable handles) {
+        List<BluetoothGattService> services = gatt.getServices();
+        int characteristicCount = 0;
+        for (BluetoothGattService service : services) {
+            characteristicCount += service.getCharacteristics().size();
+        }
+
+        String[] serviceUuids = new String[services.size()];
+        int[] serviceTypes = new int[services.size()];
+        int[] serviceInstanceIds = new int[services.size()];
+        int[] characteristicServices = new int[characteristicCount];
+        String[] characteristicUuids = new String[characteristicCount];
+        int[] characteristicProperties = new int[characteristicCount];
+        int[] characteristicIndices = new int[characteristicCount];
+
+        int c = 0;
+        for (int s = 0; s < serviceUuids.length; s++) {
+            BluetoothGattService service = services.get(s);
+            serviceUuids[s] = service.getUuid().toString();
+            serviceTypes[s] = service.getType();
+            serviceInstanceIds[s] = service.getInstanceId();
+            for (BluetoothGattCharacteristic characteristic : service.getCharacteristics()) {
+                characteristicServices[c] = s;
+                characteristicUuids[c] = characteristic.getUuid().toString();
+                characteristicProperties[c] = characteristic.getProperties();
+                characteristicIndices[c] = handles.getIndex(service.getUuid(), characteristic.getUuid());
+                c++;
+            }
+        }
+
+        return new GattLayout(serviceUuids, serviceTypes, serviceInstanceIds, characteristicServices,
+                characteristicUuids, characteristicProperties, characteristicIndices);
+    }
+
+    /**
+     * @return a layout remembered by KnownDeviceStore, or null for null
+     */
+    public static GattLayout fromJson(KnownDeviceJson.LayoutJson json) {
+        if (json == null || json.serviceUuids == null || json.characteristicUuids == null)
+            return null;
+        return new GattLayout(json.serviceUuids, json.serviceTypes, json.serviceInstanceIds,
+                json.characteristicServices, json.characteristicUuids, json.characteristicProperties,
+                json.characteristicIndices);
+    }
+
+    public KnownDeviceJson.LayoutJson toJson() {
+        KnownDeviceJson.LayoutJson json = new KnownDeviceJson.LayoutJson();
+        json.serviceUuids = serviceUuids;
+        json.serviceTypes = serviceTypes;
+        json.serviceInstanceIds = serviceInstanceIds;
+        json.characteristicServices = characteristicServices;
+        json.characteristicUuids = characteristicUuids;
+        json.characteristicProperties = characteristicProperties;
+        json.characteristicIndices = characteristicIndices;
+        return json;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof GattLayout))
+            return false;
+
+        GattLayout other = (GattLayout) o;
+        return hash == other.hash
+                && Arrays.equals(serviceUuids, other.serviceUuids)
+                && Arrays.equals(serviceTypes, other.serviceTypes)
+                && Arrays.equals(serviceInstanceIds, other.serviceInstanceIds)
+                && Arrays.equals(characteristicServices, other.characteristicServices)
+                && Arrays.equals(characteristicUuids, other.characteristicUuids)
+                && Arrays.equals(characteristicProperties, other.characteristicProperties)
+                && Arrays.equals(characteristicIndices, other.characteristicIndices);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
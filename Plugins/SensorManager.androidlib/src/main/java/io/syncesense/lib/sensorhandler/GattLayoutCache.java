@@ -0,0 +1,56 @@
+package io.syncsense.lib.sensorhandler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * The GATT layouts seen during the session, by device model.
+ *
+ * Sensors of a model share one fixed layout, so after the first discovery every later discovery of the model, and
+ * every rediscovery after a reconnection, is only checked against the cache: Unity is told the id of a layout it
+ * already has rather than the whole table again. A model whose layout changes, e.g. after a firmware update, simply
+ * gets the new layout reported under a new id.
+ *
+ * Only used from the GATT thread.
+ */
+public class GattLayoutCache {
+
+    public static final int NO_LAYOUT = -1;
+
+    private final HashMap<GattLayout, Integer> ids = new HashMap<>();
+    private final ArrayList<Boolean> reported = new ArrayList<>();
+    private final HashMap<String, Integer> layoutByModel = new HashMap<>();
+
+    /**
+     * Records the layout discovered on a device of a model.
+     *
+     * @return the id of the layout, the same for every equal layout
+     */
+    public int put(String model, GattLayout layout) {
+        Integer id = ids.get(layout);
+        if (id == null) {
+            id = reported.size();
+            ids.put(layout, id);
+            reported.add(false);
+        }
+        layoutByModel.put(model != null ? model : "", id);
+        return id;
+    }
+
+    /**
+     * @return the id of the layout last discovered on a device of the model, or NO_LAYOUT
+     */
+    public int getLayoutId(String model) {
+        Integer id = layoutByModel.get(model != null ? model : "");
+        return id != null ? id : NO_LAYOUT;
+    }
+
+    /**
+     * Marks a layout as sent to Unity.
+     *
+     * @return true if it was sent before
+     */
+    public boolean markReported(int layoutId) {
+        return reported.set(layoutId, true);
+    }
+}
@@ -0,0 +1,62 @@
+package io.syncsense.lib.sensorhandler;
+
+import static io.syncsense.lib.sensorhandler.JsonUtils.GSON;
+
+/**
+ * The result of a service discovery. The arrays of the layout are only sent the first time a layout is reported,
+ * afterwards Unity resolves layoutId from what it received before, and cached is true.
+ */
+public class GattLayoutJson {
+
+    public int status;
+    public String deviceName;
+    public String deviceAddress;
+    public int deviceIndex;
+    public int layoutId;
+    public boolean cached;
+
+    public String[] serviceUuids;
+    public int[] serviceTypes;
+    public int[] serviceInstanceIds;
+    public int[] characteristicServices;
+    public String[] characteristicUuids;
+    public int[] characteristicProperties;
+    public int[] characteristicIndices;
+
+    public GattLayoutJson() {
+    }
+
+    /**
+     * @param layout the layout to send, or null if Unity already has it or the discovery failed
+     */
+    public GattLayoutJson(int status, String deviceName, String deviceAddress, int deviceIndex, int layoutId,
+                          GattLayout layout) {
+        this.status = status;
+        this.deviceName = deviceName;
+        this.deviceAddress = deviceAddress;
+        this.deviceIndex = deviceIndex;
+        this.layoutId = layoutId;
+        this.cached = layoutId != GattLayoutCache.NO_LAYOUT && layout == null;
+        if (layout != null) {
+            this.serviceUuids = layout.serviceUuids;
+            this.serviceTypes = layout.serviceTypes;
+            this.serviceInstanceIds = layout.serviceInstanceIds;
+            this.characteristicServices = layout.characteristicServices;
+            this.characteristicUuids = layout.characteristicUuids;
+            this.characteristicProperties = layout.characteristicProperties;
+            this.characteristicIndices = layout.characteristicIndices;
+        }
+    }
+
+    public static String buildJson(int status, String deviceName, String deviceAddress, int deviceIndex, int layoutId,
+                                   GattLayout layout) {
+        return GSON.toJson(new GattLayoutJson(
+                status,
+                deviceName,
+                deviceAddress,
+                deviceIndex,
+                layoutId,
+                layout
+        ));
+    }
+}
@@ -0,0 +1,200 @@
+package io.syncsense.lib.sensorhandler;
+
+import android.annotation.SuppressLint;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattDescriptor;
+
+import java.util.UUID;
+
+/**
+ * A single GATT request waiting in, or being executed by, a GattOperationQueue.
+ */
+public class GattOperation {
+
+    public static final int TYPE_DISCOVER_SERVICES = 0;
+    public static final int TYPE_ENABLE_NOTIFICATIONS = 1;
+    public static final int TYPE_DISABLE_NOTIFICATIONS = 2;
+    public static final int TYPE_WRITE_CHARACTERISTIC = 3;
+    public static final int TYPE_READ_CHARACTERISTIC = 4;
+    public static final int TYPE_REQUEST_MTU = 5;
+    public static final int TYPE_REQUEST_CONNECTION_PRIORITY = 6;
+    public static final int TYPE_SET_PREFERRED_PHY = 7;
+    public static final int TYPE_READ_RSSI = 8;
+    public static final int TYPE_WRITE_NO_RESPONSE = 9;
+
+    /**
+     * Same value as BluetoothGatt.GATT_SUCCESS. Any other positive status is a GATT error reported by the stack.
+     */
+    public static final int STATUS_SUCCESS = 0;
+    /**
+     * The operation did not complete within its timeout, on every attempt.
+     */
+    public static final int STATUS_TIMEOUT = -1;
+    /**
+     * The stack refused to start the operation, on every attempt.
+     */
+    public static final int STATUS_REJECTED = -2;
+    /**
+     * The device disconnected before the operation could complete.
+     */
+    public static final int STATUS_DISCONNECTED = -3;
+
+    public static final UUID CLIENT_CHARACTERISTIC_CONFIG_UUID = UUID.fromString("00002902-0000-1000-8000-00805f9b34fb");
+
+    public final int type;
+    public final BluetoothGattCharacteristic characteristic;
+    public final byte[] value;
+    public final int argument;
+    /**
+     * The stream a chunk write was taken from, null for operations queued by the app.
+     */
+    public final WriteStream stream;
+    /**
+     * True for reads the plugin makes for itself, whose value is neither published nor reported to Unity.
+     */
+    final boolean internal;
+
+    int attempts = 0;
+    long startedAtMillis;
+    int traceCookie;
+
+    public GattOperation(int type, BluetoothGattCharacteristic characteristic, byte[] value) {
+        this(type, characteristic, value, 0, null, false);
+    }
+
+    private GattOperation(int type, BluetoothGattCharacteristic characteristic, byte[] value, int argument,
+                          WriteStream stream, boolean internal) {
+        this.type = type;
+        this.characteristic = characteristic;
+        this.value = value;
+        this.argument = argument;
+        this.stream = stream;
+        this.internal = internal;
+    }
+
+    public static GattOperation discoverServices() {
+        return new GattOperation(TYPE_DISCOVER_SERVICES, null, null);
+    }
+
+    public static GattOperation requestMtu(int mtu) {
+        return new GattOperation(TYPE_REQUEST_MTU, null, null, mtu, null, false);
+    }
+
+    public static GattOperation readRemoteRssi() {
+        return new GattOperation(TYPE_READ_RSSI, null, null);
+    }
+
+    /**
+     * @param priority one of BluetoothGatt.CONNECTION_PRIORITY_*
+     */
+    public static GattOperation requestConnectionPriority(int priority) {
+        return new GattOperation(TYPE_REQUEST_CONNECTION_PRIORITY, null, null, priority, null, false);
+    }
+
+    /**
+     * @param phyMask combination of BluetoothDevice.PHY_LE_*_MASK, used for both directions
+     */
+    public static GattOperation setPreferredPhy(int phyMask) {
+        return new GattOperation(TYPE_SET_PREFERRED_PHY, null, null, phyMask, null, false);
+    }
+
+    /**
+     * A chunk of a write stream, written without response.
+     */
+    static GattOperation streamWrite(BluetoothGattCharacteristic characteristic, byte[] chunk, WriteStream stream) {
+        return new GattOperation(TYPE_WRITE_NO_RESPONSE, characteristic, chunk, 0, stream, false);
+    }
+
+    /**
+     * A read the plugin makes for itself, e.g. of the firmware revision.
+     */
+    static GattOperation internalRead(BluetoothGattCharacteristic characteristic) {
+        return new GattOperation(TYPE_READ_CHARACTERISTIC, characteristic, null, 0, null, true);
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * Starts the operation on the gatt.
+     *
+     * @return false if the stack did not accept the request
+     */
+    @SuppressLint("MissingPermission")
+    boolean execute(BluetoothGatt gatt) {
+        switch (type) {
+            case TYPE_DISCOVER_SERVICES:
+                return gatt.discoverServices();
+            case TYPE_ENABLE_NOTIFICATIONS:
+            case TYPE_DISABLE_NOTIFICATIONS: {
+                boolean enable = type == TYPE_ENABLE_NOTIFICATIONS;
+                // enables notifications for a specific characteristic on a BLE device at the characteristic level,
+                if (!gatt.setCharacteristicNotification(characteristic, enable))
+                    return false;
+
+                // The device only starts notifying once its Client Characteristic Configuration Descriptor is written
+                BluetoothGattDescriptor descriptor = characteristic.getDescriptor(CLIENT_CHARACTERISTIC_CONFIG_UUID);
+                if (descriptor == null)
+                    return false;
+                descriptor.setValue(!enable ? BluetoothGattDescriptor.DISABLE_NOTIFICATION_VALUE
+                        : usesIndications() ? BluetoothGattDescriptor.ENABLE_INDICATION_VALUE
+                        : BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE);
+                return gatt.writeDescriptor(descriptor);
+            }
+            case TYPE_WRITE_CHARACTERISTIC:
+            case TYPE_WRITE_NO_RESPONSE:
+                // The write type is a property of the shared characteristic object, so it is set for every write
+                characteristic.setWriteType(type == TYPE_WRITE_NO_RESPONSE
+                        ? BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE
+                        : BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT);
+                characteristic.setValue(value);
+                return gatt.writeCharacteristic(characteristic);
+            case TYPE_READ_CHARACTERISTIC:
+                return gatt.readCharacteristic(characteristic);
+            case TYPE_REQUEST_MTU:
+                return gatt.requestMtu(argument);
+            case TYPE_REQUEST_CONNECTION_PRIORITY:
+                return gatt.requestConnectionPriority(argument);
+            case TYPE_SET_PREFERRED_PHY:
+                gatt.setPreferredPhy(argument, argument, BluetoothDevice.PHY_OPTION_NO_PREFERRED);
+                return true;
+            case TYPE_READ_RSSI:
+                return gatt.readRemoteRssi();
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return true if the characteristic can only indicate, in which case indications are enabled instead of
+     * notifications
+     */
+    private boolean usesIndications() {
+        int properties = characteristic.getProperties();
+        return (properties & BluetoothGattCharacteristic.PROPERTY_NOTIFY) == 0
+                && (properties & BluetoothGattCharacteristic.PROPERTY_INDICATE) != 0;
+    }
+
+    /**
+     * @return true if the operation has no completion callback and is done as soon as the stack accepted it
+     */
+    boolean completesOnExecute() {
+        // onPhyUpdate is only called when the PHY actually changes, so it can not be waited for
+        return type == TYPE_REQUEST_CONNECTION_PRIORITY || type == TYPE_SET_PREFERRED_PHY;
+    }
+
+    /**
+     * @return true if a GATT callback of the given type, for the given characteristic, completes this operation
+     */
+    boolean isCompletedBy(int callbackType, BluetoothGattCharacteristic callbackCharacteristic) {
+        // onCharacteristicWrite is also called once a write without response was handed to the controller, which
+        // frees the stack for the next write
+        int completedBy = type == TYPE_WRITE_NO_RESPONSE ? TYPE_WRITE_CHARACTERISTIC : type;
+        if (callbackType != completedBy)
+            return false;
+        return characteristic == null || characteristic == callbackCharacteristic;
+    }
+}
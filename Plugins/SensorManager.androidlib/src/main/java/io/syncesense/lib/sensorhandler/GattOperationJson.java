@@ -0,0 +1,39 @@
+package io.syncsense.lib.sensorhandler;
+
+import static io.syncsense.lib.sensorhandler.JsonUtils.GSON;
+
+import android.os.SystemClock;
+
+public class GattOperationJson {
+
+    public int type;
+    public int status;
+    public int attempts;
+    public long durationMillis;
+    public String deviceAddress;
+    public String serviceUuid;
+    public String characteristicUuid;
+
+    public GattOperationJson() {
+    }
+
+    public GattOperationJson(String deviceAddress, GattOperation operation, int status) {
+        this.type = operation.type;
+        this.status = status;
+        this.attempts = operation.getAttempts();
+        this.durationMillis = operation.startedAtMillis > 0 ? SystemClock.elapsedRealtime() - operation.startedAtMillis : 0;
+        this.deviceAddress = deviceAddress;
+        if (operation.characteristic != null) {
+            this.serviceUuid = operation.characteristic.getService().getUuid().toString();
+            this.characteristicUuid = operation.characteristic.getUuid().toString();
+        }
+    }
+
+    public static String buildJson(String deviceAddress, GattOperation operation, int status) {
+        return GSON.toJson(new GattOperationJson(
+                deviceAddress,
+                operation,
+                status
+        ));
+    }
+}
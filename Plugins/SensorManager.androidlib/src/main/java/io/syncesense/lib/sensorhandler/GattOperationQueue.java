@@ -0,0 +1,282 @@
+package io.syncsense.lib.sensorhandler;
+
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.os.Handler;
+import android.os.SystemClock;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+/**
+ * Serializes the GATT operations of one connection. Android only allows one outstanding operation per connection,
+ * so every operation waits until the previous one is completed by its GATT callback, times out or runs out of
+ * retries.
+ *
+ * Write streams fill the gaps: whenever no operation is pending, the next chunk of one of the streams is written, the
+ * streams taking turns. The single outstanding operation is the credit of the connection, given back by the GATT
+ * callback. A chunk the stack refuses because its buffer is full is tried again shortly, until the operation timeout.
+ *
+ * Every operation is traced as an async span, from the moment it is started to its completion, retries included.
+ *
+ * Everything except enqueue, addStream, removeStream and resumeStreams must be called on the thread of the given handler.
+ */
+public class GattOperationQueue {
+
+    public static final int DEFAULT_TIMEOUT_MILLIS = 3000;
+    public static final int DEFAULT_MAX_RETRIES = 2;
+
+    private static final int RETRY_DELAY_MILLIS = 50;
+    private static final int STREAM_RETRY_DELAY_MILLIS = 2;
+
+    // By GattOperation type
+    private static final String[] TRACE_NAMES = {
+            "discoverServices",
+            "enableNotifications",
+            "disableNotifications",
+            "writeCharacteristic",
+            "readCharacteristic",
+            "requestMtu",
+            "requestConnectionPriority",
+            "setPreferredPhy",
+            "readRemoteRssi",
+            "writeNoResponse",
+    };
+    private static final String STREAM_WRITE_TRACE_NAME = "streamWrite";
+
+    public interface Listener {
+        void onOperationComplete(DeviceConnection connection, GattOperation operation, int status);
+    }
+
+    private final Handler handler;
+    private final DeviceConnection connection;
+    private final Listener listener;
+    private final Tracer tracer;
+
+    private final ArrayDeque<GattOperation> pending = new ArrayDeque<>();
+    private GattOperation current = null;
+
+    private final ArrayList<WriteStream> streams = new ArrayList<>();
+    private int nextStream = 0;
+
+    private volatile int timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+    private volatile int maxRetries = DEFAULT_MAX_RETRIES;
+
+    private final Runnable timeout = new Runnable() {
+        @Override
+        public void run() {
+            retryOrFail(GattOperation.STATUS_TIMEOUT);
+        }
+    };
+
+    private final Runnable restart = new Runnable() {
+        @Override
+        public void run() {
+            if (current != null)
+                start(current);
+        }
+    };
+
+    private final Runnable resume = new Runnable() {
+        @Override
+        public void run() {
+            if (current == null)
+                next();
+        }
+    };
+
+    public GattOperationQueue(Handler handler, DeviceConnection connection, Listener listener, Tracer tracer) {
+        this.handler = handler;
+        this.connection = connection;
+        this.listener = listener;
+        this.tracer = tracer;
+    }
+
+    public void setTimeoutMillis(int timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * Adds an operation to the queue. Can be called from any thread.
+     */
+    public void enqueue(final GattOperation operation) {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                pending.add(operation);
+                if (current == null)
+                    next();
+            }
+        });
+    }
+
+    /**
+     * Starts writing the chunks of a stream. Can be called from any thread.
+     */
+    public void addStream(final WriteStream stream) {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                streams.add(stream);
+                if (current == null)
+                    next();
+            }
+        });
+    }
+
+    /**
+     * Stops writing the chunks of a stream. A chunk already handed to the stack is still completed. Can be called
+     * from any thread.
+     */
+    public void removeStream(final WriteStream stream) {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                streams.remove(stream);
+            }
+        });
+    }
+
+    /**
+     * Wakes the queue up after messages were offered to one of its streams. Can be called from any thread.
+     */
+    public void resumeStreams() {
+        handler.removeCallbacks(resume);
+        handler.post(resume);
+    }
+
+    /**
+     * Completes the current operation if the GATT callback belongs to it.
+     *
+     * @param callbackType     the GattOperation type the callback completes
+     * @param characteristic   the characteristic of the callback, or null for service discovery
+     * @param status           the status reported by the callback
+     */
+    public void onGattCallback(int callbackType, BluetoothGattCharacteristic characteristic, int status) {
+        if (current == null || !current.isCompletedBy(callbackType, characteristic))
+            return;
+
+        finish(status == BluetoothGatt.GATT_SUCCESS ? GattOperation.STATUS_SUCCESS : status);
+    }
+
+    /**
+     * Fails the current and every pending operation, e.g. on disconnect.
+     */
+    public void cancelAll(int status) {
+        handler.removeCallbacks(timeout);
+        handler.removeCallbacks(restart);
+
+        if (current != null) {
+            GattOperation operation = current;
+            current = null;
+            complete(operation, status);
+        }
+        GattOperation operation;
+        while ((operation = pending.poll()) != null) {
+            listener.onOperationComplete(connection, operation, status);
+        }
+    }
+
+    private void next() {
+        current = pending.poll();
+        if (current == null)
+            current = pollStreams();
+        if (current != null) {
+            current.startedAtMillis = SystemClock.elapsedRealtime();
+            current.traceCookie = tracer.beginAsync(Tracer.CATEGORY_GATT, traceName(current), connection.address);
+            start(current);
+        }
+    }
+
+    /**
+     * @return a write of the next chunk of the streams, taking turns, or null if none has anything to write
+     */
+    private GattOperation pollStreams() {
+        int count = streams.size();
+        if (count == 0 || connection.gatt == null)
+            return null;
+
+        // The ATT header takes 3 bytes of every packet
+        int payload = connection.mtu - 3;
+        for (int i = 0; i < count; i++) {
+            WriteStream stream = streams.get((nextStream + i) % count);
+            // Not discovered yet, e.g. while a managed connection is being restored
+            BluetoothGattCharacteristic characteristic = connection.characteristicHandles.get(stream.characteristicIndex);
+            if (characteristic == null)
+                continue;
+
+            byte[] chunk = stream.poll(payload);
+            if (chunk != null) {
+                nextStream = (nextStream + i + 1) % count;
+                return GattOperation.streamWrite(characteristic, chunk, stream);
+            }
+        }
+        return null;
+    }
+
+    private void start(GattOperation operation) {
+        operation.attempts++;
+        BluetoothGatt gatt = connection.gatt;
+        if (gatt == null || !operation.execute(gatt)) {
+            retryOrFail(GattOperation.STATUS_REJECTED);
+            return;
+        }
+        if (operation.completesOnExecute()) {
+            finish(GattOperation.STATUS_SUCCESS);
+            return;
+        }
+        handler.postDelayed(timeout, timeoutMillis);
+    }
+
+    private void retryOrFail(int status) {
+        handler.removeCallbacks(timeout);
+        if (current == null)
+            return;
+
+        if (current.stream != null) {
+            // A chunk the stack refused was not sent, but one that timed out may have been, so it is not written twice
+            if (status == GattOperation.STATUS_REJECTED && connection.gatt != null
+                    && SystemClock.elapsedRealtime() - current.startedAtMillis < timeoutMillis) {
+                current.stream.onBufferFull();
+                handler.postDelayed(restart, STREAM_RETRY_DELAY_MILLIS);
+            } else {
+                finish(status);
+            }
+            return;
+        }
+
+        if (current.attempts <= maxRetries) {
+            handler.postDelayed(restart, RETRY_DELAY_MILLIS);
+        } else {
+            finish(status);
+        }
+    }
+
+    private void finish(int status) {
+        handler.removeCallbacks(timeout);
+        handler.removeCallbacks(restart);
+
+        GattOperation operation = current;
+        current = null;
+        complete(operation, status);
+        next();
+    }
+
+    private void complete(GattOperation operation, int status) {
+        tracer.endAsync(operation.traceCookie, Tracer.CATEGORY_GATT, traceName(operation), connection.address, status);
+        if (operation.stream != null) {
+            operation.stream.onWriteComplete(operation.value.length, status == GattOperation.STATUS_SUCCESS,
+                    SystemClock.elapsedRealtimeNanos());
+        } else {
+            listener.onOperationComplete(connection, operation, status);
+        }
+    }
+
+    private static String traceName(GattOperation operation) {
+        return operation.stream != null ? STREAM_WRITE_TRACE_NAME : TRACE_NAMES[operation.type];
+    }
+}
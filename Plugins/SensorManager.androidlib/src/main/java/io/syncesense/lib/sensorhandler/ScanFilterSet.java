@@ -0,0 +1,121 @@
+package io.syncsense.lib.sensorhandler;
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.le.ScanFilter;
+import android.os.ParcelUuid;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The scan filters handed to the controller when a scan starts.
+ *
+ * A device is reported if it matches any of the filters. Service UUID, manufacturer data and address filters are
+ * offloaded to the Bluetooth controller on most devices, so advertisements of other devices never wake up the host.
+ * Without any configured filter, scans fall back to the name of the Cadence sensors.
+ */
+public class ScanFilterSet {
+
+    public static final String DEFAULT_DEVICE_NAME = "Cadence_Sensor";
+
+    private static final String debugTag = "SyncsenseScanFilters";
+
+    private final List<ScanFilter> filters = new ArrayList<>();
+
+    public synchronized boolean addServiceUuid(String serviceUuid, String serviceUuidMask) {
+        ParcelUuid uuid = parseUuid(serviceUuid);
+        if (uuid == null)
+            return false;
+
+        ScanFilter.Builder builder = new ScanFilter.Builder();
+        if (serviceUuidMask == null || serviceUuidMask.isEmpty()) {
+            builder.setServiceUuid(uuid);
+        } else {
+            ParcelUuid mask = parseUuid(serviceUuidMask);
+            if (mask == null)
+                return false;
+            builder.setServiceUuid(uuid, mask);
+        }
+
+        filters.add(builder.build());
+        return true;
+    }
+
+    /**
+     * @param manufacturerId the Bluetooth SIG company identifier
+     * @param data           the manufacturer specific data, without the company identifier
+     * @param mask           a mask of the same length as data, where set bits must match, or null to match all bits
+     */
+    public synchronized boolean addManufacturerData(int manufacturerId, byte[] data, byte[] mask) {
+        if (manufacturerId < 0 || manufacturerId > 0xFFFF || data == null) {
+            Log.e(debugTag, "Invalid manufacturer data filter for manufacturer " + manufacturerId);
+            return false;
+        }
+
+        if (mask != null && mask.length != data.length) {
+            Log.e(debugTag, "Manufacturer data mask length " + mask.length + " does not match data length " + data.length);
+            return false;
+        }
+
+        filters.add(new ScanFilter.Builder()
+                .setManufacturerData(manufacturerId, data, mask)
+                .build());
+        return true;
+    }
+
+    public synchronized boolean addAddress(String deviceAddress) {
+        if (deviceAddress == null || !BluetoothAdapter.checkBluetoothAddress(deviceAddress)) {
+            Log.e(debugTag, "Invalid device address " + deviceAddress);
+            return false;
+        }
+
+        filters.add(new ScanFilter.Builder()
+                .setDeviceAddress(deviceAddress)
+                .build());
+        return true;
+    }
+
+    public synchronized boolean addDeviceName(String deviceName) {
+        if (deviceName == null || deviceName.isEmpty()) {
+            Log.e(debugTag, "Invalid device name filter");
+            return false;
+        }
+
+        filters.add(new ScanFilter.Builder()
+                .setDeviceName(deviceName)
+                .build());
+        return true;
+    }
+
+    public synchronized void clear() {
+        filters.clear();
+    }
+
+    public synchronized int size() {
+        return filters.size();
+    }
+
+    /**
+     * @return a copy of the configured filters, or the default name filter if none is configured
+     */
+    public synchronized List<ScanFilter> build() {
+        List<ScanFilter> result = new ArrayList<>(filters);
+        if (result.isEmpty()) {
+            result.add(new ScanFilter.Builder()
+                    .setDeviceName(DEFAULT_DEVICE_NAME)
+                    .build());
+        }
+        return result;
+    }
+
+    private static ParcelUuid parseUuid(String uuid) {
+        try {
+            return new ParcelUuid(UUID.fromString(uuid));
+        } catch (IllegalArgumentException | NullPointerException e) {
+            Log.e(debugTag, "Invalid UUID " + uuid);
+            return null;
+        }
+    }
+}
@@ -20,14 +20,27 @@ import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.os.Build;
 import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.os.Trace;
 import android.util.Log;
 
 import com.unity3d.player.UnityPlayer;
 
-import java.util.Hashtable;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Map;
 import java.util.ArrayList;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 
 /**
  *
@@ -38,28 +51,159 @@ public class SyncsenseSensorManager {
     private static final int PERMISSION_REQUEST_COARSE_LOCATION = 11111198;
     private static final int PERMISSION_BLUETOOTH_SCAN_LOCATION = 11111197;
 
+    /**
+     * Every notification is serialized to JSON and sent to Unity through OnDataReceived.
+     */
+    public static final int TRANSPORT_MODE_JSON = NotificationPipeline.TRANSPORT_MODE_JSON;
+    /**
+     * Notifications are framed into a ring buffer and pulled by Unity through drainNotifications.
+     */
+    public static final int TRANSPORT_MODE_BINARY = NotificationPipeline.TRANSPORT_MODE_BINARY;
+
     private static final String debugTag = "SyncsenseSensorManager";
     private boolean debug = false;
 
     private final Context context;
-    private final String gameObjectName;
+    private final EventSink events;
 
     private boolean permissionGranted = false;
     private final BluetoothAdapter mBluetoothAdapter;
-    private final Handler mHandler = new Handler();
 
-    private final Hashtable<String, BluetoothGatt> connectedDevices = new Hashtable<>();
+    /**
+     * Owns the GATT state: connects, disconnects, connection state changes and scan timeouts all run here.
+     */
+    private final HandlerThread gattThread = new HandlerThread("SyncsenseGatt");
+    private final Handler gattHandler;
+
+    /**
+     * Runs the notification pipeline: drains the per-device notification queues filled by the GATT callbacks and
+     * delivers them to Unity.
+     */
+    private final HandlerThread dispatchThread = new HandlerThread("SyncsenseDispatch");
+    private final Handler dispatchHandler;
+
+    private final TimeSource elapsedRealtime = new TimeSource() {
+        @Override
+        public long nowNanos() {
+            return SystemClock.elapsedRealtimeNanos();
+        }
+    };
+
+    /**
+     * Shared by the event sink, the pipeline and the GATT operation queues, disabled until setTracing.
+     */
+    private final Tracer tracer = new Tracer(elapsedRealtime);
+
+    private final Tracer.SystemTrace androidTrace = new Tracer.SystemTrace() {
+        @Override
+        public void beginSection(String name) {
+            Trace.beginSection(name);
+        }
+
+        @Override
+        public void endSection() {
+            Trace.endSection();
+        }
+
+        @Override
+        public void beginAsyncSection(String name, int cookie) {
+            Trace.beginAsyncSection(name, cookie);
+        }
+
+        @Override
+        public void endAsyncSection(String name, int cookie) {
+            Trace.endAsyncSection(name, cookie);
+        }
+    };
+
+    private final NotificationPipeline pipeline;
+    private final CompactIdTable<String> deviceIds;
+    private final CompactIdTable<UUID> characteristicIds;
+
+    private final ConcurrentHashMap<String, DeviceConnection> connectedDevices = new ConcurrentHashMap<>();
 
     private boolean mScanning = false;
 
+    private volatile int scanMode = ScanSettings.SCAN_MODE_LOW_LATENCY;
+    private volatile int scanCallbackType = ScanSettings.CALLBACK_TYPE_ALL_MATCHES;
+    private volatile int scanMatchMode = ScanSettings.MATCH_MODE_AGGRESSIVE;
+    private volatile int scanNumOfMatches = ScanSettings.MATCH_NUM_MAX_ADVERTISEMENT;
+    private volatile long scanReportDelayMillis = 0;
+
+    private final ScanFilterSet scanFilters = new ScanFilterSet();
+
+    private final DeviceRegistry deviceRegistry = new DeviceRegistry();
+    private boolean evictionScheduled = false;
+
+    private volatile int gattOperationTimeoutMillis = GattOperationQueue.DEFAULT_TIMEOUT_MILLIS;
+    private volatile int gattOperationMaxRetries = GattOperationQueue.DEFAULT_MAX_RETRIES;
+
+    /**
+     * Link parameters requested for every new connection. 0 or -1 leave the stack defaults.
+     */
+    private volatile int preferredMtu = 0;
+    private volatile int preferredConnectionPriority = -1;
+    private volatile boolean prefer2MPhy = false;
+
+    private volatile int rssiPollingIntervalMillis = 0;
+
+    private final ReconnectPolicy reconnectPolicy = new ReconnectPolicy();
+    private volatile boolean managedConnections = false;
+
+    /**
+     * GATT layouts reported to Unity, by device model. Only used from the GATT thread.
+     */
+    private final GattLayoutCache gattLayouts = new GattLayoutCache();
+
+    /**
+     * How long a direct reconnection attempt may take before the next one is scheduled. The stack would only give
+     * up after about 30 seconds.
+     */
+    private static final int RECONNECT_TIMEOUT_MILLIS = 10_000;
+
+    private volatile SessionRecorder recorder = null;
+
+    private volatile ConnectAndStream connectAndStream = null;
+
+    /**
+     * Devices connected to in earlier sessions, for warmStart. Saved from the GATT thread, a while after every change.
+     */
+    private final KnownDeviceStore knownDevices;
+    private volatile boolean rememberDevices = false;
+    private static final int KNOWN_DEVICES_SAVE_DELAY_MILLIS = 2000;
+
+    private SimulatedSensorFleet simulatedFleet = null;
+    private TransportSession simulationSession = null;
+
+    private RecordingReplay replay = null;
+    private TransportSession replaySession = null;
+
     public SyncsenseSensorManager(String gameObjectName, boolean enableDebug) {
         this.context = UnityPlayer.currentActivity.getApplicationContext();
-        this.gameObjectName = gameObjectName;
+        this.events = new UnityEventSink(gameObjectName, tracer);
         this.debug = enableDebug;
 
         mBluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
         permissionGranted = hasPermissions();
 
+        gattThread.start();
+        gattHandler = new Handler(gattThread.getLooper());
+        dispatchThread.start();
+        dispatchHandler = new Handler(dispatchThread.getLooper());
+
+        pipeline = new NotificationPipeline(events, elapsedRealtime, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                dispatchHandler.post(command);
+            }
+        }, tracer);
+        deviceIds = pipeline.deviceIds;
+        characteristicIds = pipeline.characteristicIds;
+
+        knownDevices = new KnownDeviceStore(new File(context.getFilesDir(), KnownDeviceStore.FILE_NAME));
+        if (!knownDevices.load())
+            Log.e(debugTag, "The known devices could not be read, starting over");
+
         if (debug)
             Log.wtf(debugTag, "Native plugin inited. Access Fine Location permission is: " + permissionGranted);
     }
@@ -121,10 +265,14 @@ public class SyncsenseSensorManager {
     }
 
     public void startScan(int scanTimeMilliseconds) {
+        startScan(scanTimeMilliseconds, scanFilters.build());
+    }
+
+    private void startScan(int scanTimeMilliseconds, List<ScanFilter> filters) {
         if (!isBluetoothEnabled()) {
             Log.e(debugTag, "Scan could not start. Maybe bluetooth is not enabled or is unsupported");
 
-            UnityPlayer.UnitySendMessage(gameObjectName, "OnScanError",
+            events.send("OnScanError",
                     ScanErrorJson.buildJson(
                             ScanErrorJson.ScanErrorCustomCodes.BLUETOOTH_NOT_ENABLED.errorCode
                     )
@@ -136,7 +284,7 @@ public class SyncsenseSensorManager {
             if (UnityPlayer.currentActivity.checkSelfPermission(Manifest.permission.BLUETOOTH_SCAN) != PackageManager.PERMISSION_GRANTED) {
                 Log.e(debugTag, "Scan failed with error code - Missing BLUETOOTH_SCAN permission");
 
-                UnityPlayer.UnitySendMessage(gameObjectName, "OnScanError",
+                events.send("OnScanError",
                         ScanErrorJson.buildJson(
                                 ScanErrorJson.ScanErrorCustomCodes.MISSING_BLUETOOTH_SCAN_PERMISSIONS.errorCode
                         )
@@ -148,7 +296,7 @@ public class SyncsenseSensorManager {
         if (!hasPermissions()) {
             Log.e(debugTag, "Scan failed with error code - Missing ACCESS_FINE_LOCATION permission");
 
-            UnityPlayer.UnitySendMessage(gameObjectName, "OnScanError",
+            events.send("OnScanError",
                     ScanErrorJson.buildJson(
                             ScanErrorJson.ScanErrorCustomCodes.MISSING_ACCESS_FINE_LOCATION_PERMISSIONS.errorCode
                     )
@@ -161,30 +309,175 @@ public class SyncsenseSensorManager {
         BluetoothLeScanner bluetoothLeScanner = mBluetoothAdapter.getBluetoothLeScanner();
 
         if (scanTimeMilliseconds > 0) {
-            mHandler.postDelayed(new Runnable() {
+            gattHandler.postDelayed(new Runnable() {
                 @Override
                 public void run() {
                     mScanning = false;
 
+                    if (scanReportDelayMillis > 0)
+                        bluetoothLeScanner.flushPendingScanResults(mLeScanCallback);
                     bluetoothLeScanner.stopScan(mLeScanCallback);
                 }
             }, scanTimeMilliseconds);
         }
 
-        List<ScanFilter> filters = new ArrayList<>();
-        ScanFilter filter = new ScanFilter.Builder()
-                .setDeviceName("Cadence_Sensor")
-                .build();
-        filters.add(filter);
-
         ScanSettings.Builder settingsBuilder = new ScanSettings.Builder();
-        settingsBuilder.setScanMode(ScanSettings.SCAN_MODE_LOW_LATENCY)
-                .setCallbackType(ScanSettings.CALLBACK_TYPE_ALL_MATCHES);
+        settingsBuilder.setScanMode(scanMode)
+                .setCallbackType(scanCallbackType)
+                .setMatchMode(scanMatchMode)
+                .setNumOfMatches(scanNumOfMatches);
+
+        if (scanReportDelayMillis > 0) {
+            if (mBluetoothAdapter.isOffloadedScanBatchingSupported()) {
+                settingsBuilder.setReportDelay(scanReportDelayMillis);
+            } else {
+                Log.e(debugTag, "Scan - Batched scanning is not supported by this device, reporting every result");
+            }
+        }
 
         mScanning = true;
         bluetoothLeScanner.startScan(filters, settingsBuilder.build(), mLeScanCallback);
     }
 
+    /**
+     * Configures the scans started afterwards.
+     *
+     * With a report delay, the controller batches advertisements and the plugin sends one deduplicated
+     * OnBatchScanResult message per batch instead of an OnScanResult message per advertisement.
+     *
+     * @param mode              one of ScanSettings.SCAN_MODE_* (LOW_POWER 0, BALANCED 1, LOW_LATENCY 2, OPPORTUNISTIC -1)
+     * @param callbackType      one of ScanSettings.CALLBACK_TYPE_* (ALL_MATCHES 1, FIRST_MATCH 2, MATCH_LOST 4)
+     * @param matchMode         one of ScanSettings.MATCH_MODE_* (AGGRESSIVE 1, STICKY 2)
+     * @param numOfMatches      one of ScanSettings.MATCH_NUM_* (ONE 1, FEW 2, MAX 3)
+     * @param reportDelayMillis the hardware batching delay, or 0 to report every advertisement as it arrives
+     */
+    public void configureScan(int mode, int callbackType, int matchMode, int numOfMatches, long reportDelayMillis) {
+        scanMode = mode;
+        scanCallbackType = callbackType;
+        scanMatchMode = matchMode;
+        scanNumOfMatches = numOfMatches;
+        scanReportDelayMillis = Math.max(0, reportDelayMillis);
+    }
+
+    /**
+     * Adds a filter matching devices that advertise the service, for example SensorUuids.MOTION_SERVICE.
+     *
+     * Scans started afterwards report devices matching any of the added filters. Without filters, they match the
+     * default "Cadence_Sensor" name.
+     *
+     * @param serviceUuidMask a UUID mask where set bits must match, or null to match the whole UUID
+     * @return false if a UUID is not valid
+     */
+    public boolean addServiceUuidScanFilter(String serviceUuid, String serviceUuidMask) {
+        return scanFilters.addServiceUuid(serviceUuid, serviceUuidMask);
+    }
+
+    /**
+     * Adds a filter matching devices that advertise manufacturer specific data, see addServiceUuidScanFilter.
+     *
+     * @param manufacturerId the Bluetooth SIG company identifier
+     * @param data           the expected data, without the company identifier
+     * @param mask           a mask of the same length as data where set bits must match, or null to match all bits
+     * @return false if the manufacturer id or the mask is not valid
+     */
+    public boolean addManufacturerDataScanFilter(int manufacturerId, byte[] data, byte[] mask) {
+        return scanFilters.addManufacturerData(manufacturerId, data, mask);
+    }
+
+    /**
+     * Adds a filter matching a single device, see addServiceUuidScanFilter.
+     *
+     * @return false if the address is not valid
+     */
+    public boolean addAddressScanFilter(String deviceAddress) {
+        return scanFilters.addAddress(deviceAddress);
+    }
+
+    /**
+     * Adds a filter matching the advertised device name, see addServiceUuidScanFilter.
+     */
+    public boolean addNameScanFilter(String deviceName) {
+        return scanFilters.addDeviceName(deviceName);
+    }
+
+    /**
+     * Removes every added scan filter, so scans fall back to the default name filter.
+     */
+    public void clearScanFilters() {
+        scanFilters.clear();
+    }
+
+    /**
+     * @return true if the controller supports batching scan results, see configureScan
+     */
+    public boolean isScanBatchingSupported() {
+        return mBluetoothAdapter != null && mBluetoothAdapter.isOffloadedScanBatchingSupported();
+    }
+
+    /**
+     * Configures how scan results are deduplicated. Each device is reported through OnScanResult when first seen,
+     * then only when its name, advertisement data or smoothed RSSI changes, and through OnDeviceLost once it stops
+     * advertising.
+     *
+     * @param rssiSmoothing         weight of a new RSSI sample in the smoothed RSSI, between 0 and 1
+     * @param rssiChangeThreshold   smoothed RSSI change, in dBm, reported again
+     * @param evictionTimeoutMillis time without advertisements after which a device is lost, 0 to keep devices forever
+     */
+    public void configureDeviceRegistry(float rssiSmoothing, int rssiChangeThreshold, int evictionTimeoutMillis) {
+        deviceRegistry.configure(rssiSmoothing, rssiChangeThreshold, evictionTimeoutMillis);
+    }
+
+    /**
+     * @return a json object with every device currently known from scanning
+     */
+    public String getDeviceRegistrySnapshot() {
+        return DeviceRegistryJson.buildJson(deviceRegistry.snapshot(SystemClock.elapsedRealtime()));
+    }
+
+    public void clearDeviceRegistry() {
+        deviceRegistry.clear();
+    }
+
+    /**
+     * @return the handle of a device, as reported in scan results, or -1 if the device is not in the registry and
+     * was not connected to
+     */
+    public int getDeviceHandle(String deviceAddress) {
+        return deviceRegistry.getHandle(deviceAddress);
+    }
+
+    private void scheduleEviction() {
+        synchronized (deviceRegistry) {
+            if (evictionScheduled)
+                return;
+            evictionScheduled = true;
+        }
+        gattHandler.postDelayed(evictStaleDevices, Math.max(1000, deviceRegistry.getEvictionTimeoutMillis() / 2));
+    }
+
+    private final Runnable evictStaleDevices = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (deviceRegistry) {
+                evictionScheduled = false;
+            }
+
+            for (DeviceRegistry.Entry entry : deviceRegistry.evictStale(SystemClock.elapsedRealtime())) {
+                events.send("OnDeviceLost",
+                        ScanResultJson.buildJson(
+                                entry.name,
+                                entry.address,
+                                Math.round(entry.smoothedRssi),
+                                entry.handle
+                        )
+                );
+            }
+
+            if (!deviceRegistry.isEmpty())
+                scheduleEviction();
+        }
+    };
+
     @SuppressLint("MissingPermission")
     public void stopScan() {
         if (!isBluetoothEnabled()) {
@@ -195,6 +488,8 @@ public class SyncsenseSensorManager {
         BluetoothLeScanner bluetoothLeScanner = mBluetoothAdapter.getBluetoothLeScanner();
 
         mScanning = false;
+        if (scanReportDelayMillis > 0)
+            bluetoothLeScanner.flushPendingScanResults(mLeScanCallback);
         bluetoothLeScanner.stopScan(mLeScanCallback);
 
     }
@@ -203,12 +498,35 @@ public class SyncsenseSensorManager {
     public boolean connectToDevice(String deviceAddress){
         BluetoothDevice device = mBluetoothAdapter.getRemoteDevice(deviceAddress);
         if (device!=null) {
-            if (connectedDevices.containsKey(deviceAddress)){
+            int deviceIndex = deviceIds.getOrAssign(deviceAddress);
+            if (deviceIndex == CompactIdTable.NO_ID) {
+                Log.e(debugTag, "No more devices can be connected during this session");
+                return false;
+            }
+            // Still usable by the ByHandle methods once the device stops advertising
+            deviceRegistry.keepHandle(deviceAddress);
+
+            final DeviceConnection connection = new DeviceConnection(device, deviceIndex, managedConnections, gattHandler, operationListener, tracer);
+            connection.operations.setTimeoutMillis(gattOperationTimeoutMillis);
+            connection.operations.setMaxRetries(gattOperationMaxRetries);
+            // The MTU negotiated last time is asked for again right away
+            KnownDeviceJson known = rememberDevices ? knownDevices.get(deviceAddress) : null;
+            if (known != null && known.mtu > DeviceConnection.DEFAULT_MTU)
+                connection.requestedMtu = known.mtu;
+            if (connectedDevices.putIfAbsent(deviceAddress, connection) != null){
                 Log.e(debugTag, "The device this address corresponds to is already connected");
                 return false;
             }
-            connectedDevices.put(deviceAddress,
-                    device.connectGatt(context, false, mGattCallback));
+            pipeline.register(connection);
+
+            gattHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    connection.connectTraceCookie = tracer.beginAsync(Tracer.CATEGORY_GATT, "connect", connection.address);
+                    connection.gatt = device.connectGatt(context, false, mGattCallback,
+                            BluetoothDevice.TRANSPORT_LE, getPreferredPhyMask());
+                }
+            });
             return true;
         } else {
             Log.e(debugTag, "The device this address corresponds can not be found.");
@@ -216,12 +534,61 @@ public class SyncsenseSensorManager {
         }
     }
 
+    /**
+     * Same as connectToDevice, with the handle reported in scan results.
+     */
+    public boolean connectToDeviceByHandle(int handle) {
+        String deviceAddress = getAddressForHandle(handle);
+        return deviceAddress != null && connectToDevice(deviceAddress);
+    }
+
+    public boolean disconnectFromDeviceByHandle(int handle) {
+        String deviceAddress = getAddressForHandle(handle);
+        return deviceAddress != null && disconnectFromDevice(deviceAddress);
+    }
+
+    public boolean subscribeToCharacteristicByHandle(int handle, String uuidService, String uuidCharacteristic) {
+        String deviceAddress = getAddressForHandle(handle);
+        return deviceAddress != null && subscribeToCharacteristic(deviceAddress, uuidService, uuidCharacteristic);
+    }
+
+    public boolean unsubscribeToCharacteristicByHandle(int handle, String uuidService, String uuidCharacteristic) {
+        String deviceAddress = getAddressForHandle(handle);
+        return deviceAddress != null && unsubscribeToCharacteristic(deviceAddress, uuidService, uuidCharacteristic);
+    }
+
+    public boolean writeCharacteristicNoResponseByHandle(int handle, String uuidService, String uuidCharacteristic, byte[] value) {
+        String deviceAddress = getAddressForHandle(handle);
+        return deviceAddress != null && writeCharacteristicNoResponse(deviceAddress, uuidService, uuidCharacteristic, value);
+    }
+
+    private String getAddressForHandle(int handle) {
+        String deviceAddress = deviceRegistry.getAddress(handle);
+        if (deviceAddress == null)
+            Log.e(debugTag, "No device is known for handle " + handle);
+        return deviceAddress;
+    }
+
     @SuppressLint("MissingPermission")
     public boolean disconnectFromDevice(String deviceAddress){
-        if (connectedDevices.containsKey(deviceAddress)){
-            connectedDevices.get(deviceAddress).disconnect();
-            connectedDevices.get(deviceAddress).close();
-            connectedDevices.remove(deviceAddress);
+        final DeviceConnection connection = connectedDevices.remove(deviceAddress);
+        if (connection != null){
+            pipeline.unregister(connection);
+            gattHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (connection.managed) {
+                        cancelPendingReconnect(connection);
+                        setManagedState(connection, DeviceConnection.MANAGED_STATE_CLOSED, 0);
+                    }
+                    connection.operations.cancelAll(GattOperation.STATUS_DISCONNECTED);
+                    connection.characteristicHandles.clear();
+                    if (connection.gatt != null) {
+                        connection.gatt.disconnect();
+                        connection.gatt.close();
+                    }
+                }
+            });
             return true;
         } else {
             Log.e(debugTag, "The device this address corresponds to is not connected");
@@ -229,180 +596,1723 @@ public class SyncsenseSensorManager {
         }
     }
 
-    @SuppressLint("MissingPermission")
-    public boolean discoverServicesForDevice(String deviceAddress){
-        if (connectedDevices.containsKey(deviceAddress)){
-            return connectedDevices.get(deviceAddress).discoverServices();
-        } else {
-            Log.e(debugTag, "The device this address corresponds to is not connected");
+    /**
+     * Connects to a set of devices and enables notifications of the same characteristics on each, as one pipelined
+     * bring-up: devices discover and subscribe while the next ones connect, with at most maxConcurrentConnects
+     * connection attempts in progress, started at least staggerMillis apart. Progress of every device is reported
+     * through OnConnectAndStreamProgress, the time to first sample of every device and of the whole set through
+     * OnConnectAndStreamComplete.
+     *
+     * @param serviceUuids          the service of every characteristic in characteristicUuids
+     * @param maxConcurrentConnects connection attempts in progress at once, 0 for ConnectAndStream.DEFAULT_MAX_CONCURRENT_CONNECTS
+     * @param staggerMillis         the shortest delay between the start of two connection attempts
+     */
+    public boolean connectAndStream(final String[] deviceAddresses, String[] serviceUuids, String[] characteristicUuids,
+                                    final int maxConcurrentConnects, final int staggerMillis) {
+        if (deviceAddresses == null || deviceAddresses.length == 0 || serviceUuids == null || characteristicUuids == null
+                || characteristicUuids.length == 0 || serviceUuids.length != characteristicUuids.length) {
+            Log.e(debugTag, "Connect and stream needs devices, and a service for every characteristic");
             return false;
         }
-    }
-
-    @SuppressLint("MissingPermission")
-    public boolean subscribeToCharacteristic( String deviceAddress, String uuidService, String uuidCharacteristic){
-        if (connectedDevices.containsKey(deviceAddress)){
-            BluetoothGatt mDevice = connectedDevices.get(deviceAddress);
-            BluetoothGattService mService = mDevice.getService(UUID.fromString(uuidService));
-            if (mService == null) {
-                Log.e(debugTag, "Subscription - The device for this address does not have a service with the provided uuidService");
-                return false;
-            }
 
-            BluetoothGattCharacteristic mCharacteristic = mService.getCharacteristic(UUID.fromString(uuidCharacteristic));
-            if (mCharacteristic == null) {
-                Log.e(debugTag, "Subscription - The device for this address does not have a characteristic with the provided uuidService and uuidCharacteristic");
-                return false;
+        final UUID[] services = new UUID[serviceUuids.length];
+        final UUID[] characteristics = new UUID[characteristicUuids.length];
+        try {
+            for (int i = 0; i < characteristicUuids.length; i++) {
+                services[i] = UUID.fromString(serviceUuids[i]);
+                characteristics[i] = UUID.fromString(characteristicUuids[i]);
             }
-
-            // enables notifications for a specific characteristic on a BLE device at the characteristic level,
-            boolean result = mDevice.setCharacteristicNotification(mCharacteristic, true);
-            if (!result) {
-                Log.e(debugTag, "Subscription - Unable to enable Characteristics notifications at the Characteristic level");
+        } catch (IllegalArgumentException e) {
+            Log.e(debugTag, "Invalid uuid: " + e.getMessage());
+            return false;
+        }
+        for (String deviceAddress : deviceAddresses) {
+            if (!BluetoothAdapter.checkBluetoothAddress(deviceAddress)) {
+                Log.e(debugTag, "Invalid device address: " + deviceAddress);
                 return false;
             }
+        }
 
-            // update the value of the characteristic's descriptor (typically the CCCD) to reflect this change, and finally write this updated descriptor value back to the device.
-            BluetoothGattDescriptor descriptor = mCharacteristic.getDescriptors().get(0);
-            descriptor.setValue(BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE);
-            result = mDevice.writeDescriptor(descriptor);
-            if (!result) {
-                Log.e(debugTag, "Subscription - Unable to write enabled Characteristics notifications back to the device");
-                return false;
-            }
-            Log.e(debugTag, "Subscription - Finishing subscription");
-            return true;
-        } else {
-            Log.e(debugTag, "Subscription - The device this address corresponds to is not connected");
+        ConnectAndStream running = connectAndStream;
+        if (running != null && !running.isFinished()) {
+            Log.e(debugTag, "A connect and stream is already in progress");
             return false;
         }
-    }
 
-    @SuppressLint("MissingPermission")
-    public boolean unsubscribeToCharacteristic(String deviceAddress, String uuidService, String uuidCharacteristic) {
-        BluetoothGatt mDevice = connectedDevices.get(deviceAddress);
-        BluetoothGattCharacteristic mCharacteristic;
-
-        for (BluetoothGattService service: mDevice.getServices()) {
-            if (service.getUuid().toString().equals(uuidService)) {
-                mCharacteristic = service.getCharacteristic(UUID.fromString(uuidCharacteristic));
-                if (mCharacteristic != null) {
-                
-                    mDevice.setCharacteristicNotification(mCharacteristic, false); 
-                    BluetoothGattDescriptor descriptor = mCharacteristic.getDescriptors().get(0);
-                    descriptor.setValue(BluetoothGattDescriptor.DISABLE_NOTIFICATION_VALUE);
-                    return mDevice.writeDescriptor(descriptor);
-                    
-                    /* Log.wtf(debugTag, "--------------------------- UNSUSBRICING ---------------------------");
-                    BluetoothGattDescriptor descriptor = mCharacteristic.getDescriptors().get(0);
-                    if (descriptor != null) {
-                        descriptor.setValue(BluetoothGattDescriptor.DISABLE_NOTIFICATION_VALUE);
-                        mDevice.writeDescriptor(descriptor);
-                    } */
-                }
+        final ConnectAndStream bringUp = new ConnectAndStream(gattHandler, events, bringUpConnector, deviceAddresses,
+                services, characteristics, maxConcurrentConnects, staggerMillis);
+        connectAndStream = bringUp;
+        gattHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                bringUp.start();
             }
-        }
-        return false;
+        });
+        return true;
     }
 
-    @SuppressLint("MissingPermission")
-    public boolean writeCharacteristicNoResponse(String deviceAddress, String uuidService, String uuidCharacteristic, byte[] value) {
-        BluetoothGatt mDevice = connectedDevices.get(deviceAddress);
-        BluetoothGattCharacteristic bt_chr;
-
-        for (BluetoothGattService service: mDevice.getServices()) {
-            if (service.getUuid().toString().equals(uuidService)) {
-                bt_chr = service.getCharacteristic(UUID.fromString(uuidCharacteristic));
-                if (bt_chr != null) {
-                    bt_chr.setValue(value);
-                    return mDevice.writeCharacteristic (bt_chr);
-                }
+    /**
+     * Stops a connect and stream, giving up on every device that does not stream yet. Established connections are kept.
+     */
+    public void cancelConnectAndStream() {
+        final ConnectAndStream bringUp = connectAndStream;
+        if (bringUp == null)
+            return;
+
+        gattHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                bringUp.cancel();
             }
+        });
+    }
+
+    /**
+     * Remembers every device connected from now on, with its GATT layout, link parameters and firmware revision, in a
+     * store kept in app storage across sessions. Remembered devices get their last MTU requested right after
+     * connecting, and are the ones warmStart connects to.
+     */
+    public void setRememberDevices(boolean enable) {
+        rememberDevices = enable;
+    }
+
+    /**
+     * @return the remembered devices as a json list, most recently connected first
+     */
+    public String getKnownDevices() {
+        return knownDevices.toJson();
+    }
+
+    public boolean forgetDevice(String deviceAddress) {
+        if (!knownDevices.forget(deviceAddress)) {
+            Log.e(debugTag, "The device this address corresponds to is not known");
+            return false;
         }
-        return false;
+        scheduleKnownDevicesSave();
+        return true;
     }
 
-    private ScanCallback mLeScanCallback = new ScanCallback() {
-        /**
-         *
-         * @param callbackType ScanSettings.CALLBACK_TYPE_ALL_MATCHES, ScanSettings#CALLBACK_TYPE_FIRST_MATCH or ScanSettings#CALLBACK_TYPE_MATCH_LOST
-         * @param result item reported
-         */
-        @SuppressLint("MissingPermission")
-        @Override
-        public void onScanResult(int callbackType, ScanResult result) {
-            super.onScanResult(callbackType, result);
-            if (debug) Log.wtf(debugTag, "Received Scan Result.");
-            UnityPlayer.UnitySendMessage(gameObjectName, "OnScanResult",
-                    ScanResultJson.buildJson(
-                            result.getDevice().getName(),
-                            result.getDevice().getAddress(),
-                            result.getRssi()
-                    )
-            );
+    public void forgetAllDevices() {
+        knownDevices.clear();
+        scheduleKnownDevicesSave();
+    }
+
+    /**
+     * Connects to the most recently connected remembered devices without scanning first, and enables notifications
+     * of the given characteristics on each, see connectAndStream. A scan for these devices runs alongside for
+     * confirmScanMillis, its results are reported as usual.
+     *
+     * @param maxDevices       the most devices to connect to, 0 for all remembered ones
+     * @param confirmScanMillis how long to scan for the devices, 0 not to scan
+     */
+    public boolean warmStart(String[] serviceUuids, String[] characteristicUuids, int maxDevices,
+                             int maxConcurrentConnects, int staggerMillis, int confirmScanMillis) {
+        List<KnownDeviceJson> known = knownDevices.getAll();
+        if (known.isEmpty()) {
+            Log.e(debugTag, "Warm start - no device is remembered yet");
+            return false;
         }
 
-        @Override
-        public void onBatchScanResults(List<ScanResult> results) {
-            super.onBatchScanResults(results);
-            // Do nothing here
+        int count = maxDevices > 0 ? Math.min(maxDevices, known.size()) : known.size();
+        String[] deviceAddresses = new String[count];
+        List<ScanFilter> filters = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            deviceAddresses[i] = known.get(i).deviceAddress;
+            filters.add(new ScanFilter.Builder().setDeviceAddress(deviceAddresses[i]).build());
         }
 
-        /**
-         *
-         * @param errorCode int: Error code (one of SCAN_FAILED_*) for scan failure. Value is SCAN_FAILED_ALREADY_STARTED, SCAN_FAILED_APPLICATION_REGISTRATION_FAILED, SCAN_FAILED_INTERNAL_ERROR, SCAN_FAILED_FEATURE_UNSUPPORTED, SCAN_FAILED_OUT_OF_HARDWARE_RESOURCES, or SCAN_FAILED_SCANNING_TOO_FREQUENTLY
-         */
-        @Override
-        public void onScanFailed(int errorCode) {
-            super.onScanFailed(errorCode);
-            Log.e(debugTag, "Scan failed with error code: " + errorCode );
+        if (!connectAndStream(deviceAddresses, serviceUuids, characteristicUuids, maxConcurrentConnects, staggerMillis))
+            return false;
 
-            UnityPlayer.UnitySendMessage(gameObjectName, "OnScanError",
-                    ScanErrorJson.buildJson(
-                            errorCode
-                    )
-            );
+        if (confirmScanMillis > 0 && !mScanning)
+            startScan(confirmScanMillis, filters);
+        return true;
+    }
+
+    private final Runnable saveKnownDevices = new Runnable() {
+        @Override
+        public void run() {
+            if (!knownDevices.save())
+                Log.e(debugTag, "The known devices could not be saved");
         }
     };
 
-    private final BluetoothGattCallback mGattCallback = new BluetoothGattCallback() {
+    private void scheduleKnownDevicesSave() {
+        gattHandler.removeCallbacks(saveKnownDevices);
+        gattHandler.postDelayed(saveKnownDevices, KNOWN_DEVICES_SAVE_DELAY_MILLIS);
+    }
 
-        @Override
-        public void onConnectionStateChange(BluetoothGatt gatt, int status, int newState) {
-            UnityPlayer.UnitySendMessage(gameObjectName, "OnDeviceConnectionStateChange",
-                    ConnectionStateChangeJson.buildJson(
-                            status,
-                            newState,
-                            gatt
-                    )
-            );
+    /**
+     * Keeps the layout discovered on a remembered device. Runs on the GATT thread.
+     */
+    private void rememberLayout(DeviceConnection connection, GattLayout layout) {
+        KnownDeviceJson known = knownDevices.get(connection.address);
+        if (known == null)
+            return;
 
-            if (newState == BluetoothProfile.STATE_DISCONNECTED) {
-                // connectedDevices.remove(gatt.getDevice().getAddress());
-                disconnectFromDevice(gatt.getDevice().getAddress());
-            }
-        }
+        GattLayout remembered = GattLayout.fromJson(known.layout);
+        if (layout.equals(remembered))
+            return;
+        if (remembered != null)
+            Log.e(debugTag, "The GATT layout of " + connection.address + " changed since it was remembered");
+        knownDevices.setLayout(connection.address, layout.toJson());
+        scheduleKnownDevicesSave();
+    }
+
+    /**
+     * Queues a read of the firmware revision of a remembered device, if it has a Device Information service.
+     */
+    private void readFirmwareRevision(DeviceConnection connection) {
+        BluetoothGattCharacteristic characteristic = connection.characteristicHandles.get(
+                connection.characteristicHandles.getIndex(SensorUuids.DEVICE_INFORMATION_SERVICE_UUID,
+                        SensorUuids.FIRMWARE_REVISION_CHARACTERISTIC_UUID));
+        if (characteristic != null)
+            connection.operations.enqueue(GattOperation.internalRead(characteristic));
+    }
 
+    private final ConnectAndStream.Connector bringUpConnector = new ConnectAndStream.Connector() {
         @Override
-        public void onServicesDiscovered(BluetoothGatt gatt, int status) {
-            UnityPlayer.UnitySendMessage(gameObjectName, "OnServicesDiscovered",
-                    ServicesDiscoveredJson.buildJson(
-                            gatt,
-                            status
-                    )
-            );
+        public boolean connect(String deviceAddress) {
+            return connectToDevice(deviceAddress);
         }
 
         @Override
-        public void onCharacteristicChanged(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic) {
-            if (debug) Log.wtf(debugTag, "onCharacteristicChanged!!!!");
-            UnityPlayer.UnitySendMessage(gameObjectName, "OnDataReceived",
-                    DataReceivedJson.buildJson(
-                            gatt,
-                            characteristic
+        public void disconnect(String deviceAddress) {
+            if (connectedDevices.containsKey(deviceAddress))
+                disconnectFromDevice(deviceAddress);
+        }
+
+        @Override
+        public DeviceConnection getConnection(String deviceAddress) {
+            return connectedDevices.get(deviceAddress);
+        }
+    };
+
+    /**
+     * Queues a service discovery. Completion is reported through OnGattOperationComplete, the results through
+     * OnServicesDiscovered.
+     */
+    @SuppressLint("MissingPermission")
+    public boolean discoverServicesForDevice(String deviceAddress){
+        DeviceConnection connection = connectedDevices.get(deviceAddress);
+        if (connection != null){
+            connection.operations.enqueue(GattOperation.discoverServices());
+            return true;
+        } else {
+            Log.e(debugTag, "The device this address corresponds to is not connected");
+            return false;
+        }
+    }
+
+    /**
+     * Queues enabling notifications of a characteristic. Completion is reported through OnGattOperationComplete.
+     *
+     * @return false if the device is not connected or does not have the characteristic
+     */
+    @SuppressLint("MissingPermission")
+    public boolean subscribeToCharacteristic( String deviceAddress, String uuidService, String uuidCharacteristic){
+        return enqueueCharacteristicOperation("Subscription", GattOperation.TYPE_ENABLE_NOTIFICATIONS,
+                deviceAddress, uuidService, uuidCharacteristic, null);
+    }
+
+    /**
+     * Queues disabling notifications of a characteristic. Completion is reported through OnGattOperationComplete.
+     *
+     * @return false if the device is not connected or does not have the characteristic
+     */
+    @SuppressLint("MissingPermission")
+    public boolean unsubscribeToCharacteristic(String deviceAddress, String uuidService, String uuidCharacteristic) {
+        return enqueueCharacteristicOperation("Unsubscription", GattOperation.TYPE_DISABLE_NOTIFICATIONS,
+                deviceAddress, uuidService, uuidCharacteristic, null);
+    }
+
+    /**
+     * Queues a write without response of a characteristic. Completion, once the value was handed to the controller,
+     * is reported through OnGattOperationComplete. Use a write stream to send many values in a row.
+     *
+     * @return false if the device is not connected or does not have the characteristic
+     */
+    @SuppressLint("MissingPermission")
+    public boolean writeCharacteristicNoResponse(String deviceAddress, String uuidService, String uuidCharacteristic, byte[] value) {
+        return enqueueCharacteristicOperation("Write", GattOperation.TYPE_WRITE_NO_RESPONSE,
+                deviceAddress, uuidService, uuidCharacteristic, value);
+    }
+
+    /**
+     * Queues a read of a characteristic. The value is delivered like a notification, through the selected transport.
+     *
+     * @return false if the device is not connected or does not have the characteristic
+     */
+    public boolean readCharacteristic(String deviceAddress, String uuidService, String uuidCharacteristic) {
+        return enqueueCharacteristicOperation("Read", GattOperation.TYPE_READ_CHARACTERISTIC,
+                deviceAddress, uuidService, uuidCharacteristic, null);
+    }
+
+    /**
+     * Returns the handle of a characteristic of a connected device, for the CharacteristicHandle methods. Handles can
+     * also be derived from the layout reported in OnServicesDiscovered. They are valid once the services of the device
+     * were discovered, and a characteristic keeps its handle for the whole session.
+     *
+     * @return the handle, or -1 if the device is not connected or the characteristic was not discovered
+     */
+    public int getCharacteristicHandle(String deviceAddress, String uuidService, String uuidCharacteristic) {
+        DeviceConnection connection = connectedDevices.get(deviceAddress);
+        if (connection == null)
+            return CharacteristicHandleTable.NO_HANDLE;
+
+        UUID serviceUuid = parseUuid("getCharacteristicHandle", uuidService);
+        UUID characteristicUuid = parseUuid("getCharacteristicHandle", uuidCharacteristic);
+        if (serviceUuid == null || characteristicUuid == null)
+            return CharacteristicHandleTable.NO_HANDLE;
+
+        int index = connection.characteristicHandles.getIndex(serviceUuid, characteristicUuid);
+        if (index == CharacteristicHandleTable.NO_HANDLE)
+            return CharacteristicHandleTable.NO_HANDLE;
+        return CharacteristicHandleTable.toHandle(connection.deviceIndex, index);
+    }
+
+    /**
+     * Same as subscribeToCharacteristic, with a handle from getCharacteristicHandle.
+     */
+    public boolean subscribeToCharacteristicHandle(int characteristicHandle) {
+        return enqueueCharacteristicOperation("Subscription", GattOperation.TYPE_ENABLE_NOTIFICATIONS, characteristicHandle, null);
+    }
+
+    /**
+     * Same as unsubscribeToCharacteristic, with a handle from getCharacteristicHandle.
+     */
+    public boolean unsubscribeFromCharacteristicHandle(int characteristicHandle) {
+        return enqueueCharacteristicOperation("Unsubscription", GattOperation.TYPE_DISABLE_NOTIFICATIONS, characteristicHandle, null);
+    }
+
+    /**
+     * Same as writeCharacteristicNoResponse, with a handle from getCharacteristicHandle.
+     */
+    public boolean writeCharacteristicHandleNoResponse(int characteristicHandle, byte[] value) {
+        return enqueueCharacteristicOperation("Write", GattOperation.TYPE_WRITE_NO_RESPONSE, characteristicHandle, value);
+    }
+
+    /**
+     * Same as readCharacteristic, with a handle from getCharacteristicHandle.
+     */
+    public boolean readCharacteristicHandle(int characteristicHandle) {
+        return enqueueCharacteristicOperation("Read", GattOperation.TYPE_READ_CHARACTERISTIC, characteristicHandle, null);
+    }
+
+    /**
+     * Opens a write stream to a characteristic, for sending values in a row without waiting for each, e.g. haptic
+     * or LED patterns, or a configuration blob.
+     *
+     * Values given to writeToStream are written without response, packed up to the payload of the negotiated MTU,
+     * each write waiting for the stack to take the previous one. Operations queued by the app go first. The stream
+     * survives the reconnections of a managed connection and goes on once the services were discovered again.
+     *
+     * @param bufferBytes  how many bytes may wait to be written before writeToStream refuses values, 0 for the default
+     * @param packMessages true to put as many values as fit in every write, false to write every value on its own
+     * @return false if the characteristic was not discovered, can not be written without response, or already has a
+     * stream
+     */
+    public boolean openWriteStream(int characteristicHandle, int bufferBytes, boolean packMessages) {
+        DeviceConnection connection = getConnectionForCharacteristicHandle("Write stream", characteristicHandle);
+        if (connection == null)
+            return false;
+
+        int index = CharacteristicHandleTable.indexOf(characteristicHandle);
+        BluetoothGattCharacteristic characteristic = connection.characteristicHandles.get(index);
+        if (characteristic == null) {
+            Log.e(debugTag, "Write stream - No characteristic was discovered for handle " + characteristicHandle);
+            return false;
+        }
+        if ((characteristic.getProperties() & BluetoothGattCharacteristic.PROPERTY_WRITE_NO_RESPONSE) == 0) {
+            Log.e(debugTag, "Write stream - The characteristic of handle " + characteristicHandle + " can not be written without response");
+            return false;
+        }
+
+        WriteStream stream = new WriteStream(index, bufferBytes, packMessages);
+        if (connection.writeStreams.putIfAbsent(index, stream) != null) {
+            Log.e(debugTag, "Write stream - A stream is already open for handle " + characteristicHandle);
+            return false;
+        }
+        connection.operations.addStream(stream);
+        return true;
+    }
+
+    /**
+     * Queues a value on the write stream of a characteristic.
+     *
+     * @return false if no stream is open, or its buffer is full: the caller should slow down and try again later
+     */
+    public boolean writeToStream(int characteristicHandle, byte[] value) {
+        DeviceConnection connection = getConnectionForCharacteristicHandle("Write stream", characteristicHandle);
+        WriteStream stream = connection != null ? connection.writeStreams.get(CharacteristicHandleTable.indexOf(characteristicHandle)) : null;
+        if (stream == null || !stream.offer(value))
+            return false;
+
+        connection.operations.resumeStreams();
+        return true;
+    }
+
+    /**
+     * Closes the write stream of a characteristic. Values not written yet are discarded.
+     */
+    public boolean closeWriteStream(int characteristicHandle) {
+        DeviceConnection connection = getConnectionForCharacteristicHandle("Write stream", characteristicHandle);
+        WriteStream stream = connection != null ? connection.writeStreams.remove(CharacteristicHandleTable.indexOf(characteristicHandle)) : null;
+        if (stream == null)
+            return false;
+
+        stream.close();
+        connection.operations.removeStream(stream);
+        return true;
+    }
+
+    /**
+     * @return the throughput and flow control counters of the write stream of a characteristic, as a WriteStreamJson,
+     * or null if no stream is open
+     */
+    public String getWriteStreamStats(int characteristicHandle) {
+        DeviceConnection connection = getConnectionForCharacteristicHandle("Write stream", characteristicHandle);
+        WriteStream stream = connection != null ? connection.writeStreams.get(CharacteristicHandleTable.indexOf(characteristicHandle)) : null;
+        if (stream == null)
+            return null;
+
+        return WriteStreamJson.buildJson(stream.snapshot(connection.address, characteristicHandle, connection.mtu - 3,
+                SystemClock.elapsedRealtimeNanos()));
+    }
+
+    /**
+     * Sets the link parameters requested right after every future connection is established.
+     *
+     * @param mtu                the ATT MTU to request (23 - 517), or 0 to keep the default of 23
+     * @param connectionPriority one of BluetoothGatt.CONNECTION_PRIORITY_* (BALANCED 0, HIGH 1, LOW_POWER 2), or -1 to keep the default
+     * @param use2MPhy           prefer the LE 2M PHY, if the phone supports it
+     */
+    public void setConnectionParameters(int mtu, int connectionPriority, boolean use2MPhy) {
+        preferredMtu = mtu;
+        preferredConnectionPriority = connectionPriority;
+        prefer2MPhy = use2MPhy;
+    }
+
+    /**
+     * Queues an MTU request on a connected device. The result is reported through OnConnectionParametersChanged.
+     */
+    public boolean requestMtu(String deviceAddress, int mtu) {
+        DeviceConnection connection = connectedDevices.get(deviceAddress);
+        if (connection != null)
+            connection.requestedMtu = Math.max(connection.requestedMtu, mtu);
+        return enqueueOperation("MTU request", deviceAddress, GattOperation.requestMtu(mtu));
+    }
+
+    /**
+     * Queues a connection priority request on a connected device.
+     *
+     * @param connectionPriority one of BluetoothGatt.CONNECTION_PRIORITY_* (BALANCED 0, HIGH 1, LOW_POWER 2)
+     */
+    public boolean requestConnectionPriority(String deviceAddress, int connectionPriority) {
+        DeviceConnection connection = connectedDevices.get(deviceAddress);
+        if (connection != null)
+            connection.connectionPriority = connectionPriority;
+        return enqueueOperation("Connection priority request", deviceAddress, GattOperation.requestConnectionPriority(connectionPriority));
+    }
+
+    /**
+     * Queues a preferred PHY request on a connected device. The result is reported through OnConnectionParametersChanged.
+     *
+     * @param phyMask combination of BluetoothDevice.PHY_LE_*_MASK (1M 1, 2M 2, CODED 4)
+     */
+    public boolean setPreferredPhy(String deviceAddress, int phyMask) {
+        return enqueueOperation("PHY request", deviceAddress, GattOperation.setPreferredPhy(phyMask));
+    }
+
+    /**
+     * @return the negotiated MTU of a connected device, or 0 if it is not connected
+     */
+    public int getMtu(String deviceAddress) {
+        DeviceConnection connection = connectedDevices.get(deviceAddress);
+        return connection != null ? connection.mtu : 0;
+    }
+
+    /**
+     * Enables managed connections for every future connection. A managed connection is not dropped when its link is
+     * lost: it reconnects on its own, with the backoff of ReconnectPolicy, then restores the MTU, connection priority
+     * and PHY, rediscovers the services and enables notifications again for every characteristic that had them.
+     * Progress is reported through OnManagedConnectionStateChange, with the reconnect latency once restored.
+     *
+     * @param initialBackoffMillis the delay before the second attempt, doubled for every further attempt
+     * @param maxBackoffMillis     the longest delay between attempts
+     * @param maxAttempts          attempts before giving up and dropping the device, 0 to never give up
+     */
+    public void setManagedConnections(boolean enable, int initialBackoffMillis, int maxBackoffMillis, int maxAttempts) {
+        reconnectPolicy.configure(initialBackoffMillis, maxBackoffMillis, maxAttempts, ReconnectPolicy.DEFAULT_DIRECT_ATTEMPTS);
+        managedConnections = enable;
+    }
+
+    /**
+     * @return the DeviceConnection.MANAGED_STATE_* of a managed connection, or -1 if the device has no managed connection
+     */
+    public int getManagedConnectionState(String deviceAddress) {
+        DeviceConnection connection = connectedDevices.get(deviceAddress);
+        return connection != null && connection.managed ? connection.managedState : -1;
+    }
+
+    private void setManagedState(DeviceConnection connection, int state, long retryDelayMillis) {
+        connection.managedState = state;
+        long latencyMillis = 0;
+        if (state == DeviceConnection.MANAGED_STATE_CONNECTED && connection.linkLostAtNanos > 0)
+            latencyMillis = (SystemClock.elapsedRealtimeNanos() - connection.linkLostAtNanos) / 1_000_000;
+
+        events.send("OnManagedConnectionStateChange",
+                ManagedConnectionStateJson.buildJson(
+                        connection.address,
+                        connection.name,
+                        state,
+                        connection.reconnectAttempt,
+                        retryDelayMillis,
+                        latencyMillis,
+                        connection.restoredSubscriptions
+                )
+        );
+    }
+
+    /**
+     * Handles the loss of the link of a managed connection, or a failed attempt to bring it back. Runs on the GATT
+     * thread.
+     */
+    @SuppressLint("MissingPermission")
+    private void scheduleReconnect(final DeviceConnection connection) {
+        cancelPendingReconnect(connection);
+        if (connection.managedState == DeviceConnection.MANAGED_STATE_CONNECTED)
+            connection.linkLostAtNanos = SystemClock.elapsedRealtimeNanos();
+
+        // Out of RESTORING first, so the cancelled restore operations are not taken for completed ones
+        connection.managedState = DeviceConnection.MANAGED_STATE_BACKOFF;
+        connection.restoreOperations.clear();
+        connection.operations.cancelAll(GattOperation.STATUS_DISCONNECTED);
+        connection.characteristicHandles.clear();
+        if (connection.gatt != null) {
+            connection.gatt.close();
+            connection.gatt = null;
+        }
+
+        connection.reconnectAttempt++;
+        if (reconnectPolicy.isExhausted(connection.reconnectAttempt)) {
+            Log.e(debugTag, "Reconnect - giving up on " + connection.address + " after " + (connection.reconnectAttempt - 1) + " attempts");
+            disconnectFromDevice(connection.address);
+            return;
+        }
+
+        long delayMillis = reconnectPolicy.getDelayMillis(connection.reconnectAttempt);
+        setManagedState(connection, DeviceConnection.MANAGED_STATE_BACKOFF, delayMillis);
+        connection.pendingReconnect = new Runnable() {
+            @Override
+            public void run() {
+                reconnect(connection);
+            }
+        };
+        gattHandler.postDelayed(connection.pendingReconnect, delayMillis);
+    }
+
+    @SuppressLint("MissingPermission")
+    private void reconnect(final DeviceConnection connection) {
+        if (connectedDevices.get(connection.address) != connection)
+            return;
+
+        boolean autoConnect = reconnectPolicy.useAutoConnect(connection.reconnectAttempt);
+        connection.restoredSubscriptions = 0;
+        connection.clock.reset();
+        setManagedState(connection, DeviceConnection.MANAGED_STATE_RECONNECTING, 0);
+        connection.connectTraceCookie = tracer.beginAsync(Tracer.CATEGORY_GATT, "connect", connection.address);
+        connection.gatt = connection.device.connectGatt(context, autoConnect, mGattCallback,
+                BluetoothDevice.TRANSPORT_LE, getPreferredPhyMask());
+
+        // A background connection waits for the device as long as it takes
+        if (!autoConnect) {
+            connection.pendingReconnect = new Runnable() {
+                @Override
+                public void run() {
+                    if (connection.managedState == DeviceConnection.MANAGED_STATE_RECONNECTING)
+                        scheduleReconnect(connection);
+                }
+            };
+            gattHandler.postDelayed(connection.pendingReconnect, RECONNECT_TIMEOUT_MILLIS);
+        }
+    }
+
+    private void cancelPendingReconnect(DeviceConnection connection) {
+        if (connection.pendingReconnect != null) {
+            gattHandler.removeCallbacks(connection.pendingReconnect);
+            connection.pendingReconnect = null;
+        }
+    }
+
+    /**
+     * Brings a reconnected managed connection back to where it was: link parameters first, then service discovery,
+     * then the subscriptions, see onRestoreOperationComplete. Runs on the GATT thread.
+     */
+    @SuppressLint("MissingPermission")
+    private void restoreConnection(DeviceConnection connection) {
+        if (connection.connectionPriority != BluetoothGatt.CONNECTION_PRIORITY_BALANCED)
+            connection.operations.enqueue(GattOperation.requestConnectionPriority(connection.connectionPriority));
+        if (prefer2MPhy && mBluetoothAdapter.isLe2MPhySupported())
+            connection.operations.enqueue(GattOperation.setPreferredPhy(getPreferredPhyMask()));
+        int mtu = Math.max(preferredMtu, connection.requestedMtu);
+        if (mtu > DeviceConnection.DEFAULT_MTU)
+            connection.operations.enqueue(GattOperation.requestMtu(mtu));
+        connection.gatt.readPhy();
+        enqueueRestoreOperation(connection, GattOperation.discoverServices());
+    }
+
+    private void enqueueRestoreOperation(DeviceConnection connection, GattOperation operation) {
+        connection.restoreOperations.add(operation);
+        connection.operations.enqueue(operation);
+    }
+
+    @SuppressLint("MissingPermission")
+    private void onRestoreOperationComplete(DeviceConnection connection, GattOperation operation, int status) {
+        // Operations queued by the app in the meantime do not count
+        if (!connection.restoreOperations.remove(operation))
+            return;
+
+        if (operation.type == GattOperation.TYPE_DISCOVER_SERVICES) {
+            if (status != GattOperation.STATUS_SUCCESS) {
+                // Without services nothing can be restored, start over with a fresh link
+                Log.e(debugTag, "Reconnect - service discovery failed for " + connection.address);
+                connection.gatt.disconnect();
+                return;
+            }
+
+            for (Map.Entry<UUID, UUID> subscription : connection.subscriptions.entrySet()) {
+                BluetoothGattCharacteristic characteristic = connection.characteristicHandles.get(
+                        connection.characteristicHandles.getIndex(subscription.getValue(), subscription.getKey()));
+                if (characteristic == null) {
+                    Log.e(debugTag, "Reconnect - " + subscription.getKey() + " is gone from " + connection.address);
+                    continue;
+                }
+                enqueueRestoreOperation(connection, new GattOperation(GattOperation.TYPE_ENABLE_NOTIFICATIONS, characteristic, null));
+            }
+        } else if (status == GattOperation.STATUS_SUCCESS) {
+            connection.restoredSubscriptions++;
+        }
+
+        if (connection.restoreOperations.isEmpty()) {
+            setManagedState(connection, DeviceConnection.MANAGED_STATE_CONNECTED, 0);
+            connection.reconnectAttempt = 0;
+            connection.linkLostAtNanos = 0;
+        }
+    }
+
+    private int getPreferredPhyMask() {
+        if (prefer2MPhy && mBluetoothAdapter.isLe2MPhySupported())
+            return BluetoothDevice.PHY_LE_1M_MASK | BluetoothDevice.PHY_LE_2M_MASK;
+        return BluetoothDevice.PHY_LE_1M_MASK;
+    }
+
+    /**
+     * Queues the preferred link parameters on a freshly connected device. Runs on the GATT thread.
+     */
+    @SuppressLint("MissingPermission")
+    private void requestPreferredConnectionParameters(DeviceConnection connection) {
+        if (preferredConnectionPriority >= 0) {
+            connection.connectionPriority = preferredConnectionPriority;
+            connection.operations.enqueue(GattOperation.requestConnectionPriority(preferredConnectionPriority));
+        }
+        if (prefer2MPhy && mBluetoothAdapter.isLe2MPhySupported())
+            connection.operations.enqueue(GattOperation.setPreferredPhy(getPreferredPhyMask()));
+        int mtu = Math.max(preferredMtu, connection.requestedMtu);
+        if (mtu > DeviceConnection.DEFAULT_MTU)
+            connection.operations.enqueue(GattOperation.requestMtu(mtu));
+        connection.gatt.readPhy();
+    }
+
+    private boolean enqueueOperation(String operationName, String deviceAddress, GattOperation operation) {
+        DeviceConnection connection = connectedDevices.get(deviceAddress);
+        if (connection == null || connection.gatt == null) {
+            Log.e(debugTag, operationName + " - The device this address corresponds to is not connected");
+            return false;
+        }
+        connection.operations.enqueue(operation);
+        return true;
+    }
+
+    /**
+     * Returns the link statistics of a connected device: notification rate, sequence gaps of the motion
+     * characteristic, inter-arrival jitter, callback-to-Unity delivery latency and RSSI.
+     *
+     * The notification rate is measured since the previous snapshot of the device.
+     *
+     * @return a json object, or null if the device is not connected
+     */
+    public String getMetricsSnapshot(String deviceAddress) {
+        SensorChannel channel = pipeline.getChannel(deviceAddress);
+        if (channel == null)
+            return null;
+        return LinkMetricsJson.buildJson(snapshotMetrics(channel, SystemClock.elapsedRealtimeNanos()));
+    }
+
+    /**
+     * Same as getMetricsSnapshot, for every connected device.
+     *
+     * @return a json object with a devices list
+     */
+    public String getMetricsSnapshot() {
+        long nowNanos = SystemClock.elapsedRealtimeNanos();
+        List<LinkMetricsJson> snapshots = new ArrayList<>();
+        for (SensorChannel channel : pipeline.getChannels()) {
+            snapshots.add(snapshotMetrics(channel, nowNanos));
+        }
+        return LinkMetricsJson.buildJson(snapshots);
+    }
+
+    public void resetMetrics() {
+        for (SensorChannel channel : pipeline.getChannels()) {
+            channel.metrics.reset();
+        }
+    }
+
+    /**
+     * Periodically reads the RSSI of every connected device into its metrics.
+     *
+     * @param intervalMillis the polling interval, or 0 to stop polling
+     */
+    public void setRssiPollingInterval(int intervalMillis) {
+        rssiPollingIntervalMillis = intervalMillis;
+        gattHandler.removeCallbacks(pollRssi);
+        if (intervalMillis > 0)
+            gattHandler.postDelayed(pollRssi, intervalMillis);
+    }
+
+    private final Runnable pollRssi = new Runnable() {
+        @Override
+        public void run() {
+            for (DeviceConnection connection : connectedDevices.values()) {
+                if (connection.gatt != null)
+                    connection.operations.enqueue(GattOperation.readRemoteRssi());
+            }
+            if (rssiPollingIntervalMillis > 0)
+                gattHandler.postDelayed(this, rssiPollingIntervalMillis);
+        }
+    };
+
+    private LinkMetricsJson snapshotMetrics(SensorChannel channel, long nowNanos) {
+        return channel.metrics.snapshot(channel.address, channel.notifications.getDropped(), channel.delivery.getDropped(), nowNanos);
+    }
+
+    /**
+     * Sets how long a queued GATT operation may take before it is retried, for current and future connections.
+     */
+    public void setGattOperationTimeout(int timeoutMillis) {
+        gattOperationTimeoutMillis = timeoutMillis;
+        for (DeviceConnection connection : connectedDevices.values()) {
+            connection.operations.setTimeoutMillis(timeoutMillis);
+        }
+    }
+
+    /**
+     * Sets how many times a queued GATT operation is retried after a timeout or after the stack refused it,
+     * for current and future connections.
+     */
+    public void setGattOperationRetries(int maxRetries) {
+        gattOperationMaxRetries = maxRetries;
+        for (DeviceConnection connection : connectedDevices.values()) {
+            connection.operations.setMaxRetries(maxRetries);
+        }
+    }
+
+    private boolean enqueueCharacteristicOperation(String operationName, int operationType, String deviceAddress,
+                                                   String uuidService, String uuidCharacteristic, byte[] value) {
+        DeviceConnection connection = connectedDevices.get(deviceAddress);
+        BluetoothGatt mDevice = connection != null ? connection.gatt : null;
+        if (mDevice == null) {
+            Log.e(debugTag, operationName + " - The device this address corresponds to is not connected");
+            return false;
+        }
+
+        UUID serviceUuid = parseUuid(operationName, uuidService);
+        UUID characteristicUuid = parseUuid(operationName, uuidCharacteristic);
+        if (serviceUuid == null || characteristicUuid == null)
+            return false;
+
+        BluetoothGattService mService = mDevice.getService(serviceUuid);
+        if (mService == null) {
+            Log.e(debugTag, operationName + " - The device for this address does not have a service with the provided uuidService");
+            return false;
+        }
+
+        BluetoothGattCharacteristic mCharacteristic = mService.getCharacteristic(characteristicUuid);
+        if (mCharacteristic == null) {
+            Log.e(debugTag, operationName + " - The device for this address does not have a characteristic with the provided uuidService and uuidCharacteristic");
+            return false;
+        }
+
+        connection.operations.enqueue(new GattOperation(operationType, mCharacteristic, value));
+        return true;
+    }
+
+    /**
+     * @return the uuid, or null if the string passed by Unity is not one
+     */
+    private static UUID parseUuid(String operationName, String uuid) {
+        try {
+            return UUID.fromString(uuid);
+        } catch (IllegalArgumentException | NullPointerException e) {
+            Log.e(debugTag, operationName + " - Invalid uuid " + uuid);
+            return null;
+        }
+    }
+
+    /**
+     * Resolves a characteristic handle with two array lookups, no string or uuid work.
+     */
+    private boolean enqueueCharacteristicOperation(String operationName, int operationType, int characteristicHandle, byte[] value) {
+        DeviceConnection connection = getConnectionForCharacteristicHandle(operationName, characteristicHandle);
+        if (connection == null)
+            return false;
+        if (connection.gatt == null) {
+            Log.e(debugTag, operationName + " - The device of characteristic handle " + characteristicHandle + " is not connected");
+            return false;
+        }
+
+        BluetoothGattCharacteristic characteristic = connection.characteristicHandles.get(CharacteristicHandleTable.indexOf(characteristicHandle));
+        if (characteristic == null) {
+            Log.e(debugTag, operationName + " - No characteristic was discovered for handle " + characteristicHandle);
+            return false;
+        }
+
+        connection.operations.enqueue(new GattOperation(operationType, characteristic, value));
+        return true;
+    }
+
+    private DeviceConnection getConnectionForCharacteristicHandle(String operationName, int characteristicHandle) {
+        SensorChannel channel = pipeline.getChannel(CharacteristicHandleTable.deviceIndexOf(characteristicHandle));
+        if (!(channel instanceof DeviceConnection)) {
+            Log.e(debugTag, operationName + " - No device is known for characteristic handle " + characteristicHandle);
+            return null;
+        }
+        return (DeviceConnection) channel;
+    }
+
+    /**
+     * Starts a fleet of simulated sensors, streaming through the same notification path as real sensors, for load
+     * testing without hardware. Simulated sensors connect and subscribe to their motion and battery characteristics on
+     * their own, and reconnect after a simulated link loss. They are reported through the usual connection, data and
+     * metrics events, but can not be driven with the connect, subscribe or write methods.
+     *
+     * @param sensorCount          the number of sensors
+     * @param motionRateHz         the motion notification rate of every sensor
+     * @param packetLoss           probability for every motion packet to be lost, between 0 and 1
+     * @param jitterMicros         maximum random delay of every motion packet
+     * @param disconnectsPerMinute average number of link losses per sensor and minute, 0 for none
+     * @return false if a simulation is already running
+     */
+    public synchronized boolean startSimulation(int sensorCount, int motionRateHz, float packetLoss, int jitterMicros,
+                                                float disconnectsPerMinute) {
+        if (simulatedFleet != null) {
+            Log.e(debugTag, "Simulation - A simulation is already running");
+            return false;
+        }
+
+        final SimulatedSensorFleet fleet = new SimulatedSensorFleet(sensorCount, motionRateHz, elapsedRealtime, System.nanoTime());
+        fleet.setPacketLoss(packetLoss);
+        fleet.setJitter(jitterMicros);
+        fleet.setDisconnectRate(disconnectsPerMinute);
+
+        final TransportSession session = new TransportSession(pipeline, events);
+        fleet.setListener(new SensorTransport.Listener() {
+            @Override
+            public void onConnectionStateChange(String deviceAddress, String deviceName, int status, int newState) {
+                session.onConnectionStateChange(deviceAddress, deviceName, status, newState);
+                if (newState == SensorTransport.STATE_CONNECTED) {
+                    fleet.subscribe(deviceAddress, SensorUuids.MOTION_SERVICE_UUID, SensorUuids.ACCL_GYRO_CHARACTERISTIC_UUID);
+                    fleet.subscribe(deviceAddress, SensorUuids.BATTERY_SERVICE_UUID, SensorUuids.BATTERY_CHARACTERISTIC_UUID);
+                } else if (status != BluetoothGatt.GATT_SUCCESS) {
+                    fleet.connect(deviceAddress);
+                }
+            }
+
+            @Override
+            public void onNotification(String deviceAddress, UUID characteristicUuid, long timestampNanos, byte[] value) {
+                session.onNotification(deviceAddress, characteristicUuid, timestampNanos, value);
+            }
+        });
+
+        simulatedFleet = fleet;
+        simulationSession = session;
+        for (String deviceAddress : fleet.getDeviceAddresses()) {
+            fleet.connect(deviceAddress);
+        }
+        return true;
+    }
+
+    /**
+     * Disconnects every simulated sensor.
+     *
+     * @return false if no simulation was running
+     */
+    public synchronized boolean stopSimulation() {
+        if (simulatedFleet == null)
+            return false;
+
+        simulatedFleet.release();
+        simulationSession.close();
+        simulatedFleet = null;
+        simulationSession = null;
+        return true;
+    }
+
+    /**
+     * Replays a recording of startRecording through the same notification path as real sensors, to reproduce a
+     * session without hardware. Every recorded device connects before its first notification and disconnects at the
+     * end, with the usual connection and data events. OnReplayComplete reports how many notifications were replayed,
+     * and how fast.
+     *
+     * @param speed how many times faster than recorded to replay, 1 for real time, 0 as fast as possible
+     * @return false if the file does not exist or a replay is already running
+     */
+    public synchronized boolean startReplay(String filePath, float speed) {
+        if (replay != null && !replay.isFinished()) {
+            Log.e(debugTag, "Replay - A replay is already running");
+            return false;
+        }
+        if (!new File(filePath).isFile()) {
+            Log.e(debugTag, "Replay - No recording at " + filePath);
+            return false;
+        }
+
+        replaySession = new TransportSession(pipeline, events);
+        replay = new RecordingReplay(filePath, speed, elapsedRealtime, events);
+        replay.setListener(replaySession);
+        replay.setSession(replaySession);
+        replay.start();
+        return true;
+    }
+
+    /**
+     * Stops the replay, disconnecting its devices. OnReplayComplete is still sent.
+     *
+     * @return false if no replay was running
+     */
+    public synchronized boolean stopReplay() {
+        if (replay == null || replay.isFinished())
+            return false;
+
+        replay.release();
+        replaySession.close();
+        return true;
+    }
+
+    /**
+     * Starts, or stops, tracing connections, GATT operations, scan callbacks, notification dispatch, json
+     * serialization and the events sent to Unity, see Tracer. Cheap enough to leave on: spans are kept in a ring of
+     * the last capacity spans, for writeTrace.
+     *
+     * @param capacity    the number of spans kept, Tracer.DEFAULT_CAPACITY
+     * @param systemTrace also emit android.os.Trace sections, to show the spans in Perfetto or systrace captures
+     * @return false if the capacity is not positive
+     */
+    public boolean setTracing(boolean enable, int capacity, boolean systemTrace) {
+        if (capacity <= 0) {
+            Log.e(debugTag, "setTracing - capacity must be positive, was " + capacity);
+            return false;
+        }
+        tracer.setEnabled(false, capacity);
+        tracer.setSystemTrace(systemTrace ? androidTrace : null);
+        tracer.setEnabled(enable, capacity);
+        return true;
+    }
+
+    /**
+     * Writes the spans traced so far as a Chrome trace json file, to open in Perfetto or chrome://tracing.
+     *
+     * @return false if the file could not be written
+     */
+    public boolean writeTrace(String filePath) {
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(filePath), StandardCharsets.UTF_8))) {
+            tracer.writeChromeTrace(writer);
+            return true;
+        } catch (IOException e) {
+            Log.e(debugTag, "writeTrace - Unable to write " + filePath, e);
+            return false;
+        }
+    }
+
+    public void clearTrace() {
+        tracer.clear();
+    }
+
+    /**
+     * Disconnects every device and stops the plugin threads. The instance can not be used afterwards.
+     */
+    public void release() {
+        if (mScanning)
+            stopScan();
+
+        for (String deviceAddress : connectedDevices.keySet()) {
+            disconnectFromDevice(deviceAddress);
+        }
+        stopRecording();
+        stopSimulation();
+        stopReplay();
+        gattHandler.removeCallbacks(pollRssi);
+        gattHandler.removeCallbacks(evictStaleDevices);
+        gattHandler.removeCallbacks(saveKnownDevices);
+        gattHandler.post(saveKnownDevices);
+        gattThread.quitSafely();
+        dispatchThread.quitSafely();
+    }
+
+    /**
+     * Selects how characteristic notifications are delivered to Unity.
+     *
+     * @param mode TRANSPORT_MODE_JSON (default) or TRANSPORT_MODE_BINARY
+     */
+    public void setTransportMode(int mode) {
+        if (!pipeline.setTransportMode(mode))
+            Log.e(debugTag, "Unknown transport mode: " + mode);
+    }
+
+    public int getTransportMode() {
+        return pipeline.getTransportMode();
+    }
+
+    /**
+     * Returns every notification received since the previous call, framed as described in NotificationRingBuffer.
+     * Only used with TRANSPORT_MODE_BINARY.
+     *
+     * @return the framed notifications, or null if there are none
+     */
+    public byte[] drainNotifications() {
+        return pipeline.drainNotifications();
+    }
+
+    /**
+     * Same as drainNotifications, but copies whole frames into the given buffer instead of allocating.
+     *
+     * @return the number of bytes written
+     */
+    public int drainNotifications(ByteBuffer target) {
+        return pipeline.drainNotifications(target);
+    }
+
+    /**
+     * @return the number of notifications dropped because the binary buffer, or the delivery buffer of a device, was
+     * full. Per device counts are in the metrics snapshots.
+     */
+    public long getDroppedNotificationCount() {
+        return pipeline.getDroppedNotificationCount();
+    }
+
+    /**
+     * Bounds what is buffered for Unity when it can not keep up, e.g. during scene loads.
+     *
+     * Every device has its own buffer of notifications waiting for drainNotifications or for their OnDataReceived
+     * event. Once full, the policy decides which notifications are dropped. In json mode, at most maxEventsInFlight
+     * events are sent ahead of acknowledgeDataEvents, so events do not pile up in Unity's message queue while the main
+     * thread stalls.
+     *
+     * @param policy            one of DeliveryBuffer.POLICY_DROP_OLDEST, POLICY_DROP_NEWEST, POLICY_LATEST_ONLY or
+     *                          POLICY_COALESCE
+     * @param capacity          notifications buffered per device, 0 for the default
+     * @param coalesceCount     notifications kept per characteristic with POLICY_COALESCE
+     * @param maxEventsInFlight OnDataReceived events not acknowledged yet before sending pauses, 0 for no limit
+     * @return false if the policy is unknown
+     */
+    public boolean configureDelivery(int policy, int capacity, int coalesceCount, int maxEventsInFlight) {
+        return pipeline.configureDelivery(policy, capacity, coalesceCount, maxEventsInFlight);
+    }
+
+    /**
+     * Lets as many more OnDataReceived events be sent as Unity handled, see configureDelivery.
+     */
+    public void acknowledgeDataEvents(int count) {
+        pipeline.acknowledgeDataEvents(count);
+    }
+
+    /**
+     * Returns the latest notification of every characteristic of every device, framed like drainNotifications,
+     * whatever the transport mode. Nothing is taken out of the buffers, so it can be polled once per frame to only
+     * ever look at current values.
+     *
+     * @return the framed notifications, or null if there are none
+     */
+    public byte[] getLatestNotifications() {
+        return pipeline.getLatestNotifications();
+    }
+
+    /**
+     * @return the address for a device index found in a binary frame, or null if unknown
+     */
+    public String getDeviceAddress(int deviceIndex) {
+        return deviceIds.getKey(deviceIndex);
+    }
+
+    @SuppressLint("MissingPermission")
+    public String getDeviceName(int deviceIndex) {
+        SensorChannel channel = pipeline.getChannel(deviceIndex);
+        if (channel != null)
+            return channel.name;
+
+        String deviceAddress = deviceIds.getKey(deviceIndex);
+        if (deviceAddress == null)
+            return null;
+        return mBluetoothAdapter.getRemoteDevice(deviceAddress).getName();
+    }
+
+    /**
+     * @return the characteristic uuid for a characteristic id found in a binary frame, or null if unknown
+     */
+    public String getCharacteristicUuid(int characteristicId) {
+        UUID uuid = characteristicIds.getKey(characteristicId);
+        return uuid != null ? uuid.toString() : null;
+    }
+
+    /**
+     * When enabled, notifications of the accel/gyro characteristic are decoded natively and kept until Unity calls
+     * drainMotionSamples, instead of going through the selected transport mode.
+     */
+    public void setMotionDecoding(boolean enable) {
+        pipeline.setMotionDecoding(enable);
+    }
+
+    public boolean isMotionDecodingEnabled() {
+        return pipeline.isMotionDecodingEnabled();
+    }
+
+    /**
+     * Returns every motion sample decoded since the previous call. Only used when motion decoding is enabled.
+     *
+     * @return the decoded samples, or null if there are none
+     */
+    public MotionSampleBatch drainMotionSamples() {
+        return pipeline.drainMotionSamples();
+    }
+
+    /**
+     * @return the number of motion samples dropped because they were not drained in time
+     */
+    public long getDroppedMotionSampleCount() {
+        return pipeline.getDroppedMotionSampleCount();
+    }
+
+    /**
+     * Sets the rate the motion characteristic is notified at, used by the per-sensor clock estimation to recover from
+     * long losses. 0, the default, learns the rate from the received packets.
+     */
+    public void setNominalSampleRate(float rateHz) {
+        pipeline.setNominalSampleRate(rateHz);
+    }
+
+    /**
+     * Returns, for every connected sensor, the estimated sample rate, clock drift against the phone and transport
+     * latency, fitted from the motion packet indices and their native receive timestamps.
+     *
+     * @return a json object with a devices list
+     */
+    public String getClockEstimates() {
+        return SensorClockJson.buildJson(pipeline.getClockEstimates());
+    }
+
+    /**
+     * When enabled, the motion samples of every sensor are resampled on the dispatch thread onto a common timeline
+     * and kept until Unity calls drainAlignedSamples. This does not change how samples go through the selected
+     * transport mode or motion decoding.
+     *
+     * @param outputRateHz     the rate of the common timeline
+     * @param maxLatencyMillis how long a frame waits for a late sensor before leaving it out
+     */
+    public void setSampleAlignment(boolean enable, int outputRateHz, int maxLatencyMillis) {
+        pipeline.setSampleAlignment(enable, outputRateHz, maxLatencyMillis);
+    }
+
+    /**
+     * Returns every aligned row produced since the previous call: one row per sensor and frame, rows of the same
+     * frame are consecutive and share their timestamps, and the index column holds the frame number.
+     *
+     * @return the aligned rows, or null if there are none
+     */
+    public MotionSampleBatch drainAlignedSamples() {
+        return pipeline.drainAlignedSamples();
+    }
+
+    public long getDroppedAlignedSampleCount() {
+        return pipeline.getDroppedAlignedSampleCount();
+    }
+
+    /**
+     * Starts or stops producing an output of the native motion processing, for every sensor.
+     *
+     * @param output MotionProcessor.OUTPUT_FILTERED, OUTPUT_ORIENTATION or OUTPUT_STATISTICS
+     * @param rateHz the rate rows are produced at per sensor, 0 unsubscribes
+     * @return false if the output or rate is invalid
+     */
+    public boolean subscribeProcessedOutput(int output, float rateHz) {
+        if (!pipeline.getMotionProcessor().subscribe(output, rateHz)) {
+            Log.e(debugTag, "subscribeProcessedOutput - invalid output " + output + " or rate " + rateHz);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Sets the low-pass filter applied to every axis before the other processing stages.
+     *
+     * @param inputRateHz the rate the motion characteristic is notified at
+     * @param cutoffHz    the -3 dB frequency, 0 disables the filter
+     * @return false if the cutoff is not below half the input rate
+     */
+    public boolean setMotionLowPassFilter(float inputRateHz, float cutoffHz) {
+        if (!pipeline.getMotionProcessor().setLowPassFilter(inputRateHz, cutoffHz)) {
+            Log.e(debugTag, "setMotionLowPassFilter - cutoff " + cutoffHz + " Hz is not below half of " + inputRateHz + " Hz");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Selects the orientation filter, see OrientationFilter.
+     *
+     * @param gyroRadiansPerUnit converts the gyroscope values to rad/s, PI / 180 when they are in deg/s
+     * @return false if the algorithm is unknown
+     */
+    public boolean setOrientationFilter(int algorithm, float gain, float gyroRadiansPerUnit) {
+        if (!pipeline.getMotionProcessor().setOrientationFilter(algorithm, gain, gyroRadiansPerUnit)) {
+            Log.e(debugTag, "setOrientationFilter - unknown algorithm " + algorithm);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param samples the number of samples OUTPUT_STATISTICS is computed over
+     */
+    public void setMotionStatisticsWindow(int samples) {
+        pipeline.getMotionProcessor().setStatisticsWindow(samples);
+    }
+
+    /**
+     * Returns every row of a processed output produced since the previous call.
+     *
+     * @return the rows, or null if there are none
+     */
+    public ProcessedSampleBatch drainProcessedSamples(int output) {
+        return pipeline.getMotionProcessor().drain(output);
+    }
+
+    public long getDroppedProcessedSampleCount(int output) {
+        return pipeline.getMotionProcessor().getDroppedRows(output);
+    }
+
+    /**
+     * When disabled, raw motion samples are no longer sent to Unity, through the transport mode or motion decoding.
+     * Useful when only processed outputs are needed. They are still recorded.
+     */
+    public void setRawMotionForwarding(boolean enable) {
+        pipeline.setRawMotionForwarding(enable);
+    }
+
+    /**
+     * Starts, or stops, detecting the cadence of every sensor from its motion samples, reported through
+     * OnCadenceUpdate and optionally OnCadenceCycle, see CadenceDetector. Combined with setRawMotionForwarding(false),
+     * Unity only receives these few events instead of every sample.
+     *
+     * @param signal        CadenceDetector.SIGNAL_*
+     * @param inputRateHz   the rate of the motion samples
+     * @param minCadence    the slowest cadence counted, in cycles per minute
+     * @param maxCadence    the fastest cadence counted, in cycles per minute
+     * @param minAmplitude  the smallest swing of the signal counted as a cycle, 0 to only follow the signal amplitude
+     * @return false if a parameter is out of range
+     */
+    public boolean configureCadenceDetection(boolean enable, int signal, float inputRateHz, float minCadence,
+                                             float maxCadence, float minAmplitude, int updateIntervalMillis,
+                                             boolean cycleEvents) {
+        if (!pipeline.getCadenceDetector().configure(enable, signal, inputRateHz, minCadence, maxCadence, minAmplitude,
+                updateIntervalMillis, cycleEvents)) {
+            Log.e(debugTag, "configureCadenceDetection - invalid parameters, signal " + signal + ", " + minCadence
+                    + " to " + maxCadence + " per minute at " + inputRateHz + " Hz");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Starts recording every received notification, with its native receive timestamp, into a binary file.
+     * The file is written from a background thread, see SessionRecorder for the format.
+     *
+     * @param filePath the file to create
+     * @param compress deflate every chunk of the file
+     * @return false if a recording is already running or the file could not be created
+     */
+    public synchronized boolean startRecording(String filePath, boolean compress) {
+        if (recorder != null) {
+            Log.e(debugTag, "Recording - A recording is already running");
+            return false;
+        }
+        try {
+            recorder = new SessionRecorder(filePath, compress, recordingDictionary,
+                    SystemClock.elapsedRealtimeNanos(), System.currentTimeMillis());
+            pipeline.setRecorder(recorder);
+            return true;
+        } catch (IOException e) {
+            Log.e(debugTag, "Recording - Unable to create " + filePath, e);
+            return false;
+        }
+    }
+
+    /**
+     * Stops the current recording, writing every pending notification to the file.
+     *
+     * @return false if no recording was running or the file could not be completely written
+     */
+    public synchronized boolean stopRecording() {
+        SessionRecorder current = recorder;
+        if (current == null)
+            return false;
+
+        recorder = null;
+        pipeline.setRecorder(null);
+        try {
+            current.stop();
+            if (current.getDroppedEntries() > 0)
+                Log.e(debugTag, "Recording - " + current.getDroppedEntries() + " entries were dropped");
+            return true;
+        } catch (IOException e) {
+            Log.e(debugTag, "Recording - Unable to write the recording", e);
+            return false;
+        }
+    }
+
+    public boolean isRecording() {
+        return recorder != null;
+    }
+
+    /**
+     * Converts a recording into a CSV file of motion samples. Blocks until done, so it should not be called on the
+     * Unity main thread for long recordings.
+     *
+     * @return false if the recording could not be read or the CSV file could not be written
+     */
+    public boolean convertRecordingToCsv(String recordingPath, String csvPath) {
+        try {
+            RecordingCsvConverter.convert(recordingPath, csvPath);
+            return true;
+        } catch (IOException e) {
+            Log.e(debugTag, "Recording - Unable to convert " + recordingPath, e);
+            return false;
+        }
+    }
+
+    private final SessionRecorder.Dictionary recordingDictionary = new SessionRecorder.Dictionary() {
+        @Override
+        public String getDeviceAddress(int deviceIndex) {
+            return SyncsenseSensorManager.this.getDeviceAddress(deviceIndex);
+        }
+
+        @Override
+        public String getDeviceName(int deviceIndex) {
+            return SyncsenseSensorManager.this.getDeviceName(deviceIndex);
+        }
+
+        @Override
+        public String getCharacteristicUuid(int characteristicId) {
+            return SyncsenseSensorManager.this.getCharacteristicUuid(characteristicId);
+        }
+    };
+
+    private ScanCallback mLeScanCallback = new ScanCallback() {
+        /**
+         *
+         * @param callbackType ScanSettings.CALLBACK_TYPE_ALL_MATCHES, ScanSettings#CALLBACK_TYPE_FIRST_MATCH or ScanSettings#CALLBACK_TYPE_MATCH_LOST
+         * @param result item reported
+         */
+        @SuppressLint("MissingPermission")
+        @Override
+        public void onScanResult(int callbackType, ScanResult result) {
+            super.onScanResult(callbackType, result);
+            if (debug) Log.wtf(debugTag, "Received Scan Result.");
+
+            long traceStart = tracer.begin("onScanResult");
+            DeviceRegistry.Entry entry = updateDeviceRegistry(result);
+            if (entry != null) {
+                long jsonStart = tracer.begin("ScanResultJson");
+                String json = ScanResultJson.buildJson(
+                        entry.name,
+                        entry.address,
+                        Math.round(entry.smoothedRssi),
+                        entry.handle
+                );
+                tracer.end(jsonStart, Tracer.CATEGORY_SCAN, "ScanResultJson", entry.address, json.length());
+                events.send("OnScanResult", json);
+            }
+            tracer.end(traceStart, Tracer.CATEGORY_SCAN, "onScanResult", entry != null ? entry.address : null, callbackType);
+        }
+
+        /**
+         * @return the registry entry of the device if something worth reporting changed, null otherwise
+         */
+        @SuppressLint("MissingPermission")
+        private DeviceRegistry.Entry updateDeviceRegistry(ScanResult result) {
+            String deviceAddress = result.getDevice().getAddress();
+            byte[] advertisementData = result.getScanRecord() != null ? result.getScanRecord().getBytes() : null;
+
+            int changes = deviceRegistry.update(
+                    deviceAddress,
+                    result.getDevice().getName(),
+                    result.getRssi(),
+                    advertisementData,
+                    SystemClock.elapsedRealtime());
+            scheduleEviction();
+
+            return changes != DeviceRegistry.CHANGE_NONE ? deviceRegistry.get(deviceAddress) : null;
+        }
+
+        @Override
+        public void onBatchScanResults(List<ScanResult> results) {
+            super.onBatchScanResults(results);
+            if (results.isEmpty())
+                return;
+
+            if (debug) Log.wtf(debugTag, "Received Batch Scan Result of " + results.size() + " advertisements.");
+            long traceStart = tracer.begin("onBatchScanResults");
+            for (ScanResult result : results) {
+                updateDeviceRegistry(result);
+            }
+
+            long jsonStart = tracer.begin("BatchScanResultJson");
+            String json = BatchScanResultJson.buildJson(
+                    results,
+                    deviceRegistry
+            );
+            tracer.end(jsonStart, Tracer.CATEGORY_SCAN, "BatchScanResultJson", null, json.length());
+            events.send("OnBatchScanResult", json);
+            tracer.end(traceStart, Tracer.CATEGORY_SCAN, "onBatchScanResults", null, results.size());
+        }
+
+        /**
+         *
+         * @param errorCode int: Error code (one of SCAN_FAILED_*) for scan failure. Value is SCAN_FAILED_ALREADY_STARTED, SCAN_FAILED_APPLICATION_REGISTRATION_FAILED, SCAN_FAILED_INTERNAL_ERROR, SCAN_FAILED_FEATURE_UNSUPPORTED, SCAN_FAILED_OUT_OF_HARDWARE_RESOURCES, or SCAN_FAILED_SCANNING_TOO_FREQUENTLY
+         */
+        @Override
+        public void onScanFailed(int errorCode) {
+            super.onScanFailed(errorCode);
+            Log.e(debugTag, "Scan failed with error code: " + errorCode );
+
+            events.send("OnScanError",
+                    ScanErrorJson.buildJson(
+                            errorCode
+                    )
+            );
+        }
+    };
+
+    private final GattOperationQueue.Listener operationListener = new GattOperationQueue.Listener() {
+        @Override
+        public void onOperationComplete(DeviceConnection connection, GattOperation operation, int status) {
+            // Polled RSSI reads are only reported through the metrics
+            if (operation.type == GattOperation.TYPE_READ_RSSI && status == GattOperation.STATUS_SUCCESS)
+                return;
+
+            if (status != GattOperation.STATUS_SUCCESS)
+                Log.e(debugTag, "GATT operation " + operation.type + " failed for " + connection.address + " with status " + status);
+
+            // The firmware revision read is the only one the plugin makes for itself
+            if (operation.internal) {
+                if (status == GattOperation.STATUS_SUCCESS) {
+                    byte[] value = operation.characteristic.getValue();
+                    if (value != null) {
+                        knownDevices.setFirmwareRevision(connection.address, new String(value, StandardCharsets.UTF_8).trim());
+                        scheduleKnownDevicesSave();
+                    }
+                }
+                return;
+            }
+
+            // Read values reach Unity like notifications
+            if (operation.type == GattOperation.TYPE_READ_CHARACTERISTIC && status == GattOperation.STATUS_SUCCESS)
+                publishValue(connection, operation.characteristic, SystemClock.elapsedRealtimeNanos());
+
+            // Remembered so a managed connection can restore them
+            if (status == GattOperation.STATUS_SUCCESS && operation.characteristic != null) {
+                if (operation.type == GattOperation.TYPE_ENABLE_NOTIFICATIONS)
+                    connection.subscriptions.put(operation.characteristic.getUuid(), operation.characteristic.getService().getUuid());
+                else if (operation.type == GattOperation.TYPE_DISABLE_NOTIFICATIONS)
+                    connection.subscriptions.remove(operation.characteristic.getUuid());
+            }
+
+            long traceStart = tracer.begin("GattOperationJson");
+            String json = GattOperationJson.buildJson(
+                    connection.address,
+                    operation,
+                    status
+            );
+            tracer.end(traceStart, Tracer.CATEGORY_GATT, "GattOperationJson", connection.address, json.length());
+            events.send("OnGattOperationComplete", json);
+
+            if (connection.managedState == DeviceConnection.MANAGED_STATE_RESTORING)
+                onRestoreOperationComplete(connection, operation, status);
+
+            ConnectAndStream bringUp = connectAndStream;
+            if (bringUp != null)
+                bringUp.onOperationComplete(connection, operation, status);
+
+            // After the subscriptions of a bring-up, so they are not held up by the read
+            if (rememberDevices && status == GattOperation.STATUS_SUCCESS && operation.type == GattOperation.TYPE_DISCOVER_SERVICES)
+                readFirmwareRevision(connection);
+        }
+    };
+
+    /**
+     * Runs a GATT callback for the operation queue of the device on the GATT thread.
+     */
+    private void completeOperation(BluetoothGatt gatt, final int callbackType, final BluetoothGattCharacteristic characteristic, final int status) {
+        final DeviceConnection connection = connectedDevices.get(gatt.getDevice().getAddress());
+        if (connection == null || connection.gatt != gatt)
+            return;
+
+        gattHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                connection.operations.onGattCallback(callbackType, characteristic, status);
+            }
+        });
+    }
+
+    /**
+     * Hands a notified or read characteristic value over to the dispatch thread.
+     */
+    private void publishValue(DeviceConnection connection, BluetoothGattCharacteristic characteristic, long timestampNanos) {
+        if (!pipeline.publish(connection, characteristic.getUuid(), timestampNanos, characteristic.getValue()))
+            Log.e(debugTag, "Out of characteristic ids, notification dropped");
+    }
+
+    @SuppressLint("MissingPermission")
+    private void handleConnectionStateChange(BluetoothGatt gatt, int status, int newState) {
+        DeviceConnection traced = connectedDevices.get(gatt.getDevice().getAddress());
+        if (traced != null && traced.gatt == gatt) {
+            tracer.endAsync(traced.connectTraceCookie, Tracer.CATEGORY_GATT, "connect", traced.address, status);
+            traced.connectTraceCookie = 0;
+            if (newState == BluetoothProfile.STATE_DISCONNECTED)
+                tracer.instant(Tracer.CATEGORY_GATT, "disconnected", traced.address, status);
+        }
+
+        events.send("OnDeviceConnectionStateChange",
+                ConnectionStateChangeJson.buildJson(
+                        status,
+                        newState,
+                        gatt.getDevice().getName(),
+                        gatt.getDevice().getAddress()
+                )
+        );
+
+        if (newState == BluetoothProfile.STATE_CONNECTED) {
+            DeviceConnection connection = connectedDevices.get(gatt.getDevice().getAddress());
+            if (connection != null && connection.gatt == gatt) {
+                if (connection.managedState == DeviceConnection.MANAGED_STATE_RECONNECTING) {
+                    cancelPendingReconnect(connection);
+                    setManagedState(connection, DeviceConnection.MANAGED_STATE_RESTORING, 0);
+                    restoreConnection(connection);
+                } else {
+                    requestPreferredConnectionParameters(connection);
+                    if (connection.managed)
+                        setManagedState(connection, DeviceConnection.MANAGED_STATE_CONNECTED, 0);
+
+                    if (rememberDevices) {
+                        knownDevices.rememberConnection(connection.address, connection.name, System.currentTimeMillis());
+                        scheduleKnownDevicesSave();
+                    }
+
+                    ConnectAndStream bringUp = connectAndStream;
+                    if (bringUp != null)
+                        bringUp.onConnected(connection);
+                }
+            }
+        }
+
+        if (newState == BluetoothProfile.STATE_DISCONNECTED) {
+            DeviceConnection connection = connectedDevices.get(gatt.getDevice().getAddress());
+            if (connection != null && connection.gatt == gatt) {
+                // A device still being brought up is retried by the bring-up itself
+                ConnectAndStream bringUp = connectAndStream;
+                if (bringUp != null && bringUp.onLinkLost(connection))
+                    return;
+
+                if (connection.managed) {
+                    scheduleReconnect(connection);
+                } else {
+                    disconnectFromDevice(connection.address);
+                }
+            } else {
+                // A gatt from an earlier connection to this address
+                gatt.close();
+            }
+        }
+    }
+
+    /**
+     * GATT callbacks arrive on a binder thread. They only hand work over to the GATT and dispatch threads, so the
+     * Bluetooth stack is never held up by Unity.
+     */
+    private final BluetoothGattCallback mGattCallback = new BluetoothGattCallback() {
+
+        @Override
+        public void onConnectionStateChange(final BluetoothGatt gatt, final int status, final int newState) {
+            gattHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    handleConnectionStateChange(gatt, status, newState);
+                }
+            });
+        }
+
+        @Override
+        public void onServicesDiscovered(final BluetoothGatt gatt, final int status) {
+            gattHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    DeviceConnection connection = connectedDevices.get(gatt.getDevice().getAddress());
+                    if (connection == null || connection.gatt != gatt)
+                        return;
+
+                    int layoutId = GattLayoutCache.NO_LAYOUT;
+                    GattLayout layout = null;
+                    if (status == BluetoothGatt.GATT_SUCCESS) {
+                        connection.characteristicHandles.rebuild(gatt);
+                        layout = GattLayout.describe(gatt, connection.characteristicHandles);
+                        if (rememberDevices)
+                            rememberLayout(connection, layout);
+
+                        int previousLayoutId = gattLayouts.getLayoutId(connection.name);
+                        layoutId = gattLayouts.put(connection.name, layout);
+                        if (previousLayoutId != GattLayoutCache.NO_LAYOUT && previousLayoutId != layoutId)
+                            Log.e(debugTag, "The GATT layout of " + connection.address + " differs from the one cached for " + connection.name);
+                        // Unity already has this layout, from this device or another one of the model
+                        if (gattLayouts.markReported(layoutId))
+                            layout = null;
+                    }
+
+                    events.send("OnServicesDiscovered",
+                            GattLayoutJson.buildJson(
+                                    status,
+                                    connection.name,
+                                    connection.address,
+                                    connection.deviceIndex,
+                                    layoutId,
+                                    layout
+                            )
+                    );
+                }
+            });
+            completeOperation(gatt, GattOperation.TYPE_DISCOVER_SERVICES, null, status);
+        }
+
+        @Override
+        public void onDescriptorWrite(BluetoothGatt gatt, BluetoothGattDescriptor descriptor, int status) {
+            byte[] value = descriptor.getValue();
+            boolean enabled = value != null && value.length > 0 && value[0] != 0;
+            completeOperation(gatt,
+                    enabled ? GattOperation.TYPE_ENABLE_NOTIFICATIONS : GattOperation.TYPE_DISABLE_NOTIFICATIONS,
+                    descriptor.getCharacteristic(),
+                    status);
+        }
+
+        @Override
+        public void onCharacteristicWrite(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, int status) {
+            completeOperation(gatt, GattOperation.TYPE_WRITE_CHARACTERISTIC, characteristic, status);
+        }
+
+        @Override
+        public void onCharacteristicRead(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, int status) {
+            // The value is published once the operation completes, unless the plugin read it for itself
+            completeOperation(gatt, GattOperation.TYPE_READ_CHARACTERISTIC, characteristic, status);
+        }
+
+        @Override
+        public void onMtuChanged(final BluetoothGatt gatt, final int mtu, final int status) {
+            // Posted before the operation completes, so the next operation already sees the new MTU
+            gattHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    DeviceConnection connection = connectedDevices.get(gatt.getDevice().getAddress());
+                    if (connection == null || connection.gatt != gatt)
+                        return;
+
+                    if (status == BluetoothGatt.GATT_SUCCESS)
+                        connection.mtu = mtu;
+                    reportConnectionParameters(connection, status);
+                }
+            });
+            completeOperation(gatt, GattOperation.TYPE_REQUEST_MTU, null, status);
+        }
+
+        @Override
+        public void onReadRemoteRssi(BluetoothGatt gatt, int rssi, int status) {
+            DeviceConnection connection = connectedDevices.get(gatt.getDevice().getAddress());
+            if (connection != null && status == BluetoothGatt.GATT_SUCCESS)
+                connection.metrics.recordRssi(rssi);
+            completeOperation(gatt, GattOperation.TYPE_READ_RSSI, null, status);
+        }
+
+        @Override
+        public void onPhyUpdate(BluetoothGatt gatt, int txPhy, int rxPhy, int status) {
+            updatePhy(gatt, txPhy, rxPhy, status);
+        }
+
+        @Override
+        public void onPhyRead(BluetoothGatt gatt, int txPhy, int rxPhy, int status) {
+            updatePhy(gatt, txPhy, rxPhy, status);
+        }
+
+        private void updatePhy(final BluetoothGatt gatt, final int txPhy, final int rxPhy, final int status) {
+            gattHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    DeviceConnection connection = connectedDevices.get(gatt.getDevice().getAddress());
+                    if (connection == null || connection.gatt != gatt)
+                        return;
+
+                    if (status == BluetoothGatt.GATT_SUCCESS) {
+                        connection.txPhy = txPhy;
+                        connection.rxPhy = rxPhy;
+                    }
+                    reportConnectionParameters(connection, status);
+                }
+            });
+        }
+
+        /**
+         * Called on the GATT thread.
+         */
+        private void reportConnectionParameters(DeviceConnection connection, int status) {
+            if (rememberDevices && status == BluetoothGatt.GATT_SUCCESS) {
+                knownDevices.setLinkParameters(connection.address, connection.mtu, connection.txPhy, connection.rxPhy);
+                scheduleKnownDevicesSave();
+            }
+            events.send("OnConnectionParametersChanged",
+                    ConnectionParametersJson.buildJson(
+                            status,
+                            connection
                     )
             );
+        }
+
+        @Override
+        public void onCharacteristicChanged(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic) {
+            final long timestampNanos = SystemClock.elapsedRealtimeNanos();
+            if (debug) Log.wtf(debugTag, "onCharacteristicChanged!!!!");
+            final DeviceConnection connection = connectedDevices.get(gatt.getDevice().getAddress());
+            if (connection == null)
+                return;
 
+            // Only a notification tells a bring-up that the sensor streams, a read value does not
+            final ConnectAndStream bringUp = connectAndStream;
+            if (connection.awaitingFirstSample && bringUp != null) {
+                connection.awaitingFirstSample = false;
+                gattHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        bringUp.onFirstSample(connection, timestampNanos);
+                    }
+                });
+            }
+            publishValue(connection, characteristic, timestampNanos);
         }
     };
 }
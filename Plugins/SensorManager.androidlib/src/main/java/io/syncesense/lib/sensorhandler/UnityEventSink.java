@@ -0,0 +1,24 @@
+package io.syncsense.lib.sensorhandler;
+
+import com.unity3d.player.UnityPlayer;
+
+/**
+ * Sends events to a Unity game object with UnitySendMessage.
+ */
+public class UnityEventSink implements EventSink {
+
+    private final String gameObjectName;
+    private final Tracer tracer;
+
+    public UnityEventSink(String gameObjectName, Tracer tracer) {
+        this.gameObjectName = gameObjectName;
+        this.tracer = tracer;
+    }
+
+    @Override
+    public void send(String method, String message) {
+        long traceStart = tracer.begin("UnitySendMessage");
+        UnityPlayer.UnitySendMessage(gameObjectName, method, message);
+        tracer.end(traceStart, Tracer.CATEGORY_UNITY, "UnitySendMessage", method, message != null ? message.length() : 0);
+    }
+}
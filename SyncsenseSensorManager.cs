@@ -1,4 +1,5 @@
-using System;
+﻿using System;
+using System.Collections.Generic;
 using System.IO;
 using UnityEngine;
 
@@ -18,12 +19,26 @@ public class SyncsenseSensorManager : Singleton<SyncsenseSensorManager>
     private AndroidJavaObject _pluginInstance;
 
     public static event Action<ScanResult> OnScanResultEvent;
+    public static event Action<BatchScanResult> OnBatchScanResultEvent;
+    public static event Action<ScanResult> OnDeviceLostEvent;
     public static event Action<ScanError> OnScanErrorEvent;
     public static event Action<ConnectionStateChange> OnDeviceConnectionStateChangeEvent;
+    public static event Action<ManagedConnectionStateChange> OnManagedConnectionStateChangeEvent;
     public static event Action<ServicesDiscovered> OnServicesDiscoveredEvent;
+    public static event Action<GattLayout> OnGattLayoutDiscoveredEvent;
     public static event Action<RawDataReceived> OnRawDataReceivedEvent;
     public static event Action<SensorDataReceived> OnSensorDataReceivedEvent;
     public static event Action<BatteryDataReceived> OnBatteryDataReceivedEvent;
+    public static event Action<SensorDataBatch> OnSensorDataBatchEvent;
+    public static event Action<SensorDataBatch> OnAlignedSensorDataEvent;
+    public static event Action<ProcessedSampleBatch> OnProcessedSamplesEvent;
+    public static event Action<GattOperationResult> OnGattOperationCompleteEvent;
+    public static event Action<ConnectionParameters> OnConnectionParametersChangedEvent;
+    public static event Action<ConnectAndStreamProgress> OnConnectAndStreamProgressEvent;
+    public static event Action<ConnectAndStreamResult> OnConnectAndStreamCompleteEvent;
+    public static event Action<ReplayResult> OnReplayCompleteEvent;
+    public static event Action<CadenceUpdate> OnCadenceUpdateEvent;
+    public static event Action<CadenceCycle> OnCadenceCycleEvent;
 
     public const string MOTION_SERVICE_UUID = "49740000-0f51-43fc-be01-5ce169d39b47";
     public const string ACCL_GYRO_CHARACTERISTIC_UUID = "49740004-0f51-43fc-be01-5ce169d39b47";
@@ -35,10 +50,125 @@ public class SyncsenseSensorManager : Singleton<SyncsenseSensorManager>
     public const string LED1_CHARACTERISTIC_UUID = "49730001-0f51-43fc-be01-5ce169d39b47";
     public const string LED2_CHARACTERISTIC_UUID = "49730002-0f51-43fc-be01-5ce169d39b47";
     
+    public const int TRANSPORT_MODE_JSON = 0;
+    public const int TRANSPORT_MODE_BINARY = 1;
+
+    // Must match MotionProcessor on the native side
+    public const int PROCESSED_OUTPUT_FILTERED = 0;
+    public const int PROCESSED_OUTPUT_ORIENTATION = 1;
+    public const int PROCESSED_OUTPUT_STATISTICS = 2;
+    private const int PROCESSED_OUTPUT_COUNT = 3;
+
+    // Must match OrientationFilter on the native side
+    public const int ORIENTATION_COMPLEMENTARY = 0;
+    public const int ORIENTATION_MADGWICK = 1;
+
+    // Must match CadenceDetector on the native side
+    public const int CADENCE_SIGNAL_ACCEL_X = 0;
+    public const int CADENCE_SIGNAL_ACCEL_Y = 1;
+    public const int CADENCE_SIGNAL_ACCEL_Z = 2;
+    public const int CADENCE_SIGNAL_GYRO_X = 3;
+    public const int CADENCE_SIGNAL_GYRO_Y = 4;
+    public const int CADENCE_SIGNAL_GYRO_Z = 5;
+    public const int CADENCE_SIGNAL_ACCEL_MAGNITUDE = 6;
+    public const int CADENCE_SIGNAL_GYRO_MAGNITUDE = 7;
+
+    // Must match NotificationRingBuffer.HEADER_SIZE on the native side
+    private const int BINARY_FRAME_HEADER_SIZE = 12;
+
+    // The characteristics with their own data event, resolved once per characteristic id
+    private const int CHARACTERISTIC_OTHER = 0;
+    private const int CHARACTERISTIC_ACCL_GYRO = 1;
+    private const int CHARACTERISTIC_BATTERY = 2;
+
+    // Must match DeliveryBuffer on the native side
+    public const int DELIVERY_DROP_OLDEST = 0;
+    public const int DELIVERY_DROP_NEWEST = 1;
+    public const int DELIVERY_LATEST_ONLY = 2;
+    public const int DELIVERY_COALESCE = 3;
+
+    /// <summary>
+    /// When enabled, notifications are pulled from the native plugin once per frame as binary frames instead of
+    /// being sent one by one as JSON messages.
+    /// </summary>
+    public bool binaryTransport = false;
+
+    /// <summary>
+    /// What the native plugin keeps of the notifications of a device when Unity can not keep up, see ConfigureDelivery.
+    /// </summary>
+    public int deliveryPolicy = DELIVERY_DROP_NEWEST;
+    public int deliveryBufferSize = 1024;
+    public int deliveryCoalesceCount = 4;
+    public int maxDataEventsInFlight = 256;
+    private int _dataEventsToAcknowledge = 0;
+
+    /// <summary>
+    /// When enabled, motion packets are decoded by the native plugin and pulled once per frame as a SensorDataBatch.
+    /// OnSensorDataReceivedEvent is still raised per sample while it has listeners.
+    /// </summary>
+    public bool decodeMotionNatively = false;
+
+    /// <summary>
+    /// Rate the motion characteristic is notified at, used to estimate the clock of each sensor. 0 learns it from
+    /// the received packets.
+    /// </summary>
+    public float nominalSampleRateHz = 0;
+
+    /// <summary>
+    /// When enabled, the motion samples of every sensor are resampled natively onto a common timeline and pulled
+    /// once per frame through OnAlignedSensorDataEvent.
+    /// </summary>
+    public bool alignSamples = false;
+    public int alignedSampleRateHz = 100;
+    public int alignmentMaxLatencyMillis = 100;
+
+    /// <summary>
+    /// ATT MTU requested right after connecting, 0 keeps the default of 23.
+    /// </summary>
+    public int preferredMtu = 0;
+    
+    /// <summary>
+    /// Connection priority (see ConnectionPriority) requested right after connecting, -1 keeps the default.
+    /// </summary>
+    public int preferredConnectionPriority = -1;
+    
+    /// <summary>
+    /// Prefer the LE 2M PHY when connecting, if the phone supports it.
+    /// </summary>
+    public bool prefer2MPhy = false;
+
+    /// <summary>
+    /// When enabled, connections survive link losses: the native plugin reconnects with exponential backoff and
+    /// restores the link parameters and subscriptions, see SetManagedConnections.
+    /// </summary>
+    public bool manageConnections = false;
+    public int reconnectInitialBackoffMillis = 250;
+    public int reconnectMaxBackoffMillis = 30000;
+    public int reconnectMaxAttempts = 0;
+
+    /// <summary>
+    /// Remember every connected sensor across sessions, for WarmStart.
+    /// </summary>
+    public bool rememberDevices = true;
+
+    private readonly bool[] _processedOutputSubscribed = new bool[PROCESSED_OUTPUT_COUNT];
+
+    private readonly Dictionary<int, GattLayout> _gattLayouts = new Dictionary<int, GattLayout>();
+
+    private readonly Dictionary<int, string> _deviceAddressByIndex = new Dictionary<int, string>();
+    private readonly Dictionary<int, string> _deviceNameByIndex = new Dictionary<int, string>();
+    private readonly Dictionary<int, string> _characteristicUuidById = new Dictionary<int, string>();
+    private readonly Dictionary<int, int> _characteristicKindById = new Dictionary<int, int>();
+
+    /// <summary>
+    /// Records every received notification into a binary file in Application.persistentDataPath.
+    /// The recording is written natively from a background thread, use ConvertRecordingToCsv to read it as CSV.
+    /// </summary>
     public bool writeToFile = false;
     public int writeToFileBufferSize = 128;
+    public bool compressRecording = true;
     private string _pathForLogs = null;
-    private StreamWriter _logWriter;
+    private string _recordingPath = null;
 
     new void Awake() {
         base.Awake();
@@ -51,6 +181,37 @@ public class SyncsenseSensorManager : Singleton<SyncsenseSensorManager>
                         gameObject.name, debug);
                     
                     _inited = true;
+
+                    if (binaryTransport)
+                    {
+                        SetTransportMode(TRANSPORT_MODE_BINARY);
+                    }
+
+                    ConfigureDelivery(deliveryPolicy, deliveryBufferSize, deliveryCoalesceCount, maxDataEventsInFlight);
+
+                    if (decodeMotionNatively)
+                    {
+                        SetMotionDecoding(true);
+                    }
+
+                    if (nominalSampleRateHz > 0)
+                    {
+                        SetNominalSampleRate(nominalSampleRateHz);
+                    }
+
+                    if (alignSamples)
+                    {
+                        SetSampleAlignment(true, alignedSampleRateHz, alignmentMaxLatencyMillis);
+                    }
+
+                    SetConnectionParameters(preferredMtu, preferredConnectionPriority, prefer2MPhy);
+
+                    if (manageConnections)
+                    {
+                        SetManagedConnections(true, reconnectInitialBackoffMillis, reconnectMaxBackoffMillis, reconnectMaxAttempts);
+                    }
+
+                    SetRememberDevices(rememberDevices);
                 }
             }
         }
@@ -63,9 +224,9 @@ public class SyncsenseSensorManager : Singleton<SyncsenseSensorManager>
         _pathForLogs = Application.persistentDataPath;
         if (debug) Debug.Log("SyncsenseSensorManager - Path for log files: " + _pathForLogs);
         
-        if (writeToFile)
+        if (writeToFile && _pluginInstance != null)
         {
-            InitializeWriteToLogFile();
+            writeToFile = InitializeWriteToLogFile();
         }
     }
 
@@ -122,6 +283,117 @@ public class SyncsenseSensorManager : Singleton<SyncsenseSensorManager>
         _pluginInstance.Call("startScan", scanTimeMilliseconds);
     }
 
+    /// <summary>
+    /// Configures the scans started afterwards.
+    ///
+    /// With a report delay, the Bluetooth controller batches advertisements in hardware and the results arrive once
+    /// per batch through OnBatchScanResultEvent, deduplicated per address, instead of through OnScanResultEvent.
+    /// </summary>
+    /// <param name="scanMode"> one of ScanMode </param>
+    /// <param name="callbackType"> one of ScanCallbackType </param>
+    /// <param name="matchMode"> one of ScanMatchMode </param>
+    /// <param name="numOfMatches"> one of the ScanMatchMode MATCH_NUM values </param>
+    /// <param name="reportDelayMilliseconds"> the batching delay, or 0 to report every advertisement </param>
+    public void ConfigureScan(int scanMode, int callbackType, int matchMode, int numOfMatches, long reportDelayMilliseconds)
+    {
+        _pluginInstance.Call("configureScan", scanMode, callbackType, matchMode, numOfMatches, reportDelayMilliseconds);
+    }
+    
+    /// <summary>
+    /// Adds a scan filter matching devices that advertise the service, for example MOTION_SERVICE_UUID.
+    ///
+    /// Scans started afterwards report devices matching any of the added filters. The filters run in the Bluetooth
+    /// controller where supported, so other devices around never wake up the application. Without filters, scans
+    /// match the "Cadence_Sensor" device name.
+    /// </summary>
+    /// <param name="serviceUuid"> the service uuid </param>
+    /// <param name="serviceUuidMask"> a uuid mask where set bits must match, or null to match the whole uuid </param>
+    /// <returns> false if a uuid is not valid </returns>
+    public bool AddServiceUuidScanFilter(string serviceUuid, string serviceUuidMask = null)
+    {
+        return _pluginInstance.Call<bool>("addServiceUuidScanFilter", serviceUuid, serviceUuidMask);
+    }
+
+    /// <summary>
+    /// Adds a scan filter matching manufacturer specific advertisement data, see AddServiceUuidScanFilter.
+    /// </summary>
+    /// <param name="manufacturerId"> the Bluetooth SIG company identifier </param>
+    /// <param name="data"> the expected data, without the company identifier </param>
+    /// <param name="mask"> a mask of the same length as data where set bits must match, or null to match all bits </param>
+    /// <returns> false if the manufacturer id or the mask is not valid </returns>
+    public bool AddManufacturerDataScanFilter(int manufacturerId, byte[] data, byte[] mask = null)
+    {
+        return _pluginInstance.Call<bool>("addManufacturerDataScanFilter", manufacturerId, data, mask);
+    }
+
+    /// <summary>
+    /// Adds a scan filter matching a single device, see AddServiceUuidScanFilter.
+    /// </summary>
+    public bool AddAddressScanFilter(string deviceAddress)
+    {
+        return _pluginInstance.Call<bool>("addAddressScanFilter", deviceAddress);
+    }
+
+    /// <summary>
+    /// Adds a scan filter matching the advertised device name, see AddServiceUuidScanFilter.
+    /// </summary>
+    public bool AddNameScanFilter(string deviceName)
+    {
+        return _pluginInstance.Call<bool>("addNameScanFilter", deviceName);
+    }
+
+    /// <summary>
+    /// Removes every added scan filter, so scans match the "Cadence_Sensor" device name again.
+    /// </summary>
+    public void ClearScanFilters()
+    {
+        _pluginInstance.Call("clearScanFilters");
+    }
+
+    /// <summary>
+    /// Configures how scan results are deduplicated.
+    ///
+    /// A device is reported through OnScanResultEvent when first seen, then only when its name, advertisement data or
+    /// smoothed RSSI changes, and through OnDeviceLostEvent once it has not advertised for the eviction timeout.
+    /// </summary>
+    /// <param name="rssiSmoothing"> weight of a new RSSI sample in the smoothed RSSI, between 0 and 1 </param>
+    /// <param name="rssiChangeThreshold"> smoothed RSSI change, in dBm, that is reported again </param>
+    /// <param name="evictionTimeoutMilliseconds"> the eviction timeout, or 0 to keep devices forever </param>
+    public void ConfigureDeviceRegistry(float rssiSmoothing, int rssiChangeThreshold, int evictionTimeoutMilliseconds)
+    {
+        _pluginInstance.Call("configureDeviceRegistry", rssiSmoothing, rssiChangeThreshold, evictionTimeoutMilliseconds);
+    }
+
+    /// <summary>
+    /// Returns every device currently known from scanning.
+    /// </summary>
+    public DeviceRegistry GetDeviceRegistry()
+    {
+        return JsonUtility.FromJson<DeviceRegistry>(_pluginInstance.Call<string>("getDeviceRegistrySnapshot"));
+    }
+
+    public void ClearDeviceRegistry()
+    {
+        _pluginInstance.Call("clearDeviceRegistry");
+    }
+
+    /// <summary>
+    /// Returns the handle of a device, as reported in scan results, or -1 if the device is not in the scan registry
+    /// and was never connected to.
+    /// </summary>
+    public int GetDeviceHandle(string deviceAddress)
+    {
+        return _pluginInstance.Call<int>("getDeviceHandle", deviceAddress);
+    }
+    
+    /// <summary>
+    /// Returns true if the Bluetooth controller can batch scan results, see ConfigureScan.
+    /// </summary>
+    public bool IsScanBatchingSupported()
+    {
+        return _pluginInstance.Call<bool>("isScanBatchingSupported");
+    }
+
     /// <summary>
     /// Stops the current BLE scan.
     /// </summary>
@@ -153,37 +425,120 @@ public class SyncsenseSensorManager : Singleton<SyncsenseSensorManager>
     {
         return _pluginInstance.Call<bool>("disconnectFromDevice", deviceAddress);
     }
+
+    /// <summary>
+    /// Same as ConnectToDevice, with the handle reported in scan results instead of the address.
+    /// </summary>
+    public bool ConnectToDevice(int handle)
+    {
+        return _pluginInstance.Call<bool>("connectToDeviceByHandle", handle);
+    }
+
+    public bool DisconnectFromDevice(int handle)
+    {
+        return _pluginInstance.Call<bool>("disconnectFromDeviceByHandle", handle);
+    }
+
+    /// <summary>
+    /// Connects to every device and enables notifications of the given characteristics on each, as one bring-up run
+    /// by the native plugin: devices discover and subscribe while the next ones connect, with at most
+    /// maxConcurrentConnects connection attempts at once, started at least staggerMillis apart. A device whose link
+    /// fails before it streams is retried.
+    ///
+    /// Every step of every device is reported through OnConnectAndStreamProgressEvent, the time to first sample of
+    /// every device and of the whole set through OnConnectAndStreamCompleteEvent.
+    /// </summary>
+    /// <param name="serviceUuids"> the service of every characteristic in characteristicUuids </param>
+    /// <returns> false if the arguments are invalid or a bring-up is already in progress </returns>
+    public bool ConnectAndStream(string[] deviceAddresses, string[] serviceUuids, string[] characteristicUuids,
+        int maxConcurrentConnects = 2, int staggerMillis = 100)
+    {
+        return _pluginInstance.Call<bool>("connectAndStream", deviceAddresses, serviceUuids, characteristicUuids,
+            maxConcurrentConnects, staggerMillis);
+    }
+
+    /// <summary>
+    /// Gives up on every device of ConnectAndStream that does not stream yet. Established connections are kept.
+    /// </summary>
+    public void CancelConnectAndStream()
+    {
+        _pluginInstance.Call("cancelConnectAndStream");
+    }
+
+    /// <summary>
+    /// Connects to the most recently used remembered sensors right away, without scanning first, and enables
+    /// notifications of the given characteristics on each, see ConnectAndStream. A scan for these sensors runs
+    /// alongside for confirmScanMillis, its results come through OnScanResultEvent as usual.
+    /// </summary>
+    /// <param name="maxDevices"> the most sensors to connect to, 0 for every remembered one </param>
+    /// <returns> false if no sensor is remembered yet, or ConnectAndStream refused to start </returns>
+    public bool WarmStart(string[] serviceUuids, string[] characteristicUuids, int maxDevices = 0,
+        int maxConcurrentConnects = 2, int staggerMillis = 100, int confirmScanMillis = 2000)
+    {
+        return _pluginInstance.Call<bool>("warmStart", serviceUuids, characteristicUuids, maxDevices,
+            maxConcurrentConnects, staggerMillis, confirmScanMillis);
+    }
+
+    /// <summary>
+    /// Remembers every sensor connected from now on, with its GATT layout, link parameters and firmware revision, in
+    /// a store kept in app storage across sessions. Remembered sensors get their last MTU requested right after
+    /// connecting.
+    /// </summary>
+    public void SetRememberDevices(bool enable)
+    {
+        _pluginInstance.Call("setRememberDevices", enable);
+        rememberDevices = enable;
+    }
+
+    /// <summary>
+    /// Returns the remembered sensors, most recently connected first.
+    /// </summary>
+    public KnownDeviceList GetKnownDevices()
+    {
+        return JsonUtility.FromJson<KnownDeviceList>(_pluginInstance.Call<string>("getKnownDevices"));
+    }
+
+    public bool ForgetDevice(string deviceAddress)
+    {
+        return _pluginInstance.Call<bool>("forgetDevice", deviceAddress);
+    }
+
+    public void ForgetAllDevices()
+    {
+        _pluginInstance.Call("forgetAllDevices");
+    }
     
     /// <summary>
-    /// 
+    /// Queues a service discovery on the device.
+    ///
+    /// Completion is reported through OnGattOperationCompleteEvent and the discovered services through
+    /// OnServicesDiscoveredEvent.
     /// </summary>
-    /// <param name="deviceAddess"></param>
-    /// <returns></returns>
+    /// <param name="deviceAddess"> the device address </param>
+    /// <returns> true if the discovery was queued, false if the device is not connected </returns>
     public bool DiscoverServicesForDevice(string deviceAddess)
     {
         return _pluginInstance.Call<bool>("discoverServicesForDevice", deviceAddess);
     }
     
     /// <summary>
-    /// Attempts to subscript to Characteristic notification, of a particular characteristic on a particular service of a particular device.
+    /// Queues a subscription to Characteristic notification, of a particular characteristic on a particular service of a particular device.
     ///
-    /// It may fail for the following reasons:
+    /// It is not queued for the following reasons:
     ///  - The device this address corresponds to is not connected
     ///  - The device for this address does not have a service with the provided uuidService
     ///  - The device for this address does not have a characteristic with the provided uuidService and uuidCharacteristic
-    ///  - Unable to enable Characteristics notifications at the Characteristic level
-    ///  - Unable to write enabled Characteristics notifications back to the device
-    ///
-    /// If successful, updates of the characteristic value will be received through the OnDataReceived method.
     ///
-    /// A failure to subscribe to a characteristic will not trigger the OnDataReceived method.
+    /// GATT operations of a device run one at a time in the native plugin, so subscriptions, writes and reads can be
+    /// issued back to back. Each one is retried natively after a timeout or when the stack is busy, and its final
+    /// result is reported through OnGattOperationCompleteEvent.
     ///
-    /// A failure to subscribe to a characteristic due to enabling at any level, like Characteristic level or writing back to device can be and should be retried. 
+    /// If successful, updates of the characteristic value will be received through the OnDataReceived method.
     /// </summary>
     /// <param name="deviceAddress"> the device address</param>
     /// <param name="serviceUuid"> the service uuid</param>
     /// <param name="characteristicUuid"> the characteristic uuid</param>
-    /// <returns>true if subscription was successfull, false for the reasons described above</returns>
+    /// <returns>true if subscription was queued, false for the reasons described above</returns>
     public bool SubscribeToCharacteristic(string deviceAddress, string serviceUuid, string characteristicUuid)
     {
         return _pluginInstance.Call<bool>("subscribeToCharacteristic", deviceAddress, serviceUuid, characteristicUuid);
@@ -198,159 +553,1018 @@ public class SyncsenseSensorManager : Singleton<SyncsenseSensorManager>
     {
         return _pluginInstance.Call<bool>("writeCharacteristicNoResponse", deviceAddress, serviceUuid, characteristicUuid, data);
     }
-    
-    public bool SubscribeToSensorData(string deviceAddress)
+
+    public bool SubscribeToCharacteristic(int handle, string serviceUuid, string characteristicUuid)
     {
-        return SubscribeToCharacteristic(deviceAddress, MOTION_SERVICE_UUID, ACCL_GYRO_CHARACTERISTIC_UUID);
+        return _pluginInstance.Call<bool>("subscribeToCharacteristicByHandle", handle, serviceUuid, characteristicUuid);
     }
     
-    public bool UnsubscribeToSensorData(string deviceAddress)
+    public bool UnsubscribeToCharacteristic(int handle, string serviceUuid, string characteristicUuid)
     {
-        return UnsubscribeToCharacteristic(deviceAddress, MOTION_SERVICE_UUID, ACCL_GYRO_CHARACTERISTIC_UUID);
+        return _pluginInstance.Call<bool>("unsubscribeToCharacteristicByHandle", handle, serviceUuid, characteristicUuid);
     }
-    
-    public bool SubscribeToBatteryData(string deviceAddress)
+
+    public bool WriteToCharacteristic(int handle, string serviceUuid, string characteristicUuid, byte[] data)
     {
-        return SubscribeToCharacteristic(deviceAddress, BATTERY_SERVICE_UUID, BATTERY_CHARACTERISTIC_UUID);
+        return _pluginInstance.Call<bool>("writeCharacteristicNoResponseByHandle", handle, serviceUuid, characteristicUuid, data);
     }
     
-    public bool UnsubscribeToBatteryData(string deviceAddress)
+    /// <summary>
+    /// Queues a read of the characteristic. The value is delivered like a notification, through the data events.
+    /// </summary>
+    /// <returns> true if the read was queued </returns>
+    public bool ReadCharacteristic(string deviceAddress, string serviceUuid, string characteristicUuid)
     {
-        return UnsubscribeToCharacteristic(deviceAddress, BATTERY_SERVICE_UUID, BATTERY_CHARACTERISTIC_UUID);
+        return _pluginInstance.Call<bool>("readCharacteristic", deviceAddress, serviceUuid, characteristicUuid);
     }
-    
-    public bool EnableGreenLed(string deviceAddress, bool enable)
+
+    /// <summary>
+    /// Returns the handle of a characteristic of a connected device, once its services were discovered. The same
+    /// handles are reported with every characteristic through OnServicesDiscoveredEvent, and can be looked up without
+    /// a native call with GattLayout.GetCharacteristicHandle.
+    ///
+    /// A characteristic handle identifies both the device and the characteristic, and is resolved natively with two
+    /// array lookups. Prefer the CharacteristicHandle methods for frequent writes such as LED or control commands.
+    /// </summary>
+    /// <returns> the handle, or -1 if the device is not connected or does not have the characteristic </returns>
+    public int GetCharacteristicHandle(string deviceAddress, string serviceUuid, string characteristicUuid)
     {
-        return WriteToCharacteristic(deviceAddress, LED_SERVICE_UUID, LED2_CHARACTERISTIC_UUID, new byte[] { (byte) (enable ? 1 : 0) });
+        return _pluginInstance.Call<int>("getCharacteristicHandle", deviceAddress, serviceUuid, characteristicUuid);
     }
-    
-    public bool EnableRedLed(string deviceAddress, bool enable)
+
+    public bool SubscribeToCharacteristicHandle(int characteristicHandle)
     {
-        return WriteToCharacteristic(deviceAddress, LED_SERVICE_UUID, LED1_CHARACTERISTIC_UUID, new byte[] { (byte) (enable ? 1 : 0) });
+        return _pluginInstance.Call<bool>("subscribeToCharacteristicHandle", characteristicHandle);
     }
-    
-    // ------------------------------------------------------------------------
-    
+
+    public bool UnsubscribeFromCharacteristicHandle(int characteristicHandle)
+    {
+        return _pluginInstance.Call<bool>("unsubscribeFromCharacteristicHandle", characteristicHandle);
+    }
+
+    public bool WriteToCharacteristicHandle(int characteristicHandle, byte[] data)
+    {
+        return _pluginInstance.Call<bool>("writeCharacteristicHandleNoResponse", characteristicHandle, data);
+    }
+
+    public bool ReadCharacteristicHandle(int characteristicHandle)
+    {
+        return _pluginInstance.Call<bool>("readCharacteristicHandle", characteristicHandle);
+    }
+
     /// <summary>
-    /// Enables or disables the writing of the received data to a CSV file.
-    /// 
+    /// Opens a write stream to a characteristic, for sending values in a row without waiting for each, e.g. haptic or
+    /// LED patterns, or a configuration blob.
+    ///
+    /// Values given to WriteToStream are written without response, packed up to the payload of the negotiated MTU,
+    /// each write waiting for the stack to take the previous one.
     /// </summary>
-    /// <param name="enable"></param>
-    public void EnableWriteToFile(bool enable)
+    /// <param name="bufferBytes"> how many bytes may wait to be written before WriteToStream refuses values, 0 for the default </param>
+    /// <param name="packMessages"> true to put as many values as fit in every write, false to write every value on its own </param>
+    public bool OpenWriteStream(int characteristicHandle, int bufferBytes, bool packMessages)
     {
-        if (enable == writeToFile)
-            return;
-        
-        if (enable)
-        {
-            InitializeWriteToLogFile();
-            writeToFile = true;
-        }
-        else
-        {
-            writeToFile = false;
-            // TO STOP WRITING TO FILE
-            if (_logWriter != null)
-            {
-                _logWriter.Flush();
-                _logWriter.Close();
-                _logWriter = null;
-            }
-        }
+        return _pluginInstance.Call<bool>("openWriteStream", characteristicHandle, bufferBytes, packMessages);
     }
-    
+
     /// <summary>
-    /// Returns true if the writing of the received data to a CSV file is enabled.
+    /// Queues a value on the write stream of a characteristic.
     /// </summary>
-    /// <returns></returns>
-    public bool IsWriteToFileEnabled()
+    /// <returns> false if no stream is open, or its buffer is full: slow down and try again later </returns>
+    public bool WriteToStream(int characteristicHandle, byte[] data)
     {
-        return writeToFile;
+        return _pluginInstance.Call<bool>("writeToStream", characteristicHandle, data);
     }
-    
-    private void InitializeWriteToLogFile()
+
+    /// <summary>
+    /// Closes the write stream of a characteristic. Values not written yet are discarded.
+    /// </summary>
+    public bool CloseWriteStream(int characteristicHandle)
     {
-        string filePath = Path.Combine(_pathForLogs, "LOG-" + DateTime.Now.ToString("yyyy-MM-dd_HHmmss") + ".csv");
-        _logWriter = new StreamWriter(filePath, true);
-        _logWriter.WriteLine("Mac Address, Timestamp, index, Acc X, Acc Y, Acc Z, Gyro X, Gyro Y, Gyro Z");
+        return _pluginInstance.Call<bool>("closeWriteStream", characteristicHandle);
     }
-    
-    private void OnDestroy()
+
+    public WriteStreamStats GetWriteStreamStats(int characteristicHandle)
     {
-        if (_logWriter != null)
-        {
-            _logWriter.Flush();
-            _logWriter.Close();
-            _logWriter = null;
-        }
+        string rawData = _pluginInstance.Call<string>("getWriteStreamStats", characteristicHandle);
+        return rawData != null ? JsonUtility.FromJson<WriteStreamStats>(rawData) : null;
     }
 
     /// <summary>
-    /// This method gets called from the Native android plugin when a new BLE device is found.
+    /// Sets the link parameters requested right after every future connection is established.
+    ///
+    /// The negotiated values are reported through OnConnectionParametersChangedEvent.
     /// </summary>
-    /// <param name="rawData"> a String of a json object </param>
-    private void OnScanResult(string rawData)
+    /// <param name="mtu"> the ATT MTU to request (23 - 517), or 0 to keep the default </param>
+    /// <param name="connectionPriority"> one of ConnectionPriority, or -1 to keep the default </param>
+    /// <param name="use2MPhy"> prefer the LE 2M PHY, if the phone supports it </param>
+    public void SetConnectionParameters(int mtu, int connectionPriority, bool use2MPhy)
     {
-        OnScanResultEvent?.Invoke(JsonUtility.FromJson<ScanResult>(rawData));
+        _pluginInstance.Call("setConnectionParameters", mtu, connectionPriority, use2MPhy);
+        preferredMtu = mtu;
+        preferredConnectionPriority = connectionPriority;
+        prefer2MPhy = use2MPhy;
     }
     
     /// <summary>
-    /// This method gets called from the Native android plugin when an error regarding scanning for BLE devices occurs.
+    /// Enables or disables managed connections, for every future connection.
+    ///
+    /// A managed connection is not dropped when its link is lost. The native plugin reconnects to the cached device
+    /// right away, then with exponentially growing delays, and finally in the background until the device is back.
+    /// Once reconnected it requests the MTU, connection priority and PHY again, rediscovers the services and
+    /// re-enables every subscription. Progress, and the reconnect latency, are reported through
+    /// OnManagedConnectionStateChangeEvent. DisconnectFromDevice stops it.
     /// </summary>
-    /// <param name="rawData"> a String of a json object </param>
-    private void OnScanError(string rawData)
+    /// <param name="initialBackoffMillis"> the delay before the second attempt, doubled for every further attempt </param>
+    /// <param name="maxBackoffMillis"> the longest delay between attempts </param>
+    /// <param name="maxAttempts"> attempts before giving up and dropping the device, 0 to never give up </param>
+    public void SetManagedConnections(bool enable, int initialBackoffMillis, int maxBackoffMillis, int maxAttempts)
     {
-        OnScanErrorEvent?.Invoke(JsonUtility.FromJson<ScanError>(rawData));
+        _pluginInstance.Call("setManagedConnections", enable, initialBackoffMillis, maxBackoffMillis, maxAttempts);
+        manageConnections = enable;
+        reconnectInitialBackoffMillis = initialBackoffMillis;
+        reconnectMaxBackoffMillis = maxBackoffMillis;
+        reconnectMaxAttempts = maxAttempts;
     }
     
     /// <summary>
-    /// When a connecting operation to a BLE device or disconnect from a BLE device is performed, this method receives the status of the operation.
-    ///
-    /// When a disconnect happens the device is automatically removed from the list of connected devices.
-    ///
-    /// An unexpected disconnect will also trigger this method. 
+    /// Returns one of ManagedConnectionState, or -1 if the device has no managed connection.
     /// </summary>
-    /// <param name="rawData"> a String of a json object </param>
-    private void OnDeviceConnectionStateChange(string rawData)
+    public int GetManagedConnectionState(string deviceAddress)
     {
-        OnDeviceConnectionStateChangeEvent?.Invoke(JsonUtility.FromJson<ConnectionStateChange>(rawData));
+        return _pluginInstance.Call<int>("getManagedConnectionState", deviceAddress);
     }
-
+    
     /// <summary>
-    /// When DiscoverServicesForDevice is called successfully, this method will return asynchronously the results of the operation.
+    /// Queues an MTU request on a connected device. The negotiated MTU is reported through OnConnectionParametersChangedEvent.
     /// </summary>
-    /// <param name="rawData"> a String of a json object </param>
-    private void OnServicesDiscovered(string rawData)
+    public bool RequestMtu(string deviceAddress, int mtu)
     {
-        OnServicesDiscoveredEvent?.Invoke(JsonUtility.FromJson<ServicesDiscovered>(rawData));
+        return _pluginInstance.Call<bool>("requestMtu", deviceAddress, mtu);
     }
     
     /// <summary>
-    /// When subscribed to a characteristic, this method will receive the updates of the characteristic value.
+    /// Queues a connection priority request on a connected device.
     /// </summary>
-    /// <param name="rawData"></param>
-    private void OnDataReceived(string rawData)
+    /// <param name="connectionPriority"> one of ConnectionPriority </param>
+    public bool RequestConnectionPriority(string deviceAddress, int connectionPriority)
     {
-        RawDataReceived tempData = JsonUtility.FromJson<RawDataReceived>(rawData)
-            .Init();
-        OnRawDataReceivedEvent?.Invoke(tempData);
-
-        if (tempData.characteristicUuid.ToLower().Equals(ACCL_GYRO_CHARACTERISTIC_UUID.ToLower()))
-        {
-            SensorDataReceived sensorDataReceived = tempData.ToSensorDataReceived();
-            OnSensorDataReceivedEvent?.Invoke(sensorDataReceived);
-            
-            if (writeToFile)
-            {
-                _logWriter.WriteLine(sensorDataReceived.ToStringCSV());
-            }
-        }
-        else if (tempData.characteristicUuid.ToLower().Equals(BATTERY_CHARACTERISTIC_UUID.ToLower()))
-        {
-            OnBatteryDataReceivedEvent?.Invoke(tempData.ToBatteryDataReceived());
-        }
+        return _pluginInstance.Call<bool>("requestConnectionPriority", deviceAddress, connectionPriority);
+    }
+    
+    /// <summary>
+    /// Queues a preferred PHY request on a connected device. The resulting PHY is reported through OnConnectionParametersChangedEvent.
+    /// </summary>
+    /// <param name="phyMask"> combination of the Phy masks </param>
+    public bool SetPreferredPhy(string deviceAddress, int phyMask)
+    {
+        return _pluginInstance.Call<bool>("setPreferredPhy", deviceAddress, phyMask);
+    }
+    
+    /// <summary>
+    /// Returns the link statistics the native plugin keeps for a connected device: notification rate, lost samples
+    /// of the motion characteristic, inter-arrival jitter, delivery latency and RSSI.
+    ///
+    /// The notification rate is measured since the previous snapshot of the device.
+    /// </summary>
+    /// <returns> the statistics, or null if the device is not connected </returns>
+    public LinkMetrics GetMetricsSnapshot(string deviceAddress)
+    {
+        string rawData = _pluginInstance.Call<string>("getMetricsSnapshot", deviceAddress);
+        return rawData != null ? JsonUtility.FromJson<LinkMetrics>(rawData) : null;
+    }
+    
+    /// <summary>
+    /// Same as GetMetricsSnapshot, for every connected device.
+    /// </summary>
+    public LinkMetricsList GetMetricsSnapshot()
+    {
+        return JsonUtility.FromJson<LinkMetricsList>(_pluginInstance.Call<string>("getMetricsSnapshot"));
+    }
+    
+    public void ResetMetrics()
+    {
+        _pluginInstance.Call("resetMetrics");
+    }
+
+    /// <summary>
+    /// Starts a fleet of simulated sensors in the native plugin, for load testing without hardware.
+    ///
+    /// Simulated sensors go through the same native path as real ones and are reported through the usual connection,
+    /// data and metrics events. They connect and subscribe to their motion and battery characteristics on their own,
+    /// and reconnect after a simulated link loss.
+    /// </summary>
+    /// <param name="sensorCount"> the number of sensors </param>
+    /// <param name="motionRateHz"> the motion notification rate of every sensor </param>
+    /// <param name="packetLoss"> probability for every motion packet to be lost, between 0 and 1 </param>
+    /// <param name="jitterMicroseconds"> maximum random delay of every motion packet </param>
+    /// <param name="disconnectsPerMinute"> average number of link losses per sensor and minute, 0 for none </param>
+    /// <returns> false if a simulation is already running </returns>
+    public bool StartSimulation(int sensorCount, int motionRateHz, float packetLoss = 0, int jitterMicroseconds = 0, float disconnectsPerMinute = 0)
+    {
+        return _pluginInstance.Call<bool>("startSimulation", sensorCount, motionRateHz, packetLoss, jitterMicroseconds, disconnectsPerMinute);
+    }
+
+    public bool StopSimulation()
+    {
+        return _pluginInstance.Call<bool>("stopSimulation");
+    }
+
+    public const float REPLAY_AS_FAST_AS_POSSIBLE = 0;
+
+    /// <summary>
+    /// Replays a recording of StartRecording in the native plugin, through the same path as real sensors, to
+    /// reproduce a session without hardware.
+    ///
+    /// Every recorded sensor connects before its first notification and disconnects at the end, with the usual
+    /// connection and data events. A replay faster than the events are consumed slows down rather than drop any.
+    /// OnReplayCompleteEvent reports how many notifications were replayed, and how fast.
+    /// </summary>
+    /// <param name="speed"> how many times faster than recorded to replay, 1 for real time, REPLAY_AS_FAST_AS_POSSIBLE </param>
+    /// <returns> false if the file does not exist or a replay is already running </returns>
+    public bool StartReplay(string filePath, float speed = 1)
+    {
+        return _pluginInstance.Call<bool>("startReplay", filePath, speed);
+    }
+
+    public bool StopReplay()
+    {
+        return _pluginInstance.Call<bool>("stopReplay");
+    }
+
+    // Must match Tracer.DEFAULT_CAPACITY on the native side
+    public const int TRACE_DEFAULT_CAPACITY = 8192;
+
+    /// <summary>
+    /// Starts, or stops, tracing the native plugin: connections, GATT operations, scan callbacks, notification
+    /// dispatch, json serialization and every message sent to Unity. Cheap enough to leave on in release builds; the
+    /// last capacity spans are kept in memory for WriteTrace.
+    /// </summary>
+    /// <param name="systemTrace"> also emit android.os.Trace sections, to see the spans in Perfetto or systrace captures </param>
+    /// <returns> false if the capacity is not positive </returns>
+    public bool SetTracing(bool enable, int capacity = TRACE_DEFAULT_CAPACITY, bool systemTrace = true)
+    {
+        return _pluginInstance.Call<bool>("setTracing", enable, capacity, systemTrace);
+    }
+
+    /// <summary>
+    /// Writes the spans traced so far as a Chrome trace json file, to open in Perfetto or chrome://tracing,
+    /// e.g. under Application.persistentDataPath.
+    /// </summary>
+    /// <returns> false if the file could not be written </returns>
+    public bool WriteTrace(string filePath)
+    {
+        return _pluginInstance.Call<bool>("writeTrace", filePath);
+    }
+
+    public void ClearTrace()
+    {
+        _pluginInstance.Call("clearTrace");
+    }
+    
+    /// <summary>
+    /// Periodically reads the RSSI of every connected device into its statistics.
+    /// </summary>
+    /// <param name="intervalMilliseconds"> the polling interval, or 0 to stop polling </param>
+    public void SetRssiPollingInterval(int intervalMilliseconds)
+    {
+        _pluginInstance.Call("setRssiPollingInterval", intervalMilliseconds);
+    }
+    
+    /// <summary>
+    /// Sets how long a native GATT operation may take before it is retried.
+    /// </summary>
+    public void SetGattOperationTimeout(int timeoutMilliseconds)
+    {
+        _pluginInstance.Call("setGattOperationTimeout", timeoutMilliseconds);
+    }
+
+    /// <summary>
+    /// Sets how many times a native GATT operation is retried after a timeout or after the stack refused it.
+    /// </summary>
+    public void SetGattOperationRetries(int maxRetries)
+    {
+        _pluginInstance.Call("setGattOperationRetries", maxRetries);
+    }
+    
+    public bool ReadBatteryData(string deviceAddress)
+    {
+        return ReadCharacteristic(deviceAddress, BATTERY_SERVICE_UUID, BATTERY_CHARACTERISTIC_UUID);
+    }
+    
+    public bool SubscribeToSensorData(string deviceAddress)
+    {
+        return SubscribeToCharacteristic(deviceAddress, MOTION_SERVICE_UUID, ACCL_GYRO_CHARACTERISTIC_UUID);
+    }
+    
+    public bool UnsubscribeToSensorData(string deviceAddress)
+    {
+        return UnsubscribeToCharacteristic(deviceAddress, MOTION_SERVICE_UUID, ACCL_GYRO_CHARACTERISTIC_UUID);
+    }
+    
+    public bool SubscribeToBatteryData(string deviceAddress)
+    {
+        return SubscribeToCharacteristic(deviceAddress, BATTERY_SERVICE_UUID, BATTERY_CHARACTERISTIC_UUID);
+    }
+    
+    public bool UnsubscribeToBatteryData(string deviceAddress)
+    {
+        return UnsubscribeToCharacteristic(deviceAddress, BATTERY_SERVICE_UUID, BATTERY_CHARACTERISTIC_UUID);
+    }
+    
+    public bool EnableGreenLed(string deviceAddress, bool enable)
+    {
+        return WriteToCharacteristic(deviceAddress, LED_SERVICE_UUID, LED2_CHARACTERISTIC_UUID, new byte[] { (byte) (enable ? 1 : 0) });
+    }
+    
+    public bool EnableRedLed(string deviceAddress, bool enable)
+    {
+        return WriteToCharacteristic(deviceAddress, LED_SERVICE_UUID, LED1_CHARACTERISTIC_UUID, new byte[] { (byte) (enable ? 1 : 0) });
+    }
+    
+    /// <summary>
+    /// Selects how characteristic notifications are delivered from the native plugin.
+    ///
+    /// TRANSPORT_MODE_JSON sends every notification as its own JSON message. TRANSPORT_MODE_BINARY buffers them
+    /// natively and drains them once per frame, which avoids the JSON and Base64 work per notification.
+    /// Both modes raise the same events.
+    /// </summary>
+    /// <param name="mode"> TRANSPORT_MODE_JSON or TRANSPORT_MODE_BINARY </param>
+    public void SetTransportMode(int mode)
+    {
+        _pluginInstance.Call("setTransportMode", mode);
+        binaryTransport = mode == TRANSPORT_MODE_BINARY;
+    }
+
+    /// <summary>
+    /// Enables or disables decoding of the motion characteristic in the native plugin.
+    ///
+    /// When enabled, motion samples are delivered through OnSensorDataBatchEvent once per frame instead of going
+    /// through the selected transport mode.
+    /// </summary>
+    public void SetMotionDecoding(bool enable)
+    {
+        _pluginInstance.Call("setMotionDecoding", enable);
+        decodeMotionNatively = enable;
+    }
+
+    /// <summary>
+    /// Returns the number of notifications the native plugin had to drop because they were not drained in time.
+    /// Per device counts are in LinkMetrics.droppedDeliveries.
+    /// </summary>
+    public long GetDroppedNotificationCount()
+    {
+        return _pluginInstance.Call<long>("getDroppedNotificationCount");
+    }
+
+    /// <summary>
+    /// Bounds what the native plugin buffers for Unity when the main thread stalls, e.g. during scene loads or GC.
+    ///
+    /// Every device has its own buffer of notifications waiting to be drained or sent. Once it is full, the policy
+    /// decides which notifications are dropped: DELIVERY_DROP_OLDEST keeps the most recent ones, DELIVERY_DROP_NEWEST
+    /// the oldest ones, DELIVERY_LATEST_ONLY only the latest of every characteristic and DELIVERY_COALESCE the latest
+    /// coalesceCount of every characteristic. In JSON mode at most maxEventsInFlight messages are sent ahead of what
+    /// Update acknowledged, so they do not pile up in Unity's message queue.
+    /// </summary>
+    /// <param name="capacity"> notifications buffered per device </param>
+    /// <param name="maxEventsInFlight"> 0 to send JSON messages without waiting for Unity </param>
+    public bool ConfigureDelivery(int policy, int capacity, int coalesceCount, int maxEventsInFlight)
+    {
+        deliveryPolicy = policy;
+        deliveryBufferSize = capacity;
+        deliveryCoalesceCount = coalesceCount;
+        maxDataEventsInFlight = maxEventsInFlight;
+        return _pluginInstance.Call<bool>("configureDelivery", policy, capacity, coalesceCount, maxEventsInFlight);
+    }
+
+    /// <summary>
+    /// Returns the latest notification of every characteristic of every device, whatever the transport mode, without
+    /// taking anything out of the native buffers. Poll it once per frame to only ever look at current values.
+    /// </summary>
+    public List<RawDataReceived> GetLatestNotifications()
+    {
+        return ReadBinaryFrames(_pluginInstance.Call<byte[]>("getLatestNotifications"));
+    }
+
+    /// <summary>
+    /// Sets the rate the motion characteristic is notified at, which helps the native clock estimation recover
+    /// from long losses. 0 learns the rate from the received packets.
+    /// </summary>
+    public void SetNominalSampleRate(float rateHz)
+    {
+        _pluginInstance.Call("setNominalSampleRate", rateHz);
+        nominalSampleRateHz = rateHz;
+    }
+
+    /// <summary>
+    /// Returns the estimated sample rate, clock drift and transport latency of every connected sensor.
+    /// </summary>
+    public SensorClockList GetClockEstimates()
+    {
+        return JsonUtility.FromJson<SensorClockList>(_pluginInstance.Call<string>("getClockEstimates"));
+    }
+
+    /// <summary>
+    /// Enables or disables the alignment of the motion samples of every sensor onto a common timeline.
+    ///
+    /// Alignment runs on the native dispatch thread: each sensor's samples are placed at their estimated sample
+    /// time and interpolated onto frames of the output rate. Aligned rows are delivered once per frame through
+    /// OnAlignedSensorDataEvent, next to whatever the transport mode and motion decoding deliver.
+    /// </summary>
+    /// <param name="outputRateHz"> the rate of the common timeline </param>
+    /// <param name="maxLatencyMillis"> how long a frame waits for a late sensor before leaving it out </param>
+    public void SetSampleAlignment(bool enable, int outputRateHz, int maxLatencyMillis)
+    {
+        _pluginInstance.Call("setSampleAlignment", enable, outputRateHz, maxLatencyMillis);
+        alignSamples = enable;
+        alignedSampleRateHz = outputRateHz;
+        alignmentMaxLatencyMillis = maxLatencyMillis;
+    }
+
+    /// <summary>
+    /// Returns the number of aligned rows the native plugin had to drop because they were not drained in time.
+    /// </summary>
+    public long GetDroppedAlignedSampleCount()
+    {
+        return _pluginInstance.Call<long>("getDroppedAlignedSampleCount");
+    }
+
+    /// <summary>
+    /// Subscribes to an output of the native motion processing, delivered once per frame through
+    /// OnProcessedSamplesEvent.
+    ///
+    /// Every sensor's motion samples go through a low-pass filter, then an orientation filter and windowed
+    /// statistics, natively. Each output is decimated to the requested rate before crossing to Unity, so
+    /// subscribing to orientation at the game frame rate costs a fraction of the raw samples.
+    /// </summary>
+    /// <param name="output"> PROCESSED_OUTPUT_FILTERED, PROCESSED_OUTPUT_ORIENTATION or PROCESSED_OUTPUT_STATISTICS </param>
+    /// <param name="rateHz"> rows per second and sensor, 0 unsubscribes </param>
+    public bool SubscribeProcessedOutput(int output, float rateHz)
+    {
+        if (!_pluginInstance.Call<bool>("subscribeProcessedOutput", output, rateHz))
+            return false;
         
+        _processedOutputSubscribed[output] = rateHz > 0;
+        return true;
+    }
+
+    /// <summary>
+    /// Sets the low-pass filter applied to every motion axis before the other processing stages.
+    /// </summary>
+    /// <param name="inputRateHz"> the rate the sensors send motion samples at </param>
+    /// <param name="cutoffHz"> the -3 dB frequency, below half the input rate; 0 disables the filter </param>
+    public bool SetMotionLowPassFilter(float inputRateHz, float cutoffHz)
+    {
+        return _pluginInstance.Call<bool>("setMotionLowPassFilter", inputRateHz, cutoffHz);
+    }
+
+    /// <summary>
+    /// Selects the orientation filter of PROCESSED_OUTPUT_ORIENTATION.
+    /// </summary>
+    /// <param name="algorithm"> ORIENTATION_COMPLEMENTARY or ORIENTATION_MADGWICK </param>
+    /// <param name="gain"> the proportional gain of the complementary filter, or the beta of the Madgwick filter </param>
+    /// <param name="gyroRadiansPerUnit"> converts the gyroscope values to rad/s, Mathf.Deg2Rad when they are in deg/s </param>
+    public bool SetOrientationFilter(int algorithm, float gain, float gyroRadiansPerUnit = Mathf.Deg2Rad)
+    {
+        return _pluginInstance.Call<bool>("setOrientationFilter", algorithm, gain, gyroRadiansPerUnit);
+    }
+
+    /// <summary>
+    /// Sets the number of samples PROCESSED_OUTPUT_STATISTICS is computed over.
+    /// </summary>
+    public void SetMotionStatisticsWindow(int samples)
+    {
+        _pluginInstance.Call("setMotionStatisticsWindow", samples);
+    }
+
+    /// <summary>
+    /// Stops, or resumes, sending raw motion samples to Unity, when only processed outputs are needed.
+    /// </summary>
+    public void SetRawMotionForwarding(bool enable)
+    {
+        _pluginInstance.Call("setRawMotionForwarding", enable);
+    }
+
+    /// <summary>
+    /// Starts, or stops, detecting steps or revolutions in the motion samples of every sensor in the native plugin.
+    /// OnCadenceUpdateEvent reports the cadence of a sensor when it becomes active or idle and every
+    /// updateIntervalMillis while active, OnCadenceCycleEvent every single cycle if cycleEvents is set.
+    /// With SetRawMotionForwarding(false), these events are all Unity receives of the motion stream.
+    /// </summary>
+    /// <param name="signal"> one of CADENCE_SIGNAL_* </param>
+    /// <param name="inputRateHz"> the rate the sensors notify motion samples at </param>
+    /// <param name="minCadence"> the slowest cadence counted, in cycles per minute </param>
+    /// <param name="maxCadence"> the fastest cadence counted, in cycles per minute </param>
+    /// <param name="minAmplitude"> the smallest swing of the signal counted as a cycle, 0 to adapt to the signal only </param>
+    /// <returns> false if a parameter is out of range </returns>
+    public bool ConfigureCadenceDetection(bool enable, int signal = CADENCE_SIGNAL_ACCEL_MAGNITUDE,
+        float inputRateHz = 100, float minCadence = 20, float maxCadence = 240, float minAmplitude = 0,
+        int updateIntervalMillis = 1000, bool cycleEvents = false)
+    {
+        return _pluginInstance.Call<bool>("configureCadenceDetection", enable, signal, inputRateHz, minCadence,
+            maxCadence, minAmplitude, updateIntervalMillis, cycleEvents);
+    }
+
+    /// <summary>
+    /// Returns the number of rows of a processed output the native plugin had to drop because they were not drained
+    /// in time.
+    /// </summary>
+    public long GetDroppedProcessedSampleCount(int output)
+    {
+        return _pluginInstance.Call<long>("getDroppedProcessedSampleCount", output);
+    }
+    
+    // ------------------------------------------------------------------------
+    
+    /// <summary>
+    /// Enables or disables the recording of the received data to a file.
+    ///
+    /// Notifications are recorded natively, with their receive timestamps, into a compact binary file written
+    /// from a background thread. Use ConvertRecordingToCsv to turn a recording into the motion CSV format.
+    /// </summary>
+    /// <param name="enable"></param>
+    public void EnableWriteToFile(bool enable)
+    {
+        if (enable == writeToFile)
+            return;
         
+        if (enable)
+        {
+            writeToFile = InitializeWriteToLogFile();
+        }
+        else
+        {
+            writeToFile = false;
+            // TO STOP WRITING TO FILE
+            _pluginInstance.Call<bool>("stopRecording");
+        }
+    }
+    
+    /// <summary>
+    /// Returns true if the recording of the received data to a file is enabled.
+    /// </summary>
+    /// <returns></returns>
+    public bool IsWriteToFileEnabled()
+    {
+        return writeToFile;
+    }
+    
+    /// <summary>
+    /// Returns the path of the current, or last, recording file.
+    /// </summary>
+    public string GetRecordingPath()
+    {
+        return _recordingPath;
+    }
+    
+    /// <summary>
+    /// Converts a recording into a CSV file of motion samples, with the columns:
+    /// Mac Address, Timestamp, index, Acc X, Acc Y, Acc Z, Gyro X, Gyro Y, Gyro Z, Timestamp Nanos
+    ///
+    /// Blocks until done. Long recordings should be converted at the end of a session.
+    /// </summary>
+    /// <returns> true if the CSV file was written </returns>
+    public bool ConvertRecordingToCsv(string recordingPath, string csvPath)
+    {
+        return _pluginInstance.Call<bool>("convertRecordingToCsv", recordingPath, csvPath);
+    }
+    
+    private bool InitializeWriteToLogFile()
+    {
+        _recordingPath = Path.Combine(_pathForLogs, "LOG-" + DateTime.Now.ToString("yyyy-MM-dd_HHmmss") + ".ssr");
+        return _pluginInstance.Call<bool>("startRecording", _recordingPath, compressRecording);
+    }
+    
+    private void Update()
+    {
+        if (_pluginInstance == null)
+            return;
+
+        if (decodeMotionNatively)
+        {
+            DrainMotionSamples();
+        }
+
+        if (alignSamples)
+        {
+            DrainAlignedSamples();
+        }
+
+        for (int output = 0; output < PROCESSED_OUTPUT_COUNT; output++)
+        {
+            if (_processedOutputSubscribed[output])
+                DrainProcessedSamples(output);
+        }
+
+        if (binaryTransport)
+        {
+            DrainBinaryNotifications();
+        }
+
+        if (_dataEventsToAcknowledge > 0)
+        {
+            _pluginInstance.Call("acknowledgeDataEvents", _dataEventsToAcknowledge);
+            _dataEventsToAcknowledge = 0;
+        }
+    }
+
+    private void DrainMotionSamples()
+    {
+        using (AndroidJavaObject nativeBatch = _pluginInstance.Call<AndroidJavaObject>("drainMotionSamples"))
+        {
+            if (nativeBatch == null)
+                return;
+
+            SensorDataBatch batch = ReadSensorDataBatch(nativeBatch);
+
+            OnSensorDataBatchEvent?.Invoke(batch);
+
+            if (OnSensorDataReceivedEvent == null)
+                return;
+
+            for (int i = 0; i < batch.count; i++)
+            {
+                SensorDataReceived sensorDataReceived = new SensorDataReceived();
+                sensorDataReceived.deviceAddress = GetDeviceAddressForIndex(batch.deviceIndex[i]);
+                sensorDataReceived.deviceName = GetDeviceNameForIndex(batch.deviceIndex[i]);
+                sensorDataReceived.characteristicUuid = ACCL_GYRO_CHARACTERISTIC_UUID;
+                sensorDataReceived.timestampNanos = batch.timestampNanos[i];
+                sensorDataReceived.index = batch.index[i];
+                sensorDataReceived.accX = batch.accX[i];
+                sensorDataReceived.accY = batch.accY[i];
+                sensorDataReceived.accZ = batch.accZ[i];
+                sensorDataReceived.gyroX = batch.gyroX[i];
+                sensorDataReceived.gyroY = batch.gyroY[i];
+                sensorDataReceived.gyroZ = batch.gyroZ[i];
+
+                OnSensorDataReceivedEvent?.Invoke(sensorDataReceived);
+            }
+        }
+    }
+
+    private void DrainAlignedSamples()
+    {
+        using (AndroidJavaObject nativeBatch = _pluginInstance.Call<AndroidJavaObject>("drainAlignedSamples"))
+        {
+            if (nativeBatch == null)
+                return;
+
+            OnAlignedSensorDataEvent?.Invoke(ReadSensorDataBatch(nativeBatch));
+        }
+    }
+
+    private void DrainProcessedSamples(int output)
+    {
+        using (AndroidJavaObject nativeBatch = _pluginInstance.Call<AndroidJavaObject>("drainProcessedSamples", output))
+        {
+            if (nativeBatch == null)
+                return;
+
+            ProcessedSampleBatch batch = new ProcessedSampleBatch();
+            batch.output = nativeBatch.Get<int>("output");
+            batch.count = nativeBatch.Get<int>("count");
+            batch.width = nativeBatch.Get<int>("width");
+            batch.deviceIndex = nativeBatch.Get<int[]>("deviceIndex");
+            batch.timestampNanos = nativeBatch.Get<long[]>("timestampNanos");
+            batch.values = nativeBatch.Get<float[]>("values");
+
+            OnProcessedSamplesEvent?.Invoke(batch);
+        }
+    }
+
+    private static SensorDataBatch ReadSensorDataBatch(AndroidJavaObject nativeBatch)
+    {
+        SensorDataBatch batch = new SensorDataBatch();
+        batch.count = nativeBatch.Get<int>("count");
+        batch.deviceIndex = nativeBatch.Get<int[]>("deviceIndex");
+        batch.index = nativeBatch.Get<int[]>("index");
+        batch.timestampNanos = nativeBatch.Get<long[]>("timestampNanos");
+        batch.sampleTimestampNanos = nativeBatch.Get<long[]>("sampleTimestampNanos");
+        batch.accX = nativeBatch.Get<float[]>("accX");
+        batch.accY = nativeBatch.Get<float[]>("accY");
+        batch.accZ = nativeBatch.Get<float[]>("accZ");
+        batch.gyroX = nativeBatch.Get<float[]>("gyroX");
+        batch.gyroY = nativeBatch.Get<float[]>("gyroY");
+        batch.gyroZ = nativeBatch.Get<float[]>("gyroZ");
+        return batch;
+    }
+
+    /// <summary>
+    /// Raises the data events straight from the drained frames. Events without listeners cost nothing, and motion
+    /// packets are decoded in place, so their SensorDataReceived has no data, as with decodeMotionNatively.
+    /// </summary>
+    private void DrainBinaryNotifications()
+    {
+        byte[] frames = _pluginInstance.Call<byte[]>("drainNotifications");
+        if (frames == null)
+            return;
+
+        int offset = 0;
+        while (offset + BINARY_FRAME_HEADER_SIZE <= frames.Length)
+        {
+            int deviceIndex = frames[offset];
+            int characteristicId = frames[offset + 1];
+            int payloadLength = frames[offset + 2] | (frames[offset + 3] << 8);
+            long timestampNanos = BitConverter.ToInt64(frames, offset + 4);
+            int payloadOffset = offset + BINARY_FRAME_HEADER_SIZE;
+            if (payloadOffset + payloadLength > frames.Length)
+                break;
+            offset = payloadOffset + payloadLength;
+
+            if (OnRawDataReceivedEvent != null)
+                OnRawDataReceivedEvent(ReadBinaryFrame(frames, payloadOffset, payloadLength, deviceIndex, characteristicId, timestampNanos));
+
+            int kind = GetCharacteristicKindForId(characteristicId);
+            if (kind == CHARACTERISTIC_ACCL_GYRO && OnSensorDataReceivedEvent != null
+                && payloadLength >= SensorDataReceived.PACKET_SIZE)
+            {
+                SensorDataReceived sensorDataReceived = new SensorDataReceived();
+                sensorDataReceived.deviceAddress = GetDeviceAddressForIndex(deviceIndex);
+                sensorDataReceived.deviceName = GetDeviceNameForIndex(deviceIndex);
+                sensorDataReceived.characteristicUuid = ACCL_GYRO_CHARACTERISTIC_UUID;
+                sensorDataReceived.timestampNanos = timestampNanos;
+                OnSensorDataReceivedEvent(sensorDataReceived.Decode(frames, payloadOffset));
+            }
+            else if (kind == CHARACTERISTIC_BATTERY && OnBatteryDataReceivedEvent != null)
+            {
+                OnBatteryDataReceivedEvent(ReadBinaryFrame(frames, payloadOffset, payloadLength, deviceIndex, characteristicId, timestampNanos)
+                    .ToBatteryDataReceived());
+            }
+        }
+    }
+
+    private List<RawDataReceived> ReadBinaryFrames(byte[] frames)
+    {
+        List<RawDataReceived> notifications = new List<RawDataReceived>();
+        if (frames == null)
+            return notifications;
+
+        int offset = 0;
+        while (offset + BINARY_FRAME_HEADER_SIZE <= frames.Length)
+        {
+            int deviceIndex = frames[offset];
+            int characteristicId = frames[offset + 1];
+            int payloadLength = frames[offset + 2] | (frames[offset + 3] << 8);
+            long timestampNanos = BitConverter.ToInt64(frames, offset + 4);
+            int payloadOffset = offset + BINARY_FRAME_HEADER_SIZE;
+            if (payloadOffset + payloadLength > frames.Length)
+                break;
+            offset = payloadOffset + payloadLength;
+
+            notifications.Add(ReadBinaryFrame(frames, payloadOffset, payloadLength, deviceIndex, characteristicId, timestampNanos));
+        }
+        return notifications;
+    }
+
+    private RawDataReceived ReadBinaryFrame(byte[] frames, int payloadOffset, int payloadLength, int deviceIndex,
+        int characteristicId, long timestampNanos)
+    {
+        RawDataReceived tempData = new RawDataReceived();
+        tempData.deviceAddress = GetDeviceAddressForIndex(deviceIndex);
+        tempData.deviceName = GetDeviceNameForIndex(deviceIndex);
+        tempData.characteristicUuid = GetCharacteristicUuidForId(characteristicId);
+        tempData.timestampNanos = timestampNanos;
+        tempData.data = new byte[payloadLength];
+        Buffer.BlockCopy(frames, payloadOffset, tempData.data, 0, payloadLength);
+        return tempData;
+    }
+
+    /// <summary>
+    /// Resolves a device index found in binary frames or a SensorDataBatch to the device address.
+    /// </summary>
+    public string GetDeviceAddressForIndex(int deviceIndex)
+    {
+        if (!_deviceAddressByIndex.TryGetValue(deviceIndex, out string deviceAddress))
+        {
+            deviceAddress = _pluginInstance.Call<string>("getDeviceAddress", deviceIndex);
+            _deviceAddressByIndex[deviceIndex] = deviceAddress;
+        }
+        return deviceAddress;
+    }
+
+    private string GetDeviceNameForIndex(int deviceIndex)
+    {
+        if (!_deviceNameByIndex.TryGetValue(deviceIndex, out string deviceName))
+        {
+            deviceName = _pluginInstance.Call<string>("getDeviceName", deviceIndex);
+            _deviceNameByIndex[deviceIndex] = deviceName;
+        }
+        return deviceName;
+    }
+
+    private string GetCharacteristicUuidForId(int characteristicId)
+    {
+        if (!_characteristicUuidById.TryGetValue(characteristicId, out string characteristicUuid))
+        {
+            characteristicUuid = _pluginInstance.Call<string>("getCharacteristicUuid", characteristicId);
+            // Not cached while the id is unknown to the plugin
+            if (characteristicUuid == null)
+                return null;
+            _characteristicUuidById[characteristicId] = characteristicUuid;
+            _characteristicKindById[characteristicId] = GetCharacteristicKind(characteristicUuid);
+        }
+        return characteristicUuid;
+    }
+
+    private int GetCharacteristicKindForId(int characteristicId)
+    {
+        if (!_characteristicKindById.TryGetValue(characteristicId, out int kind)
+            && GetCharacteristicUuidForId(characteristicId) != null)
+            kind = _characteristicKindById[characteristicId];
+        return kind;
+    }
+
+    private static int GetCharacteristicKind(string characteristicUuid)
+    {
+        if (string.Equals(characteristicUuid, ACCL_GYRO_CHARACTERISTIC_UUID, StringComparison.OrdinalIgnoreCase))
+            return CHARACTERISTIC_ACCL_GYRO;
+        if (string.Equals(characteristicUuid, BATTERY_CHARACTERISTIC_UUID, StringComparison.OrdinalIgnoreCase))
+            return CHARACTERISTIC_BATTERY;
+        return CHARACTERISTIC_OTHER;
+    }
+    
+    private void OnDestroy()
+    {
+        // Also stops and completes a running recording
+        _pluginInstance?.Call("release");
+    }
+
+    /// <summary>
+    /// This method gets called from the Native android plugin when a new BLE device is found.
+    /// </summary>
+    /// <param name="rawData"> a String of a json object </param>
+    private void OnScanResult(string rawData)
+    {
+        OnScanResultEvent?.Invoke(JsonUtility.FromJson<ScanResult>(rawData));
+    }
+    
+    /// <summary>
+    /// This method gets called from the Native android plugin when a scanned device stopped advertising.
+    /// </summary>
+    /// <param name="rawData"> a String of a json object </param>
+    private void OnDeviceLost(string rawData)
+    {
+        OnDeviceLostEvent?.Invoke(JsonUtility.FromJson<ScanResult>(rawData));
+    }
+    
+    /// <summary>
+    /// This method gets called from the Native android plugin with every batch of a batched scan.
+    /// </summary>
+    /// <param name="rawData"> a String of a json object </param>
+    private void OnBatchScanResult(string rawData)
+    {
+        OnBatchScanResultEvent?.Invoke(JsonUtility.FromJson<BatchScanResult>(rawData));
+    }
+    
+    /// <summary>
+    /// This method gets called from the Native android plugin when an error regarding scanning for BLE devices occurs.
+    /// </summary>
+    /// <param name="rawData"> a String of a json object </param>
+    private void OnScanError(string rawData)
+    {
+        OnScanErrorEvent?.Invoke(JsonUtility.FromJson<ScanError>(rawData));
+    }
+    
+    /// <summary>
+    /// When a connecting operation to a BLE device or disconnect from a BLE device is performed, this method receives the status of the operation.
+    ///
+    /// When a disconnect happens the device is automatically removed from the list of connected devices.
+    ///
+    /// An unexpected disconnect will also trigger this method. 
+    /// </summary>
+    /// <param name="rawData"> a String of a json object </param>
+    private void OnDeviceConnectionStateChange(string rawData)
+    {
+        OnDeviceConnectionStateChangeEvent?.Invoke(JsonUtility.FromJson<ConnectionStateChange>(rawData));
+    }
+
+    /// <summary>
+    /// Receives the state changes of managed connections, see SetManagedConnections.
+    /// </summary>
+    /// <param name="rawData"> a String of a json object </param>
+    private void OnManagedConnectionStateChange(string rawData)
+    {
+        OnManagedConnectionStateChangeEvent?.Invoke(JsonUtility.FromJson<ManagedConnectionStateChange>(rawData));
+    }
+
+    /// <summary>
+    /// When DiscoverServicesForDevice is called successfully, this method will return asynchronously the results of the operation.
+    ///
+    /// The layout tables only come with the first discovery of every layout, later ones are filled in from it. The
+    /// service tree of OnServicesDiscoveredEvent is only built if something listens to it.
+    /// </summary>
+    /// <param name="rawData"> a String of a json object </param>
+    private void OnServicesDiscovered(string rawData)
+    {
+        GattLayout layout = JsonUtility.FromJson<GattLayout>(rawData);
+        if (layout.cached)
+        {
+            if (_gattLayouts.TryGetValue(layout.layoutId, out GattLayout known))
+                layout.CopyTablesFrom(known);
+            else
+                Debug.LogError("SyncsenseSensorManager - Unknown GATT layout " + layout.layoutId + " for " + layout.deviceAddress);
+        }
+        else if (layout.layoutId >= 0)
+        {
+            _gattLayouts[layout.layoutId] = layout;
+        }
+
+        OnGattLayoutDiscoveredEvent?.Invoke(layout);
+        OnServicesDiscoveredEvent?.Invoke(layout.ToServicesDiscovered());
+    }
+    
+    /// <summary>
+    /// Receives the result of every queued GATT operation (discovery, subscription, write, read).
+    /// </summary>
+    /// <param name="rawData"> a String of a json object </param>
+    private void OnGattOperationComplete(string rawData)
+    {
+        OnGattOperationCompleteEvent?.Invoke(JsonUtility.FromJson<GattOperationResult>(rawData));
+    }
+    
+    /// <summary>
+    /// Receives the MTU and PHY negotiated with a device.
+    /// </summary>
+    /// <param name="rawData"> a String of a json object </param>
+    private void OnConnectionParametersChanged(string rawData)
+    {
+        OnConnectionParametersChangedEvent?.Invoke(JsonUtility.FromJson<ConnectionParameters>(rawData));
+    }
+
+    /// <summary>
+    /// Receives the outcome of StartReplay, once the recording is over or StopReplay was called.
+    /// </summary>
+    /// <param name="rawData"> a String of a json object </param>
+    private void OnReplayComplete(string rawData)
+    {
+        OnReplayCompleteEvent?.Invoke(JsonUtility.FromJson<ReplayResult>(rawData));
+    }
+
+    /// <summary>
+    /// Receives the cadence of a sensor, see ConfigureCadenceDetection.
+    /// </summary>
+    /// <param name="rawData"> a String of a json object </param>
+    private void OnCadenceUpdate(string rawData)
+    {
+        OnCadenceUpdateEvent?.Invoke(JsonUtility.FromJson<CadenceUpdate>(rawData));
+    }
+
+    /// <summary>
+    /// Receives every cycle of an active sensor, see ConfigureCadenceDetection.
+    /// </summary>
+    /// <param name="rawData"> a String of a json object </param>
+    private void OnCadenceCycle(string rawData)
+    {
+        OnCadenceCycleEvent?.Invoke(JsonUtility.FromJson<CadenceCycle>(rawData));
+    }
+
+    /// <summary>
+    /// Receives every step of every device of ConnectAndStream.
+    /// </summary>
+    /// <param name="rawData"> a String of a json object </param>
+    private void OnConnectAndStreamProgress(string rawData)
+    {
+        OnConnectAndStreamProgressEvent?.Invoke(JsonUtility.FromJson<ConnectAndStreamProgress>(rawData));
+    }
+
+    /// <summary>
+    /// Receives the outcome of ConnectAndStream, once every device streams or failed.
+    /// </summary>
+    /// <param name="rawData"> a String of a json object </param>
+    private void OnConnectAndStreamComplete(string rawData)
+    {
+        OnConnectAndStreamCompleteEvent?.Invoke(JsonUtility.FromJson<ConnectAndStreamResult>(rawData));
+    }
+    
+    /// <summary>
+    /// When subscribed to a characteristic, this method will receive the updates of the characteristic value.
+    /// </summary>
+    /// <param name="rawData"></param>
+    private void OnDataReceived(string rawData)
+    {
+        _dataEventsToAcknowledge++;
+        RawDataReceived tempData = JsonUtility.FromJson<RawDataReceived>(rawData)
+            .Init();
+        DispatchDataReceived(tempData);
+    }
+
+    /// <summary>
+    /// Raises the data events for a notification received as a json message.
+    /// </summary>
+    /// <param name="tempData"> the notification with its data already decoded </param>
+    private void DispatchDataReceived(RawDataReceived tempData)
+    {
+        OnRawDataReceivedEvent?.Invoke(tempData);
+
+        int kind = GetCharacteristicKind(tempData.characteristicUuid);
+        if (kind == CHARACTERISTIC_ACCL_GYRO && OnSensorDataReceivedEvent != null)
+        {
+            SensorDataReceived sensorDataReceived = tempData.ToSensorDataReceived();
+            OnSensorDataReceivedEvent(sensorDataReceived);
+        }
+        else if (kind == CHARACTERISTIC_BATTERY && OnBatteryDataReceivedEvent != null)
+        {
+            OnBatteryDataReceivedEvent(tempData.ToBatteryDataReceived());
+        }
     }
     
 }